@@ -25,8 +25,8 @@ DROP TABLE IF EXISTS `accounts`;
 CREATE TABLE `accounts` (
   `id` int(11) NOT NULL AUTO_INCREMENT,
   `identifier` varchar(255) DEFAULT NULL,
-  `password` varchar(255) DEFAULT NULL,
-  `balance` float DEFAULT '0',
+  `password_hash` varchar(255) DEFAULT NULL COMMENT 'PBKDF2 hash, see security.PasswordHasher',
+  `balance` bigint(20) NOT NULL DEFAULT '0' COMMENT 'minor units (cents)',
   PRIMARY KEY (`id`),
   UNIQUE KEY `identifier_UNIQUE` (`identifier`)
 ) ENGINE=InnoDB AUTO_INCREMENT=2 DEFAULT CHARSET=utf8;
@@ -38,7 +38,7 @@ CREATE TABLE `accounts` (
 
 LOCK TABLES `accounts` WRITE;
 /*!40000 ALTER TABLE `accounts` DISABLE KEYS */;
-INSERT INTO `accounts` VALUES (1,'test','test',150);
+INSERT INTO `accounts` VALUES (1,'test','pbkdf2-sha256$120000$ShasQsT7itxc7pGKYYiUtw$TDSAhqBfsKyeIlLQVqwqK+XzfAYmEtSUO1pmJn/nla4',15000);
 /*!40000 ALTER TABLE `accounts` ENABLE KEYS */;
 UNLOCK TABLES;
 
@@ -53,11 +53,18 @@ CREATE TABLE `transactions` (
   `id` int(11) NOT NULL AUTO_INCREMENT,
   `initiator_id` int(11) NOT NULL,
   `recipient_id` int(11) NOT NULL,
-  `amount` float DEFAULT NULL,
+  `amount` bigint(20) NOT NULL COMMENT 'minor units (cents)',
   `type` varchar(255) DEFAULT NULL,
-  PRIMARY KEY (`id`),
-  KEY `fk_transactions_1_idx` (`initiator_id`,`recipient_id`)
-) ENGINE=InnoDB AUTO_INCREMENT=2 DEFAULT CHARSET=utf8;
+  `created_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `journal_key` varchar(36) DEFAULT NULL COMMENT 'UUID, see journal.WriteBehind',
+  PRIMARY KEY (`id`,`created_at`),
+  UNIQUE KEY `transactions_journal_key_unique` (`journal_key`,`created_at`),
+  KEY `transactions_initiator_id_idx` (`initiator_id`,`created_at`),
+  KEY `transactions_recipient_id_idx` (`recipient_id`,`created_at`),
+  KEY `transactions_type_idx` (`type`)
+) ENGINE=InnoDB AUTO_INCREMENT=2 DEFAULT CHARSET=utf8
+/*!50500 PARTITION BY RANGE  COLUMNS(created_at)
+(PARTITION pmax VALUES LESS THAN (MAXVALUE) ENGINE = InnoDB) */;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
 --
@@ -68,6 +75,50 @@ LOCK TABLES `transactions` WRITE;
 /*!40000 ALTER TABLE `transactions` DISABLE KEYS */;
 /*!40000 ALTER TABLE `transactions` ENABLE KEYS */;
 UNLOCK TABLES;
+
+--
+-- Table structure for table `daily_totals`
+--
+
+DROP TABLE IF EXISTS `daily_totals`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `daily_totals` (
+  `id` int(11) NOT NULL AUTO_INCREMENT,
+  `day` int(11) NOT NULL COMMENT 'days since 1970-01-01',
+  `direction` varchar(255) DEFAULT NULL,
+  `total` bigint(20) NOT NULL DEFAULT '0' COMMENT 'minor units (cents)',
+  `count` int(11) NOT NULL DEFAULT '0',
+  `account_id` int(11) NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `daily_totals_account_id_unique` (`account_id`,`day`,`direction`)
+) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=utf8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `daily_totals`
+--
+
+LOCK TABLES `daily_totals` WRITE;
+/*!40000 ALTER TABLE `daily_totals` DISABLE KEYS */;
+/*!40000 ALTER TABLE `daily_totals` ENABLE KEYS */;
+UNLOCK TABLES;
+
+--
+-- Table structure for table `import_checkpoints`
+--
+
+DROP TABLE IF EXISTS `import_checkpoints`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `import_checkpoints` (
+  `file` varchar(255) NOT NULL COMMENT 'absolute path of the imported file',
+  `segment_bytes` bigint(20) NOT NULL,
+  `segment_offset` bigint(20) NOT NULL,
+  `row_count` int(11) NOT NULL,
+  PRIMARY KEY (`file`,`segment_offset`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+/*!40101 SET character_set_client = @saved_cs_client */;
 /*!40103 SET TIME_ZONE=@OLD_TIME_ZONE */;
 
 /*!40101 SET SQL_MODE=@OLD_SQL_MODE */;
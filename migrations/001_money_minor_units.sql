@@ -0,0 +1,12 @@
+-- Store the amounts as exact minor units (cents) instead of float.
+-- The float values are converted once, rounded to the nearest cent.
+
+ALTER TABLE `accounts` ADD COLUMN `balance_minor` bigint(20) NOT NULL DEFAULT '0' COMMENT 'minor units (cents)' AFTER `balance`;
+UPDATE `accounts` SET `balance_minor` = ROUND(`balance` * 100);
+ALTER TABLE `accounts` DROP COLUMN `balance`;
+ALTER TABLE `accounts` CHANGE COLUMN `balance_minor` `balance` bigint(20) NOT NULL DEFAULT '0' COMMENT 'minor units (cents)';
+
+ALTER TABLE `transactions` ADD COLUMN `amount_minor` bigint(20) NOT NULL DEFAULT '0' COMMENT 'minor units (cents)' AFTER `amount`;
+UPDATE `transactions` SET `amount_minor` = ROUND(`amount` * 100);
+ALTER TABLE `transactions` DROP COLUMN `amount`;
+ALTER TABLE `transactions` CHANGE COLUMN `amount_minor` `amount` bigint(20) NOT NULL COMMENT 'minor units (cents)';
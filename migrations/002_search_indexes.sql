@@ -0,0 +1,5 @@
+-- Index the columns searched on their own (Indexed annotation).
+-- The composite (initiator_id, recipient_id) index cannot serve a search on recipient_id alone.
+
+CREATE INDEX `transactions_recipient_id_idx` ON `transactions` (`recipient_id`);
+CREATE INDEX `transactions_type_idx` ON `transactions` (`type`);
@@ -0,0 +1,5 @@
+-- Store salted password hashes instead of plain text passwords.
+-- The existing plain text values are kept as is: they are still accepted once
+-- and replaced by their PBKDF2 hash on the next successful login of each user.
+
+ALTER TABLE `accounts` CHANGE COLUMN `password` `password_hash` varchar(255) DEFAULT NULL COMMENT 'PBKDF2 hash, see security.PasswordHasher';
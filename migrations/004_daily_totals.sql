@@ -0,0 +1,15 @@
+-- Precomputed totals of the transactions per account, day and direction
+-- (see models.DailyTotal), maintained by the application on every new transaction.
+-- The transactions saved before this migration are not counted (they have no date).
+-- The key is unique: a total is incremented or created in one INSERT ... ON DUPLICATE KEY UPDATE.
+
+CREATE TABLE `daily_totals` (
+  `id` int(11) NOT NULL AUTO_INCREMENT,
+  `day` int(11) NOT NULL COMMENT 'days since 1970-01-01',
+  `direction` varchar(255) DEFAULT NULL,
+  `total` bigint(20) NOT NULL DEFAULT '0' COMMENT 'minor units (cents)',
+  `count` int(11) NOT NULL DEFAULT '0',
+  `account_id` int(11) NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `daily_totals_account_id_unique` (`account_id`,`day`,`direction`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -0,0 +1,16 @@
+-- Date the transactions and partition the table by month on this date.
+-- The existing transactions get the time of the migration. Drain the write-behind
+-- journal (stop the application cleanly) before applying it, as its rows don't
+-- have the new column.
+-- MySQL requires the partitioning column in every unique key, hence the primary
+-- key on (id, created_at). The history queries search an account within a period,
+-- so the account indexes are extended with created_at.
+
+ALTER TABLE `transactions` ADD COLUMN `created_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE `transactions` DROP PRIMARY KEY, ADD PRIMARY KEY (`id`, `created_at`);
+ALTER TABLE `transactions` DROP INDEX `fk_transactions_1_idx`, ADD INDEX `transactions_initiator_id_idx` (`initiator_id`, `created_at`);
+ALTER TABLE `transactions` DROP INDEX `transactions_recipient_id_idx`, ADD INDEX `transactions_recipient_id_idx` (`recipient_id`, `created_at`);
+
+-- A single partition to start with: the monthly partitions are split from pmax
+-- on the next start of the application (or with gradle archiveTransactions).
+ALTER TABLE `transactions` PARTITION BY RANGE COLUMNS(`created_at`) (PARTITION pmax VALUES LESS THAN (MAXVALUE));
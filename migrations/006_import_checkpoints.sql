@@ -0,0 +1,10 @@
+-- Segments of the CSV files loaded by export.TableImporter. Each row is inserted in the
+-- transaction of its segment, so an interrupted import never loads a segment twice.
+
+CREATE TABLE `import_checkpoints` (
+  `file` varchar(255) NOT NULL COMMENT 'absolute path of the imported file',
+  `segment_bytes` bigint(20) NOT NULL,
+  `segment_offset` bigint(20) NOT NULL,
+  `row_count` int(11) NOT NULL,
+  PRIMARY KEY (`file`,`segment_offset`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
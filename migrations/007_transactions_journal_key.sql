@@ -0,0 +1,8 @@
+-- Idempotency key of the transactions inserted by the write-behind journal: the first
+-- batch drained after a crash skips the entries already inserted. Drain the journal
+-- (stop the application cleanly) before applying it, as its rows don't have the new column.
+-- MySQL requires the partitioning column in every unique key, hence (journal_key, created_at):
+-- created_at is set before the entity is journaled, so a replayed entry has the same one.
+
+ALTER TABLE `transactions` ADD COLUMN `journal_key` varchar(36) DEFAULT NULL COMMENT 'UUID, see journal.WriteBehind';
+ALTER TABLE `transactions` ADD UNIQUE INDEX `transactions_journal_key_unique` (`journal_key`, `created_at`);
@@ -0,0 +1,104 @@
+package benchmarks;
+
+import logging.Level;
+import logging.Logger;
+import models.Account;
+import models.Transaction;
+import storage.InMemoryBackend;
+import storage.JdbcBackend;
+import storage.Storage;
+import utils.DatabaseProvider;
+import utils.Money;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared data set of the benchmarks. It create the accounts and transactions, either in an in-process database stand-in plugged in the DatabaseProvider (jdbc backend), in the embedded database profile or in the in-memory storage backend.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class Fixtures {
+
+    /**
+     * Create and install a populated database behind the jdbc backend.
+     * @param accounts the number of accounts
+     * @param rounds the number of transfer + withdraw pairs per account
+     * @return the database
+     * @see #install(int, int, String)
+     */
+    public static InMemoryDatabase install(int accounts, int rounds) {
+        Logger.setLevel(Level.WARNING);
+        InMemoryDatabase database = new InMemoryDatabase()
+                .createTable("accounts", "identifier", "password_hash", "balance")
+                .createTable("transactions", "amount", "initiator_id", "recipient_id", "type", "created_at");
+        for (int i = 1; i <= accounts; i++) {
+            database.insert("accounts", "user" + i, "secret" + i, 100_000L);
+        }
+        // One round per minute, the last one ending now
+        Instant start = Instant.now().minusSeconds(60L * rounds);
+        for (int round = 0; round < rounds; round++) {
+            Timestamp createdAt = Timestamp.from(start.plusSeconds(60L * round));
+            for (int i = 1; i <= accounts; i++) {
+                int recipient = i % accounts + 1;
+                database.insert("transactions", 1_000L, i, recipient, "Transfer", createdAt);
+                database.insert("transactions", 500L, i, i, "Withdraw", createdAt);
+            }
+        }
+        DatabaseProvider.setDatabase(database.connect());
+        Storage.setBackend(new JdbcBackend());
+        return database;
+    }
+
+    /**
+     * Create and install a populated storage backend. Account i is identified by "user" + i, and each account sent one transfer to the next account and made one withdraw per round
+     * @param accounts the number of accounts
+     * @param rounds the number of transfer + withdraw pairs per account
+     * @param backend the storage backend to populate: "jdbc" (in-process stand-in), "embedded" (embedded database profile, real SQL) or "memory"
+     */
+    public static void install(int accounts, int rounds, String backend) {
+        switch (backend) {
+            case "jdbc":
+                install(accounts, rounds);
+                return;
+            case "embedded":
+                Logger.setLevel(Level.WARNING);
+                System.setProperty("otto.db.profile", "embedded");
+                DatabaseProvider.setDatabase(null);
+                Storage.setBackend(new JdbcBackend());
+                break;
+            case "memory":
+                Logger.setLevel(Level.WARNING);
+                Storage.setBackend(new InMemoryBackend());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown backend " + backend);
+        }
+        populate(accounts, rounds);
+    }
+
+    /**
+     * Populate the current storage backend through the models
+     * @param accounts the number of accounts
+     * @param rounds the number of transfer + withdraw pairs per account
+     */
+    private static void populate(int accounts, int rounds) {
+        // Keep the data set creation fast: the hashing cost is not what these benchmarks measure
+        System.setProperty("otto.password.iterations", "1000");
+        List<Account> created = new ArrayList<>(accounts);
+        for (int i = 1; i <= accounts; i++) {
+            Account account = new Account("user" + i, "secret" + i, Money.ofMinorUnits(100_000L));
+            account.save();
+            created.add(account);
+        }
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < accounts; i++) {
+                Account account = created.get(i);
+                new Transaction(account, created.get((i + 1) % accounts), Money.ofMinorUnits(1_000L)).save();
+                new Transaction(account, Money.ofMinorUnits(500L)).save();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import models.Account;
+import models.Transaction;
+import org.openjdk.jmh.annotations.*;
+import repositories.AccountRepository;
+import repositories.Repositories;
+import repositories.TransactionRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the transaction history assembly done by HomeController.transactions (TransactionRepository.findBetween over the whole history: the initiated and received transactions bounded on created_at, withdraw deduplication and sort), without the Swing view.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryBenchmark {
+
+    /**
+     * Number of transfer + withdraw pairs per account
+     */
+    @Param({"10", "100"})
+    public int rounds;
+
+    /**
+     * Storage backend under test
+     */
+    @Param({"jdbc", "embedded", "memory"})
+    public String backend;
+
+    /*
+     * Repositories used by the controller
+     */
+    private AccountRepository accountRepository;
+    private TransactionRepository transactionRepository;
+
+    /**
+     * The account whose history is assembled
+     */
+    private Account account;
+
+    @Setup
+    public void setup() {
+        Fixtures.install(50, this.rounds, this.backend);
+        this.accountRepository = Repositories.get(AccountRepository.class);
+        this.transactionRepository = Repositories.get(TransactionRepository.class);
+        this.account = this.accountRepository.find(25);
+    }
+
+    @Benchmark
+    public List<Transaction> assembleHistory() {
+        Account account = this.accountRepository.find(this.account.getId());
+        return this.transactionRepository.findBetween(account, Instant.EPOCH, Instant.now().plusSeconds(1));
+    }
+}
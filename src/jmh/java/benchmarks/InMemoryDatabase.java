@@ -0,0 +1,309 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process database stand-in for the benchmarks. It expose a JDBC Connection (through dynamic proxies) that understand the few SQL shapes generated by the JDBC storage backend (select all / some columns by column, optionally within a range of another column, insert, update and delete by id) so the persistence layer can be measured without any network or MySQL server.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class InMemoryDatabase {
+
+    /*
+     * SQL shapes generated by the persistence layer
+     */
+    private static final Pattern select = Pattern.compile("SELECT (\\*|[\\w, ]+) FROM (\\w+)(?: WHERE (?:\\w+\\.)?(\\w+) = \\?(?: AND (\\w+) >= \\? AND \\4 < \\? ORDER BY \\4)?)?;?");
+    private static final Pattern insert = Pattern.compile("INSERT INTO (\\w+) \\((.*)\\) VALUES .*");
+    private static final Pattern update = Pattern.compile("UPDATE (\\w+) SET (.*) WHERE (?:\\w+\\.)?id = \\?;?");
+    private static final Pattern delete = Pattern.compile("DELETE FROM (\\w+) WHERE (?:\\w+\\.)?id = \\?;?");
+
+    /**
+     * Tables indexed by name
+     */
+    private final Map<String, Table> tables = new HashMap<>();
+
+    /**
+     * Create a table. The first column is always the auto incremented id
+     * @param name the table name
+     * @param columns the other columns of the table
+     * @return the database, to chain the calls
+     */
+    public InMemoryDatabase createTable(String name, String... columns) {
+        this.tables.put(name, new Table(columns));
+        return this;
+    }
+
+    /**
+     * Insert a row directly, without going through SQL
+     * @param table the table name
+     * @param values the values of the columns (without the id)
+     * @return the id of the new row
+     */
+    public int insert(String table, Object... values) {
+        return this.tables.get(table).insert(values);
+    }
+
+    /**
+     * Open a JDBC connection on the database
+     * @return the connection
+     */
+    public Connection connect() {
+        return proxy(Connection.class, (self, method, args) -> {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return proxy(PreparedStatement.class, new StatementHandler((String) args[0]));
+                case "createStatement":
+                    return proxy(Statement.class, new StatementHandler(null));
+                default:
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    /**
+     * Create a proxy of a JDBC interface
+     * @param clazz the interface
+     * @param handler the handler of the calls
+     * @param <T> the interface type
+     * @return the proxy
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> clazz, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(InMemoryDatabase.class.getClassLoader(), new Class[]{clazz}, handler);
+    }
+
+    /**
+     * Default result of the unsupported JDBC methods
+     * @param method the called method
+     * @return a neutral value for the method return type
+     */
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0f;
+        if (type == double.class) return 0.0;
+        return null;
+    }
+
+    /**
+     * Compare two column values, numbers being compared by value whatever their type
+     * @param a the first value
+     * @param b the second value
+     * @return if both values are equals
+     */
+    private static boolean same(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) return ((Number) a).longValue() == ((Number) b).longValue();
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Order two non null column values, numbers being compared by value whatever their type
+     * @param a the first value
+     * @param b the second value
+     * @return a negative number, zero or a positive number as the first value is lower, equal or greater than the second
+     */
+    @SuppressWarnings("unchecked")
+    private static int compare(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    /**
+     * In memory table: rows are arrays of values, the first one being the id
+     */
+    private static class Table {
+        final String[] columns;
+        final Map<String, Integer> index = new HashMap<>();
+        final List<Object[]> rows = new ArrayList<>();
+        int nextId = 1;
+
+        Table(String[] columns) {
+            this.columns = new String[columns.length + 1];
+            this.columns[0] = "id";
+            System.arraycopy(columns, 0, this.columns, 1, columns.length);
+            for (int i = 0; i < this.columns.length; i++) this.index.put(this.columns[i], i);
+        }
+
+        int insert(Object[] values) {
+            Object[] row = new Object[this.columns.length];
+            row[0] = this.nextId;
+            System.arraycopy(values, 0, row, 1, values.length);
+            this.rows.add(row);
+            return this.nextId++;
+        }
+
+        Object[] byId(Object id) {
+            for (Object[] row : this.rows) {
+                if (same(row[0], id)) return row;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Handler of a Statement / PreparedStatement proxy
+     */
+    private class StatementHandler implements InvocationHandler {
+        final String sql;
+        final Object[] parameters = new Object[32];
+        int generatedKey = -1;
+
+        StatementHandler(String sql) {
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object self, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length == 2 && args[0] instanceof Integer) {
+                this.parameters[(Integer) args[0]] = name.equals("setNull") ? null : args[1];
+                return null;
+            }
+            switch (name) {
+                case "executeQuery":
+                    return this.query(args != null ? (String) args[0] : this.sql);
+                case "executeUpdate":
+                    return this.update(args != null ? (String) args[0] : this.sql);
+                case "getGeneratedKeys":
+                    List<Object[]> keys = new ArrayList<>();
+                    if (this.generatedKey != -1) keys.add(new Object[]{this.generatedKey});
+                    return proxy(ResultSet.class, new ResultSetHandler(new String[]{"id"}, keys));
+                default:
+                    return defaultValue(method);
+            }
+        }
+
+        ResultSet query(String sql) throws SQLException {
+            Matcher m = select.matcher(sql);
+            if (!m.matches()) throw new SQLException("Unsupported query " + sql);
+            Table table = tables.get(m.group(2));
+            List<Object[]> rows = new ArrayList<>();
+            if (m.group(3) == null) {
+                rows.addAll(table.rows);
+            } else {
+                int column = table.index.get(m.group(3));
+                int range = m.group(4) != null ? table.index.get(m.group(4)) : -1;
+                for (Object[] row : table.rows) {
+                    if (!same(row[column], this.parameters[1])) continue;
+                    if (range < 0 || (row[range] != null && compare(row[range], this.parameters[2]) >= 0 && compare(row[range], this.parameters[3]) < 0)) rows.add(row);
+                }
+                if (range >= 0) rows.sort((a, b) -> compare(a[range], b[range]));
+            }
+            if (m.group(1).equals("*")) {
+                return proxy(ResultSet.class, new ResultSetHandler(table.columns, rows));
+            }
+            String[] columns = m.group(1).split(", ");
+            List<Object[]> projected = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                Object[] values = new Object[columns.length];
+                for (int i = 0; i < columns.length; i++) values[i] = row[table.index.get(columns[i])];
+                projected.add(values);
+            }
+            return proxy(ResultSet.class, new ResultSetHandler(columns, projected));
+        }
+
+        int update(String sql) throws SQLException {
+            Matcher m;
+            if ((m = insert.matcher(sql)).matches()) {
+                Table table = tables.get(m.group(1));
+                String[] columns = m.group(2).split(", ");
+                Object[] values = new Object[table.columns.length - 1];
+                for (int i = 0; i < columns.length; i++) values[table.index.get(columns[i]) - 1] = this.parameters[i + 1];
+                this.generatedKey = table.insert(values);
+                return 1;
+            } else if ((m = update.matcher(sql)).matches()) {
+                Table table = tables.get(m.group(1));
+                String[] columns = m.group(2).split(", ");
+                Object[] row = table.byId(this.parameters[columns.length + 1]);
+                if (row == null) return 0;
+                for (int i = 0; i < columns.length; i++) {
+                    String column = columns[i].substring(columns[i].indexOf('.') + 1, columns[i].indexOf(' '));
+                    row[table.index.get(column)] = this.parameters[i + 1];
+                }
+                return 1;
+            } else if ((m = delete.matcher(sql)).matches()) {
+                Table table = tables.get(m.group(1));
+                return table.rows.remove(table.byId(this.parameters[1])) ? 1 : 0;
+            }
+            throw new SQLException("Unsupported statement " + sql);
+        }
+    }
+
+    /**
+     * Handler of a ResultSet proxy over a list of rows
+     */
+    private static class ResultSetHandler implements InvocationHandler {
+        final String[] columns;
+        final List<Object[]> rows;
+        int cursor = -1;
+        boolean wasNull = false;
+
+        ResultSetHandler(String[] columns, List<Object[]> rows) {
+            this.columns = columns;
+            this.rows = rows;
+        }
+
+        @Override
+        public Object invoke(Object self, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    return ++this.cursor < this.rows.size();
+                case "findColumn":
+                    return this.findColumn((String) args[0]);
+                case "wasNull":
+                    return this.wasNull;
+                case "getInt":
+                    return this.number(args[0]).intValue();
+                case "getLong":
+                    return this.number(args[0]).longValue();
+                case "getFloat":
+                    return this.number(args[0]).floatValue();
+                case "getDouble":
+                    return this.number(args[0]).doubleValue();
+                case "getBoolean":
+                    Object bool = this.value(args[0]);
+                    return bool != null && (Boolean) bool;
+                case "getString":
+                case "getObject":
+                case "getTimestamp":
+                    return this.value(args[0]);
+                default:
+                    return defaultValue(method);
+            }
+        }
+
+        int findColumn(String name) throws SQLException {
+            for (int i = 0; i < this.columns.length; i++) {
+                if (this.columns[i].equals(name)) return i + 1;
+            }
+            throw new SQLException("Unknown column " + name);
+        }
+
+        Object value(Object column) throws SQLException {
+            int idx = column instanceof String ? this.findColumn((String) column) : (Integer) column;
+            Object value = this.rows.get(this.cursor)[idx - 1];
+            this.wasNull = value == null;
+            return value;
+        }
+
+        Number number(Object column) throws SQLException {
+            Object value = this.value(column);
+            return value == null ? 0 : (Number) value;
+        }
+    }
+}
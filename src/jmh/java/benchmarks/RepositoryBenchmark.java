@@ -0,0 +1,76 @@
+package benchmarks;
+
+import models.Account;
+import models.Transaction;
+import org.openjdk.jmh.annotations.*;
+import repositories.AccountRepository;
+import repositories.Repositories;
+import repositories.TransactionRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the repository requests (find, findBy, findAll) against the in-process database. The transactions requests include the loading of their initiator and recipient relations.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    /**
+     * Number of accounts in the database
+     */
+    @Param({"100", "1000"})
+    public int accounts;
+
+    /**
+     * Storage backend under test
+     */
+    @Param({"jdbc", "embedded", "memory"})
+    public String backend;
+
+    /*
+     * Repositories under test
+     */
+    private AccountRepository accountRepository;
+    private TransactionRepository transactionRepository;
+
+    /**
+     * An existing account, used as search criteria
+     */
+    private Account account;
+
+    @Setup
+    public void setup() {
+        Fixtures.install(this.accounts, 5, this.backend);
+        this.accountRepository = Repositories.get(AccountRepository.class);
+        this.transactionRepository = Repositories.get(TransactionRepository.class);
+        this.account = this.accountRepository.find(this.accounts / 2);
+    }
+
+    @Benchmark
+    public Account findAccount() {
+        return this.accountRepository.find(this.accounts / 2);
+    }
+
+    @Benchmark
+    public List<Account> findAccountByIdentifier() {
+        return this.accountRepository.findBy("identifier", "user" + (this.accounts / 2));
+    }
+
+    @Benchmark
+    public List<Transaction> findTransactionsByInitiator() {
+        return this.transactionRepository.findBy("initiator_id", this.account);
+    }
+
+    @Benchmark
+    public List<Account> findAllAccounts() {
+        return this.accountRepository.findAll();
+    }
+}
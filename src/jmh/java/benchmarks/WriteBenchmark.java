@@ -0,0 +1,74 @@
+package benchmarks;
+
+import models.Account;
+import org.openjdk.jmh.annotations.*;
+import repositories.AccountRepository;
+import repositories.Repositories;
+import storage.GroupCommitBackend;
+import storage.Storage;
+import utils.Money;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark of concurrent balance updates on the embedded database, each thread saving its own account. With group commit the saves of the different threads share their database transactions.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class WriteBenchmark {
+
+    /**
+     * If the writes go through the group commit backend
+     */
+    @Param({"false", "true"})
+    public boolean groupCommit;
+
+    /**
+     * Number of accounts created, one per thread
+     */
+    private static final int accounts = 64;
+
+    /**
+     * Next account to give to a thread
+     */
+    private final AtomicInteger nextAccount = new AtomicInteger(1);
+
+    @Setup
+    public void setup() {
+        Fixtures.install(accounts, 0, "embedded");
+        if (this.groupCommit) {
+            Storage.setBackend(new GroupCommitBackend());
+        }
+    }
+
+    /**
+     * Account updated by a benchmark thread
+     */
+    @State(Scope.Thread)
+    public static class Session {
+
+        /**
+         * The account of the thread
+         */
+        private Account account;
+
+        @Setup
+        public void setup(WriteBenchmark benchmark) {
+            this.account = Repositories.get(AccountRepository.class).find(benchmark.nextAccount.getAndIncrement());
+        }
+    }
+
+    @Benchmark
+    public boolean creditAccount(Session session) {
+        session.account.credit(Money.ofMinorUnits(1));
+        return session.account.save();
+    }
+}
@@ -0,0 +1,86 @@
+package models;
+
+import benchmarks.Fixtures;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import repositories.AccountRepository;
+import repositories.Repositories;
+import utils.DatabaseProvider;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the model layer as used by the JDBC storage backend: instance construction, hydration from a database row (importDatabaseData, the transaction loading its initiator and recipient through the account repository) and the binding of an insert statement (fillStatement, the statement being prepared once like the insert request the backend reads from its per model SQL cache).
+ * @author Antoine FORET
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+    /*
+     * Rows to hydrate, positioned on their first entry
+     */
+    private ResultSet accountRow;
+    private ResultSet transactionRow;
+
+    /*
+     * Statement and entity used by the binding benchmark
+     */
+    private PreparedStatement insertStatement;
+    private Account account;
+
+    @Setup
+    public void setup() throws SQLException {
+        Fixtures.install(100, 1);
+        this.accountRow = this.row("SELECT * FROM accounts WHERE accounts.id = ?;");
+        this.transactionRow = this.row("SELECT * FROM transactions WHERE transactions.id = ?;");
+        this.insertStatement = DatabaseProvider.getDatabase().prepareStatement("INSERT INTO accounts (identifier, password_hash, balance) VALUES (?, ?, ?);");
+        this.account = Repositories.get(AccountRepository.class).find(1);
+    }
+
+    @Benchmark
+    public Account construct() {
+        return new Account();
+    }
+
+    @Benchmark
+    public Account hydrateAccount() {
+        Account account = new Account();
+        account.importDatabaseData(this.accountRow);
+        return account;
+    }
+
+    @Benchmark
+    public Transaction hydrateTransactionWithRelations() {
+        Transaction transaction = new Transaction();
+        transaction.importDatabaseData(this.transactionRow);
+        return transaction;
+    }
+
+    @Benchmark
+    public void fillStatement(Blackhole blackhole) throws SQLException {
+        blackhole.consume(this.account.fillStatement(this.insertStatement));
+    }
+
+    /**
+     * Run a query on the first row of a table and position the result on it
+     * @param query the query, with the id as only parameter
+     * @return the result positioned on the first row
+     * @throws SQLException if the query fail
+     */
+    private ResultSet row(String query) throws SQLException {
+        PreparedStatement statement = DatabaseProvider.getDatabase().prepareStatement(query);
+        statement.setInt(1, 1);
+        ResultSet res = statement.executeQuery();
+        res.next();
+        return res;
+    }
+}
@@ -1,4 +1,24 @@
 import controllers.LoginController;
+import journal.WriteBehind;
+import logging.Logger;
+import models.Account;
+import models.ModelMetadata;
+import models.Models;
+import models.Transaction;
+import repositories.AccountDirectory;
+import schema.PartitionMaintenance;
+import schema.SchemaValidator;
+import startup.Warmup;
+import storage.InMemoryBackend;
+import storage.JdbcBackend;
+import storage.ShardedBackend;
+import storage.Storage;
+import utils.Configuration;
+import utils.DatabaseProvider;
+import utils.Money;
+
+import java.sql.Connection;
+import java.time.YearMonth;
 
 /**
  * Entry point of the application
@@ -8,10 +28,87 @@ import controllers.LoginController;
 public class Main {
 
     /**
-     * Entry point of the application.
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(Main.class);
+
+    /**
+     * Entry point of the application. The database checks and the warm-up run in the background while the login window is built (see Warmup).
+     * With "otto.startup.exit=true" the application stops once started, which is used to record the class-data sharing archive (gradle appCds).
      * @param attr parameters sent to the application (not used)
      */
     public static void main(String[] attr) {
+        if (Storage.getBackend() instanceof ShardedBackend) {
+            ((ShardedBackend) Storage.getBackend()).recover();
+        }
+        if (Storage.getBackend() instanceof InMemoryBackend) {
+            seedMemoryStorage();
+        }
+        Warmup warmup = new Warmup();
+        warmup.submit("models", Warmup::loadModels);
+        if (Storage.getBackend() instanceof JdbcBackend) {
+            warmup.submit("database", Main::prepareDatabase);
+        } else {
+            warmup.submit("login", Warmup::prepareLogin);
+        }
+        if (Configuration.getBoolean("otto.journal.enabled", false)) {
+            startJournal();
+        }
+        AccountDirectory.start();
         new LoginController();
+        log.info("Login window shown " + Warmup.sinceStart() + " ms after the JVM start");
+        if (Configuration.getBoolean("otto.startup.exit", false)) {
+            warmup.await();
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Connect to the database, validate its schema, create the upcoming partitions and prepare the login request
+     */
+    private static void prepareDatabase() {
+        if (Configuration.getBoolean("otto.schema.validate", true)) {
+            validateSchema();
+        }
+        if (!DatabaseProvider.isEmbeddedProfile() && Configuration.getBoolean("otto.partitions.maintain", true)) {
+            new PartitionMaintenance(ModelMetadata.of(Transaction.class).getTable()).run(YearMonth.now(), false);
+        }
+        Warmup.prepareLogin();
+    }
+
+    /**
+     * Compare the database schema (of each shard when the storage is sharded) with the models and report the missing tables, columns and indexes. It runs on its own connections, the shared ones staying free for the login
+     */
+    private static void validateSchema() {
+        int databases = Storage.getBackend() instanceof ShardedBackend ? DatabaseProvider.getShardCount() : 1;
+        for (int shard = 0; shard < databases; shard++) {
+            try (Connection conn = DatabaseProvider.openMaintenanceConnection(shard)) {
+                if (conn == null) {
+                    log.warning("No connection to validate the database schema");
+                    continue;
+                }
+                SchemaValidator.validate(conn, Models.all());
+            } catch (Exception e) {
+                log.error("Unable to validate the database schema", e);
+            }
+        }
+    }
+
+    /**
+     * Start the write-behind journal, recovering the entries left by the previous run. The transactions are inserted synchronously if it cannot be opened
+     */
+    private static void startJournal() {
+        try {
+            WriteBehind.start();
+        } catch (Exception e) {
+            log.error("Unable to open the write-behind journal", e);
+        }
+    }
+
+    /**
+     * Create the same test account as database.sql, so the application can be used with the in-memory storage
+     */
+    private static void seedMemoryStorage() {
+        new Account("test", "test", Money.ofMinorUnits(15000)).save();
     }
 }
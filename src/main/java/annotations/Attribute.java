@@ -1,13 +1,16 @@
 package annotations;
 
 
+import converters.ColumnConverter;
+
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
- * Annotation use to define a property from a model as a persisted data. The column name must be defined in the name parameter
+ * Annotation use to define a property from a model as a persisted data. The column name must be defined in the name parameter. The optional converter parameter force the converter to use for the column (for example EnumOrdinalConverter to store an enum as an int), else the converter registered for the field type is used.
+ * @see converters.ConverterRegistry
  * @author Antoine FORET
  * @version 1.0
  */
@@ -15,4 +18,6 @@ import java.lang.annotation.Target;
 @Target(ElementType.FIELD)
 public @interface Attribute {
     String name();
+    @SuppressWarnings("rawtypes")
+    Class<? extends ColumnConverter> converter() default ColumnConverter.class;
 }
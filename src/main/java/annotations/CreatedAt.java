@@ -0,0 +1,17 @@
+package annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation use to mark the Instant attribute holding the creation time of an entity. It is set by the model base when the entity is saved for the first time, unless it was already defined.
+ * @see models.ModelBase#save()
+ * @author Antoine FORET
+ * @version 1.0
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface CreatedAt {
+}
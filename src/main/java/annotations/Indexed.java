@@ -0,0 +1,17 @@
+package annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation use to mark an attribute or a relation column as searched often (findBy). The column get an index in the generated schema, the schema validator report it when the database doesn't have one, and the in-memory storage backend keep a secondary index on it.
+ * @see schema.SchemaValidator
+ * @author Antoine FORET
+ * @version 1.0
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Indexed {
+}
@@ -0,0 +1,17 @@
+package annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation use to mark the String attribute holding the idempotency key of a write-behind model. It is set by the model base to a random UUID when the entity is appended to the journal, unless it was already defined, so the write-behind recognize the entries it already inserted.
+ * @see journal.WriteBehind
+ * @author Antoine FORET
+ * @version 1.0
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface JournalKey {
+}
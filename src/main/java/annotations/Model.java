@@ -14,4 +14,11 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 public @interface Model {
     String table();
+
+    /**
+     * If the new entities of the model can be inserted through the write-behind journal (when it is enabled). Only suitable for append-only records that are never updated after their creation
+     * @see journal.WriteBehind
+     * @return if the inserts can be deferred
+     */
+    boolean writeBehind() default false;
 }
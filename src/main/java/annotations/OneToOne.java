@@ -1,5 +1,7 @@
 package annotations;
 
+import repositories.RepositoryBase;
+
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -14,5 +16,5 @@ import java.lang.annotation.Target;
 @Target(ElementType.FIELD)
 public @interface OneToOne {
     String name();
-    Class repository();
+    Class<? extends RepositoryBase> repository();
 }
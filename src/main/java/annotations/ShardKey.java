@@ -0,0 +1,17 @@
+package annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation use to mark the attribute or relation column which decide the shard of a new entity when the storage is sharded. A relation place the entity on the shard of the related entity, an attribute is hashed. A model without shard key is stored on the first shard.
+ * @see storage.ShardedBackend
+ * @author Antoine FORET
+ * @version 1.0
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface ShardKey {
+}
@@ -0,0 +1,17 @@
+package annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation use to mark an attribute or a relation column whose values are unique (like the account identifier). The column get a unique index in the generated schema and the in-memory storage backend reject duplicates. A unique column is also considered as indexed.
+ * @see annotations.Indexed
+ * @author Antoine FORET
+ * @version 1.0
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Unique {
+}
@@ -1,13 +1,32 @@
 package controllers;
 
+import events.ChangeEvent;
+import events.EventBus;
+import logging.Logger;
+import metrics.QueryTracer;
 import models.Account;
+import models.DailyTotal;
+import models.ModelBase;
 import models.Transaction;
+import repositories.AccountDirectory;
+import repositories.AccountQueries;
 import repositories.AccountRepository;
+import repositories.DailyTotalRepository;
+import repositories.Repositories;
 import repositories.TransactionRepository;
+import storage.ReadRouter;
+import utils.Configuration;
+import utils.Money;
 import utils.Pair;
 import views.HomeView;
 
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
 import java.util.*;
 
 /**
@@ -18,16 +37,36 @@ import java.util.*;
  */
 public class HomeController {
 
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(HomeController.class);
+
+    /**
+     * Number of days of transactions shown in the history, 0 to show the whole history
+     */
+    private static final int historyDays = Configuration.getInt("otto.history.days", 0);
+
     /**
      * The home view (swing components goes there)
      */
     private HomeView view;
 
     /**
-     * The current account we manage. This property is defined by the constructor and as such is a mandatory parameter for this controller. It is also updated every time we use it.
+     * The current account we manage. This property is defined by the constructor and as such is a mandatory parameter for this controller. It is read again when it changed elsewhere, and before every debit.
      */
     private Account account;
 
+    /**
+     * If the account changed since it was read (saved through another instance or by another terminal)
+     */
+    private volatile boolean stale;
+
+    /**
+     * Subscription to the changes of the account
+     */
+    private final EventBus.Subscription subscription;
+
     /**
      * Repository to retrieve accounts. It is used to update the account parameter.
      */
@@ -38,49 +77,57 @@ public class HomeController {
      */
     private TransactionRepository transactionRepository;
 
+    /**
+     * Repository to read the precomputed totals of the account's transactions
+     */
+    private DailyTotalRepository dailyTotalRepository;
+
     /**
      * Constructor of the controller. It need the account it will manage, then it update the view and all it"s properties
      * @param account the account to manage
      */
     HomeController(Account account) {
         HashMap<String, ActionListener> handlers = new HashMap<>();
-        handlers.put("summary", e -> this.summary());
-        handlers.put("transactions", e -> this.transactions());
-        handlers.put("withdraw", e -> this.withdraw());
-        handlers.put("transfer", e -> this.transfer());
-        handlers.put("delete", e -> this.delete());
-        handlers.put("logout", e -> this.logout());
+        handlers.put("summary", e -> QueryTracer.trace("HomeController.summary", this::summary));
+        handlers.put("transactions", e -> QueryTracer.trace("HomeController.transactions", this::transactions));
+        // The balance read before a debit must not come from a lagging replica
+        handlers.put("withdraw", e -> QueryTracer.trace("HomeController.withdraw", () -> ReadRouter.onPrimary(this::withdraw)));
+        handlers.put("transfer", e -> QueryTracer.trace("HomeController.transfer", () -> ReadRouter.onPrimary(this::transfer)));
+        handlers.put("delete", e -> QueryTracer.trace("HomeController.delete", this::delete));
+        handlers.put("logout", e -> QueryTracer.trace("HomeController.logout", this::logout));
 
         this.account = account;
-        this.accountRepository = new AccountRepository();
-        this.transactionRepository = new TransactionRepository();
+        this.accountRepository = Repositories.get(AccountRepository.class);
+        this.transactionRepository = Repositories.get(TransactionRepository.class);
+        this.dailyTotalRepository = Repositories.get(DailyTotalRepository.class);
         this.view = new HomeView(account, handlers);
+        this.subscription = EventBus.subscribe(Account.class, account.getId(), this::accountChanged);
+        this.view.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                subscription.close();
+            }
+        });
     }
 
     /**
-     * Ask the view to display the account summary
+     * Ask the view to display the account summary, with the totals of the current month read from the daily totals
      */
     private void summary() {
         this.updateAccount();
-        this.view.showSummary(this.account);
+        LocalDate today = LocalDate.now();
+        Map<DailyTotal.Direction, Money> totals = this.dailyTotalRepository.totals(this.account, today.with(TemporalAdjusters.firstDayOfMonth()), today);
+        this.view.showSummary(this.account, totals);
     }
 
     /**
-     * Open the page with the summary of all the user's transactions.
-     * We need to remove some duplicate entries as a withdraw is a transaction that have the account as both initiator and recipient.
+     * Open the page with the summary of the user's transactions, the whole history by default. When "otto.history.days" is set, only the transactions of these last days are shown, read from the partitions of this period only.
      */
     private void transactions() {
         this.updateAccount();
-        List<Transaction> transactions = this.transactionRepository.findBy("initiator_id", this.account);
-        List<Transaction> recipientTransactions = this.transactionRepository.findBy("recipient_id", this.account);
-        List<Transaction> duplicated = new ArrayList<>();
-        recipientTransactions.forEach(elem -> {
-            if (elem.getInitiator().getId() == elem.getRecipient().getId())
-                duplicated.add(elem);
-        });
-        recipientTransactions.removeAll(duplicated);
-        transactions.addAll(recipientTransactions);
-        Collections.sort(transactions, (elem1, elem2) -> elem2.getId() - elem1.getId());
+        Instant now = Instant.now();
+        Instant from = historyDays > 0 ? now.minus(historyDays, ChronoUnit.DAYS) : Instant.EPOCH;
+        List<Transaction> transactions = this.transactionRepository.findBetween(this.account, from, now.plusSeconds(1));
         new TransactionController(this.account, transactions);
     }
 
@@ -88,21 +135,26 @@ public class HomeController {
      * Ask the view the different data need to create a new withdraw, then validate the datas and create the withdraw transaction while updating the account balance.
      */
     private void withdraw() {
-        this.updateAccount();
+        this.reloadAccount();
 
         String amountRequested = this.view.askWithdraw(this.account);
         if (amountRequested == null) return;
-        float amount = Float.parseFloat(amountRequested);
+        Money amount = Money.parse(amountRequested);
 
-        if (amount <= 0 || amount > this.account.getBalance()) {
+        if (!amount.isPositive() || amount.isGreaterThan(this.account.getBalance())) {
             this.view.showError("Invalid answer.");
         } else {
             Transaction transaction = new Transaction(this.account, amount);
 
             account.debit(amount);
-            account.save();
-            transaction.save();
-            System.out.println("[INFO] User " + this.account.getIdentifier() + " just withdraw " + amount + ". New balance " + account.getBalance());
+            ModelBase.Outcome outcome = ModelBase.saveAll(account, transaction);
+            if (outcome != ModelBase.Outcome.Saved) {
+                // Nothing was published: drop the debit kept in memory, the storage telling whether it was saved
+                this.reloadAccount();
+                this.view.showError(outcome == ModelBase.Outcome.Failed ? "The withdraw failed, please try again." : "The withdraw may not have been saved, please check your balance before trying again.");
+                return;
+            }
+            log.info("User " + this.account.getIdentifier() + " just withdraw " + amount + ". New balance " + account.getBalance());
         }
     }
 
@@ -111,34 +163,66 @@ public class HomeController {
      */
     private void transfer() {
         try {
-            this.updateAccount();
-            Pair<String, Float> result = this.view.askTransfer();
-            Account recipient = (Account) this.accountRepository.findBy("identifier", result.left).get(0);
-            float amount = result.right;
-            if (recipient != null && amount > 0 && amount <= this.account.getBalance()) {
+            this.reloadAccount();
+            Pair<String, Money> result = this.view.askTransfer();
+            Account recipient = this.findRecipient(result.left);
+            Money amount = result.right;
+            if (recipient != null && amount.isPositive() && !amount.isGreaterThan(this.account.getBalance())) {
                 Transaction transaction = new Transaction(this.account, recipient, amount);
                 this.account.debit(amount);
                 recipient.credit(amount);
-                recipient.save();
-                account.save();
-                transaction.save();
+                ModelBase.Outcome outcome = ModelBase.saveAll(recipient, account, transaction);
+                if (outcome == ModelBase.Outcome.Failed) {
+                    // Nothing was saved nor published: revert the amounts kept in memory, the account being read again from the storage
+                    recipient.debit(amount);
+                    this.reloadAccount();
+                    this.view.showError("The transfer failed, please try again.");
+                } else if (outcome == ModelBase.Outcome.Unknown) {
+                    // The transfer may be committed: both accounts are read again instead of reverted
+                    this.reloadAccount();
+                    Account stored = this.accountRepository.find(recipient.getId());
+                    log.warning("Outcome of the transfer of " + amount + " from " + this.account.getIdentifier() + " to " + recipient.getIdentifier() + " unknown, balances read again: "
+                            + this.account.getBalance() + " and " + (stored != null ? stored.getBalance() : "unavailable"));
+                    this.view.showError("The transfer may not have been saved, please check your balance before trying again.");
+                }
             } else {
                 this.view.showError("Bad input");
             }
         } catch (IndexOutOfBoundsException e) {
             this.view.showError("Recipient not found");
         } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("[ERROR] Unexpected error occurred");
+            log.error("Unexpected error occurred", e);
         }
     }
 
+    /**
+     * Find the recipient of a transfer by its id in the account directory, else by searching its identifier in the accounts table
+     * @param identifier the identifier of the recipient
+     * @return the recipient account
+     * @throws IndexOutOfBoundsException if no account has this identifier
+     */
+    private Account findRecipient(String identifier) {
+        AccountDirectory directory = AccountDirectory.get();
+        int id = directory != null ? directory.findId(identifier) : -1;
+        if (id > 0) {
+            Account recipient = this.accountRepository.find(id);
+            if (recipient != null && identifier.equals(recipient.getIdentifier())) return recipient;
+        }
+        Account recipient = Repositories.queries(AccountQueries.class).findByIdentifier(identifier);
+        if (recipient == null) throw new IndexOutOfBoundsException("No account " + identifier);
+        return recipient;
+    }
+
     /**
      * Delete the user account. This action is not reversible and will log the user off.
      */
     private void delete() {
-        System.out.println("[INFO] User " + this.account.getIdentifier() + " just deleted it's account!");
-        this.account.destroy();
+        if (!this.account.destroy()) {
+            this.view.showError("The account could not be deleted, please try again.");
+            return;
+        }
+        log.info("User " + this.account.getIdentifier() + " just deleted it's account!");
+        this.subscription.close();
         this.view.setVisible(false);
         this.view.dispose();
     }
@@ -147,15 +231,32 @@ public class HomeController {
      * Log out the user by closing the windows as no data are persisted else for the session
      */
     private void logout() {
-        System.out.println("[INFO] User " + this.account.getIdentifier() + " just logged out");
+        log.info("User " + this.account.getIdentifier() + " just logged out");
+        this.subscription.close();
         this.view.setVisible(false);
         this.view.dispose();
     }
 
     /**
-     * Helper to update the account property and keep it up to date.
+     * Mark the account as stale when it is changed by someone else than this controller
+     * @param event the change of the account
+     */
+    private void accountChanged(ChangeEvent<Account> event) {
+        if (event.getEntity() != this.account) this.stale = true;
+    }
+
+    /**
+     * Helper to keep the account property up to date: it is only read again when a change was published since the last read.
      */
     private void updateAccount() {
+        if (this.stale) this.reloadAccount();
+    }
+
+    /**
+     * Read the account again. Used before a debit, the changes of the other terminals reaching the event bus only through the periodic read of the account directory
+     */
+    private void reloadAccount() {
+        this.stale = false;
         this.account = this.accountRepository.find(this.account.getId());
     }
 }
@@ -1,11 +1,17 @@
 package controllers;
 
+import logging.Logger;
+import metrics.QueryTracer;
 import models.Account;
 import repositories.AccountRepository;
+import repositories.Repositories;
+import security.CredentialCache;
+import security.Credentials;
+import security.PasswordHasher;
+import security.RateLimiter;
+import utils.Configuration;
 import views.LoginView;
 
-import java.util.List;
-
 /**
  * Login controller. This class handle all the logic for the login view.
  * @see views.LoginView
@@ -14,6 +20,37 @@ import java.util.List;
  */
 public class LoginController {
 
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(LoginController.class);
+
+    /**
+     * Recently verified credentials, shared by all the login windows
+     */
+    private static final CredentialCache credentialCache = new CredentialCache();
+
+    /**
+     * Login attempts limiter per account identifier: a small burst, then one attempt per refill interval
+     */
+    private static final RateLimiter identifierLimiter = new RateLimiter(
+            Configuration.getInt("otto.login.identifier.burst", 5),
+            Configuration.getLong("otto.login.identifier.refill.ms", 60_000) * 1_000_000L,
+            Configuration.getInt("otto.login.maxKeys", 100_000));
+
+    /**
+     * Login attempts limiter per terminal, whatever the identifier
+     */
+    private static final RateLimiter terminalLimiter = new RateLimiter(
+            Configuration.getInt("otto.login.terminal.burst", 20),
+            Configuration.getLong("otto.login.terminal.refill.ms", 1_000) * 1_000_000L,
+            Configuration.getInt("otto.login.maxKeys", 100_000));
+
+    /**
+     * Identifier of the terminal running the application
+     */
+    private static final String terminal = Configuration.get("otto.terminal.id", "local");
+
     /**
      * The view displayed by the controller
      */
@@ -28,24 +65,44 @@ public class LoginController {
      * Constructor of the controller. Initiate all the view and repository elements
      */
     public LoginController() {
-        this.view = new LoginView(e -> this.login());
-        this.accountRepository = new AccountRepository();
+        this.view = new LoginView(e -> QueryTracer.trace("LoginController.login", this::login));
+        this.accountRepository = Repositories.get(AccountRepository.class);
     }
 
     /**
-     * Handle all the login login. If the login succeeded, the method open the account management window, else it ask the view to display the bad credential dialog
+     * Handle all the login login. If the login succeeded, the method open the account management window, else it ask the view to display the bad credential dialog.
+     * The attempts are throttled per terminal and per identifier before any database access. An unknown identifier still cost a password hashing, so it answers as slowly as a wrong password. Only the id and password hash are loaded to check the password, the account itself is loaded once the password is valid. A legacy plain text password is replaced by its hash on success.
      */
     private void login() {
         String username = this.view.getUsername();
         String password = this.view.getPassword();
 
-        List<Account> accounts = accountRepository.findBy("identifier", username);
-        if (accounts.size() < 1 || !accounts.get(0).validatePassword(password)) {
+        if (!terminalLimiter.tryAcquire(terminal) || !identifierLimiter.tryAcquire(username)) {
+            log.warning("Login attempt for " + username + " throttled on terminal " + terminal);
+            this.view.showTooManyAttempts();
+            return;
+        }
+        Credentials credentials = this.accountRepository.findCredentials(username);
+        if (credentials == null) {
+            PasswordHasher.verifyUnknown(password);
             this.view.showInvalidCredentials();
-        } else {
-            System.out.println("[INFO] User " + accounts.get(0).getIdentifier() + " just logged in");
-            this.view.resetFields();
-            new HomeController(accounts.get(0));
+            return;
+        }
+        if (!credentialCache.verify(username, password, credentials.getPasswordHash())) {
+            this.view.showInvalidCredentials();
+            return;
+        }
+        Account account = this.accountRepository.find(credentials.getId());
+        if (account == null) {
+            this.view.showInvalidCredentials();
+            return;
+        }
+        if (PasswordHasher.needsRehash(credentials.getPasswordHash())) {
+            account.setPassword(password);
+            account.save();
         }
+        log.info("User " + account.getIdentifier() + " just logged in");
+        this.view.resetFields();
+        new HomeController(account);
     }
 }
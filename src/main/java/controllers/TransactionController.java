@@ -1,13 +1,19 @@
 package controllers;
 
+import events.ChangeEvent;
+import events.EventBus;
 import models.Account;
 import models.Transaction;
 import views.TransactionsView;
 
+import javax.swing.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.util.List;
 
 /**
  * Transaction controller. Used to display the transaction summary to the user. It doesn't contain any logic but to keep our code clean, we split the logic and display parts anyway.
+ * While the view is open, the new transactions of the account published on the event bus are added to it.
  * @see views.TransactionsView
  * @author Antoine FORET
  * @version 1.0
@@ -19,12 +25,38 @@ public class TransactionController {
      */
     TransactionsView view;
 
+    /**
+     * The account we display the transactions
+     */
+    private final Account account;
+
     /**
      * Initiate the view to display all the transactions.
      * @param account the account we display the transactions
      * @param transactions the transaction list from the user.
      */
     public TransactionController(Account account, List<Transaction> transactions) {
+        this.account = account;
         this.view = new TransactionsView(account, transactions);
+        EventBus.Subscription subscription = EventBus.subscribe(Transaction.class, this::transactionChanged);
+        this.view.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                subscription.close();
+            }
+        });
+    }
+
+    /**
+     * Add a new transaction of the account to the view
+     * @param event the change of a transaction
+     */
+    private void transactionChanged(ChangeEvent<Transaction> event) {
+        Transaction transaction = event.getEntity();
+        if (event.getKind() != ChangeEvent.Kind.Created || transaction == null) return;
+        int id = this.account.getId();
+        if (transaction.getInitiator().getId() == id || transaction.getRecipient().getId() == id) {
+            SwingUtilities.invokeLater(() -> this.view.addTransaction(this.account, transaction));
+        }
     }
 }
@@ -0,0 +1,57 @@
+package converters;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Converter for boolean and Boolean attributes stored in a BOOLEAN column
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class BooleanConverter implements ColumnConverter<Boolean, Boolean> {
+
+    /**
+     * If a NULL column is read as null (Boolean) or as false (boolean)
+     */
+    private final boolean nullable;
+
+    /**
+     * Constructor of the converter
+     * @param nullable true for Boolean attributes, false for boolean ones
+     */
+    public BooleanConverter(boolean nullable) {
+        this.nullable = nullable;
+    }
+
+    @Override
+    public Boolean read(ResultSet res, int idx) throws SQLException {
+        boolean value = res.getBoolean(idx);
+        return this.nullable && res.wasNull() ? null : value;
+    }
+
+    @Override
+    public void write(PreparedStatement stmt, int idx, Boolean value) throws SQLException {
+        if (value == null) {
+            stmt.setNull(idx, Types.BOOLEAN);
+        } else {
+            stmt.setBoolean(idx, value);
+        }
+    }
+
+    @Override
+    public Boolean toDatabase(Boolean value) {
+        return value;
+    }
+
+    @Override
+    public Boolean fromDatabase(Boolean value) {
+        return value == null && !this.nullable ? false : value;
+    }
+
+    @Override
+    public String sqlType() {
+        return "tinyint(1)";
+    }
+}
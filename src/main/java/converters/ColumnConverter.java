@@ -0,0 +1,56 @@
+package converters;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Conversion between a Java type and a database column. A converter is resolved once per model attribute when the model metadata is built, so reading or writing a value is a direct call without any reflection.
+ * @see converters.ConverterRegistry
+ * @param <J> the Java type of the attribute
+ * @param <D> the type of the value stored in the database column
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public interface ColumnConverter<J, D> {
+
+    /**
+     * Read a value from a database result
+     * @param res the database result (.next must already have been called)
+     * @param idx the index of the column to read
+     * @return the converted value
+     * @throws SQLException if the column cannot be read
+     */
+    J read(ResultSet res, int idx) throws SQLException;
+
+    /**
+     * Fill a prepared statement parameter with the given value
+     * @param stmt the statement to fill
+     * @param idx the index of the parameter
+     * @param value the value to store (can be null)
+     * @throws SQLException if the parameter cannot be defined
+     */
+    void write(PreparedStatement stmt, int idx, J value) throws SQLException;
+
+    /**
+     * Convert a Java value into the value stored in database
+     * @param value the Java value
+     * @return the database value
+     */
+    D toDatabase(J value);
+
+    /**
+     * Convert a database value into the Java value
+     * @param value the database value
+     * @return the Java value
+     */
+    J fromDatabase(D value);
+
+    /**
+     * SQL type of the column, in MySQL syntax. Used by the schema generator
+     * @return the column type (varchar(255) unless the converter say otherwise)
+     */
+    default String sqlType() {
+        return "varchar(255)";
+    }
+}
@@ -0,0 +1,126 @@
+package converters;
+
+import annotations.Attribute;
+import utils.Money;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the column converters. Models resolve a converter for each of their attributes once, when their metadata is built. The built-in converters cover the primitive types, String, Money, Instant and enums (stored by name). Any other type can be supported by registering a converter before the first model using it is created.
+ * @see converters.ColumnConverter
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class ConverterRegistry {
+
+    /**
+     * Converters indexed by the Java type they handle
+     */
+    private static final Map<Class<?>, ColumnConverter<?, ?>> converters = new ConcurrentHashMap<>();
+
+    static {
+        register(int.class, new IntegerConverter(false));
+        register(Integer.class, new IntegerConverter(true));
+        register(long.class, new LongConverter(false));
+        register(Long.class, new LongConverter(true));
+        register(float.class, new FloatConverter(false));
+        register(Float.class, new FloatConverter(true));
+        register(double.class, new DoubleConverter(false));
+        register(Double.class, new DoubleConverter(true));
+        register(boolean.class, new BooleanConverter(false));
+        register(Boolean.class, new BooleanConverter(true));
+        register(String.class, new StringConverter());
+        register(Money.class, new MoneyConverter());
+        register(Instant.class, new InstantConverter());
+    }
+
+    /**
+     * Register (or replace) the converter of a Java type
+     * @param clazz the Java type
+     * @param converter the converter to use for this type
+     * @param <J> the Java type
+     */
+    public static <J> void register(Class<J> clazz, ColumnConverter<J, ?> converter) {
+        converters.put(clazz, converter);
+    }
+
+    /**
+     * Resolve the converter of a model attribute. The converter parameter of the Attribute annotation take precedence over the registered converter of the field type.
+     * @param field the attribute field
+     * @return the converter to use for this field
+     * @throws IllegalArgumentException if no converter can handle the field type
+     */
+    public static ColumnConverter<?, ?> resolve(Field field) {
+        Attribute attribute = field.getAnnotation(Attribute.class);
+        if (attribute != null && attribute.converter() != ColumnConverter.class) {
+            return instantiate(attribute.converter(), field.getType());
+        }
+        return forClass(field.getType());
+    }
+
+    /**
+     * Find the converter of a Java type. Enums without a registered converter are stored by name and any other unknown type fall back on the JDBC getter / setter named after the type.
+     * @param clazz the Java type
+     * @return the converter to use for this type
+     * @throws IllegalArgumentException if no converter can handle the type
+     */
+    public static ColumnConverter<?, ?> forClass(Class<?> clazz) {
+        ColumnConverter<?, ?> converter = converters.get(clazz);
+        if (converter != null) {
+            return converter;
+        }
+        if (clazz.isEnum()) {
+            converter = enumConverter(clazz);
+        } else {
+            converter = new ReflectiveConverter<>(clazz);
+        }
+        ColumnConverter<?, ?> previous = converters.putIfAbsent(clazz, converter);
+        return previous != null ? previous : converter;
+    }
+
+    /**
+     * Find the converter of the type of a value, typed to convert this value (a search value for example)
+     * @param value the value, not null
+     * @return the converter to use for the value type
+     * @throws IllegalArgumentException if no converter can handle the type
+     */
+    @SuppressWarnings("unchecked")
+    public static ColumnConverter<Object, Object> forValue(Object value) {
+        return (ColumnConverter<Object, Object>) forClass(value.getClass());
+    }
+
+    /**
+     * Create the converter storing an enum by name
+     * @param clazz the enum type (Class.isEnum must be true)
+     * @param <E> the enum type
+     * @return the converter
+     */
+    @SuppressWarnings("unchecked")
+    private static <E extends Enum<E>> ColumnConverter<E, String> enumConverter(Class<?> clazz) {
+        return new EnumNameConverter<>((Class<E>) clazz);
+    }
+
+    /**
+     * Create a converter from its class. Converters with a constructor taking a Class (like the enum ones) receive the field type.
+     * @param converterClass the class of the converter
+     * @param fieldType the type of the field the converter is for
+     * @return the new converter
+     * @throws IllegalArgumentException if the converter cannot be instantiated
+     */
+    private static ColumnConverter<?, ?> instantiate(Class<?> converterClass, Class<?> fieldType) {
+        try {
+            try {
+                Constructor<?> constructor = converterClass.getConstructor(Class.class);
+                return (ColumnConverter<?, ?>) constructor.newInstance(fieldType);
+            } catch (NoSuchMethodException e) {
+                return (ColumnConverter<?, ?>) converterClass.getConstructor().newInstance();
+            }
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Unable to instantiate converter " + converterClass.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package converters;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Converter for double and Double attributes stored in a DOUBLE column
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class DoubleConverter implements ColumnConverter<Double, Double> {
+
+    /**
+     * If a NULL column is read as null (Double) or as 0.0 (double)
+     */
+    private final boolean nullable;
+
+    /**
+     * Constructor of the converter
+     * @param nullable true for Double attributes, false for double ones
+     */
+    public DoubleConverter(boolean nullable) {
+        this.nullable = nullable;
+    }
+
+    @Override
+    public Double read(ResultSet res, int idx) throws SQLException {
+        double value = res.getDouble(idx);
+        return this.nullable && res.wasNull() ? null : value;
+    }
+
+    @Override
+    public void write(PreparedStatement stmt, int idx, Double value) throws SQLException {
+        if (value == null) {
+            stmt.setNull(idx, Types.DOUBLE);
+        } else {
+            stmt.setDouble(idx, value);
+        }
+    }
+
+    @Override
+    public Double toDatabase(Double value) {
+        return value;
+    }
+
+    @Override
+    public Double fromDatabase(Double value) {
+        return value == null && !this.nullable ? 0.0 : value;
+    }
+
+    @Override
+    public String sqlType() {
+        return "double";
+    }
+}
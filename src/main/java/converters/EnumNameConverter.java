@@ -0,0 +1,54 @@
+package converters;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+
+/**
+ * Converter for enum attributes stored by name in a VARCHAR column. This is the default strategy for enums as it survive a reordering of the constants. The name lookup table is built once for the enum.
+ * @see converters.EnumOrdinalConverter
+ * @param <E> the enum type
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class EnumNameConverter<E extends Enum<E>> implements ColumnConverter<E, String> {
+
+    /**
+     * Constants of the enum indexed by their name
+     */
+    private final HashMap<String, E> constants = new HashMap<>();
+
+    /**
+     * Constructor of the converter
+     * @param clazz the enum class
+     */
+    public EnumNameConverter(Class<E> clazz) {
+        for (E constant : clazz.getEnumConstants()) {
+            this.constants.put(constant.name(), constant);
+        }
+    }
+
+    @Override
+    public E read(ResultSet res, int idx) throws SQLException {
+        return this.fromDatabase(res.getString(idx));
+    }
+
+    @Override
+    public void write(PreparedStatement stmt, int idx, E value) throws SQLException {
+        stmt.setString(idx, this.toDatabase(value));
+    }
+
+    @Override
+    public String toDatabase(E value) {
+        return value == null ? null : value.name();
+    }
+
+    @Override
+    public E fromDatabase(String value) {
+        if (value == null) return null;
+        E constant = this.constants.get(value);
+        if (constant == null) throw new IllegalArgumentException("Unknown enum constant " + value);
+        return constant;
+    }
+}
@@ -0,0 +1,59 @@
+package converters;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Converter for enum attributes stored by ordinal in an INT column. It is the most compact storage but the enum constants must never be reordered. Select it with the converter parameter of the Attribute annotation.
+ * @see annotations.Attribute#converter()
+ * @param <E> the enum type
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class EnumOrdinalConverter<E extends Enum<E>> implements ColumnConverter<E, Integer> {
+
+    /**
+     * Constants of the enum indexed by their ordinal
+     */
+    private final E[] constants;
+
+    /**
+     * Constructor of the converter
+     * @param clazz the enum class
+     */
+    public EnumOrdinalConverter(Class<E> clazz) {
+        this.constants = clazz.getEnumConstants();
+    }
+
+    @Override
+    public E read(ResultSet res, int idx) throws SQLException {
+        int value = res.getInt(idx);
+        return res.wasNull() ? null : this.constants[value];
+    }
+
+    @Override
+    public void write(PreparedStatement stmt, int idx, E value) throws SQLException {
+        if (value == null) {
+            stmt.setNull(idx, Types.INTEGER);
+        } else {
+            stmt.setInt(idx, value.ordinal());
+        }
+    }
+
+    @Override
+    public Integer toDatabase(E value) {
+        return value == null ? null : value.ordinal();
+    }
+
+    @Override
+    public E fromDatabase(Integer value) {
+        return value == null ? null : this.constants[value];
+    }
+
+    @Override
+    public String sqlType() {
+        return "int(11)";
+    }
+}
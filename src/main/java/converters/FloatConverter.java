@@ -0,0 +1,57 @@
+package converters;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Converter for float and Float attributes stored in a FLOAT column
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class FloatConverter implements ColumnConverter<Float, Float> {
+
+    /**
+     * If a NULL column is read as null (Float) or as 0f (float)
+     */
+    private final boolean nullable;
+
+    /**
+     * Constructor of the converter
+     * @param nullable true for Float attributes, false for float ones
+     */
+    public FloatConverter(boolean nullable) {
+        this.nullable = nullable;
+    }
+
+    @Override
+    public Float read(ResultSet res, int idx) throws SQLException {
+        float value = res.getFloat(idx);
+        return this.nullable && res.wasNull() ? null : value;
+    }
+
+    @Override
+    public void write(PreparedStatement stmt, int idx, Float value) throws SQLException {
+        if (value == null) {
+            stmt.setNull(idx, Types.FLOAT);
+        } else {
+            stmt.setFloat(idx, value);
+        }
+    }
+
+    @Override
+    public Float toDatabase(Float value) {
+        return value;
+    }
+
+    @Override
+    public Float fromDatabase(Float value) {
+        return value == null && !this.nullable ? 0f : value;
+    }
+
+    @Override
+    public String sqlType() {
+        return "float";
+    }
+}
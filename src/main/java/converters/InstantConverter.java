@@ -0,0 +1,45 @@
+package converters;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+
+/**
+ * Converter for Instant attributes stored in a TIMESTAMP / DATETIME column
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class InstantConverter implements ColumnConverter<Instant, Timestamp> {
+
+    @Override
+    public Instant read(ResultSet res, int idx) throws SQLException {
+        return this.fromDatabase(res.getTimestamp(idx));
+    }
+
+    @Override
+    public void write(PreparedStatement stmt, int idx, Instant value) throws SQLException {
+        if (value == null) {
+            stmt.setNull(idx, Types.TIMESTAMP);
+        } else {
+            stmt.setTimestamp(idx, Timestamp.from(value));
+        }
+    }
+
+    @Override
+    public Timestamp toDatabase(Instant value) {
+        return value == null ? null : Timestamp.from(value);
+    }
+
+    @Override
+    public Instant fromDatabase(Timestamp value) {
+        return value == null ? null : value.toInstant();
+    }
+
+    @Override
+    public String sqlType() {
+        return "datetime";
+    }
+}
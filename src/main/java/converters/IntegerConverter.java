@@ -0,0 +1,57 @@
+package converters;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Converter for int and Integer attributes stored in an INT column
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class IntegerConverter implements ColumnConverter<Integer, Integer> {
+
+    /**
+     * If a NULL column is read as null (Integer) or as 0 (int)
+     */
+    private final boolean nullable;
+
+    /**
+     * Constructor of the converter
+     * @param nullable true for Integer attributes, false for int ones
+     */
+    public IntegerConverter(boolean nullable) {
+        this.nullable = nullable;
+    }
+
+    @Override
+    public Integer read(ResultSet res, int idx) throws SQLException {
+        int value = res.getInt(idx);
+        return this.nullable && res.wasNull() ? null : value;
+    }
+
+    @Override
+    public void write(PreparedStatement stmt, int idx, Integer value) throws SQLException {
+        if (value == null) {
+            stmt.setNull(idx, Types.INTEGER);
+        } else {
+            stmt.setInt(idx, value);
+        }
+    }
+
+    @Override
+    public Integer toDatabase(Integer value) {
+        return value;
+    }
+
+    @Override
+    public Integer fromDatabase(Integer value) {
+        return value == null && !this.nullable ? 0 : value;
+    }
+
+    @Override
+    public String sqlType() {
+        return "int(11)";
+    }
+}
@@ -0,0 +1,57 @@
+package converters;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Converter for long and Long attributes stored in a BIGINT column
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class LongConverter implements ColumnConverter<Long, Long> {
+
+    /**
+     * If a NULL column is read as null (Long) or as 0L (long)
+     */
+    private final boolean nullable;
+
+    /**
+     * Constructor of the converter
+     * @param nullable true for Long attributes, false for long ones
+     */
+    public LongConverter(boolean nullable) {
+        this.nullable = nullable;
+    }
+
+    @Override
+    public Long read(ResultSet res, int idx) throws SQLException {
+        long value = res.getLong(idx);
+        return this.nullable && res.wasNull() ? null : value;
+    }
+
+    @Override
+    public void write(PreparedStatement stmt, int idx, Long value) throws SQLException {
+        if (value == null) {
+            stmt.setNull(idx, Types.BIGINT);
+        } else {
+            stmt.setLong(idx, value);
+        }
+    }
+
+    @Override
+    public Long toDatabase(Long value) {
+        return value;
+    }
+
+    @Override
+    public Long fromDatabase(Long value) {
+        return value == null && !this.nullable ? 0L : value;
+    }
+
+    @Override
+    public String sqlType() {
+        return "bigint(20)";
+    }
+}
@@ -0,0 +1,47 @@
+package converters;
+
+import utils.Money;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Converter for Money attributes stored as minor units in a BIGINT column
+ * @see utils.Money
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class MoneyConverter implements ColumnConverter<Money, Long> {
+
+    @Override
+    public Money read(ResultSet res, int idx) throws SQLException {
+        long value = res.getLong(idx);
+        return res.wasNull() ? null : Money.ofMinorUnits(value);
+    }
+
+    @Override
+    public void write(PreparedStatement stmt, int idx, Money value) throws SQLException {
+        if (value == null) {
+            stmt.setNull(idx, Types.BIGINT);
+        } else {
+            stmt.setLong(idx, value.getMinorUnits());
+        }
+    }
+
+    @Override
+    public Long toDatabase(Money value) {
+        return value == null ? null : value.getMinorUnits();
+    }
+
+    @Override
+    public Money fromDatabase(Long value) {
+        return value == null ? null : Money.ofMinorUnits(value);
+    }
+
+    @Override
+    public String sqlType() {
+        return "bigint(20)";
+    }
+}
@@ -0,0 +1,72 @@
+package converters;
+
+import utils.StringUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Fallback converter for types without a registered converter. It use the JDBC getter and setter named after the type (getDate / setDate for a Date) as the models did before the registry existed. The methods are looked up once when the converter is created.
+ * @param <J> the Java type of the attribute
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class ReflectiveConverter<J> implements ColumnConverter<J, J> {
+
+    /**
+     * The ResultSet getter for the type
+     */
+    private final Method getter;
+
+    /**
+     * The PreparedStatement setter for the type
+     */
+    private final Method setter;
+
+    /**
+     * Constructor of the converter
+     * @param clazz the Java type to convert
+     * @throws IllegalArgumentException if JDBC doesn't have any getter or setter for the type
+     */
+    public ReflectiveConverter(Class<J> clazz) {
+        String name = StringUtils.capitalize(clazz.getSimpleName());
+        try {
+            this.getter = ResultSet.class.getMethod("get" + name, int.class);
+            this.setter = PreparedStatement.class.getMethod("set" + name, int.class, clazz);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("No converter found for type " + clazz.getName(), e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public J read(ResultSet res, int idx) throws SQLException {
+        try {
+            return (J) this.getter.invoke(res, idx);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new SQLException("Unable to read column " + idx, e);
+        }
+    }
+
+    @Override
+    public void write(PreparedStatement stmt, int idx, J value) throws SQLException {
+        try {
+            this.setter.invoke(stmt, idx, value);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new SQLException("Unable to set parameter " + idx, e);
+        }
+    }
+
+    @Override
+    public J toDatabase(J value) {
+        return value;
+    }
+
+    @Override
+    public J fromDatabase(J value) {
+        return value;
+    }
+}
@@ -0,0 +1,33 @@
+package converters;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converter for String attributes stored in a VARCHAR / TEXT column
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class StringConverter implements ColumnConverter<String, String> {
+
+    @Override
+    public String read(ResultSet res, int idx) throws SQLException {
+        return res.getString(idx);
+    }
+
+    @Override
+    public void write(PreparedStatement stmt, int idx, String value) throws SQLException {
+        stmt.setString(idx, value);
+    }
+
+    @Override
+    public String toDatabase(String value) {
+        return value;
+    }
+
+    @Override
+    public String fromDatabase(String value) {
+        return value;
+    }
+}
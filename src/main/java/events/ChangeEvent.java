@@ -0,0 +1,92 @@
+package events;
+
+import models.ModelBase;
+
+/**
+ * Change of an entity, published on the EventBus once it is stored. The events of the entities saved by this process carry the saved instance, the ones detected in the storage (changes made by other terminals) only carry the model class and the id, the listeners reading the entity again when they need it.
+ * @param <T> the model type
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class ChangeEvent<T extends ModelBase> {
+
+    /**
+     * Kinds of changes
+     */
+    public enum Kind {
+        Created,
+        Updated,
+        Deleted
+    }
+
+    /**
+     * The kind of change
+     */
+    private final Kind kind;
+
+    /**
+     * The class of the changed entity
+     */
+    private final Class<T> modelClass;
+
+    /**
+     * The id of the changed entity
+     */
+    private final int id;
+
+    /**
+     * The changed entity, null when the change was detected in the storage
+     */
+    private final T entity;
+
+    /**
+     * Constructor
+     * @param kind the kind of change
+     * @param modelClass the class of the changed entity
+     * @param id the id of the changed entity (-1 for a write-behind entity not stored yet)
+     * @param entity the changed entity, or null when the change was detected in the storage
+     */
+    public ChangeEvent(Kind kind, Class<T> modelClass, int id, T entity) {
+        this.kind = kind;
+        this.modelClass = modelClass;
+        this.id = id;
+        this.entity = entity;
+    }
+
+    /**
+     * Kind getter
+     * @return the kind of change
+     */
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Model class getter
+     * @return the class of the changed entity
+     */
+    public Class<T> getModelClass() {
+        return this.modelClass;
+    }
+
+    /**
+     * Id getter
+     * @return the id of the changed entity, its former id when it is deleted
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Entity getter
+     * @return the changed entity, or null when the change was detected in the storage
+     */
+    public T getEntity() {
+        return this.entity;
+    }
+
+    @Override
+    public String toString() {
+        return this.kind + " " + this.modelClass.getSimpleName() + " (" + this.id + ")";
+    }
+}
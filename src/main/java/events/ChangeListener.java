@@ -0,0 +1,19 @@
+package events;
+
+import models.ModelBase;
+
+/**
+ * Listener of the changes of a model, see EventBus.subscribe
+ * @param <T> the model type
+ * @author Antoine FORET
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface ChangeListener<T extends ModelBase> {
+
+    /**
+     * Handle a change. Called on the thread which stored the entity, so the listeners must be quick and the views must move to the Swing thread
+     * @param event the change
+     */
+    void changed(ChangeEvent<T> event);
+}
@@ -0,0 +1,137 @@
+package events;
+
+import logging.Logger;
+import models.ModelBase;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process bus of the entity changes. ModelBase publish an event each time an entity is created, updated or deleted, and the account directory publish the balance changes it detects in the storage (made by other terminals), so the caches and the open views follow the changes instead of reading the storage again before each action.
+ * The listeners subscribe to a model, or to one entity of a model, and are called synchronously on the publishing thread; an exception of a listener is logged and doesn't reach the code which saved the entity.
+ * @see events.ChangeEvent
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class EventBus {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(EventBus.class);
+
+    /**
+     * Subscriptions indexed by model class
+     */
+    private static final Map<Class<?>, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor. The bus is only used through its static methods
+     */
+    private EventBus() { }
+
+    /**
+     * Listen to the changes of every entity of a model
+     * @param modelClass the model class
+     * @param listener the listener
+     * @param <T> the model type
+     * @return the subscription, to close once the changes are not needed anymore
+     */
+    public static <T extends ModelBase> Subscription subscribe(Class<T> modelClass, ChangeListener<? super T> listener) {
+        return add(modelClass, new Subscription(modelClass, false, 0, listener));
+    }
+
+    /**
+     * Listen to the changes of one entity
+     * @param modelClass the model class
+     * @param id the id of the entity
+     * @param listener the listener
+     * @param <T> the model type
+     * @return the subscription, to close once the changes are not needed anymore
+     */
+    public static <T extends ModelBase> Subscription subscribe(Class<T> modelClass, int id, ChangeListener<? super T> listener) {
+        return add(modelClass, new Subscription(modelClass, true, id, listener));
+    }
+
+    /**
+     * Send an event to the listeners of its model and entity
+     * @param event the change
+     */
+    @SuppressWarnings("unchecked")
+    public static void publish(ChangeEvent<?> event) {
+        List<Subscription> listeners = subscriptions.get(event.getModelClass());
+        if (listeners == null) return;
+        for (Subscription subscription : listeners) {
+            if (subscription.single && subscription.id != event.getId()) continue;
+            try {
+                ((ChangeListener<ModelBase>) subscription.listener).changed((ChangeEvent<ModelBase>) event);
+            } catch (RuntimeException e) {
+                log.error("A listener failed to handle " + event, e);
+            }
+        }
+    }
+
+    /**
+     * Register a subscription
+     * @param modelClass the model class
+     * @param subscription the subscription
+     * @return the subscription
+     */
+    private static Subscription add(Class<?> modelClass, Subscription subscription) {
+        subscriptions.computeIfAbsent(modelClass, k -> new CopyOnWriteArrayList<>()).add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Registration of a listener, closing it stop the events
+     * @author Antoine FORET
+     * @version 1.0
+     */
+    public static final class Subscription implements AutoCloseable {
+
+        /**
+         * The model class listened
+         */
+        private final Class<?> modelClass;
+
+        /**
+         * If only the changes of one entity are listened
+         */
+        private final boolean single;
+
+        /**
+         * The id of the entity listened, when single
+         */
+        private final int id;
+
+        /**
+         * The listener
+         */
+        private final ChangeListener<?> listener;
+
+        /**
+         * Constructor
+         * @param modelClass the model class listened
+         * @param single if only the changes of one entity are listened
+         * @param id the id of the entity listened, when single
+         * @param listener the listener
+         */
+        private Subscription(Class<?> modelClass, boolean single, int id, ChangeListener<?> listener) {
+            this.modelClass = modelClass;
+            this.single = single;
+            this.id = id;
+            this.listener = listener;
+        }
+
+        /**
+         * Stop the events. Closing twice does nothing
+         */
+        @Override
+        public void close() {
+            List<Subscription> listeners = subscriptions.get(this.modelClass);
+            if (listeners != null) listeners.remove(this);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package export;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Rows of a chunk of a table stored by column: one primitive array per numeric column (String array for the text) and a null mask per column. Filled from a streaming result set, so the rows are never materialized as entities.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+final class ColumnChunk {
+
+    /**
+     * Storage kinds of the columns
+     */
+    enum Kind {
+        Int,
+        Long,
+        Double,
+        Timestamp,
+        Text;
+
+        /**
+         * Find the kind of a SQL column type
+         * @param sqlType the type, as in the schema (int(11), bigint(20), ...)
+         * @return the kind, Text for the other types
+         */
+        static Kind of(String sqlType) {
+            if (sqlType.startsWith("int") || sqlType.startsWith("tinyint")) return Int;
+            if (sqlType.startsWith("bigint")) return Long;
+            if (sqlType.equals("double") || sqlType.equals("float")) return Double;
+            if (sqlType.equals("datetime")) return Timestamp;
+            return Text;
+        }
+    }
+
+    /**
+     * Names of the columns
+     */
+    final String[] names;
+
+    /**
+     * Kinds of the columns
+     */
+    final Kind[] kinds;
+
+    /**
+     * Values of each column: int[], long[] (Timestamp as epoch milliseconds), double[] or String[]
+     */
+    final Object[] values;
+
+    /**
+     * Null mask of each column
+     */
+    final BitSet[] nulls;
+
+    /**
+     * Number of rows
+     */
+    int rows;
+
+    /**
+     * Current capacity of the column arrays
+     */
+    private int capacity;
+
+    /**
+     * Constructor
+     * @param names the column names
+     * @param kinds the column kinds
+     * @param capacity the initial number of rows
+     */
+    ColumnChunk(String[] names, Kind[] kinds, int capacity) {
+        this.names = names;
+        this.kinds = kinds;
+        this.capacity = Math.max(16, capacity);
+        this.values = new Object[names.length];
+        this.nulls = new BitSet[names.length];
+        for (int col = 0; col < names.length; col++) {
+            this.nulls[col] = new BitSet();
+            switch (kinds[col]) {
+                case Int:
+                    this.values[col] = new int[this.capacity];
+                    break;
+                case Long:
+                case Timestamp:
+                    this.values[col] = new long[this.capacity];
+                    break;
+                case Double:
+                    this.values[col] = new double[this.capacity];
+                    break;
+                default:
+                    this.values[col] = new String[this.capacity];
+            }
+        }
+    }
+
+    /**
+     * Append the current row of a result set, whose columns are in the chunk order
+     * @param res the result set, positioned on a row
+     * @throws SQLException if a value cannot be read
+     */
+    void append(ResultSet res) throws SQLException {
+        if (this.rows == this.capacity) this.grow();
+        int row = this.rows++;
+        for (int col = 0; col < this.names.length; col++) {
+            boolean isNull;
+            switch (this.kinds[col]) {
+                case Int:
+                    ((int[]) this.values[col])[row] = res.getInt(col + 1);
+                    isNull = res.wasNull();
+                    break;
+                case Long:
+                    ((long[]) this.values[col])[row] = res.getLong(col + 1);
+                    isNull = res.wasNull();
+                    break;
+                case Timestamp:
+                    Timestamp timestamp = res.getTimestamp(col + 1);
+                    ((long[]) this.values[col])[row] = timestamp != null ? timestamp.getTime() : 0;
+                    isNull = timestamp == null;
+                    break;
+                case Double:
+                    ((double[]) this.values[col])[row] = res.getDouble(col + 1);
+                    isNull = res.wasNull();
+                    break;
+                default:
+                    String text = res.getString(col + 1);
+                    ((String[]) this.values[col])[row] = text;
+                    isNull = text == null;
+            }
+            if (isNull) this.nulls[col].set(row);
+        }
+    }
+
+    /**
+     * Check if a value is null
+     * @param col the column index
+     * @param row the row index
+     * @return if the value is null
+     */
+    boolean isNull(int col, int row) {
+        return this.nulls[col].get(row);
+    }
+
+    /**
+     * Double the capacity of the column arrays
+     */
+    private void grow() {
+        this.capacity *= 2;
+        for (int col = 0; col < this.values.length; col++) {
+            Object column = this.values[col];
+            if (column instanceof int[]) {
+                this.values[col] = Arrays.copyOf((int[]) column, this.capacity);
+            } else if (column instanceof long[]) {
+                this.values[col] = Arrays.copyOf((long[]) column, this.capacity);
+            } else if (column instanceof double[]) {
+                this.values[col] = Arrays.copyOf((double[]) column, this.capacity);
+            } else {
+                this.values[col] = Arrays.copyOf((String[]) column, this.capacity);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package export;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary format storing each chunk column by column, all the numbers being big endian:
+ * the header is the magic "OTC1", the number of columns then for each column its kind (ColumnChunk.Kind ordinal, one byte) and its name (length then UTF-8 bytes).
+ * Each chunk starts with its number of rows, followed by each column: the length of its null mask and the mask (BitSet.toByteArray), then the values, 4 bytes per Int, 8 bytes per Long, Timestamp (epoch milliseconds) and Double, and for the Text the dictionary of the distinct values of the chunk (count, then length and UTF-8 bytes of each) followed by the dictionary index of each row (-1 for null).
+ * The footer is a chunk of 0 rows followed by the total number of rows.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+final class ColumnarFormat implements ExportFormat {
+
+    /**
+     * Magic number starting the file ("OTC1")
+     */
+    static final int magic = 0x4F544331;
+
+    @Override
+    public ByteBuffer header(ColumnChunk chunk) {
+        byte[][] names = new byte[chunk.names.length][];
+        int size = 8;
+        for (int col = 0; col < names.length; col++) {
+            names[col] = chunk.names[col].getBytes(StandardCharsets.UTF_8);
+            size += 5 + names[col].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(magic).putInt(names.length);
+        for (int col = 0; col < names.length; col++) {
+            buffer.put((byte) chunk.kinds[col].ordinal()).putInt(names[col].length).put(names[col]);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public ByteBuffer encode(ColumnChunk chunk, ByteBuffer buffer) {
+        int rows = chunk.rows;
+        byte[][] masks = new byte[chunk.names.length][];
+        List<List<byte[]>> dictionaries = new ArrayList<>(chunk.names.length);
+        int[][] indexes = new int[chunk.names.length][];
+        int size = 4;
+        for (int col = 0; col < chunk.names.length; col++) {
+            masks[col] = chunk.nulls[col].toByteArray();
+            size += 4 + masks[col].length;
+            List<byte[]> dictionary = null;
+            switch (chunk.kinds[col]) {
+                case Int:
+                    size += 4 * rows;
+                    break;
+                case Long:
+                case Timestamp:
+                case Double:
+                    size += 8 * rows;
+                    break;
+                default:
+                    dictionary = new ArrayList<>();
+                    indexes[col] = dictionaryEncode((String[]) chunk.values[col], rows, dictionary);
+                    size += 4 + 4 * rows;
+                    for (byte[] entry : dictionary) {
+                        size += 4 + entry.length;
+                    }
+            }
+            dictionaries.add(dictionary);
+        }
+
+        buffer = ExportFormat.ensure(buffer, size);
+        buffer.putInt(rows);
+        for (int col = 0; col < chunk.names.length; col++) {
+            buffer.putInt(masks[col].length).put(masks[col]);
+            switch (chunk.kinds[col]) {
+                case Int:
+                    buffer.asIntBuffer().put((int[]) chunk.values[col], 0, rows);
+                    buffer.position(buffer.position() + 4 * rows);
+                    break;
+                case Long:
+                case Timestamp:
+                    buffer.asLongBuffer().put((long[]) chunk.values[col], 0, rows);
+                    buffer.position(buffer.position() + 8 * rows);
+                    break;
+                case Double:
+                    buffer.asDoubleBuffer().put((double[]) chunk.values[col], 0, rows);
+                    buffer.position(buffer.position() + 8 * rows);
+                    break;
+                default:
+                    buffer.putInt(dictionaries.get(col).size());
+                    for (byte[] entry : dictionaries.get(col)) {
+                        buffer.putInt(entry.length).put(entry);
+                    }
+                    buffer.asIntBuffer().put(indexes[col], 0, rows);
+                    buffer.position(buffer.position() + 4 * rows);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public ByteBuffer footer(long rows) {
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        buffer.putInt(0).putLong(rows);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Replace the values of a text column by their index in a dictionary
+     * @param values the values
+     * @param rows the number of rows
+     * @param dictionary filled with the UTF-8 bytes of the distinct values, in their order of appearance
+     * @return the index of each row, -1 for null
+     */
+    private static int[] dictionaryEncode(String[] values, int rows, List<byte[]> dictionary) {
+        Map<String, Integer> positions = new HashMap<>();
+        int[] indexes = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            String value = values[row];
+            if (value == null) {
+                indexes[row] = -1;
+                continue;
+            }
+            Integer position = positions.get(value);
+            if (position == null) {
+                position = dictionary.size();
+                positions.put(value, position);
+                dictionary.add(value.getBytes(StandardCharsets.UTF_8));
+            }
+            indexes[row] = position;
+        }
+        return indexes;
+    }
+}
@@ -0,0 +1,195 @@
+package export;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cursor over the CSV records (RFC 4180, one record per line) of a buffer, typically a memory-mapped part of a file. The fields are located in place and the numbers parsed from the bytes, so only the text fields allocate a String.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+final class CsvCursor {
+
+    /**
+     * The records
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Position of the current record
+     */
+    private int lineStart;
+
+    /**
+     * Bounds of the current field (without the quotes)
+     */
+    private int fieldStart, fieldEnd;
+
+    /**
+     * If the current field is quoted (and may contain doubled quotes)
+     */
+    private boolean quoted;
+
+    /**
+     * If the last field of the record was read
+     */
+    private boolean lineEnd;
+
+    /**
+     * Constructor
+     * @param buffer the records, from its position to its limit
+     */
+    CsvCursor(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Move to the next record, skipping the empty lines
+     * @return false at the end of the buffer
+     */
+    boolean nextLine() {
+        while (this.buffer.hasRemaining()) {
+            byte b = this.buffer.get(this.buffer.position());
+            if (b != '\n' && b != '\r') break;
+            this.buffer.position(this.buffer.position() + 1);
+        }
+        this.lineStart = this.buffer.position();
+        this.lineEnd = !this.buffer.hasRemaining();
+        return !this.lineEnd;
+    }
+
+    /**
+     * Move to the next field of the record
+     * @return false if the record has no more field
+     * @throws IllegalArgumentException if a quoted field is not closed
+     */
+    boolean nextField() {
+        if (this.lineEnd) return false;
+        int pos = this.buffer.position();
+        int limit = this.buffer.limit();
+        this.quoted = pos < limit && this.buffer.get(pos) == '"';
+        if (this.quoted) {
+            this.fieldStart = ++pos;
+            while (true) {
+                if (pos >= limit || this.buffer.get(pos) == '\n') throw new IllegalArgumentException("unterminated quoted field");
+                if (this.buffer.get(pos) == '"') {
+                    if (pos + 1 < limit && this.buffer.get(pos + 1) == '"') {
+                        pos += 2;
+                        continue;
+                    }
+                    break;
+                }
+                pos++;
+            }
+            this.fieldEnd = pos++;
+        } else {
+            this.fieldStart = pos;
+            while (pos < limit && this.buffer.get(pos) != ',' && this.buffer.get(pos) != '\r' && this.buffer.get(pos) != '\n') {
+                pos++;
+            }
+            this.fieldEnd = pos;
+        }
+        if (pos < limit && this.buffer.get(pos) == ',') {
+            pos++;
+        } else {
+            this.lineEnd = true;
+        }
+        this.buffer.position(pos);
+        return true;
+    }
+
+    /**
+     * Skip the rest of the record
+     * @return if fields were left
+     */
+    boolean endLine() {
+        boolean left = !this.lineEnd;
+        int pos = this.buffer.position();
+        while (pos < this.buffer.limit() && this.buffer.get(pos) != '\n') {
+            pos++;
+        }
+        this.buffer.position(pos);
+        this.lineEnd = true;
+        return left;
+    }
+
+    /**
+     * Check if the current field is empty (null)
+     * @return if the field is empty and not quoted
+     */
+    boolean isEmpty() {
+        return this.fieldStart == this.fieldEnd && !this.quoted;
+    }
+
+    /**
+     * Parse the current field as an int
+     * @return the value
+     * @throws NumberFormatException if the field is not an int
+     */
+    int parseInt() {
+        long value = this.parseLong();
+        if (value != (int) value) throw new NumberFormatException("int overflow: " + value);
+        return (int) value;
+    }
+
+    /**
+     * Parse the current field as a long, without allocating
+     * @return the value
+     * @throws NumberFormatException if the field is not a long
+     */
+    long parseLong() {
+        int pos = this.fieldStart;
+        boolean negative = pos < this.fieldEnd && this.buffer.get(pos) == '-';
+        if (negative) pos++;
+        if (pos == this.fieldEnd) throw new NumberFormatException("empty number");
+        long value = 0;
+        for (; pos < this.fieldEnd; pos++) {
+            int digit = this.buffer.get(pos) - '0';
+            if (digit < 0 || digit > 9) throw new NumberFormatException("invalid digit in " + this.text());
+            if (value < (Long.MIN_VALUE + digit) / 10) throw new NumberFormatException("long overflow: " + this.text());
+            value = value * 10 - digit;
+        }
+        if (!negative && value == Long.MIN_VALUE) throw new NumberFormatException("long overflow: " + this.text());
+        return negative ? value : -value;
+    }
+
+    /**
+     * Read the current field as text, the doubled quotes of a quoted field being unescaped
+     * @return the text
+     */
+    String text() {
+        byte[] bytes = new byte[this.fieldEnd - this.fieldStart];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = this.buffer.get(this.fieldStart + i);
+        }
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        return this.quoted ? text.replace("\"\"", "\"") : text;
+    }
+
+    /**
+     * Copy the current field in the format of LOAD DATA (tab separated, backslash escaped, \N for null)
+     * @param out where to write the field
+     */
+    void copyEscaped(ByteArrayOutputStream out) {
+        if (this.isEmpty()) {
+            out.write('\\');
+            out.write('N');
+            return;
+        }
+        for (int pos = this.fieldStart; pos < this.fieldEnd; pos++) {
+            byte b = this.buffer.get(pos);
+            if (b == '"' && this.quoted) pos++;
+            if (b == '\\' || b == '\t' || b == '\n') out.write('\\');
+            out.write(b == '\t' ? 't' : b == '\n' ? 'n' : b);
+        }
+    }
+
+    /**
+     * Position of the current record in the buffer
+     * @return the offset of the record
+     */
+    int lineStart() {
+        return this.lineStart;
+    }
+}
@@ -0,0 +1,71 @@
+package export;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * CSV format (RFC 4180): a header line with the column names then one line per row. The null values are left empty and the Timestamp columns are written in ISO-8601 (UTC).
+ * @author Antoine FORET
+ * @version 1.0
+ */
+final class CsvFormat implements ExportFormat {
+
+    @Override
+    public ByteBuffer header(ColumnChunk chunk) {
+        StringBuilder line = new StringBuilder();
+        for (String name : chunk.names) {
+            if (line.length() > 0) line.append(',');
+            line.append(quote(name));
+        }
+        return ByteBuffer.wrap(line.append("\r\n").toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public ByteBuffer encode(ColumnChunk chunk, ByteBuffer buffer) {
+        StringBuilder text = new StringBuilder(chunk.rows * 16 * chunk.names.length);
+        for (int row = 0; row < chunk.rows; row++) {
+            for (int col = 0; col < chunk.names.length; col++) {
+                if (col > 0) text.append(',');
+                if (chunk.isNull(col, row)) continue;
+                switch (chunk.kinds[col]) {
+                    case Int:
+                        text.append(((int[]) chunk.values[col])[row]);
+                        break;
+                    case Long:
+                        text.append(((long[]) chunk.values[col])[row]);
+                        break;
+                    case Timestamp:
+                        text.append(Instant.ofEpochMilli(((long[]) chunk.values[col])[row]));
+                        break;
+                    case Double:
+                        text.append(((double[]) chunk.values[col])[row]);
+                        break;
+                    default:
+                        text.append(quote(((String[]) chunk.values[col])[row]));
+                }
+            }
+            text.append("\r\n");
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        buffer = ExportFormat.ensure(buffer, bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public ByteBuffer footer(long rows) {
+        return ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Quote a value when it contains a separator, a quote or a line break
+     * @param value the value
+     * @return the value as a CSV field
+     */
+    private static String quote(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
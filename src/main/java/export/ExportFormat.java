@@ -0,0 +1,45 @@
+package export;
+
+import java.nio.ByteBuffer;
+
+/**
+ * File format of an export. The file is the header, then the encoded chunks in the id order, then the footer.
+ * @see export.TableExporter
+ * @author Antoine FORET
+ * @version 1.0
+ */
+interface ExportFormat {
+
+    /**
+     * Encode the beginning of the file
+     * @param chunk an empty chunk, giving the columns
+     * @return the bytes to write, ready to be read
+     */
+    ByteBuffer header(ColumnChunk chunk);
+
+    /**
+     * Encode a chunk of rows
+     * @param chunk the rows
+     * @param buffer a direct buffer to reuse, cleared
+     * @return the buffer holding the bytes to write, ready to be read: the given one or a bigger one when it is too small
+     */
+    ByteBuffer encode(ColumnChunk chunk, ByteBuffer buffer);
+
+    /**
+     * Encode the end of the file
+     * @param rows the number of rows exported
+     * @return the bytes to write, ready to be read
+     */
+    ByteBuffer footer(long rows);
+
+    /**
+     * Make sure a buffer can hold some bytes
+     * @param buffer the current buffer
+     * @param size the number of bytes needed
+     * @return the buffer, or a new direct buffer of the next power of two when it is too small
+     */
+    static ByteBuffer ensure(ByteBuffer buffer, int size) {
+        if (buffer.capacity() >= size) return buffer;
+        return ByteBuffer.allocateDirect(Integer.highestOneBit(size - 1) << 1);
+    }
+}
@@ -0,0 +1,339 @@
+package export;
+
+import logging.Logger;
+import metrics.OperationMetrics;
+import metrics.PersistenceMetrics;
+import metrics.QueryTracer;
+import models.ColumnMapping;
+import models.ModelBase;
+import models.ModelMetadata;
+import models.Transaction;
+import utils.Configuration;
+import utils.DatabaseProvider;
+import utils.Pair;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Export a whole table to a file, reading the database values directly instead of building the entities (no relation lookup). The id range is split in chunks of "otto.export.chunkSize" ids (50000) read in parallel by "otto.export.parallelism" threads (one per processor), each thread keeping its own connection (see DatabaseProvider.openReadConnection, so the export read the replicas or every shard when configured) and streaming its result set.
+ * The chunks are encoded by the threads in direct buffers of "otto.export.bufferMb" megabytes (4) and written in the id order through a FileChannel, at most two chunks per thread waiting to be written. The format is the compact columnar one (see ColumnarFormat) or CSV with "otto.export.format=csv".
+ * Run it directly to export the transactions: the file is the first argument (transactions.otc or transactions.csv by default).
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class TableExporter {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(TableExporter.class);
+
+    /**
+     * Metrics of the chunks read and encoded
+     */
+    private static final OperationMetrics chunkMetrics = PersistenceMetrics.get("Export", "chunk");
+
+    /**
+     * Number of chunks read at the same time
+     */
+    private final int parallelism = Math.max(1, Configuration.getInt("otto.export.parallelism", Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Number of ids of a chunk
+     */
+    private final int chunkSize = Math.max(1, Configuration.getInt("otto.export.chunkSize", 50000));
+
+    /**
+     * Initial size of the encoding buffers, in bytes
+     */
+    private final int bufferSize = Configuration.getInt("otto.export.bufferMb", 4) * 1024 * 1024;
+
+    /**
+     * Fetch size of the chunk requests. MySQL stream the rows one by one with Integer.MIN_VALUE
+     */
+    private final int fetchSize = Configuration.getInt("otto.export.fetchSize", DatabaseProvider.isEmbeddedProfile() ? 1000 : Integer.MIN_VALUE);
+
+    /**
+     * Export the transactions
+     * @param args the file to write (optional)
+     */
+    public static void main(String[] args) {
+        String format = Configuration.get("otto.export.format", "columnar");
+        Path file = Paths.get(args.length > 0 ? args[0] : "transactions." + (format.equals("csv") ? "csv" : "otc"));
+        try {
+            long start = System.nanoTime();
+            long rows = new TableExporter().export(Transaction.class, file, format);
+            long elapsed = System.nanoTime() - start;
+            System.out.println("Exported " + rows + " transactions to " + file + " in " + elapsed / 1_000_000 + " ms (" + rowsPerSecond(rows, elapsed) + " rows/s)");
+        } catch (IOException | SQLException e) {
+            log.error("Unable to export the transactions", e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Export all the rows of a model table. The file is deleted if the export fail
+     * @param modelClass the model class
+     * @param file the file to write (replaced if it exists)
+     * @param format the format, "columnar" or "csv"
+     * @return the number of rows exported
+     * @throws IOException if the file cannot be written
+     * @throws SQLException if a chunk cannot be read
+     * @throws IllegalArgumentException if the format is unknown
+     */
+    public long export(Class<? extends ModelBase> modelClass, Path file, String format) throws IOException, SQLException {
+        ExportFormat encoder = createFormat(format);
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        List<ColumnMapping> mappings = new ArrayList<>(metadata.getAttributes());
+        mappings.addAll(metadata.getRelations());
+        String[] names = new String[mappings.size() + 1];
+        ColumnChunk.Kind[] kinds = new ColumnChunk.Kind[names.length];
+        names[0] = "id";
+        kinds[0] = ColumnChunk.Kind.Int;
+        for (int col = 1; col < names.length; col++) {
+            names[col] = mappings.get(col - 1).getName();
+            kinds[col] = ColumnChunk.Kind.of(mappings.get(col - 1).getSqlType());
+        }
+        String query = "SELECT " + String.join(", ", names) + " FROM " + metadata.getTable() + " WHERE id >= ? AND id < ? ORDER BY id";
+
+        int sources = Math.max(1, DatabaseProvider.getShardCount());
+        List<int[]> chunks = new ArrayList<>();
+        for (int source = 0; source < sources; source++) {
+            int[] bounds = this.bounds(sharedConnection(source), metadata.getTable());
+            for (long from = bounds[0]; bounds[1] > 0 && from <= bounds[1]; from += this.chunkSize) {
+                chunks.add(new int[]{source, (int) from, (int) Math.min(from + this.chunkSize, (long) bounds[1] + 1)});
+            }
+        }
+
+        List<ConcurrentLinkedQueue<Connection>> idle = new ArrayList<>(sources);
+        for (int source = 0; source < sources; source++) {
+            idle.add(new ConcurrentLinkedQueue<>());
+        }
+        ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+        ExecutorService executor = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "otto-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        long rows = 0;
+        boolean complete = false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel, encoder.header(new ColumnChunk(names, kinds, 0)));
+            Deque<Future<Pair<Integer, ByteBuffer>>> pending = new ArrayDeque<>();
+            for (int[] chunk : chunks) {
+                while (pending.size() >= 2 * this.parallelism) {
+                    rows += this.writeNext(channel, pending.poll(), buffers);
+                }
+                pending.add(executor.submit(() -> {
+                    ColumnChunk data = this.read(idle.get(chunk[0]), chunk[0], query, names, kinds, chunk[1], chunk[2]);
+                    ByteBuffer buffer = buffers.poll();
+                    if (buffer == null) buffer = ByteBuffer.allocateDirect(this.bufferSize);
+                    buffer.clear();
+                    return new Pair<>(data.rows, encoder.encode(data, buffer));
+                }));
+            }
+            while (!pending.isEmpty()) {
+                rows += this.writeNext(channel, pending.poll(), buffers);
+            }
+            write(channel, encoder.footer(rows));
+            channel.force(false);
+            complete = true;
+        } finally {
+            executor.shutdownNow();
+            for (ConcurrentLinkedQueue<Connection> connections : idle) {
+                for (Connection conn : connections) {
+                    closeQuietly(conn);
+                }
+            }
+            if (!complete) Files.deleteIfExists(file);
+        }
+        long elapsed = System.nanoTime() - start;
+        log.info("Exported " + rows + " rows of " + metadata.getTable() + " to " + file + " in " + chunks.size() + " chunks, " + elapsed / 1_000_000 + " ms (" + rowsPerSecond(rows, elapsed) + " rows/s)");
+        return rows;
+    }
+
+    /**
+     * Wait for a chunk and write it
+     * @param channel the file
+     * @param pending the chunk being read and encoded: its number of rows and its bytes
+     * @param buffers the pool of buffers, the written one being given back
+     * @return the number of rows written
+     * @throws IOException if the file cannot be written
+     * @throws SQLException if the chunk cannot be read
+     */
+    private int writeNext(FileChannel channel, Future<Pair<Integer, ByteBuffer>> pending, ConcurrentLinkedQueue<ByteBuffer> buffers) throws IOException, SQLException {
+        Pair<Integer, ByteBuffer> chunk;
+        try {
+            chunk = pending.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) throw (SQLException) e.getCause();
+            throw new SQLException("Unable to export a chunk", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while exporting", e);
+        }
+        write(channel, chunk.right);
+        buffers.offer(chunk.right);
+        return chunk.left;
+    }
+
+    /**
+     * Read a chunk of rows, on a pooled connection of its source
+     * @param idle the idle connections of the source
+     * @param source the source (shard) index
+     * @param query the chunk request
+     * @param names the column names
+     * @param kinds the column kinds
+     * @param from the first id of the chunk
+     * @param to the id following the chunk
+     * @return the rows of the chunk
+     * @throws SQLException if the request fail
+     */
+    private ColumnChunk read(ConcurrentLinkedQueue<Connection> idle, int source, String query, String[] names, ColumnChunk.Kind[] kinds, int from, int to) throws SQLException {
+        Connection conn = idle.poll();
+        if (conn == null) conn = DatabaseProvider.openReadConnection(source);
+        if (conn == null) {
+            Connection shared = sharedConnection(source);
+            synchronized (shared) {
+                return this.read(shared, query, names, kinds, from, to);
+            }
+        }
+        try {
+            return this.read(conn, query, names, kinds, from, to);
+        } finally {
+            idle.offer(conn);
+        }
+    }
+
+    /**
+     * Read a chunk of rows with a streaming result set
+     * @param conn the connection
+     * @param query the chunk request
+     * @param names the column names
+     * @param kinds the column kinds
+     * @param from the first id of the chunk
+     * @param to the id following the chunk
+     * @return the rows of the chunk
+     * @throws SQLException if the request fail
+     */
+    private ColumnChunk read(Connection conn, String query, String[] names, ColumnChunk.Kind[] kinds, int from, int to) throws SQLException {
+        long start = System.nanoTime();
+        try (PreparedStatement statement = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(this.fetchSize);
+            statement.setInt(1, from);
+            statement.setInt(2, to);
+            ColumnChunk chunk = new ColumnChunk(names, kinds, Math.min(to - from, 4096));
+            try (ResultSet res = statement.executeQuery()) {
+                while (res.next()) {
+                    chunk.append(res);
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            QueryTracer.record(query, elapsed, chunk.rows, from + "-" + to);
+            chunkMetrics.record(elapsed, chunk.rows);
+            return chunk;
+        } catch (SQLException e) {
+            chunkMetrics.recordError(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    /**
+     * Read the id range of a table
+     * @param conn the connection
+     * @param table the table
+     * @return the smallest and biggest ids, both 0 when the table is empty
+     * @throws SQLException if the request fail
+     */
+    private int[] bounds(Connection conn, String table) throws SQLException {
+        if (conn == null) throw new SQLException("No database connection available for the export");
+        synchronized (conn) {
+            try (Statement statement = conn.createStatement()) {
+                ResultSet res = statement.executeQuery("SELECT MIN(id), MAX(id) FROM " + table);
+                res.next();
+                return new int[]{res.getInt(1), res.getInt(2)};
+            }
+        }
+    }
+
+    /**
+     * Retrieve the shared connection of a source, used for the id ranges and when no dedicated connection can be opened
+     * @param source the source index
+     * @return the connection of the shard, or the main connection when the storage isn't sharded
+     */
+    private static Connection sharedConnection(int source) {
+        return DatabaseProvider.getShardCount() > 0 ? DatabaseProvider.getShardDatabase(source) : DatabaseProvider.getDatabase();
+    }
+
+    /**
+     * Create a format from its name
+     * @param name the format name
+     * @return the format
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    private static ExportFormat createFormat(String name) {
+        switch (name) {
+            case "columnar":
+                return new ColumnarFormat();
+            case "csv":
+                return new CsvFormat();
+            default:
+                throw new IllegalArgumentException("Unknown export format " + name);
+        }
+    }
+
+    /**
+     * Write a whole buffer
+     * @param channel the file
+     * @param buffer the bytes to write, ready to be read
+     * @throws IOException if the file cannot be written
+     */
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Close a connection, ignoring the errors
+     * @param conn the connection
+     */
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            log.warning("Unable to close an export connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Compute a throughput
+     * @param rows the number of rows
+     * @param nanos the elapsed time in nanoseconds
+     * @return the number of rows per second
+     */
+    private static long rowsPerSecond(long rows, long nanos) {
+        return nanos > 0 ? rows * 1_000_000_000L / nanos : rows;
+    }
+}
@@ -0,0 +1,620 @@
+package export;
+
+import logging.Logger;
+import metrics.OperationMetrics;
+import metrics.PersistenceMetrics;
+import metrics.QueryTracer;
+import models.ColumnMapping;
+import models.ModelBase;
+import models.ModelMetadata;
+import models.Models;
+import utils.Configuration;
+import utils.DatabaseProvider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load a CSV file in a model table without building the entities, for the onboarding of large volumes. The file is the CSV written by TableExporter: a header line naming the columns (the "id" column is optional, the ids of the file are kept when present so the transactions can reference the accounts of the same import), then one record per line, an empty field being null.
+ * The file is cut in segments of "otto.import.segmentMb" megabytes (8) at line boundaries, memory-mapped and loaded in parallel by "otto.import.parallelism" threads (one per processor) on their own connection. The fields are validated against the model metadata while being parsed (numbers parsed in place, text checked by the column converter), then inserted by JDBC batches of "otto.import.batchSize" rows (1000), or with LOAD DATA LOCAL INFILE when "otto.import.mode" is "loadData" (MySQL, with allowLoadLocalInfile=true in the url).
+ * Each segment is committed in its own transaction, together with its row of the import_checkpoints table (migration 006_import_checkpoints.sql), so an interrupted import can be run again and only load the missing segments: a segment is either loaded and recorded or neither. The invalid lines are logged and skipped, the import failing after "otto.import.maxErrors" of them (0).
+ * Run it directly with the table and the file: accounts accounts.csv
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class TableImporter {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(TableImporter.class);
+
+    /**
+     * Metrics of the segments loaded
+     */
+    private static final OperationMetrics segmentMetrics = PersistenceMetrics.get("Import", "segment");
+
+    /**
+     * Number of segments loaded at the same time
+     */
+    private final int parallelism = Math.max(1, Configuration.getInt("otto.import.parallelism", Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Size of a segment, in bytes
+     */
+    private final long segmentBytes = Math.max(1, Configuration.getLong("otto.import.segmentMb", 8)) * 1024 * 1024;
+
+    /**
+     * Number of rows of a JDBC batch
+     */
+    private final int batchSize = Math.max(1, Configuration.getInt("otto.import.batchSize", 1000));
+
+    /**
+     * Number of invalid lines tolerated
+     */
+    private final int maxErrors = Configuration.getInt("otto.import.maxErrors", 0);
+
+    /**
+     * If the segments are sent with LOAD DATA LOCAL INFILE instead of JDBC batches
+     */
+    private final boolean loadData = Configuration.get("otto.import.mode", "batch").equals("loadData");
+
+    /**
+     * Load a file in a table
+     * @param args the table name and the file
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: TableImporter <table> <file>");
+            System.exit(2);
+        }
+        Class<? extends ModelBase> model = null;
+        for (Class<? extends ModelBase> candidate : Models.all()) {
+            if (ModelMetadata.of(candidate).getTable().equals(args[0])) model = candidate;
+        }
+        if (model == null) {
+            System.err.println("Unknown table " + args[0]);
+            System.exit(2);
+        }
+        try {
+            long start = System.nanoTime();
+            long rows = new TableImporter().load(model, Paths.get(args[1]));
+            long elapsed = System.nanoTime() - start;
+            System.out.println("Imported " + rows + " rows in " + args[0] + " in " + elapsed / 1_000_000 + " ms (" + (elapsed > 0 ? rows * 1_000_000_000L / elapsed : rows) + " rows/s)");
+        } catch (IOException | SQLException e) {
+            log.error("Unable to import " + args[1], e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Load a CSV file in the table of a model, skipping the segments already recorded in the import_checkpoints table
+     * @param modelClass the model class
+     * @param file the CSV file
+     * @return the number of rows inserted by this run
+     * @throws IOException if the file cannot be read
+     * @throws SQLException if the checkpoints cannot be read, a segment cannot be inserted or there are too many invalid lines
+     * @throws IllegalArgumentException if the header names an unknown column
+     * @throws IllegalStateException if the storage is sharded
+     */
+    public long load(Class<? extends ModelBase> modelClass, Path file) throws IOException, SQLException {
+        if (DatabaseProvider.getShardCount() > 0) throw new IllegalStateException("The bulk import doesn't support the sharded storage, import each shard separately");
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        String source = file.toAbsolutePath().normalize().toString();
+        long start = System.nanoTime();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, 65536));
+            CsvCursor header = new CsvCursor(head);
+            if (!header.nextLine()) return 0;
+            List<String> names = new ArrayList<>();
+            while (header.nextField()) {
+                names.add(header.text().trim());
+            }
+            header.endLine();
+            long dataStart = head.position() + 1L;
+
+            ColumnMapping[] mappings = new ColumnMapping[names.size()];
+            ColumnChunk.Kind[] kinds = new ColumnChunk.Kind[names.size()];
+            for (int col = 0; col < names.size(); col++) {
+                if (names.get(col).equals("id")) {
+                    kinds[col] = ColumnChunk.Kind.Int;
+                } else if ((mappings[col] = metadata.getColumn(names.get(col))) == null) {
+                    throw new IllegalArgumentException("Unknown column " + names.get(col) + " in table " + metadata.getTable());
+                } else {
+                    kinds[col] = ColumnChunk.Kind.of(mappings[col].getSqlType());
+                }
+            }
+
+            Set<Long> done = this.readCheckpoints(source);
+            List<long[]> segments = new ArrayList<>();
+            for (long from = dataStart; from < size; ) {
+                long to = lineBoundary(channel, Math.min(from + this.segmentBytes, size));
+                if (!done.contains(from)) segments.add(new long[]{from, to});
+                from = to;
+            }
+            if (segments.isEmpty()) {
+                log.info("Nothing left to import from " + file + " (see the import_checkpoints table)");
+                return 0;
+            }
+
+            Segment task = new Segment(metadata, names, mappings, kinds, file, source);
+            ExecutorService executor = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "otto-import");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long rows = 0;
+            try {
+                List<Future<Integer>> futures = new ArrayList<>(segments.size());
+                for (long[] segment : segments) {
+                    futures.add(executor.submit(() -> task.load(channel.map(FileChannel.MapMode.READ_ONLY, segment[0], segment[1] - segment[0]), segment[0])));
+                }
+                for (Future<Integer> future : futures) {
+                    rows += future.get();
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof SQLException) throw (SQLException) e.getCause();
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new SQLException("Unable to import a segment of " + file, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while importing " + file, e);
+            } finally {
+                executor.shutdownNow();
+                task.close();
+            }
+            long elapsed = System.nanoTime() - start;
+            log.info("Imported " + rows + " rows in " + metadata.getTable() + " from " + file + " (" + segments.size() + " segments, " + task.rejected.get() + " invalid lines) in " + elapsed / 1_000_000 + " ms");
+            return rows;
+        }
+    }
+
+    /**
+     * Read the segments of a file already loaded from the import_checkpoints table
+     * @param source the absolute path of the file
+     * @return the start offsets of the loaded segments
+     * @throws SQLException if the table cannot be read
+     * @throws IllegalStateException if the segments were loaded with another segment size
+     */
+    private Set<Long> readCheckpoints(String source) throws SQLException {
+        Set<Long> done = new HashSet<>();
+        Connection conn = DatabaseProvider.getDatabase();
+        if (conn == null) throw new SQLException("No database connection available for the import");
+        try (PreparedStatement statement = conn.prepareStatement("SELECT segment_bytes, segment_offset FROM import_checkpoints WHERE file = ?")) {
+            statement.setString(1, source);
+            try (ResultSet res = statement.executeQuery()) {
+                while (res.next()) {
+                    if (res.getLong(1) != this.segmentBytes) {
+                        throw new IllegalStateException("The segments of " + source + " were loaded with another otto.import.segmentMb");
+                    }
+                    done.add(res.getLong(2));
+                }
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Find the start of the line following an offset
+     * @param channel the file
+     * @param offset the offset
+     * @return the offset following the next line break, or the file size
+     * @throws IOException if the file cannot be read
+     */
+    private static long lineBoundary(FileChannel channel, long offset) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(4096);
+        long size = channel.size();
+        while (offset < size) {
+            window.clear();
+            int read = channel.read(window, offset);
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') return offset + i + 1;
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    /**
+     * Loader of the segments of a file, shared by the import threads
+     */
+    private final class Segment {
+
+        /**
+         * Metadata of the model
+         */
+        private final ModelMetadata metadata;
+
+        /**
+         * Mapping of each column of the file, null for the id
+         */
+        private final ColumnMapping[] mappings;
+
+        /**
+         * Kind of each column of the file
+         */
+        private final ColumnChunk.Kind[] kinds;
+
+        /**
+         * The imported file
+         */
+        private final Path file;
+
+        /**
+         * The absolute path of the imported file, identifying its checkpoints
+         */
+        private final String source;
+
+        /**
+         * The insert request of a row (JDBC batches)
+         */
+        private final String insert;
+
+        /**
+         * The LOAD DATA request
+         */
+        private final String load;
+
+        /**
+         * Idle connections of the import threads
+         */
+        private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Number of invalid lines skipped
+         */
+        private final AtomicInteger rejected = new AtomicInteger();
+
+        /**
+         * Constructor
+         * @param metadata the metadata of the model
+         * @param names the column names of the file
+         * @param mappings the mapping of each column, null for the id
+         * @param kinds the kind of each column
+         * @param file the imported file
+         * @param source the absolute path of the imported file
+         */
+        Segment(ModelMetadata metadata, List<String> names, ColumnMapping[] mappings, ColumnChunk.Kind[] kinds, Path file, String source) {
+            this.metadata = metadata;
+            this.mappings = mappings;
+            this.kinds = kinds;
+            this.file = file;
+            this.source = source;
+            String columns = String.join(", ", names);
+            this.insert = "INSERT INTO " + metadata.getTable() + " (" + columns + ") VALUES (" + String.join(", ", Collections.nCopies(names.size(), "?")) + ")";
+            this.load = "LOAD DATA LOCAL INFILE 'otto-import' INTO TABLE " + metadata.getTable() + " CHARACTER SET utf8 (" + columns + ")";
+        }
+
+        /**
+         * Load a segment and record its checkpoint in one transaction
+         * @param buffer the records of the segment
+         * @param offset the offset of the segment in the file
+         * @return the number of rows inserted
+         * @throws SQLException if the segment cannot be inserted or there are too many invalid lines
+         * @throws IOException if the segment cannot be sent with LOAD DATA
+         */
+        int load(ByteBuffer buffer, long offset) throws SQLException, IOException {
+            Connection conn = this.idle.poll();
+            if (conn == null) conn = DatabaseProvider.openWriteConnection();
+            if (conn == null) {
+                Connection shared = DatabaseProvider.getBatchDatabase();
+                if (shared == null) throw new SQLException("No database connection available for the import");
+                synchronized (shared) {
+                    return this.load(shared, buffer, offset);
+                }
+            }
+            try {
+                return this.load(conn, buffer, offset);
+            } finally {
+                this.idle.offer(conn);
+            }
+        }
+
+        /**
+         * Close the connections of the import threads
+         */
+        void close() {
+            for (Connection conn : this.idle) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    log.warning("Unable to close an import connection: " + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Load a segment and record its checkpoint in one transaction on a connection. A crash leaves either both or neither, so a run never loads a segment twice
+         * @param conn the connection
+         * @param buffer the records of the segment
+         * @param offset the offset of the segment in the file
+         * @return the number of rows inserted
+         * @throws SQLException if the segment cannot be inserted, there are too many invalid lines or the segment was recorded meanwhile by another run
+         * @throws IOException if the segment cannot be sent with LOAD DATA
+         */
+        private int load(Connection conn, ByteBuffer buffer, long offset) throws SQLException, IOException {
+            long start = System.nanoTime();
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            int rows;
+            try {
+                rows = loadData ? this.loadData(conn, new CsvCursor(buffer), offset) : this.insertBatches(conn, new CsvCursor(buffer), offset);
+                this.recordCheckpoint(conn, offset, rows);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                segmentMetrics.recordError(System.nanoTime() - start);
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+            segmentMetrics.record(System.nanoTime() - start, rows);
+            return rows;
+        }
+
+        /**
+         * Record a loaded segment in the import_checkpoints table
+         * @param conn the connection, in the transaction of the segment
+         * @param offset the offset of the segment in the file
+         * @param rows the number of rows inserted
+         * @throws SQLException if the segment cannot be recorded (already recorded by another run included)
+         */
+        private void recordCheckpoint(Connection conn, long offset, int rows) throws SQLException {
+            try (PreparedStatement statement = conn.prepareStatement("INSERT INTO import_checkpoints (file, segment_bytes, segment_offset, row_count) VALUES (?, ?, ?, ?)")) {
+                statement.setString(1, this.source);
+                statement.setLong(2, segmentBytes);
+                statement.setLong(3, offset);
+                statement.setInt(4, rows);
+                statement.executeUpdate();
+            }
+        }
+
+        /**
+         * Insert the records of a segment by JDBC batches
+         * @param conn the connection, in a transaction
+         * @param cursor the records
+         * @param offset the offset of the segment in the file
+         * @return the number of rows inserted
+         * @throws SQLException if an insert fail or there are too many invalid lines
+         */
+        private int insertBatches(Connection conn, CsvCursor cursor, long offset) throws SQLException {
+            int rows = 0;
+            try (PreparedStatement statement = conn.prepareStatement(this.insert)) {
+                int pending = 0;
+                while (cursor.nextLine()) {
+                    try {
+                        for (int col = 0; col < this.kinds.length; col++) {
+                            if (!cursor.nextField()) throw new IllegalArgumentException("missing column " + (col + 1));
+                            this.bind(statement, col + 1, cursor, col);
+                        }
+                        if (cursor.endLine()) throw new IllegalArgumentException("too many columns");
+                    } catch (RuntimeException e) {
+                        cursor.endLine();
+                        this.reject(offset + cursor.lineStart(), e);
+                        continue;
+                    }
+                    statement.addBatch();
+                    if (++pending == batchSize) {
+                        rows += this.execute(statement, pending);
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) rows += this.execute(statement, pending);
+            }
+            return rows;
+        }
+
+        /**
+         * Run a JDBC batch
+         * @param statement the statement
+         * @param pending the number of rows of the batch
+         * @return the number of rows inserted
+         * @throws SQLException if the batch fail
+         */
+        private int execute(PreparedStatement statement, int pending) throws SQLException {
+            long start = System.nanoTime();
+            statement.executeBatch();
+            QueryTracer.record(this.insert, System.nanoTime() - start, pending, pending + " rows");
+            return pending;
+        }
+
+        /**
+         * Validate the current field and bind it to the insert
+         * @param statement the insert
+         * @param idx the parameter index
+         * @param cursor the cursor, on the field
+         * @param col the column index in the file
+         * @throws SQLException if the parameter cannot be defined
+         * @throws RuntimeException if the field is invalid
+         */
+        private void bind(PreparedStatement statement, int idx, CsvCursor cursor, int col) throws SQLException {
+            ColumnChunk.Kind kind = this.kinds[col];
+            if (cursor.isEmpty()) {
+                statement.setNull(idx, kind == ColumnChunk.Kind.Int ? Types.INTEGER : kind == ColumnChunk.Kind.Long ? Types.BIGINT : kind == ColumnChunk.Kind.Double ? Types.DOUBLE : kind == ColumnChunk.Kind.Timestamp ? Types.TIMESTAMP : Types.VARCHAR);
+                return;
+            }
+            switch (kind) {
+                case Int:
+                    statement.setInt(idx, cursor.parseInt());
+                    break;
+                case Long:
+                    statement.setLong(idx, cursor.parseLong());
+                    break;
+                case Double:
+                    statement.setDouble(idx, Double.parseDouble(cursor.text()));
+                    break;
+                case Timestamp:
+                    statement.setTimestamp(idx, Timestamp.from(Instant.parse(cursor.text())));
+                    break;
+                default:
+                    statement.setString(idx, this.validateText(cursor.text(), col));
+            }
+        }
+
+        /**
+         * Send the records of a segment with LOAD DATA LOCAL INFILE, after validating them
+         * @param conn the MySQL connection, in a transaction
+         * @param cursor the records
+         * @param offset the offset of the segment in the file
+         * @return the number of rows inserted
+         * @throws SQLException if the load fail, insert less rows than sent or there are too many invalid lines
+         */
+        private int loadData(Connection conn, CsvCursor cursor, long offset) throws SQLException {
+            LineBuffer data = new LineBuffer();
+            int rows = 0;
+            while (cursor.nextLine()) {
+                int lineStart = data.size();
+                try {
+                    for (int col = 0; col < this.kinds.length; col++) {
+                        if (!cursor.nextField()) throw new IllegalArgumentException("missing column " + (col + 1));
+                        if (col > 0) data.write('\t');
+                        this.copy(data, cursor, col);
+                    }
+                    if (cursor.endLine()) throw new IllegalArgumentException("too many columns");
+                } catch (RuntimeException e) {
+                    data.truncate(lineStart);
+                    cursor.endLine();
+                    this.reject(offset + cursor.lineStart(), e);
+                    continue;
+                }
+                data.write('\n');
+                rows++;
+            }
+            if (rows == 0) return 0;
+
+            long start = System.nanoTime();
+            try (Statement statement = conn.createStatement()) {
+                setLocalInfile(statement, new ByteArrayInputStream(data.toByteArray()));
+                int inserted = statement.executeUpdate(this.load);
+                QueryTracer.record(this.load, System.nanoTime() - start, inserted, rows + " rows");
+                if (inserted != rows) throw new SQLException("LOAD DATA inserted " + inserted + " rows out of " + rows + " in " + this.metadata.getTable());
+            }
+            return rows;
+        }
+
+        /**
+         * Validate the current field and copy it in the LOAD DATA format
+         * @param line where to write the field
+         * @param cursor the cursor, on the field
+         * @param col the column index in the file
+         * @throws RuntimeException if the field is invalid
+         */
+        private void copy(ByteArrayOutputStream line, CsvCursor cursor, int col) {
+            if (cursor.isEmpty()) {
+                cursor.copyEscaped(line);
+                return;
+            }
+            switch (this.kinds[col]) {
+                case Int:
+                    cursor.parseInt();
+                    break;
+                case Long:
+                    cursor.parseLong();
+                    break;
+                case Double:
+                    Double.parseDouble(cursor.text());
+                    break;
+                case Timestamp:
+                    byte[] timestamp = Timestamp.from(Instant.parse(cursor.text())).toString().getBytes(StandardCharsets.US_ASCII);
+                    line.write(timestamp, 0, timestamp.length);
+                    return;
+                default:
+                    this.validateText(cursor.text(), col);
+            }
+            cursor.copyEscaped(line);
+        }
+
+        /**
+         * Validate a text value with the converter of its column (an enum name for example)
+         * @param text the value
+         * @param col the column index in the file
+         * @return the value
+         * @throws RuntimeException if the converter reject it
+         */
+        private String validateText(String text, int col) {
+            if (this.mappings[col] != null) {
+                this.mappings[col].getConverter().fromDatabase(text);
+            }
+            return text;
+        }
+
+        /**
+         * Skip an invalid line
+         * @param position the position of the line in the file
+         * @param error the validation error
+         * @throws SQLException if there are too many invalid lines
+         */
+        private void reject(long position, RuntimeException error) throws SQLException {
+            log.warning("Invalid line at byte " + position + " of " + this.file + ": " + error);
+            if (this.rejected.incrementAndGet() > maxErrors) {
+                throw new SQLException("More than " + maxErrors + " invalid lines in " + this.file + ", see otto.import.maxErrors");
+            }
+        }
+    }
+
+    /**
+     * Buffer of the LOAD DATA records, from which an invalid line can be removed while being written
+     */
+    private static final class LineBuffer extends ByteArrayOutputStream {
+
+        /**
+         * Constructor
+         */
+        LineBuffer() {
+            super(1 << 20);
+        }
+
+        /**
+         * Drop the end of the buffer
+         * @param size the size to keep
+         */
+        void truncate(int size) {
+            this.count = size;
+        }
+    }
+
+    /**
+     * Give the data of the next LOAD DATA LOCAL INFILE to a MySQL statement (Connector/J setLocalInfileInputStream)
+     * @param statement the statement
+     * @param data the data
+     * @throws SQLException if the statement is not a MySQL one
+     */
+    private static void setLocalInfile(Statement statement, InputStream data) throws SQLException {
+        try {
+            Object mysqlStatement = statement.unwrap(Class.forName("com.mysql.cj.jdbc.JdbcStatement"));
+            mysqlStatement.getClass().getMethod("setLocalInfileInputStream", InputStream.class).invoke(mysqlStatement, data);
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("LOAD DATA LOCAL INFILE need the MySQL driver, use otto.import.mode=batch", e);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal in a memory-mapped file. The file start with a header (magic number and drained offset) followed by the records: [length][crc32][payload], the record list being closed by a zero length.
+ * An appended record is in the page cache as soon as append return, so it survive a crash of the process. The file is only forced to the disk by sync, called periodically by the writer thread, which batch the fsync of all the records appended in between.
+ * The records before the drained offset were consumed. When everything is drained the journal start again from the beginning of the file.
+ * @see journal.WriteBehind
+ * @author Antoine FORET
+ * @version 1.0
+ */
+class Journal {
+
+    /**
+     * Identify a journal file ("OTJ1")
+     */
+    private static final int magic = 0x4F544A31;
+
+    /**
+     * Size of the header: magic number and drained offset
+     */
+    private static final int headerSize = 16;
+
+    /**
+     * Size of a record header: length and crc
+     */
+    private static final int recordHeaderSize = 8;
+
+    /**
+     * The mapped file
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * The file channel, kept to close it
+     */
+    private final FileChannel channel;
+
+    /**
+     * Offset of the first record not drained yet
+     */
+    private int drainedOffset;
+
+    /**
+     * Offset where the next record will be written
+     */
+    private int writeOffset;
+
+    /**
+     * Offset up to which the records were forced to the disk
+     */
+    private int syncedOffset;
+
+    /**
+     * Open a journal, creating the file if needed. The records written but not drained before the previous stop are kept and will be read again
+     * @param file the journal file
+     * @param capacity the size of the file in bytes
+     * @throws IOException if the file cannot be mapped or is not a journal
+     */
+    Journal(Path file, int capacity) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int size = (int) Math.max(capacity, this.channel.size());
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (this.buffer.getInt(0) == 0) {
+            this.buffer.putInt(0, magic);
+            this.buffer.putLong(4, headerSize);
+            this.buffer.putInt(headerSize, 0);
+        } else if (this.buffer.getInt(0) != magic) {
+            throw new IOException(file + " is not a journal file");
+        }
+        this.drainedOffset = (int) this.buffer.getLong(4);
+        this.writeOffset = this.scan(this.drainedOffset);
+        this.syncedOffset = this.writeOffset;
+    }
+
+    /**
+     * Append a record
+     * @param payload the record content
+     * @return the offset after the record (to wait for its sync), or -1 if the journal is full
+     */
+    synchronized int append(byte[] payload) {
+        int end = this.writeOffset + recordHeaderSize + payload.length;
+        if (end + 4 > this.buffer.capacity()) return -1;
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(this.writeOffset + recordHeaderSize);
+        view.put(payload);
+        view.putInt(0);
+        this.buffer.putInt(this.writeOffset + 4, (int) crc.getValue());
+        // The length is written last: a record is only visible once complete
+        this.buffer.putInt(this.writeOffset, payload.length);
+        this.writeOffset = end;
+        return end;
+    }
+
+    /**
+     * Read the records not drained yet
+     * @param max the maximal number of records to read
+     * @return the records, each one with the offset following it
+     */
+    synchronized List<Record> pending(int max) {
+        List<Record> records = new ArrayList<>();
+        int offset = this.drainedOffset;
+        while (offset < this.writeOffset && records.size() < max) {
+            int length = this.buffer.getInt(offset);
+            byte[] payload = new byte[length];
+            ByteBuffer view = this.buffer.duplicate();
+            view.position(offset + recordHeaderSize);
+            view.get(payload);
+            offset += recordHeaderSize + length;
+            records.add(new Record(payload, offset));
+        }
+        return records;
+    }
+
+    /**
+     * Mark the records up to an offset as drained. The drained offset is forced to the disk, and the journal restart from the beginning of the file when everything is drained
+     * @param offset the offset following the last drained record
+     */
+    synchronized void markDrained(int offset) {
+        this.drainedOffset = offset;
+        if (this.drainedOffset == this.writeOffset) {
+            this.buffer.putInt(headerSize, 0);
+            this.drainedOffset = this.writeOffset = this.syncedOffset = headerSize;
+        }
+        this.buffer.putLong(4, this.drainedOffset);
+        this.buffer.force();
+    }
+
+    /**
+     * Force the appended records to the disk
+     * @return the offset up to which the records are synced
+     */
+    int sync() {
+        int target;
+        synchronized (this) {
+            target = this.writeOffset;
+            if (target == this.syncedOffset) return target;
+        }
+        this.buffer.force();
+        synchronized (this) {
+            if (target > this.syncedOffset && target <= this.writeOffset) this.syncedOffset = target;
+            this.notifyAll();
+            return this.syncedOffset;
+        }
+    }
+
+    /**
+     * Wait until a record is forced to the disk
+     * @param offset the offset returned by append
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    synchronized void awaitSync(int offset) throws InterruptedException {
+        while (this.syncedOffset < offset && this.writeOffset >= offset) {
+            this.wait(100);
+        }
+    }
+
+    /**
+     * Check if some records are not drained yet
+     * @return if the journal has pending records
+     */
+    synchronized boolean hasPending() {
+        return this.drainedOffset < this.writeOffset;
+    }
+
+    /**
+     * Force and close the journal
+     * @throws IOException if the file cannot be closed
+     */
+    synchronized void close() throws IOException {
+        this.buffer.force();
+        this.channel.close();
+    }
+
+    /**
+     * Find the end of the valid records, stopping at the closing zero length or at the first incomplete / corrupted record (partially written when the process crashed)
+     * @param offset the offset to start from
+     * @return the offset following the last valid record
+     */
+    private int scan(int offset) {
+        while (offset + recordHeaderSize <= this.buffer.capacity()) {
+            int length = this.buffer.getInt(offset);
+            if (length <= 0 || offset + recordHeaderSize + length > this.buffer.capacity()) break;
+            byte[] payload = new byte[length];
+            ByteBuffer view = this.buffer.duplicate();
+            view.position(offset + recordHeaderSize);
+            view.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != this.buffer.getInt(offset + 4)) break;
+            offset += recordHeaderSize + length;
+        }
+        if (offset + 4 <= this.buffer.capacity()) this.buffer.putInt(offset, 0);
+        return offset;
+    }
+
+    /**
+     * A record read from the journal
+     */
+    static final class Record {
+
+        /**
+         * Content of the record
+         */
+        final byte[] payload;
+
+        /**
+         * Offset following the record
+         */
+        final int end;
+
+        /**
+         * Constructor
+         * @param payload the record content
+         * @param end the offset following the record
+         */
+        Record(byte[] payload, int end) {
+            this.payload = payload;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+/**
+ * Binary encoding of the journal entries: the table name followed by a row of database values (see ModelBase.exportValues). Each value is written with a one byte type tag, only the types produced by the column converters are supported.
+ * @see journal.Journal
+ * @author Antoine FORET
+ * @version 1.0
+ */
+final class RowCodec {
+
+    /*
+     * Type tags of the values
+     */
+    private static final byte nullTag = 0, intTag = 1, longTag = 2, stringTag = 3, booleanTag = 4, doubleTag = 5, floatTag = 6, timestampTag = 7;
+
+    /**
+     * Utility class, not instantiable
+     */
+    private RowCodec() { }
+
+    /**
+     * Encode an entry
+     * @param table the table of the row
+     * @param row the database values
+     * @return the encoded entry
+     * @throws IllegalArgumentException if a value type is not supported
+     */
+    static byte[] encode(String table, Object[] row) {
+        int size = 2 + utf8Length(table) + 2;
+        for (Object value : row) {
+            size += 1 + valueSize(value);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        putString(buffer, table);
+        buffer.putShort((short) row.length);
+        for (Object value : row) {
+            putValue(buffer, value);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decode the table of an entry
+     * @param buffer the entry, positioned on its start. It is left positioned on the row
+     * @return the table name
+     */
+    static String decodeTable(ByteBuffer buffer) {
+        return getString(buffer);
+    }
+
+    /**
+     * Decode the row of an entry
+     * @param buffer the entry, positioned after its table name
+     * @return the database values
+     */
+    static Object[] decodeRow(ByteBuffer buffer) {
+        Object[] row = new Object[buffer.getShort()];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = getValue(buffer);
+        }
+        return row;
+    }
+
+    /**
+     * Compute the encoded size of a value, without its tag
+     * @param value the value
+     * @return the number of bytes
+     */
+    private static int valueSize(Object value) {
+        if (value == null) return 0;
+        if (value instanceof Integer || value instanceof Float) return 4;
+        if (value instanceof Long || value instanceof Double) return 8;
+        if (value instanceof Timestamp) return 12;
+        if (value instanceof Boolean) return 1;
+        if (value instanceof String) return 2 + utf8Length((String) value);
+        throw new IllegalArgumentException("Unsupported journal value type " + value.getClass().getName());
+    }
+
+    /**
+     * Write a tagged value
+     * @param buffer the destination
+     * @param value the value
+     */
+    private static void putValue(ByteBuffer buffer, Object value) {
+        if (value == null) {
+            buffer.put(nullTag);
+        } else if (value instanceof Integer) {
+            buffer.put(intTag).putInt((Integer) value);
+        } else if (value instanceof Long) {
+            buffer.put(longTag).putLong((Long) value);
+        } else if (value instanceof String) {
+            buffer.put(stringTag);
+            putString(buffer, (String) value);
+        } else if (value instanceof Boolean) {
+            buffer.put(booleanTag).put((byte) ((Boolean) value ? 1 : 0));
+        } else if (value instanceof Double) {
+            buffer.put(doubleTag).putDouble((Double) value);
+        } else if (value instanceof Float) {
+            buffer.put(floatTag).putFloat((Float) value);
+        } else {
+            Timestamp timestamp = (Timestamp) value;
+            buffer.put(timestampTag).putLong(timestamp.getTime()).putInt(timestamp.getNanos());
+        }
+    }
+
+    /**
+     * Read a tagged value
+     * @param buffer the source
+     * @return the value
+     */
+    private static Object getValue(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case nullTag:
+                return null;
+            case intTag:
+                return buffer.getInt();
+            case longTag:
+                return buffer.getLong();
+            case stringTag:
+                return getString(buffer);
+            case booleanTag:
+                return buffer.get() != 0;
+            case doubleTag:
+                return buffer.getDouble();
+            case floatTag:
+                return buffer.getFloat();
+            case timestampTag:
+                Timestamp timestamp = new Timestamp(buffer.getLong());
+                timestamp.setNanos(buffer.getInt());
+                return timestamp;
+            default:
+                throw new IllegalStateException("Unknown journal value tag " + tag);
+        }
+    }
+
+    /**
+     * Write a string as its UTF-8 length followed by its bytes
+     * @param buffer the destination
+     * @param value the string (at most 65535 bytes)
+     */
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    /**
+     * Read a string written by putString
+     * @param buffer the source
+     * @return the string
+     */
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compute the UTF-8 length of a string
+     * @param value the string
+     * @return the number of bytes
+     * @throws IllegalArgumentException if the string is longer than 65535 bytes
+     */
+    private static int utf8Length(String value) {
+        int length = value.getBytes(StandardCharsets.UTF_8).length;
+        if (length > 0xFFFF) throw new IllegalArgumentException("String too long for the journal");
+        return length;
+    }
+}
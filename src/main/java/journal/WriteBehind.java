@@ -0,0 +1,261 @@
+package journal;
+
+import logging.Logger;
+import models.ColumnMapping;
+import models.ModelBase;
+import models.ModelMetadata;
+import models.Models;
+import storage.Storage;
+import utils.Configuration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Durable write-behind of the models annotated with @Model(writeBehind = true). Their inserts are appended to a local journal and acknowledged immediately, a background thread then drain the journal to the storage backend in batches.
+ * The journal is a memory-mapped file: an acknowledged entry survive a crash of the process, and survive a crash of the machine once the writer thread forced it to the disk (every "otto.journal.syncMs", 5 ms by default, all the entries appended in between sharing the same fsync). With "otto.journal.waitForSync" the callers wait for this fsync before being acknowledged.
+ * The entries are drained every "otto.journal.drainMs" (100 by default), by batches of at most "otto.journal.batchSize" rows of the same table inserted in one database transaction. The entries left in the journal by a crash are drained again on the next start.
+ * Each entry carry the idempotency key of its entity (see annotations.JournalKey), unique in database: if the process crash between the commit of a batch and the update of the journal header, the first batch drained on the next start skip the entries whose key is already stored, so an entry is only inserted once.
+ * A journaled entity keep the id -1 and is only visible to the queries once drained. Its id is then assigned, which run its persisted hook and publish its creation: the derived data (like the daily totals) only count the inserted rows.
+ * @see journal.Journal
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class WriteBehind {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(WriteBehind.class);
+
+    /**
+     * Interval between two fsync of the journal, in milliseconds
+     */
+    private static final long syncMs = Configuration.getLong("otto.journal.syncMs", 5);
+
+    /**
+     * Interval between two drains of the journal, in milliseconds
+     */
+    private static final long drainMs = Configuration.getLong("otto.journal.drainMs", 100);
+
+    /**
+     * Maximal number of rows inserted in one database transaction
+     */
+    private static final int batchSize = Configuration.getInt("otto.journal.batchSize", 500);
+
+    /**
+     * If the callers wait for the fsync of their entry before being acknowledged
+     */
+    private static final boolean waitForSync = Configuration.getBoolean("otto.journal.waitForSync", false);
+
+    /**
+     * The journal, null while the write-behind isn't started
+     */
+    private static volatile Journal journal;
+
+    /**
+     * The background thread syncing and draining the journal
+     */
+    private static Thread worker;
+
+    /**
+     * Entities journaled by this process and not drained yet, by journal key. They receive their id once drained
+     */
+    private static final Map<Object, ModelBase> waiting = new ConcurrentHashMap<>();
+
+    /**
+     * If the next batch may have been inserted before a crash, its entries being then checked against the stored keys
+     */
+    private static volatile boolean replaying;
+
+    /**
+     * Utility class, not instantiable
+     */
+    private WriteBehind() { }
+
+    /**
+     * Open the journal ("otto.journal.file", otto-journal.dat by default, of "otto.journal.sizeMb" megabytes, 16 by default) and start the background thread. The entries not drained before the previous stop are drained first
+     * @throws IOException if the journal cannot be opened
+     */
+    public static synchronized void start() throws IOException {
+        if (journal != null) return;
+        Journal opened = new Journal(Paths.get(Configuration.get("otto.journal.file", "otto-journal.dat")),
+                Configuration.getInt("otto.journal.sizeMb", 16) * 1024 * 1024);
+        if (opened.hasPending()) {
+            log.info("Recovering the entries of the write-behind journal");
+            replaying = true;
+            try {
+                drainAll(opened);
+            } catch (SQLException e) {
+                log.error("Unable to recover the write-behind journal, the background thread will retry", e);
+            }
+        }
+        journal = opened;
+        worker = new Thread(WriteBehind::run, "otto-journal");
+        worker.setDaemon(true);
+        worker.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(WriteBehind::stop, "otto-journal-shutdown"));
+    }
+
+    /**
+     * Stop the background thread, drain the remaining entries and close the journal
+     */
+    public static synchronized void stop() {
+        Journal current = journal;
+        if (current == null) return;
+        journal = null;
+        worker.interrupt();
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            drainAll(current);
+            current.close();
+        } catch (SQLException | IOException e) {
+            log.error("Unable to drain the write-behind journal, the entries left will be drained on the next start", e);
+        }
+    }
+
+    /**
+     * Append the insert of an entity to the journal
+     * @param model the entity to insert, its journal key defined
+     * @return if the entry was journaled. When it isn't (write-behind not started, journal full) the caller must insert the entity itself
+     */
+    public static boolean submit(ModelBase model) {
+        Journal current = journal;
+        if (current == null) return false;
+        Object key = model.getMetadata().getJournalKey().get(model);
+        // Known before the append, the entry being drained as soon as it is appended
+        waiting.put(key, model);
+        int offset = current.append(RowCodec.encode(model.getMetadata().getTable(), model.exportValues()));
+        if (offset < 0) {
+            waiting.remove(key);
+            log.warning("The write-behind journal is full, inserting " + model.getClass().getSimpleName() + " synchronously");
+            return false;
+        }
+        if (waitForSync) {
+            try {
+                current.awaitSync(offset);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Loop of the background thread: sync the journal, and drain it when the drain interval elapsed
+     */
+    private static void run() {
+        long nextDrain = System.nanoTime() + drainMs * 1_000_000;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(syncMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+            Journal current = journal;
+            if (current == null) break;
+            current.sync();
+            if (System.nanoTime() - nextDrain >= 0) {
+                try {
+                    drainAll(current);
+                } catch (SQLException e) {
+                    log.error("Unable to drain the write-behind journal, retrying in " + drainMs + " ms", e);
+                }
+                nextDrain = System.nanoTime() + drainMs * 1_000_000;
+            }
+        }
+    }
+
+    /**
+     * Drain every pending entry of a journal
+     * @param current the journal
+     * @throws SQLException if a batch cannot be inserted. The entries drained before stay drained
+     */
+    private static void drainAll(Journal current) throws SQLException {
+        Map<String, Class<? extends ModelBase>> tables = new HashMap<>();
+        for (Class<? extends ModelBase> model : Models.all()) {
+            tables.put(ModelMetadata.of(model).getTable(), model);
+        }
+        List<Journal.Record> records;
+        while (!(records = current.pending(batchSize)).isEmpty()) {
+            drainBatch(current, records, tables);
+        }
+    }
+
+    /**
+     * Insert the leading entries of a list which share the same table, in one call to the storage backend, then mark them as drained and give their ids to the entities. When replaying, the entries whose journal key is already stored are skipped
+     * @param current the journal
+     * @param records the pending entries
+     * @param tables the model classes indexed by table
+     * @throws SQLException if the entries cannot be inserted, in which case none of them is marked as drained
+     */
+    private static void drainBatch(Journal current, List<Journal.Record> records, Map<String, Class<? extends ModelBase>> tables) throws SQLException {
+        String table = null;
+        List<Object[]> rows = new ArrayList<>(records.size());
+        int end = 0;
+        for (Journal.Record record : records) {
+            ByteBuffer payload = ByteBuffer.wrap(record.payload);
+            String recordTable = RowCodec.decodeTable(payload);
+            if (table != null && !table.equals(recordTable)) break;
+            table = recordTable;
+            rows.add(RowCodec.decodeRow(payload));
+            end = record.end;
+        }
+        Class<? extends ModelBase> model = tables.get(table);
+        if (model == null) {
+            log.error("Dropping " + rows.size() + " journal entries of unknown table " + table);
+            current.markDrained(end);
+            return;
+        }
+        ModelMetadata metadata = ModelMetadata.of(model);
+        ColumnMapping journalKey = metadata.getJournalKey();
+        int keyIndex = metadata.getColumnIndex(journalKey.getName());
+        if (replaying) {
+            int journaled = rows.size();
+            for (Iterator<Object[]> it = rows.iterator(); it.hasNext(); ) {
+                Object key = it.next()[keyIndex];
+                if (key != null && !Storage.getBackend().select(model, new String[]{"id"}, journalKey.getName(), key).isEmpty()) it.remove();
+            }
+            if (rows.size() < journaled) log.warning("Skipping " + (journaled - rows.size()) + " journal entries of " + model.getSimpleName() + " inserted before the last stop");
+        }
+        int[] ids = Storage.getBackend().insertRows(model, rows);
+        replaying = false;
+        current.markDrained(end);
+        log.debug(() -> "Drained " + rows.size() + " journal entries of " + model.getSimpleName());
+        for (int i = 0; i < ids.length; i++) {
+            created(model, rows.get(i), keyIndex, ids[i]);
+        }
+    }
+
+    /**
+     * Give its id to a drained entity, which run its persisted hook and publish its creation. The instance journaled by this process is used when still known, else the entity is read from its row (entries recovered after a restart)
+     * @param model the model class
+     * @param row the database values of the entity
+     * @param keyIndex the index of the journal key in the row
+     * @param id the generated id
+     */
+    private static void created(Class<? extends ModelBase> model, Object[] row, int keyIndex, int id) {
+        try {
+            ModelBase entity = row[keyIndex] != null ? waiting.remove(row[keyIndex]) : null;
+            if (entity == null) {
+                entity = model.getDeclaredConstructor().newInstance();
+                entity.importValues(row);
+            }
+            entity.assignId(id);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.error("Unable to run the creation hooks of " + model.getSimpleName() + " " + id + ", it is drained anyway", e);
+        }
+    }
+}
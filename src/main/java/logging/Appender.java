@@ -0,0 +1,20 @@
+package logging;
+
+/**
+ * Destination of the log messages
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public interface Appender {
+
+    /**
+     * Write a log message
+     * @param event the message to write
+     */
+    void append(LogEvent event);
+
+    /**
+     * Write all the pending messages, if the appender buffer them
+     */
+    void flush();
+}
@@ -0,0 +1,132 @@
+package logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appender that hand the messages over to a background thread through a fixed size ring buffer, so the calling thread never wait on the console. Publishing is lock-free: each producer claims a slot with a compare and set on the head sequence. When the buffer is full the message is dropped and counted instead of blocking the caller.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class AsyncAppender implements Appender {
+
+    /**
+     * Time the writer thread sleeps when the buffer is empty
+     */
+    private static final long idleNanos = 1_000_000L;
+
+    /**
+     * The appender that actually write the messages
+     */
+    private final Appender delegate;
+
+    /**
+     * The ring buffer. A null slot is free
+     */
+    private final AtomicReferenceArray<LogEvent> slots;
+
+    /**
+     * Mask to convert a sequence into a slot index (the capacity is a power of two)
+     */
+    private final int mask;
+
+    /**
+     * Sequence of the next slot to claim by a producer
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Sequence of the next slot to read by the writer thread
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Number of messages dropped because the buffer was full
+     */
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * The background writer thread
+     */
+    private final Thread writer;
+
+    /**
+     * Constructor. Start the background writer thread and register a shutdown hook to flush the remaining messages
+     * @param delegate the appender that write the messages
+     * @param capacity the minimal number of messages the buffer can hold (rounded up to a power of two)
+     */
+    public AsyncAppender(Appender delegate, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.delegate = delegate;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.writer = new Thread(this::drainLoop, "async-logger");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "async-logger-flush"));
+    }
+
+    @Override
+    public void append(LogEvent event) {
+        long seq;
+        do {
+            seq = this.head.get();
+            if (seq - this.tail.get() > this.mask) {
+                this.dropped.increment();
+                return;
+            }
+        } while (!this.head.compareAndSet(seq, seq + 1));
+        this.slots.lazySet((int) seq & this.mask, event);
+    }
+
+    @Override
+    public synchronized void flush() {
+        while (this.drain()) {
+            Thread.yield();
+        }
+        this.delegate.flush();
+    }
+
+    /**
+     * Access the number of messages lost and not reported yet. The writer thread report them as a warning on its next pass
+     * @return the number of dropped messages
+     */
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    /**
+     * Loop of the writer thread. Write the messages as they come and sleep when the buffer is empty
+     */
+    private void drainLoop() {
+        while (true) {
+            if (!this.drain()) {
+                LockSupport.parkNanos(idleNanos);
+            }
+        }
+    }
+
+    /**
+     * Write all the messages currently published in the buffer
+     * @return if some messages are claimed but not published yet
+     */
+    private synchronized boolean drain() {
+        long lost = this.dropped.sumThenReset();
+        if (lost > 0) {
+            this.delegate.append(new LogEvent(Level.WARNING, AsyncAppender.class.getName(), lost + " log messages dropped (buffer full)", null));
+        }
+        long seq = this.tail.get();
+        while (true) {
+            int idx = (int) seq & this.mask;
+            LogEvent event = this.slots.get(idx);
+            if (event == null) {
+                return seq != this.head.get();
+            }
+            this.slots.lazySet(idx, null);
+            this.tail.set(++seq);
+            this.delegate.append(event);
+        }
+    }
+}
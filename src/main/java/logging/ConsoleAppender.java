@@ -0,0 +1,30 @@
+package logging;
+
+/**
+ * Write the log messages on the standard output, or on the error output for warnings and errors. The messages keep the "[LEVEL] message" format used across the application.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class ConsoleAppender implements Appender {
+
+    @Override
+    public void append(LogEvent event) {
+        if (event.level.compareTo(Level.WARNING) >= 0) {
+            System.err.println("[" + event.level + "] " + event.message);
+            if (event.error != null) {
+                event.error.printStackTrace();
+            }
+        } else {
+            System.out.println("[" + event.level + "] " + event.message);
+            if (event.error != null) {
+                event.error.printStackTrace(System.out);
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        System.out.flush();
+        System.err.flush();
+    }
+}
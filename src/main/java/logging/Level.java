@@ -0,0 +1,15 @@
+package logging;
+
+/**
+ * Severity of a log message. A logger only output the messages with a level greater or equal to the configured one
+ * @see logging.Logger
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public enum Level {
+    DEBUG,
+    INFO,
+    WARNING,
+    ERROR,
+    OFF
+}
@@ -0,0 +1,49 @@
+package logging;
+
+/**
+ * A log message waiting to be written by an appender
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class LogEvent {
+
+    /**
+     * The level of the message
+     */
+    public final Level level;
+
+    /**
+     * The name of the logger that produced the message
+     */
+    public final String logger;
+
+    /**
+     * The message itself
+     */
+    public final String message;
+
+    /**
+     * The error attached to the message (can be null)
+     */
+    public final Throwable error;
+
+    /**
+     * Time of the event in milliseconds since epoch
+     */
+    public final long timestamp;
+
+    /**
+     * Constructor of the event
+     * @param level the level of the message
+     * @param logger the name of the logger
+     * @param message the message
+     * @param error the error attached to the message or null
+     */
+    public LogEvent(Level level, String logger, String message, Throwable error) {
+        this.level = level;
+        this.logger = logger;
+        this.message = message;
+        this.error = error;
+        this.timestamp = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,140 @@
+package logging;
+
+import utils.Configuration;
+
+import java.util.function.Supplier;
+
+/**
+ * Lightweight leveled logger. The level check is a single comparison so a disabled message costs nothing, and the supplier variants only build the message when it will actually be written. The level is read from the "otto.log.level" setting (INFO by default) and the messages are written asynchronously unless "otto.log.async" is set to false.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class Logger {
+
+    /**
+     * Minimal level of the messages to write, shared by all the loggers
+     */
+    private static volatile Level level = Level.valueOf(Configuration.get("otto.log.level", "INFO").toUpperCase());
+
+    /**
+     * Destination of the messages, shared by all the loggers
+     */
+    private static volatile Appender appender = Configuration.getBoolean("otto.log.async", true)
+            ? new AsyncAppender(new ConsoleAppender(), 8192)
+            : new ConsoleAppender();
+
+    /**
+     * Name of the logger (usually the class using it)
+     */
+    private final String name;
+
+    /**
+     * Constructor. Use getLogger instead
+     * @param name name of the logger
+     */
+    private Logger(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Create the logger of a class
+     * @param clazz the class that log messages
+     * @return the logger of the class
+     */
+    public static Logger getLogger(Class<?> clazz) {
+        return new Logger(clazz.getName());
+    }
+
+    /**
+     * Change the minimal level of the messages to write
+     * @param level the new level
+     */
+    public static void setLevel(Level level) {
+        Logger.level = level;
+    }
+
+    /**
+     * Change the destination of the messages. The previous appender is flushed first
+     * @param appender the new appender
+     */
+    public static void setAppender(Appender appender) {
+        Logger.appender.flush();
+        Logger.appender = appender;
+    }
+
+    /**
+     * Check if a level is enabled
+     * @param level the level to check
+     * @return if the messages of this level are written
+     */
+    public boolean isEnabled(Level level) {
+        return level.compareTo(Logger.level) >= 0;
+    }
+
+    /**
+     * Check if the debug messages are written. Useful to skip the preparation of costly debug data
+     * @return if the debug level is enabled
+     */
+    public boolean isDebugEnabled() {
+        return this.isEnabled(Level.DEBUG);
+    }
+
+    /**
+     * Log a debug message built only if the debug level is enabled
+     * @param message the supplier of the message
+     */
+    public void debug(Supplier<String> message) {
+        if (this.isEnabled(Level.DEBUG)) this.log(Level.DEBUG, message.get(), null);
+    }
+
+    /**
+     * Log an information message
+     * @param message the message
+     */
+    public void info(String message) {
+        if (this.isEnabled(Level.INFO)) this.log(Level.INFO, message, null);
+    }
+
+    /**
+     * Log an information message built only if the info level is enabled
+     * @param message the supplier of the message
+     */
+    public void info(Supplier<String> message) {
+        if (this.isEnabled(Level.INFO)) this.log(Level.INFO, message.get(), null);
+    }
+
+    /**
+     * Log a warning message
+     * @param message the message
+     */
+    public void warning(String message) {
+        if (this.isEnabled(Level.WARNING)) this.log(Level.WARNING, message, null);
+    }
+
+    /**
+     * Log an error message
+     * @param message the message
+     */
+    public void error(String message) {
+        if (this.isEnabled(Level.ERROR)) this.log(Level.ERROR, message, null);
+    }
+
+    /**
+     * Log an error message with the error that caused it
+     * @param message the message
+     * @param error the error to attach (its stack trace is written)
+     */
+    public void error(String message, Throwable error) {
+        if (this.isEnabled(Level.ERROR)) this.log(Level.ERROR, message, error);
+    }
+
+    /**
+     * Send a message to the appender
+     * @param level the level of the message
+     * @param message the message
+     * @param error the error attached or null
+     */
+    private void log(Level level, String message, Throwable error) {
+        appender.append(new LogEvent(level, this.name, message, error));
+    }
+}
@@ -0,0 +1,134 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets (same idea as HdrHistogram). Values below 32 have their own bucket, above that each power of two is split into 16 buckets so the relative error of a percentile is below 6.25%. Recording a value is a couple of bit operations and one atomic increment, it never allocate nor lock.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of values with their own bucket
+     */
+    private static final int linearBuckets = 32;
+
+    /**
+     * Number of buckets per power of two above the linear ones
+     */
+    private static final int subBuckets = 16;
+
+    /**
+     * Total number of buckets (enough to cover any positive long)
+     */
+    private static final int bucketCount = linearBuckets + 59 * subBuckets;
+
+    /**
+     * Number of values recorded in each bucket
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(bucketCount);
+
+    /**
+     * Number of values recorded
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Sum of all the values recorded
+     */
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Highest value recorded
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value
+     * @param value the value to record (negative values are recorded as 0)
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        this.buckets.incrementAndGet(bucketIndex(v));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(v);
+        long current;
+        while (v > (current = this.max.get()) && !this.max.compareAndSet(current, v)) {
+            // retry until our value is stored or a higher one is
+        }
+    }
+
+    /**
+     * Access the number of values recorded
+     * @return the number of values
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * Access the highest value recorded
+     * @return the maximum or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Compute the mean of the values recorded
+     * @return the mean or 0 if nothing was recorded
+     */
+    public double getMean() {
+        long n = this.count.get();
+        return n == 0 ? 0 : (double) this.sum.get() / n;
+    }
+
+    /**
+     * Compute a percentile of the values recorded. The result is the upper bound of the bucket holding the percentile
+     * @param percentile the percentile to compute (between 0 and 100)
+     * @return the value at this percentile or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            snapshot[i] = this.buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Compute the bucket of a value
+     * @param value a positive value
+     * @return the index of the bucket
+     */
+    static int bucketIndex(long value) {
+        if (value < linearBuckets) return (int) value;
+        int shift = 59 - Long.numberOfLeadingZeros(value);
+        return linearBuckets + (shift - 1) * subBuckets + (int) (value >>> shift) - subBuckets;
+    }
+
+    /**
+     * Compute the highest value stored in a bucket
+     * @param index the index of the bucket
+     * @return the upper bound of the bucket
+     */
+    static long bucketUpperBound(int index) {
+        if (index < linearBuckets) return index;
+        int shift = (index - linearBuckets) / subBuckets + 1;
+        long sub = (index - linearBuckets) % subBuckets + subBuckets;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,130 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one operation (find, persist...) on one model: number of calls, errors, rows hydrated and latency distribution. Instances are created by the PersistenceMetrics registry and can be kept by the caller, recording is lock-free.
+ * @see metrics.PersistenceMetrics
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+    /**
+     * Name of the model (or resource) concerned
+     */
+    private final String model;
+
+    /**
+     * Name of the operation
+     */
+    private final String operation;
+
+    /**
+     * Number of failed calls
+     */
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Number of rows read or written
+     */
+    private final LongAdder rows = new LongAdder();
+
+    /**
+     * Latency of the calls in nanoseconds
+     */
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Constructor. Use PersistenceMetrics.get instead
+     * @param model the model name
+     * @param operation the operation name
+     */
+    OperationMetrics(String model, String operation) {
+        this.model = model;
+        this.operation = operation;
+    }
+
+    /**
+     * Record a successful call
+     * @param nanos the duration of the call in nanoseconds
+     * @param rows the number of rows read or written
+     */
+    public void record(long nanos, int rows) {
+        this.latency.record(nanos);
+        if (rows > 0) this.rows.add(rows);
+    }
+
+    /**
+     * Record a failed call
+     * @param nanos the duration of the call in nanoseconds
+     */
+    public void recordError(long nanos) {
+        this.latency.record(nanos);
+        this.errors.increment();
+    }
+
+    /**
+     * Access the model name
+     * @return the name of the model
+     */
+    public String getModel() {
+        return this.model;
+    }
+
+    /**
+     * Access the operation name
+     * @return the name of the operation
+     */
+    public String getOperation() {
+        return this.operation;
+    }
+
+    /**
+     * Access the latency histogram (nanoseconds)
+     * @return the histogram of the operation
+     */
+    public LatencyHistogram getLatency() {
+        return this.latency;
+    }
+
+    @Override
+    public long getCount() {
+        return this.latency.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return this.errors.sum();
+    }
+
+    @Override
+    public long getRows() {
+        return this.rows.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return this.latency.getMean() / 1000.0;
+    }
+
+    @Override
+    public long getP50Micros() {
+        return this.latency.getPercentile(50) / 1000;
+    }
+
+    @Override
+    public long getP99Micros() {
+        return this.latency.getPercentile(99) / 1000;
+    }
+
+    @Override
+    public long getP999Micros() {
+        return this.latency.getPercentile(99.9) / 1000;
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return this.latency.getMax() / 1000;
+    }
+}
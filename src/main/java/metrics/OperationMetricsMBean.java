@@ -0,0 +1,18 @@
+package metrics;
+
+/**
+ * JMX view of the metrics of one persistence operation. The latencies are in microseconds
+ * @see metrics.OperationMetrics
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public interface OperationMetricsMBean {
+    long getCount();
+    long getErrors();
+    long getRows();
+    double getMeanMicros();
+    long getP50Micros();
+    long getP99Micros();
+    long getP999Micros();
+    long getMaxMicros();
+}
@@ -0,0 +1,95 @@
+package metrics;
+
+import logging.Logger;
+import utils.Configuration;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the persistence metrics, one entry per model and operation. Each entry is registered as a JMX MBean (otto.teller:type=Persistence,model=...,operation=...) and the registry itself expose a text dump, also written in the logs at exit when the "otto.metrics.dump" setting is true.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class PersistenceMetrics implements PersistenceMetricsMBean {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(PersistenceMetrics.class);
+
+    /**
+     * Domain of the JMX names
+     */
+    private static final String domain = "otto.teller";
+
+    /**
+     * Metrics indexed by "model.operation"
+     */
+    private static final Map<String, OperationMetrics> metrics = new ConcurrentHashMap<>();
+
+    static {
+        register(new PersistenceMetrics(), domain + ":type=Persistence,name=registry");
+        if (Configuration.getBoolean("otto.metrics.dump", false)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> log.info("Persistence metrics\n" + dumpAll()), "metrics-dump"));
+        }
+    }
+
+    /**
+     * Retrieve the metrics of an operation, creating them the first time. The result should be kept by the caller to avoid the lookup on each call
+     * @param model the model name
+     * @param operation the operation name
+     * @return the metrics of the operation
+     */
+    public static OperationMetrics get(String model, String operation) {
+        return metrics.computeIfAbsent(model + "." + operation, key -> {
+            OperationMetrics created = new OperationMetrics(model, operation);
+            register(created, domain + ":type=Persistence,model=" + ObjectName.quote(model) + ",operation=" + ObjectName.quote(operation));
+            return created;
+        });
+    }
+
+    /**
+     * Text dump of all the metrics, one line per model and operation (latencies in microseconds)
+     * @return the metrics table
+     */
+    public static String dumpAll() {
+        List<OperationMetrics> entries = new ArrayList<>(metrics.values());
+        entries.sort((a, b) -> (a.getModel() + "." + a.getOperation()).compareTo(b.getModel() + "." + b.getOperation()));
+        StringBuilder res = new StringBuilder(String.format("%-32s %10s %8s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "rows", "mean", "p50", "p99", "p99.9", "max"));
+        for (OperationMetrics entry : entries) {
+            res.append(String.format("%-32s %10d %8d %10d %10.1f %10d %10d %10d %10d%n",
+                    entry.getModel() + "." + entry.getOperation(), entry.getCount(), entry.getErrors(), entry.getRows(),
+                    entry.getMeanMicros(), entry.getP50Micros(), entry.getP99Micros(), entry.getP999Micros(), entry.getMaxMicros()));
+        }
+        return res.toString();
+    }
+
+    @Override
+    public String dump() {
+        return dumpAll();
+    }
+
+    /**
+     * Register an MBean on the platform server. A failure only disable the JMX view of this bean
+     * @param bean the bean to register
+     * @param name the JMX name of the bean
+     */
+    private static void register(Object bean, String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(bean, objectName);
+            }
+        } catch (Exception e) {
+            log.warning("Unable to register MBean " + name + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package metrics;
+
+/**
+ * JMX view of the whole persistence metrics registry
+ * @see metrics.PersistenceMetrics
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public interface PersistenceMetricsMBean {
+    String dump();
+}
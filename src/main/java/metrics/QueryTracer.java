@@ -0,0 +1,172 @@
+package metrics;
+
+import logging.Logger;
+import models.ModelBase;
+import utils.Configuration;
+
+/**
+ * Slow query log and per user action query tracing. Controllers run their actions through the trace method so every query knows the action that triggered it. A query slower than the threshold ("otto.slowQuery.ms" setting, 100 ms by default) is logged with its SQL, a summary of its parameters, its duration, the rows returned and the calling action. When the trace mode is enabled ("otto.trace.queries" setting) the queries are counted per action and a warning is logged when an action run more than "otto.trace.maxQueries" queries (10 by default), which usually reveal an N+1 pattern.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class QueryTracer {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(QueryTracer.class);
+
+    /**
+     * Maximal number of parameters detailed in the summary
+     */
+    private static final int maxParameters = 5;
+
+    /**
+     * Queries slower than this duration (in nanoseconds) are logged
+     */
+    private static volatile long slowQueryNanos = Configuration.getLong("otto.slowQuery.ms", 100L) * 1_000_000L;
+
+    /**
+     * If the queries are counted per action
+     */
+    private static volatile boolean traceEnabled = Configuration.getBoolean("otto.trace.queries", false);
+
+    /**
+     * Number of queries above which an action is reported
+     */
+    private static volatile int maxQueriesPerAction = Configuration.getInt("otto.trace.maxQueries", 10);
+
+    /**
+     * The action currently running on the thread
+     */
+    private static final ThreadLocal<ActionTrace> current = new ThreadLocal<>();
+
+    /**
+     * Change the slow query threshold
+     * @param millis the duration in milliseconds above which a query is logged
+     */
+    public static void setSlowQueryThreshold(long millis) {
+        slowQueryNanos = millis * 1_000_000L;
+    }
+
+    /**
+     * Enable or disable the per action query counting
+     * @param enabled if the queries are counted
+     * @param maxQueries number of queries above which an action is reported
+     */
+    public static void setTraceEnabled(boolean enabled, int maxQueries) {
+        traceEnabled = enabled;
+        maxQueriesPerAction = maxQueries;
+    }
+
+    /**
+     * Run a user action. The queries executed during the action are attributed to it
+     * @param action name of the action (for example HomeController.transactions)
+     * @param body the action to run
+     */
+    public static void trace(String action, Runnable body) {
+        ActionTrace previous = current.get();
+        ActionTrace trace = new ActionTrace(action);
+        current.set(trace);
+        try {
+            body.run();
+        } finally {
+            current.set(previous);
+            if (traceEnabled) {
+                long millis = (System.nanoTime() - trace.start) / 1_000_000L;
+                if (trace.queries > maxQueriesPerAction) {
+                    log.warning(action + " triggered " + trace.queries + " queries (limit " + maxQueriesPerAction + ", " + trace.rows + " rows, " + millis + " ms)");
+                } else {
+                    log.debug(() -> action + " triggered " + trace.queries + " queries (" + trace.rows + " rows, " + millis + " ms)");
+                }
+            }
+        }
+    }
+
+    /**
+     * Record an executed query
+     * @param sql the SQL template of the query
+     * @param nanos the duration of the query in nanoseconds
+     * @param rows the number of rows returned or modified
+     * @param parameters the bound parameter (a value, an array of values or a model for its own statements)
+     */
+    public static void record(String sql, long nanos, int rows, Object parameters) {
+        ActionTrace trace = current.get();
+        if (traceEnabled && trace != null) {
+            trace.queries++;
+            trace.rows += rows;
+        }
+        if (nanos >= slowQueryNanos) {
+            log.warning("Slow query (" + nanos / 1_000_000L + " ms, " + rows + " rows) in " + (trace != null ? trace.action : "unknown action") +
+                    ": " + sql + " [" + summarize(parameters) + "]");
+        }
+    }
+
+    /**
+     * Summarize the bound parameters without leaking their content: numbers, booleans and enums are shown, strings only by their length and models by their id
+     * @param parameters the parameters to summarize
+     * @return the summary
+     */
+    private static String summarize(Object parameters) {
+        if (parameters instanceof Object[]) {
+            Object[] values = (Object[]) parameters;
+            StringBuilder res = new StringBuilder();
+            for (int i = 0; i < values.length && i < maxParameters; i++) {
+                if (i > 0) res.append(", ");
+                res.append(summarizeValue(values[i]));
+            }
+            if (values.length > maxParameters) res.append(", ... (").append(values.length).append(" parameters)");
+            return res.toString();
+        }
+        return summarizeValue(parameters);
+    }
+
+    /**
+     * Summarize one parameter
+     * @param value the parameter
+     * @return the summary of the parameter
+     */
+    private static String summarizeValue(Object value) {
+        if (value == null) return "null";
+        if (value instanceof Number || value instanceof Boolean || value instanceof Enum) return value.toString();
+        if (value instanceof CharSequence) return "String(" + ((CharSequence) value).length() + ")";
+        if (value instanceof ModelBase) return value.getClass().getSimpleName() + "#" + ((ModelBase) value).getId();
+        return value.getClass().getSimpleName();
+    }
+}
+
+/**
+ * State of a running user action
+ * @author Antoine FORET
+ * @version 1.0
+ */
+class ActionTrace {
+
+    /**
+     * Name of the action
+     */
+    final String action;
+
+    /**
+     * Start of the action (System.nanoTime)
+     */
+    final long start = System.nanoTime();
+
+    /**
+     * Number of queries run by the action
+     */
+    int queries = 0;
+
+    /**
+     * Number of rows read or written by the action
+     */
+    long rows = 0;
+
+    /**
+     * Constructor of the trace
+     * @param action name of the action
+     */
+    ActionTrace(String action) {
+        this.action = action;
+    }
+}
@@ -2,6 +2,10 @@ package models;
 
 import annotations.Attribute;
 import annotations.Model;
+import annotations.ShardKey;
+import annotations.Unique;
+import security.PasswordHasher;
+import utils.Money;
 
 /**
  * Account model. Use to access data concerning users accounts
@@ -14,20 +18,22 @@ public class Account extends ModelBase {
     /**
      * User identifier
      */
+    @Unique
+    @ShardKey
     @Attribute(name = "identifier")
     protected String identifier;
 
     /**
-     * User password. There is no accessor for this field as we don't want the password to be accessible to the user.
+     * Salted hash of the user password (see PasswordHasher). There is no accessor for this field as we don't want the password to be accessible to the user.
      */
-    @Attribute(name = "password")
-    protected String password;
+    @Attribute(name = "password_hash")
+    protected String passwordHash;
 
     /**
      * User balance
      */
     @Attribute(name = "balance")
-    protected float balance;
+    protected Money balance = Money.ZERO;
 
     /**
      * Default constructor of the model. Needed with the model annotation
@@ -40,9 +46,9 @@ public class Account extends ModelBase {
      * @param password password of the user
      * @param balance balance of the user
      */
-    public Account(String identifier, String password, float balance) {
+    public Account(String identifier, String password, Money balance) {
         this.identifier = identifier;
-        this.password = password;
+        this.passwordHash = PasswordHasher.hash(password);
         this.balance = balance;
     }
 
@@ -63,47 +69,47 @@ public class Account extends ModelBase {
     }
 
     /**
-     * Define the user account password.
+     * Define the user account password. Only its salted hash is kept
      * @param password password to define for the user account
      */
     public void setPassword(String password) {
-        this.password = password;
+        this.passwordHash = PasswordHasher.hash(password);
     }
 
     /**
      * Access the user account balance
      * @return user's current account balance
      */
-    public float getBalance() {
+    public Money getBalance() {
         return balance;
     }
 
     /**
      * Credit the given amount to the user account. If the amount is negative, does nothing. If you want to debit the account see the debit method.
-     * @see models.Account#debit(float)
+     * @see models.Account#debit(Money)
      * @param amount amount to credit to the user account
      */
-    public void credit(float amount) {
-        if (amount <= 0) return;
-        this.balance += amount;
+    public void credit(Money amount) {
+        if (!amount.isPositive()) return;
+        this.balance = this.balance.plus(amount);
     }
 
     /**
      * Debit the given amount to the user account. If the amount is negative does nothing. If you want to credit the account see the credit method.
-     * @see models.Account#credit(float)
+     * @see models.Account#credit(Money)
      * @param amount
      */
-    public void debit(float amount) {
-        if (amount <= 0) return;
-        this.balance -= amount;
+    public void debit(Money amount) {
+        if (!amount.isPositive()) return;
+        this.balance = this.balance.minus(amount);
     }
 
     /**
-     * Check whenever the password is valid or not
+     * Check whenever the password is valid or not. The check run the full password hashing, see CredentialCache to avoid paying it on every login
      * @param password the password to test
      * @return if the password is valid
      */
     public boolean validatePassword(String password) {
-        return this.password.equals(password);
+        return PasswordHasher.verify(password, this.passwordHash);
     }
 }
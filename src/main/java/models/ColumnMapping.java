@@ -0,0 +1,208 @@
+package models;
+
+import annotations.CreatedAt;
+import annotations.Indexed;
+import annotations.JournalKey;
+import annotations.ShardKey;
+import annotations.Unique;
+import converters.ColumnConverter;
+import repositories.RepositoryBase;
+
+import java.lang.reflect.Field;
+
+/**
+ * Mapping between a model field and a database column. Attributes carry the converter used to read and write the column while relations carry the repository used to load the related entity.
+ * @see models.ModelMetadata
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class ColumnMapping {
+
+    /**
+     * Name of the column in database
+     */
+    private final String name;
+
+    /**
+     * The model field. It is made accessible once when the mapping is created
+     */
+    private final Field field;
+
+    /**
+     * The converter of the column, taking the values of the field as read by reflection. Null for a relation
+     */
+    private final ColumnConverter<Object, Object> converter;
+
+    /**
+     * The repository of the related model. Null for an attribute
+     */
+    private final Class<? extends RepositoryBase> repository;
+
+    /**
+     * If the column is searched often (Indexed annotation)
+     */
+    private final boolean indexed;
+
+    /**
+     * If the values of the column are unique (Unique annotation)
+     */
+    private final boolean unique;
+
+    /**
+     * If the column decide the shard of the entity (ShardKey annotation)
+     */
+    private final boolean shardKey;
+
+    /**
+     * If the column hold the creation time of the entity (CreatedAt annotation)
+     */
+    private final boolean createdAt;
+
+    /**
+     * If the column hold the idempotency key of a write-behind entity (JournalKey annotation)
+     */
+    private final boolean journalKey;
+
+    /**
+     * Constructor of the mapping
+     * @param name the column name
+     * @param field the model field
+     * @param converter the converter of an attribute or null for a relation. Its Java type is the type of the field
+     * @param repository the repository of a relation or null for an attribute
+     */
+    @SuppressWarnings("unchecked")
+    ColumnMapping(String name, Field field, ColumnConverter<?, ?> converter, Class<? extends RepositoryBase> repository) {
+        this.name = name;
+        this.field = field;
+        this.converter = (ColumnConverter<Object, Object>) converter;
+        this.repository = repository;
+        this.unique = field.isAnnotationPresent(Unique.class);
+        this.indexed = this.unique || field.isAnnotationPresent(Indexed.class);
+        this.shardKey = field.isAnnotationPresent(ShardKey.class);
+        this.createdAt = field.isAnnotationPresent(CreatedAt.class);
+        this.journalKey = field.isAnnotationPresent(JournalKey.class);
+        this.field.setAccessible(true);
+    }
+
+    /**
+     * Access the column name
+     * @return the name of the column in database
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Access the model field
+     * @return the field mapped to the column
+     */
+    public Field getField() {
+        return this.field;
+    }
+
+    /**
+     * Access the converter of an attribute
+     * @return the converter or null for a relation
+     */
+    public ColumnConverter<Object, Object> getConverter() {
+        return this.converter;
+    }
+
+    /**
+     * Access the repository of a relation
+     * @return the repository class or null for an attribute
+     */
+    public Class<? extends RepositoryBase> getRepository() {
+        return this.repository;
+    }
+
+    /**
+     * Check if the mapping is a relation (OneToOne annotation)
+     * @return if the column reference another model
+     */
+    public boolean isRelation() {
+        return this.repository != null;
+    }
+
+    /**
+     * Check if the column should have a secondary index (Indexed or Unique annotation)
+     * @return if the column is indexed
+     */
+    public boolean isIndexed() {
+        return this.indexed;
+    }
+
+    /**
+     * Check if the values of the column must be unique (Unique annotation)
+     * @return if the column is unique
+     */
+    public boolean isUnique() {
+        return this.unique;
+    }
+
+    /**
+     * Check if the column decide the shard of the entity (ShardKey annotation)
+     * @return if the column is the shard key
+     */
+    public boolean isShardKey() {
+        return this.shardKey;
+    }
+
+    /**
+     * Check if the column hold the creation time of the entity (CreatedAt annotation)
+     * @return if the column is the creation time
+     */
+    public boolean isCreatedAt() {
+        return this.createdAt;
+    }
+
+    /**
+     * Check if the column hold the idempotency key of a write-behind entity (JournalKey annotation)
+     * @return if the column is the journal key
+     */
+    public boolean isJournalKey() {
+        return this.journalKey;
+    }
+
+    /**
+     * Check if the column accept NULL values. Primitive attributes and relations don't
+     * @return if the column is nullable
+     */
+    public boolean isNullable() {
+        return !this.isRelation() && !this.field.getType().isPrimitive();
+    }
+
+    /**
+     * Access the SQL type of the column
+     * @return the column type, as given by the converter (int(11) for a relation)
+     */
+    public String getSqlType() {
+        return this.isRelation() ? "int(11)" : this.converter.sqlType();
+    }
+
+    /**
+     * Read the value of the field on an instance
+     * @param instance the model instance
+     * @return the field value
+     */
+    public Object get(Object instance) {
+        try {
+            return this.field.get(instance);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to access field " + this.field.getName(), e);
+        }
+    }
+
+    /**
+     * Define the value of the field on an instance
+     * @param instance the model instance
+     * @param value the value to define
+     */
+    public void set(Object instance, Object value) {
+        try {
+            this.field.set(instance, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to access field " + this.field.getName(), e);
+        }
+    }
+}
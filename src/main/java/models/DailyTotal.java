@@ -0,0 +1,132 @@
+package models;
+
+import annotations.Attribute;
+import annotations.Indexed;
+import annotations.Model;
+import annotations.OneToOne;
+import annotations.ShardKey;
+import repositories.AccountRepository;
+import utils.Money;
+
+import java.time.LocalDate;
+
+/**
+ * Daily total model. Aggregate of the transactions of an account for one day and one direction (withdrawn, sent or received), maintained incrementally on each transaction save so the statistics of a period read a few rows per day instead of every transaction
+ * @see repositories.DailyTotalRepository
+ * @author Antoine FORET
+ * @version 1.0
+ */
+@Model(table = "daily_totals")
+public class DailyTotal extends ModelBase {
+
+    /**
+     * Directions of the money for an account. A withdraw only count as withdrawn, a transfer as sent for its initiator and received for its recipient
+     */
+    public enum Direction {
+        Withdrawn,
+        Sent,
+        Received
+    }
+
+    /**
+     * The day, as a number of days since 1970-01-01 (LocalDate.toEpochDay)
+     */
+    @Attribute(name = "day")
+    protected int day;
+
+    /**
+     * The direction of the money. It is stored by name in database.
+     */
+    @Attribute(name = "direction")
+    protected Direction direction;
+
+    /**
+     * The sum of the amounts of the transactions
+     */
+    @Attribute(name = "total")
+    protected Money total = Money.ZERO;
+
+    /**
+     * The number of transactions
+     */
+    @Attribute(name = "count")
+    protected int count;
+
+    /**
+     * The account concerned
+     */
+    @Indexed
+    @ShardKey
+    @OneToOne(name = "account_id", repository = AccountRepository.class)
+    protected Account account;
+
+    /**
+     * Default constructor needed by the model annotation. This constructor shouldn't be used directly.
+     */
+    public DailyTotal() { }
+
+    /**
+     * Constructor of the total of a single transaction
+     * @param account the account concerned
+     * @param day the day of the transaction
+     * @param direction the direction of the money for this account
+     * @param amount the amount of the transaction
+     */
+    public DailyTotal(Account account, LocalDate day, Direction direction, Money amount) {
+        this.account = account;
+        this.day = (int) day.toEpochDay();
+        this.direction = direction;
+        this.total = amount;
+        this.count = 1;
+    }
+
+    /**
+     * Replace the sums of the total, when the totals are rebuilt from the transactions
+     * @param total the sum of the amounts
+     * @param count the number of transactions
+     */
+    public void setTotals(Money total, int count) {
+        this.total = total;
+        this.count = count;
+    }
+
+    /**
+     * Access the account concerned
+     * @return the account
+     */
+    public Account getAccount() {
+        return account;
+    }
+
+    /**
+     * Access the day of the total
+     * @return the day
+     */
+    public LocalDate getDay() {
+        return LocalDate.ofEpochDay(this.day);
+    }
+
+    /**
+     * Access the direction of the money
+     * @return the direction
+     */
+    public Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * Access the sum of the amounts
+     * @return the total
+     */
+    public Money getTotal() {
+        return total;
+    }
+
+    /**
+     * Access the number of transactions
+     * @return the count
+     */
+    public int getCount() {
+        return count;
+    }
+}
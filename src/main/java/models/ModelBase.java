@@ -1,18 +1,22 @@
 package models;
 
 import annotations.Attribute;
-import annotations.Model;
-import annotations.OneToOne;
+import events.ChangeEvent;
+import events.EventBus;
+import journal.WriteBehind;
+import logging.Logger;
+import repositories.Repositories;
 import repositories.RepositoryBase;
-import utils.DatabaseProvider;
-import utils.Pair;
-import utils.StringUtils;
+import storage.CommitUnknownException;
+import storage.Storage;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.sql.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
 
 /**
  * Base for each model. Every class that inherit from it is considered as a model and as such have certain persistence properties. They also need to have the corresponding annotations (Model, Attribute, OneToOne)
@@ -22,33 +26,36 @@ import java.util.Map;
 public class ModelBase {
 
     /**
-     * The common attribute for each model. Each model must have an ID as such it is present here
+     * Logger of the class
      */
-    @Attribute(name="id")
-    private int id = -1;
+    private static final Logger log = Logger.getLogger(ModelBase.class);
 
     /**
-     * List of all the attributes of the model
+     * Outcomes of a save of several entities (see saveAll)
      */
-    private HashMap<String, Pair<Field, Class>> attributes = new HashMap<>();
+    public enum Outcome {
+        Saved,
+        Failed,
+        Unknown
+    }
 
     /**
-     * List of all the relations of the model
+     * The common attribute for each model. Each model must have an ID as such it is present here
      */
-    private HashMap<String, Pair<Field, Class>> relations = new HashMap<>();
+    @Attribute(name="id")
+    private int id = -1;
 
     /**
-     * The table to persist the different entities
+     * The reflection discoveries of the model (table, attributes and relations). Shared by all the instances of the model
      */
-    private String table = "";
+    private final ModelMetadata metadata;
 
     /**
-     * Constructor of any model. It initialize all the refection discoveries and the model attributes
+     * Constructor of any model. It retrieve the model metadata, built once per model class
      */
     ModelBase() {
-        System.out.println("[INFO] Initializing model " + this.getClass().toString());
-        this.initTable();
-        this.initAttributes();
+        log.debug(() -> "Initializing model " + this.getClass().toString());
+        this.metadata = ModelMetadata.of(this.getClass());
     }
 
     /**
@@ -56,18 +63,14 @@ public class ModelBase {
      * @return a string representation of the model including all its attributes and relations
      */
     public String toString() {
-        try {
-            StringBuilder res = new StringBuilder("[Model " + this.getClass().getSimpleName() + "(" + this.id + "): {");
-            for (Map.Entry<String, Pair<Field, Class>> entry : this.attributes.entrySet()) {
-                res.append(entry.getValue().left.getName()).append(": ").append(entry.getValue().left.get(this)).append(", ");
-            }
-            for (Map.Entry<String, Pair<Field, Class>> entry : this.relations.entrySet()) {
-                res.append(entry.getValue().left.getName()).append(": ").append(entry.getValue().left.get(this)).append(", ");
-            }
-            return res.substring(0, res.length() - 2) + "}]";
-        } catch (IllegalAccessException e) {
-            return "[Model " + this.getClass().getSimpleName() + "(" + this.id + "): {FAILED TO RETRIEVE FIELDS}]";
+        StringBuilder res = new StringBuilder("[Model " + this.getClass().getSimpleName() + "(" + this.id + "): {");
+        for (ColumnMapping mapping : this.metadata.getAttributes()) {
+            res.append(mapping.getField().getName()).append(": ").append(mapping.get(this)).append(", ");
+        }
+        for (ColumnMapping mapping : this.metadata.getRelations()) {
+            res.append(mapping.getField().getName()).append(": ").append(mapping.get(this)).append(", ");
         }
+        return res.substring(0, res.length() - 2) + "}]";
     }
 
     /**
@@ -102,6 +105,46 @@ public class ModelBase {
         return false;
     }
 
+    /**
+     * Save several entities together, through StorageBackend.saveAll: either all of them are saved or none, even when they live on different shards. Their relations must already be persisted
+     * @param models the entities to save
+     * @return Saved if every entity was saved, Failed if none was, Unknown if the commit failed (the entities must then be read again)
+     */
+    public static Outcome saveAll(ModelBase... models) {
+        for (ModelBase model : models) {
+            if (model.id == -1) model.stampCreation();
+        }
+        try {
+            return Storage.getBackend().saveAll(Arrays.asList(models)) ? Outcome.Saved : Outcome.Failed;
+        } catch (CommitUnknownException e) {
+            log.error("The outcome of the save of " + models.length + " entities is unknown: " + e.getMessage());
+            return Outcome.Unknown;
+        } catch (SQLException e) {
+            log.error("An error occurred while saving " + models.length + " entities: " + e.getMessage());
+        }
+        return Outcome.Failed;
+    }
+
+    /**
+     * Define the id generated for a new entity saved by a storage backend outside of save (see StorageBackend.saveAll), then run its persisted hook and publish its creation
+     * @param id the generated id
+     * @throws IllegalStateException if the entity already has an id
+     */
+    public void assignId(int id) {
+        if (this.id != -1) throw new IllegalStateException(this.getClass().getSimpleName() + " already persisted with id " + this.id);
+        this.id = id;
+        this.persisted();
+        this.publish(ChangeEvent.Kind.Created, id);
+    }
+
+    /**
+     * Run the updated hook of an entity and publish its update. Called by save, and by the storage backends updating an entity outside of save (see StorageBackend.saveAll)
+     */
+    public void markUpdated() {
+        this.updated();
+        this.publish(ChangeEvent.Kind.Updated, this.id);
+    }
+
     /**
      * Id getter
      * @return the current instance id
@@ -111,315 +154,257 @@ public class ModelBase {
     }
 
     /**
-     * Make sure that every relation is persisted before the current instance is saved cause else a relation might not be persisted at all and the datas would be corrupted
+     * Access the model metadata. Used by the storage backends to build their requests
+     * @return the metadata of the model class
      */
-    private void persistRelations() {
-        for (Map.Entry<String, Pair<Field, Class>> entry : this.relations.entrySet()) {
-            try {
-                ModelBase model = (ModelBase) entry.getValue().left.get(this);
-                if (model != null) {
-                    model.save();
-                }
-            } catch (IllegalAccessException e) {
-                System.err.println("[ERROR] Unable to access relation item " + entry.getValue().left.getName() + " on " + this.getClass().getSimpleName());
-            }
-        }
+    public ModelMetadata getMetadata() {
+        return this.metadata;
     }
 
     /**
-     * Setter for the instance id. As we base our persistence and all database access within it, it cannot be modified by the user, it can only be modifier internally
-     * @param id the id to define
+     * Export the instance as a row of database values: the id first, then the attributes converted by their column converter and the relations ids, in the metadata order. Used by the storage backends that don't use JDBC
+     * @return the database values of the instance
+     * @see ModelMetadata#getColumnIndex(String)
      */
-    private void setId(Integer id) {
-        if (id != null) {
-            this.id = id;
+    public Object[] exportValues() {
+        List<ColumnMapping> attributes = this.metadata.getAttributes();
+        List<ColumnMapping> relations = this.metadata.getRelations();
+        Object[] values = new Object[1 + attributes.size() + relations.size()];
+        int idx = 0;
+        values[idx++] = this.id;
+        for (ColumnMapping mapping : attributes) {
+            values[idx++] = mapping.getConverter().toDatabase(mapping.get(this));
         }
+        for (ColumnMapping mapping : relations) {
+            ModelBase relation = (ModelBase) mapping.get(this);
+            values[idx++] = relation != null ? relation.getId() : null;
+        }
+        return values;
     }
 
     /**
-     * Initialize the table field of the instance based on the model annotation
+     * Import a row of database values, as produced by exportValues, inside the instance. The relations are loaded through their repository, or by the opened RelationBatch
+     * @param values the database values of the entity
      */
-    private void initTable() {
-        Model model = this.getClass().getAnnotation(Model.class);
-        if (model != null) {
-            this.table = model.table();
+    public void importValues(Object[] values) {
+        int idx = 1;
+        for (ColumnMapping mapping : this.metadata.getAttributes()) {
+            mapping.set(this, mapping.getConverter().fromDatabase(values[idx++]));
+        }
+        for (ColumnMapping mapping : this.metadata.getRelations()) {
+            Object relationId = values[idx++];
+            if (relationId != null) {
+                this.setRelation(mapping, (Integer) relationId);
+            } else {
+                mapping.set(this, null);
+            }
         }
+        this.setId((Integer) values[0]);
     }
 
     /**
-     * Search for all attributes of the model (Attribute annotation) and store them for future use
+     * Fill a prepared statement with the current instance values (attributes then relations, in the metadata order). Used by the JDBC storage backend
+     * @param stmt the prepared statement to fill
+     * @return the index of the next parameter to fill
+     * @throws SQLException if a parameter cannot be defined
      */
-    private void initAttributes() {
-        for (Field field : this.getClass().getDeclaredFields()) {
-            Attribute attribute = field.getAnnotation(Attribute.class);
-            OneToOne oneToOne = field.getAnnotation(OneToOne.class);
-            if (attribute != null) {
-                attributes.put(attribute.name(), new Pair<>(field, field.getType()));
-                System.out.println("[INFO] Attribute " + attribute.name() + " found on " + field.getName() + " (" + field.getType().toString() + ")");
-            } else if (oneToOne != null) {
-                relations.put(oneToOne.name(), new Pair<>(field, field.getType()));
-                System.out.println("[INFO] Relation " + oneToOne.name() + " found on " + field.getName() + " (" + field.getType().toString() + ")");
-            }
+    public int fillStatement(PreparedStatement stmt) throws SQLException {
+        int idx = 1;
+        for (ColumnMapping mapping : this.metadata.getAttributes()) {
+            mapping.getConverter().write(stmt, idx++, mapping.get(this));
+        }
+        for (ColumnMapping mapping : this.metadata.getRelations()) {
+            stmt.setInt(idx++, ((ModelBase) mapping.get(this)).getId());
         }
+        return idx;
     }
 
     /**
-     * Import the data from a sql request inside the instance
-     * @param data the result from a database query
+     * Define the creation time of a new entity (CreatedAt annotation), unless it is already defined
      */
-    private void fromDatabase(ResultSet data) {
-        try {
-            for(Map.Entry<String, Pair<Field, Class>> entry : this.attributes.entrySet()) {
-                int idx = data.findColumn(entry.getKey());
-                this.setValueFromDb(entry.getValue().left, this.getValueFromDatabase(data, idx, entry.getValue().right));
-            }
-            for(Map.Entry<String, Pair<Field, Class>> entry : this.relations.entrySet()) {
-                int idx = data.findColumn(entry.getKey());
-                this.setValueFromDb(entry.getValue().left, this.getRelationInstance(data.getInt(idx), entry.getValue().left));
-            }
-            this.setId(this.getValueFromDatabase(data, data.findColumn("id"), int.class));
-        } catch (SQLException e) {
-            System.err.println("[ERROR] Invalid ResultSet provided to model " + this.getClass().getSimpleName() +
-                    ". " + e.getMessage() +
-                    " Aborting database importation.");
-        } catch (Exception e) {
-            System.err.println("[ERROR] An unexpected error occurred");
-            e.printStackTrace();
+    private void stampCreation() {
+        ColumnMapping createdAt = this.metadata.getCreatedAt();
+        if (createdAt != null && createdAt.get(this) == null) {
+            createdAt.set(this, Instant.now());
         }
     }
 
     /**
-     * Retrieve an relationship. In order to accomplish this action, it base on the relation annotation parameters, including the repository one to retrieve the data from the database
-     * @param id the id of the relation
-     * @param field the field where the annotation is defined
-     * @param <model> the class of the model to create. It must be equal to the value of the relation annotation
-     * @return an instance of the relation entity
+     * Hook called once a new entity is saved (once drained from the journal for a write-behind model). Does nothing by default, the models override it to maintain derived data
      */
-    private <model> model getRelationInstance(int id, Field field) {
-        try {
-            Class repositoryClass = field.getAnnotation(OneToOne.class).repository();
-            RepositoryBase repository = (RepositoryBase) repositoryClass.newInstance();
-            return repository.find(id);
-        } catch (Exception e) {
-            System.err.println("[ERROR] Unable to retrieve relation");
-            e.printStackTrace();
-        }
-        return null;
-    }
+    protected void persisted() { }
 
     /**
-     * Extract a value from the database result.
-     * @param data the sql result
-     * @param idx the index where the data to extract is
-     * @param clazz the class we want the data to be
-     * @param <type> the type that will be return, it is the same value as the clazz parameter
-     * @return return the data stored in the sql result
+     * Hook called once a persisted entity is updated by save. Does nothing by default
      */
-    private <type> type getValueFromDatabase(ResultSet data, int idx, Class clazz) {
-        try {
-            Method get = data.getClass().getMethod("get" + StringUtils.capitalize(clazz.getSimpleName()), int.class);
-            return (type) get.invoke(data, idx);
-        } catch (NoSuchMethodException e) {
-            System.err.println("[WARNING] No method found for type " + clazz.getSimpleName() + " (get" + clazz.getSimpleName() + ")");
-        } catch (Exception e) {
-            System.err.println("[ERROR] Unexpected error");
-            e.printStackTrace();
-        }
-        return null;
-    }
+    protected void updated() { }
 
     /**
-     * Define a field value based on the database value. It doesn't retrieve the information from the sql result but get it from a function that take care of it
-     * @param field the filed to update
-     * @param value the value to define
-     * @param <valueType> the type of the value to define
+     * Hook called once the entity is deleted. Does nothing by default
+     * @param id the id the entity had
      */
-    private <valueType > void setValueFromDb(Field field, valueType value) {
-        boolean accessible = field.isAccessible();
-        try {
-            field.setAccessible(true);
-            field.set(this, value);
-        } catch (Exception e) {
-            System.err.println("[ERROR] Unexpected error");
-            e.printStackTrace();
-        } finally {
-            field.setAccessible(accessible);
-        }
-    }
+    protected void deleted(int id) { }
 
     /**
-     * Save an entity for the first time in the database. It use complementary functions to create the sql string and fill it.
-     * @return if the persist action succeed
+     * Publish a change of the entity on the event bus
+     * @param kind the kind of change
+     * @param id the id of the entity, its former id when it is deleted
      */
-    private boolean persist() {
-        System.out.println("[INFO] Persisting instance of " + this.getClass().getSimpleName());
+    @SuppressWarnings("unchecked")
+    private void publish(ChangeEvent.Kind kind, int id) {
+        EventBus.publish(new ChangeEvent<>(kind, (Class<ModelBase>) this.getClass(), id, this));
+    }
 
-        final String query = "INSERT INTO " + this.table + " " + this.generateSqlValueSet() + ";";
-        try {
-            Connection conn = DatabaseProvider.getDatabase();
-            PreparedStatement statement = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
-            statement.closeOnCompletion();
-            this.fillStatement(statement);
-            if (statement.executeUpdate() == 0) {
-                throw new SQLException("Failed to persist new instance of " + this.getClass().getSimpleName());
+    /**
+     * Make sure that every relation is persisted before the current instance is saved cause else a relation might not be persisted at all and the datas would be corrupted
+     */
+    private void persistRelations() {
+        for (ColumnMapping mapping : this.metadata.getRelations()) {
+            ModelBase model = (ModelBase) mapping.get(this);
+            if (model != null) {
+                model.save();
             }
-            this.updateId(statement);
-            return true;
-        } catch (SQLException e) {
-            System.err.println("[ERROR] An error occurred while persisting data: " + e.getMessage());
         }
-        return false;
     }
 
     /**
-     * Generate the sql request string for a new addition to the database
-     * @return the sql request WITHOUT the parameters filled
+     * Setter for the instance id. As we base our persistence and all database access within it, it cannot be modified by the user, it can only be modifier internally
+     * @param id the id to define
      */
-    private String generateSqlValueSet() {
-        StringBuilder columns = new StringBuilder();
-        StringBuilder values = new StringBuilder();
-
-        for(Map.Entry<String, Pair<Field, Class>> entry : this.attributes.entrySet()) {
-            columns.append(", ").append(entry.getKey());
-            values.append(", ?");
-        }
-        for(Map.Entry<String, Pair<Field, Class>> entry : this.relations.entrySet()) {
-            columns.append(", ").append(entry.getKey());
-            values.append(", ?");
+    private void setId(Integer id) {
+        if (id != null) {
+            this.id = id;
         }
-        return "(" + columns.substring(2) + ") VALUES (" + values.substring(2) + ")";
     }
 
     /**
-     * Fill a prepared statement with the current instance values
-     * @param stmt the prepared statement to fill
+     * Import the data from a sql request inside the instance
+     * @param data the result from a database query
      */
-    private void fillStatement(PreparedStatement stmt) {
-        int idx = 1;
-        for (Map.Entry<String, Pair<Field, Class>> entry : this.attributes.entrySet()) {
-            try {
-                Method set = stmt.getClass().getMethod("set" + StringUtils.capitalize(entry.getValue().right.getSimpleName()), int.class, entry.getValue().right);
-                set.invoke(stmt, idx++, entry.getValue().left.get(this));
-            } catch (NoSuchMethodException e) {
-                System.err.println("[ERROR] Unable to find method to set query statement parameter. " + e.getMessage());
-            } catch (Exception e) {
-                System.err.println("[ERROR] An unexpected error occurred: " + e.getMessage());
-                e.printStackTrace();
+    private void fromDatabase(ResultSet data) {
+        try {
+            for (ColumnMapping mapping : this.metadata.getAttributes()) {
+                int idx = data.findColumn(mapping.getName());
+                mapping.set(this, mapping.getConverter().read(data, idx));
             }
-        }
-        for (Map.Entry<String, Pair<Field, Class>> entry : this.relations.entrySet()) {
-            try {
-                stmt.setInt(idx++, ((ModelBase) entry.getValue().left.get(this)).getId());
-            } catch (SQLException e) {
-                System.err.println("[ERROR] Unable to find method to set query statement parameter. " + e.getMessage());
-            } catch (Exception e) {
-                System.err.println("[ERROR] An unexpected error occurred: " + e.getMessage());
-                e.printStackTrace();            }
+            for (ColumnMapping mapping : this.metadata.getRelations()) {
+                int idx = data.findColumn(mapping.getName());
+                this.setRelation(mapping, data.getInt(idx));
+            }
+            this.setId(data.getInt(data.findColumn("id")));
+        } catch (SQLException e) {
+            log.error("Invalid ResultSet provided to model " + this.getClass().getSimpleName() +
+                    ". " + e.getMessage() +
+                    " Aborting database importation.");
+        } catch (Exception e) {
+            log.error("An unexpected error occurred", e);
         }
     }
 
     /**
-     * Retrieve the id of the entity from the performed persistence request in order to have the id defined in our instance.
-     * @param stmt the prepared statement that was executed to insert the datas
-     * @throws SQLException if the sql request didn't generated an id
+     * Set a relation from the id of the related entity. Within a RelationBatch, the entity is set once the batch is resolved, with the other relations to the same model
+     * @param relation the relation mapping
+     * @param id the id of the related entity
      */
-    private void updateId(PreparedStatement stmt) throws SQLException {
-        ResultSet generatedKeys = stmt.getGeneratedKeys();
-        if (generatedKeys.next()) {
-            this.id = generatedKeys.getInt(1);
-        } else {
-            throw new SQLException("Creating user failed, no ID obtained.");
+    private void setRelation(ColumnMapping relation, int id) {
+        if (!RelationBatch.defer(this, relation, id)) {
+            relation.set(this, this.getRelationInstance(id, relation));
         }
     }
 
     /**
-     * Update an entity in the database. The instance must have already been persisted to work (have an id)
-     * @return if the update action succeed
+     * Retrieve an relationship. In order to accomplish this action, it base on the relation annotation parameters, including the repository one to retrieve the data from the database
+     * @param id the id of the relation
+     * @param relation the relation mapping, holding the repository to use
+     * @param <model> the class of the model to create. It must be equal to the value of the relation annotation
+     * @return an instance of the relation entity
      */
-    private boolean update() {
-        System.out.println("[INFO] Updating instance of " + this.getClass().getSimpleName() + " (" + this.id + ")");
-
-        final String query = this.generateSQLUpdate();
-
+    private <model> model getRelationInstance(int id, ColumnMapping relation) {
+        long start = System.nanoTime();
         try {
-            Connection conn = DatabaseProvider.getDatabase();
-            PreparedStatement stmt = conn.prepareStatement(query);
-            stmt.closeOnCompletion();
-            this.assignUpdateDatas(stmt);
-            return stmt.executeUpdate() != 0;
+            RepositoryBase repository = Repositories.get(relation.getRepository());
+            model instance = repository.find(id);
+            this.metadata.getRelationMetrics().record(System.nanoTime() - start, instance != null ? 1 : 0);
+            return instance;
         } catch (Exception e) {
-            System.err.println("[ERROR] An unexpected error occurred: " + e.getMessage());
-            e.printStackTrace();
+            this.metadata.getRelationMetrics().recordError(System.nanoTime() - start);
+            log.error("Unable to retrieve relation", e);
         }
-        return true;
+        return null;
     }
 
     /**
-     * Generate the update request WITHOUT any parameters defined.
-     * @return the raw sql request without any actual data to store
+     * Save an entity for the first time in the storage backend, with its creation time. The write-behind models are appended to the journal when it is started, with their journal key: they keep the id -1 until drained, their persisted hook and creation event coming with their id
+     * @return if the persist action succeed
      */
-    private String generateSQLUpdate() {
-        final String queryBase = "UPDATE " + this.table + " SET";
-        StringBuilder values = new StringBuilder();
-        final String queryWhere = "WHERE " + this.table + ".id = ?";
+    private boolean persist() {
+        log.debug(() -> "Persisting instance of " + this.getClass().getSimpleName());
+        this.stampCreation();
 
-        for (Map.Entry<String, Pair<Field, Class>> entry : this.attributes.entrySet()) {
-            values.append(", ").append(this.table).append(".").append(entry.getKey()).append(" = ?");
-        }
-        for (Map.Entry<String, Pair<Field, Class>> entry : this.relations.entrySet()) {
-            values.append(", ").append(this.table).append(".").append(entry.getKey()).append(" = ?");
+        long start = System.nanoTime();
+        try {
+            if (this.metadata.isWriteBehind()) {
+                ColumnMapping journalKey = this.metadata.getJournalKey();
+                if (journalKey.get(this) == null) journalKey.set(this, UUID.randomUUID().toString());
+                if (WriteBehind.submit(this)) {
+                    this.metadata.getPersistMetrics().record(System.nanoTime() - start, 1);
+                    return true;
+                }
+            }
+            this.id = Storage.getBackend().insert(this);
+            this.metadata.getPersistMetrics().record(System.nanoTime() - start, 1);
+            this.persisted();
+            this.publish(ChangeEvent.Kind.Created, this.id);
+            return true;
+        } catch (SQLException e) {
+            this.metadata.getPersistMetrics().recordError(System.nanoTime() - start);
+            log.error("An error occurred while persisting data: " + e.getMessage());
         }
-        return queryBase + " " + values.substring(2) + " " + queryWhere + ";";
+        return false;
     }
 
     /**
-     * Fill a prepared statement for an update using the actual instance values
-     * @param stmt the statement to fill
+     * Update an entity in the storage backend. The instance must have already been persisted to work (have an id)
+     * @return if the update action succeed
      */
-    private void assignUpdateDatas(PreparedStatement stmt) {
+    private boolean update() {
+        log.debug(() -> "Updating instance of " + this.getClass().getSimpleName() + " (" + this.id + ")");
+
+        long start = System.nanoTime();
         try {
-            int idx = 1;
-            for (Map.Entry<String, Pair<Field, Class>> entry : this.attributes.entrySet()) {
-                Method set = stmt.getClass().getMethod("set" + StringUtils.capitalize(entry.getValue().right.getSimpleName()),
-                        int.class, entry.getValue().right);
-                set.invoke(stmt, idx++, entry.getValue().left.get(this));
-            }
-            for (Map.Entry<String, Pair<Field, Class>> entry : this.relations.entrySet()) {
-                stmt.setInt(idx++, ((ModelBase) entry.getValue().left.get(this)).getId());
-            }
-            stmt.setInt(idx, this.id);
-        } catch (NoSuchMethodException e) {
-            System.err.println("[ERROR] Unable to find method to set query statement parameter. " + e.getMessage());
-        } catch (SQLException e) {
-            System.err.println("[ERROR] An error occurred while preparing updae statement: " + e.getMessage());
+            int rows = Storage.getBackend().update(this);
+            this.metadata.getUpdateMetrics().record(System.nanoTime() - start, rows);
+            if (rows != 0) this.markUpdated();
+            return rows != 0;
         } catch (Exception e) {
-            System.err.println("[ERROR] An unexpected error occurred: " + e.getMessage());
-            e.printStackTrace();
+            this.metadata.getUpdateMetrics().recordError(System.nanoTime() - start);
+            log.error("An unexpected error occurred: " + e.getMessage(), e);
         }
+        return false;
     }
 
     /**
-     * Delete an instance form the database. This action cannot be undone (but as the instance isn't deleted we can persist it again to create a new record)
+     * Delete an instance form the storage backend. This action cannot be undone (but as the instance isn't deleted we can persist it again to create a new record)
      * @return if the delete action succeed
      */
     private boolean delete() {
-        System.out.println("[INFO] Removing database entry for model " + this.getClass().getSimpleName() + " with id " + this.id);
-        String query = "DELETE FROM " + this.table + " WHERE " + this.table + ".id = ?;";
+        log.debug(() -> "Removing database entry for model " + this.getClass().getSimpleName() + " with id " + this.id);
 
+        long start = System.nanoTime();
         try {
-            Connection conn = DatabaseProvider.getDatabase();
-            PreparedStatement stmt = conn.prepareStatement(query);
-            stmt.closeOnCompletion();
-            stmt.setInt(1, this.id);
-            if (stmt.executeUpdate() == 0) {
+            if (Storage.getBackend().delete(this) == 0) {
                 throw new SQLException("Unable to delete database entry for " + this.getClass().getSimpleName() + " (" + this.id + ")");
             }
+            int id = this.id;
             this.id = -1;
+            this.metadata.getDeleteMetrics().record(System.nanoTime() - start, 1);
+            this.deleted(id);
+            this.publish(ChangeEvent.Kind.Deleted, id);
             return true;
         } catch (SQLException e) {
-            System.err.println("[ERROR] An SQL error occurred: " + e.getMessage());
-            e.printStackTrace();
+            this.metadata.getDeleteMetrics().recordError(System.nanoTime() - start);
+            log.error("An SQL error occurred: " + e.getMessage(), e);
         }
-        return true;
+        return false;
     }
 }
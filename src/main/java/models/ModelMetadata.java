@@ -0,0 +1,264 @@
+package models;
+
+import annotations.Attribute;
+import annotations.Model;
+import annotations.OneToOne;
+import converters.ConverterRegistry;
+import logging.Logger;
+import metrics.OperationMetrics;
+import metrics.PersistenceMetrics;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Reflection discoveries of a model class (table, attributes, relations and their converters). The metadata is built once per model class and shared by all the instances, so creating an entity doesn't need any reflection.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class ModelMetadata {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(ModelMetadata.class);
+
+    /**
+     * Metadata already built, indexed by model class
+     */
+    private static final Map<Class<?>, ModelMetadata> cache = new ConcurrentHashMap<>();
+
+    /**
+     * The table to persist the different entities
+     */
+    private final String table;
+
+    /**
+     * If the new entities can be inserted through the write-behind journal
+     */
+    private final boolean writeBehind;
+
+    /**
+     * List of all the attributes of the model
+     */
+    private final List<ColumnMapping> attributes;
+
+    /**
+     * List of all the relations of the model
+     */
+    private final List<ColumnMapping> relations;
+
+    /**
+     * The column deciding the shard of a new entity, null if the model doesn't have one
+     */
+    private final ColumnMapping shardKey;
+
+    /**
+     * The attribute holding the creation time of the entities, null if the model doesn't have one
+     */
+    private final ColumnMapping createdAt;
+
+    /**
+     * The attribute holding the idempotency key of the write-behind entities, null if the model doesn't have one
+     */
+    private final ColumnMapping journalKey;
+
+    /**
+     * Columns searched without index that were already reported, to warn only once per column
+     */
+    private final Set<String> reportedSearches = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Metrics of the persist, update, delete and relation loading operations of the model
+     */
+    private final OperationMetrics persistMetrics, updateMetrics, deleteMetrics, relationMetrics;
+
+    /**
+     * Constructor. Use the of method to benefit from the cache
+     * @param modelClass the model class to inspect
+     */
+    private ModelMetadata(Class<?> modelClass) {
+        Model model = modelClass.getAnnotation(Model.class);
+        this.table = model != null ? model.table() : "";
+
+        List<ColumnMapping> attributes = new ArrayList<>();
+        List<ColumnMapping> relations = new ArrayList<>();
+        for (Field field : modelClass.getDeclaredFields()) {
+            Attribute attribute = field.getAnnotation(Attribute.class);
+            OneToOne oneToOne = field.getAnnotation(OneToOne.class);
+            if (attribute != null) {
+                attributes.add(new ColumnMapping(attribute.name(), field, ConverterRegistry.resolve(field), null));
+                log.debug(() -> "Attribute " + attribute.name() + " found on " + field.getName() + " (" + field.getType().toString() + ")");
+            } else if (oneToOne != null) {
+                relations.add(new ColumnMapping(oneToOne.name(), field, null, oneToOne.repository()));
+                log.debug(() -> "Relation " + oneToOne.name() + " found on " + field.getName() + " (" + field.getType().toString() + ")");
+            }
+        }
+        this.attributes = Collections.unmodifiableList(attributes);
+        this.relations = Collections.unmodifiableList(relations);
+        this.shardKey = Stream.concat(attributes.stream(), relations.stream()).filter(ColumnMapping::isShardKey).findFirst().orElse(null);
+        this.createdAt = attributes.stream().filter(ColumnMapping::isCreatedAt).findFirst().orElse(null);
+        this.journalKey = attributes.stream().filter(ColumnMapping::isJournalKey).findFirst().orElse(null);
+
+        String name = modelClass.getSimpleName();
+        // Without idempotency key an entry drained again after a crash would be inserted twice
+        this.writeBehind = model != null && model.writeBehind() && this.journalKey != null;
+        if (model != null && model.writeBehind() && this.journalKey == null) {
+            log.warning(name + " has no JournalKey attribute, its inserts are not written behind");
+        }
+        this.persistMetrics = PersistenceMetrics.get(name, "persist");
+        this.updateMetrics = PersistenceMetrics.get(name, "update");
+        this.deleteMetrics = PersistenceMetrics.get(name, "delete");
+        this.relationMetrics = PersistenceMetrics.get(name, "loadRelation");
+    }
+
+    /**
+     * Retrieve the metadata of a model class, building it the first time
+     * @param modelClass the model class
+     * @return the metadata of the model
+     */
+    public static ModelMetadata of(Class<?> modelClass) {
+        ModelMetadata metadata = cache.get(modelClass);
+        if (metadata == null) {
+            metadata = cache.computeIfAbsent(modelClass, ModelMetadata::new);
+        }
+        return metadata;
+    }
+
+    /**
+     * Access the table of the model
+     * @return the table name
+     */
+    public String getTable() {
+        return this.table;
+    }
+
+    /**
+     * Check if the inserts of the model can be deferred to the write-behind journal (writeBehind parameter of the Model annotation, which need a JournalKey attribute)
+     * @return if the model accept write-behind inserts
+     */
+    public boolean isWriteBehind() {
+        return this.writeBehind;
+    }
+
+    /**
+     * Access the attributes of the model (Attribute annotation)
+     * @return an unmodifiable list of the attributes
+     */
+    public List<ColumnMapping> getAttributes() {
+        return this.attributes;
+    }
+
+    /**
+     * Access the relations of the model (OneToOne annotation)
+     * @return an unmodifiable list of the relations
+     */
+    public List<ColumnMapping> getRelations() {
+        return this.relations;
+    }
+
+    /**
+     * Access the column deciding the shard of a new entity (ShardKey annotation)
+     * @return the shard key mapping, or null if the model doesn't have one
+     */
+    public ColumnMapping getShardKey() {
+        return this.shardKey;
+    }
+
+    /**
+     * Access the attribute holding the creation time of the entities (CreatedAt annotation)
+     * @return the creation time mapping, or null if the model doesn't have one
+     */
+    public ColumnMapping getCreatedAt() {
+        return this.createdAt;
+    }
+
+    /**
+     * Access the attribute holding the idempotency key of the write-behind entities (JournalKey annotation)
+     * @return the journal key mapping, or null if the model doesn't have one
+     */
+    public ColumnMapping getJournalKey() {
+        return this.journalKey;
+    }
+
+    /**
+     * Find the mapping of a column
+     * @param name the column name
+     * @return the attribute or relation mapped to this column or null
+     */
+    public ColumnMapping getColumn(String name) {
+        for (ColumnMapping mapping : this.attributes) {
+            if (mapping.getName().equals(name)) return mapping;
+        }
+        for (ColumnMapping mapping : this.relations) {
+            if (mapping.getName().equals(name)) return mapping;
+        }
+        return null;
+    }
+
+    /**
+     * Find the position of a column in the rows produced by ModelBase.exportValues: 0 for the id, then the attributes and the relations in the metadata order
+     * @param name the column name
+     * @return the position of the column or -1 if the model doesn't have this column
+     */
+    public int getColumnIndex(String name) {
+        if (name.equals("id")) return 0;
+        for (int i = 0; i < this.attributes.size(); i++) {
+            if (this.attributes.get(i).getName().equals(name)) return 1 + i;
+        }
+        for (int i = 0; i < this.relations.size(); i++) {
+            if (this.relations.get(i).getName().equals(name)) return 1 + this.attributes.size() + i;
+        }
+        return -1;
+    }
+
+    /**
+     * Report, once per column, a search (findBy) on a column that is not marked as Indexed or Unique, as the search will scan the whole table
+     * @param column the searched column
+     */
+    public void checkSearchable(String column) {
+        if (column.equals("id")) return;
+        ColumnMapping mapping = this.getColumn(column);
+        if ((mapping == null || !mapping.isIndexed()) && this.reportedSearches.add(column)) {
+            log.warning("Search on the column " + this.table + "." + column + " which is not indexed (add the Indexed annotation and the index)");
+        }
+    }
+
+    /**
+     * Access the metrics of the persist operation (first save of an entity)
+     * @return the persist metrics
+     */
+    public OperationMetrics getPersistMetrics() {
+        return this.persistMetrics;
+    }
+
+    /**
+     * Access the metrics of the update operation
+     * @return the update metrics
+     */
+    public OperationMetrics getUpdateMetrics() {
+        return this.updateMetrics;
+    }
+
+    /**
+     * Access the metrics of the delete operation
+     * @return the delete metrics
+     */
+    public OperationMetrics getDeleteMetrics() {
+        return this.deleteMetrics;
+    }
+
+    /**
+     * Access the metrics of the relation loading done while importing entities
+     * @return the relation loading metrics
+     */
+    public OperationMetrics getRelationMetrics() {
+        return this.relationMetrics;
+    }
+}
@@ -0,0 +1,35 @@
+package models;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * List of the models of the application. Used by the tools working on the whole schema (schema generation and validation)
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class Models {
+
+    /**
+     * The model classes, in creation order (a model come after the models it reference)
+     */
+    private static final List<Class<? extends ModelBase>> models = Collections.unmodifiableList(Arrays.asList(
+            Account.class,
+            Transaction.class,
+            DailyTotal.class
+    ));
+
+    /**
+     * Utility class, not instantiable
+     */
+    private Models() { }
+
+    /**
+     * Access all the model classes
+     * @return an unmodifiable list of the model classes
+     */
+    public static List<Class<? extends ModelBase>> all() {
+        return models;
+    }
+}
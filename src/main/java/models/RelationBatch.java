@@ -0,0 +1,165 @@
+package models;
+
+import repositories.Repositories;
+import repositories.RepositoryBase;
+import utils.IntArrayList;
+import utils.IntHashSet;
+import utils.IntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loader of the relations of the entities read as a list: instead of one request per row, the relations are only recorded while the rows are read, then resolve group their ids by related model and load each model with one request on all its ids (an IN request, see StorageBackend.findByIds). Each related entity is read once per batch and shared by every entity pointing to it (the same account for the hundreds of transactions of a history). The entities are keyed by their primitive id, per model class.
+ * A batch is bound to the current thread and opened by the repositories around their list requests. The batches can be nested, the outermost one holding the pending relations and the loaded entities until it is resolved and closed:
+ * <pre>
+ * RelationBatch batch = RelationBatch.open();
+ * try {
+ *     entities = ...;
+ *     batch.resolve();
+ * } finally {
+ *     batch.close();
+ * }
+ * </pre>
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class RelationBatch implements AutoCloseable {
+
+    /**
+     * Batch of each thread, null when none is opened
+     */
+    private static final ThreadLocal<RelationBatch> current = new ThreadLocal<>();
+
+    /**
+     * Loaded entities by model class then id. The missing entities are stored as null
+     */
+    private final Map<Class<?>, IntObjectHashMap<ModelBase>> loaded = new HashMap<>();
+
+    /**
+     * Entities waiting for a relation, with the relation and the related id at the same position
+     */
+    private List<ModelBase> owners = new ArrayList<>();
+
+    /**
+     * Relations waiting to be set
+     */
+    private List<ColumnMapping> relations = new ArrayList<>();
+
+    /**
+     * Ids of the related entities waiting to be set
+     */
+    private IntArrayList ids = new IntArrayList();
+
+    /**
+     * Number of times the batch is opened on its thread
+     */
+    private int depth;
+
+    /**
+     * Constructor. Use open instead
+     */
+    private RelationBatch() { }
+
+    /**
+     * Open a batch on the current thread, or join the one already opened
+     * @return the batch, to resolve then close once the entities are read
+     */
+    public static RelationBatch open() {
+        RelationBatch batch = current.get();
+        if (batch == null) {
+            batch = new RelationBatch();
+            current.set(batch);
+        }
+        batch.depth++;
+        return batch;
+    }
+
+    /**
+     * Load the pending relations and set them on their entities, one request per related model. The entities loaded this way get their own relations resolved as well. Does nothing in a nested batch: the outermost one resolve everything at once
+     */
+    public void resolve() {
+        if (this.depth > 1) return;
+        while (!this.owners.isEmpty()) {
+            List<ModelBase> owners = this.owners;
+            List<ColumnMapping> relations = this.relations;
+            IntArrayList ids = this.ids;
+            this.owners = new ArrayList<>();
+            this.relations = new ArrayList<>();
+            this.ids = new IntArrayList();
+
+            Map<Class<?>, IntHashSet> missing = new HashMap<>();
+            Map<Class<?>, ColumnMapping> mappings = new HashMap<>();
+            for (int i = 0; i < owners.size(); i++) {
+                Class<?> type = relations.get(i).getField().getType();
+                if (this.entities(type).containsKey(ids.get(i))) continue;
+                missing.computeIfAbsent(type, k -> new IntHashSet()).add(ids.get(i));
+                mappings.putIfAbsent(type, relations.get(i));
+            }
+            for (Map.Entry<Class<?>, IntHashSet> entry : missing.entrySet()) {
+                this.load(entry.getKey(), mappings.get(entry.getKey()), entry.getValue().toArray());
+            }
+            for (int i = 0; i < owners.size(); i++) {
+                relations.get(i).set(owners.get(i), this.entities(relations.get(i).getField().getType()).get(ids.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Close the batch, releasing the loaded entities when it is the outermost one. The relations not resolved yet are left unset
+     */
+    @Override
+    public void close() {
+        if (--this.depth == 0) current.remove();
+    }
+
+    /**
+     * Record a relation to set once the current batch is resolved, or set it right away if the related entity is already loaded
+     * @param owner the entity holding the relation
+     * @param relation the relation
+     * @param id the id of the related entity
+     * @return false if no batch is opened on the thread, the caller loading the relation itself
+     */
+    static boolean defer(ModelBase owner, ColumnMapping relation, int id) {
+        RelationBatch batch = current.get();
+        if (batch == null) return false;
+        IntObjectHashMap<ModelBase> entities = batch.entities(relation.getField().getType());
+        if (id < 1 || entities.containsKey(id)) {
+            relation.set(owner, id < 1 ? null : entities.get(id));
+        } else {
+            batch.owners.add(owner);
+            batch.relations.add(relation);
+            batch.ids.add(id);
+        }
+        return true;
+    }
+
+    /**
+     * Load the entities of a model through the repository of a relation pointing to it
+     * @param modelClass the model class
+     * @param relation a relation to the model
+     * @param ids the ids to load
+     */
+    @SuppressWarnings("unchecked")
+    private void load(Class<?> modelClass, ColumnMapping relation, int[] ids) {
+        RepositoryBase repository = Repositories.get(relation.getRepository());
+        IntObjectHashMap<ModelBase> entities = this.entities(modelClass);
+        for (ModelBase entity : repository.<ModelBase>findByIds(ids)) {
+            entities.put(entity.getId(), entity);
+        }
+        for (int id : ids) {
+            if (!entities.containsKey(id)) entities.put(id, null);
+        }
+    }
+
+    /**
+     * Retrieve the loaded entities of a model
+     * @param modelClass the model class
+     * @return the entities by id
+     */
+    private IntObjectHashMap<ModelBase> entities(Class<?> modelClass) {
+        return this.loaded.computeIfAbsent(modelClass, k -> new IntObjectHashMap<>());
+    }
+}
@@ -1,18 +1,26 @@
 package models;
 
 import annotations.Attribute;
+import annotations.CreatedAt;
+import annotations.Indexed;
+import annotations.JournalKey;
 import annotations.Model;
 import annotations.OneToOne;
+import annotations.ShardKey;
 import repositories.AccountRepository;
+import repositories.DailyTotalRepository;
+import repositories.Repositories;
+import utils.Money;
 
 import java.security.InvalidParameterException;
+import java.time.Instant;
 
 /**
  * Transaction model. Use to access data concerning users transactions (transfers / withdraws)
  * @author Antoine FORET
  * @version 1.0
  */
-@Model(table = "transactions")
+@Model(table = "transactions", writeBehind = true)
 public class Transaction extends ModelBase {
 
     public enum TransactionType {
@@ -24,25 +32,44 @@ public class Transaction extends ModelBase {
      * The amount of the transaction. Always positive.
      */
     @Attribute(name = "amount")
-    protected float amount;
+    protected Money amount;
 
     /**
      * The initiator of the transaction
      */
+    @Indexed
+    @ShardKey
     @OneToOne(name = "initiator_id", repository = AccountRepository.class)
     protected Account initiator;
 
     /**
      * The recipient of the transaction
      */
+    @Indexed
     @OneToOne(name = "recipient_id", repository = AccountRepository.class)
     protected Account recipient;
 
     /**
-     * The type of transaction. Could be either transfer or withdraw. The type field is not modifiable.
+     * The type of transaction. Could be either transfer or withdraw. The type field is not modifiable. It is stored by name in database.
      */
+    @Indexed
     @Attribute(name = "type")
-    protected String type;
+    protected TransactionType type;
+
+    /**
+     * The time the transaction was saved. The transactions table is partitioned by month on this column.
+     */
+    @CreatedAt
+    @Attribute(name = "created_at")
+    protected Instant createdAt;
+
+    /**
+     * Idempotency key of the transaction, set when it is appended to the write-behind journal
+     */
+    @Indexed
+    @JournalKey
+    @Attribute(name = "journal_key")
+    protected String journalKey;
 
     /**
      * Default constructor needed by the model annotation. This constructor shouldn't be used directly.
@@ -56,14 +83,14 @@ public class Transaction extends ModelBase {
      * @param receiver the recipient of the transfer. This value must be defined and not null.
      * @param amount the amount of the transfer. This value must be positive
      */
-    public Transaction(Account sender, Account receiver, float amount) {
+    public Transaction(Account sender, Account receiver, Money amount) {
         if (sender == null) throw new InvalidParameterException("Sender shouldn't be null");
         if (receiver == null) throw new InvalidParameterException("Receiver shouldn't be null");
-        if (amount <= 0) throw new InvalidParameterException("Amount must be strictly positive");
+        if (amount == null || !amount.isPositive()) throw new InvalidParameterException("Amount must be strictly positive");
         this.amount = amount;
         this.initiator = sender;
         this.recipient = receiver;
-        this.type = TransactionType.Transfer.name();
+        this.type = TransactionType.Transfer;
     }
 
     /**
@@ -72,13 +99,13 @@ public class Transaction extends ModelBase {
      * @param account the account concerned. This value must be defined and not null.
      * @param amount the amount of the withdraw. This value must be positive.
      */
-    public Transaction(Account account, float amount) {
+    public Transaction(Account account, Money amount) {
         if (account == null) throw new InvalidParameterException("Account shouldn't be null");
-        if (amount <= 0) throw new InvalidParameterException("Amount must be strictly positive");
+        if (amount == null || !amount.isPositive()) throw new InvalidParameterException("Amount must be strictly positive");
         this.initiator = account;
         this.recipient = account;
         this.amount = amount;
-        this.type = TransactionType.Withdraw.name();
+        this.type = TransactionType.Withdraw;
     }
 
     /**
@@ -118,7 +145,7 @@ public class Transaction extends ModelBase {
      * Define the amount of the transaction. If the amount is not strictly positive, no change occur
      * @param amount the new amount of the transaction
      */
-    public void setAmount(float amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 
@@ -126,7 +153,7 @@ public class Transaction extends ModelBase {
      * Access the amount of the transaction
      * @return the current amount of the transaction
      */
-    public float getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
@@ -135,6 +162,23 @@ public class Transaction extends ModelBase {
      * @return the type of the transaction
      */
     public TransactionType getType() {
-        return TransactionType.valueOf(this.type);
+        return this.type;
+    }
+
+    /**
+     * Get the time the transaction was saved
+     * @return the creation time, null until the transaction is saved
+     */
+    public Instant getCreatedAt() {
+        return this.createdAt;
+    }
+
+    /**
+     * Add the new transaction to the daily totals of its accounts
+     * @see repositories.DailyTotalRepository#record(Transaction)
+     */
+    @Override
+    protected void persisted() {
+        Repositories.get(DailyTotalRepository.class).record(this);
     }
 }
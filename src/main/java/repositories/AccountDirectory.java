@@ -0,0 +1,619 @@
+package repositories;
+
+import events.ChangeEvent;
+import events.EventBus;
+import logging.Logger;
+import models.Account;
+import storage.Storage;
+import utils.Configuration;
+import utils.IntArrayList;
+import utils.IntHashSet;
+import utils.Money;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Directory of all the accounts (id, identifier and a snapshot of the balance) kept outside of the Java heap, so the transfers find their recipient without searching the accounts table and millions of accounts don't weigh on the garbage collector.
+ * Each account is a fixed-width record (id, balance in minor units, identifier length and UTF-8 bytes, at most "otto.accountDirectory.identifierBytes" (32) bytes, longer identifiers are not kept) in direct buffers of 65536 records. Two open-addressing tables, also in direct buffers, index the records by id and by identifier hash. The heap only hold the few buffer objects.
+ * The directory is loaded page by page from the AccountRepository by a background thread, which then read the new accounts every "otto.accountDirectory.refreshMs" milliseconds (5000) and read every account again once every "otto.accountDirectory.resyncEvery" refreshes (120) to catch the balances changed by the other terminals. The new accounts are searched after the greatest id read in each range of ids of the storage (one per shard, see StorageBackend.idRanges). The accounts saved or deleted by this process are applied immediately, through the event bus, and a page read never overwrite the accounts changed by an event since it was requested. Disable it with "otto.accountDirectory.enabled=false".
+ * The balance is only a snapshot for display: the writes always load the account itself.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class AccountDirectory {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(AccountDirectory.class);
+
+    /**
+     * If the directory is maintained
+     */
+    private static final boolean enabled = Configuration.getBoolean("otto.accountDirectory.enabled", true);
+
+    /**
+     * Time between two refreshes in milliseconds
+     */
+    private static final long refreshMillis = Configuration.getLong("otto.accountDirectory.refreshMs", 5000);
+
+    /**
+     * Number of refreshes between two full reads
+     */
+    private static final int resyncEvery = Math.max(1, Configuration.getInt("otto.accountDirectory.resyncEvery", 120));
+
+    /**
+     * Number of accounts read per request
+     */
+    private static final int pageSize = 10_000;
+
+    /**
+     * Number of records per buffer (power of two)
+     */
+    private static final int chunkShift = 16;
+
+    /**
+     * The directory of the application
+     */
+    private static final AccountDirectory instance = new AccountDirectory(Math.min(255, Configuration.getInt("otto.accountDirectory.identifierBytes", 32)));
+
+    /**
+     * Record layout: id (int), balance (long), identifier length (byte) then the identifier bytes
+     */
+    private static final int idOffset = 0, balanceOffset = 4, lengthOffset = 12, identifierOffset = 13;
+
+    /**
+     * Maximal length of an identifier in UTF-8 bytes
+     */
+    private final int identifierBytes;
+
+    /**
+     * Size of a record in bytes
+     */
+    private final int recordSize;
+
+    /**
+     * Buffers of the records
+     */
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+
+    /**
+     * Number of records used (the records of the deleted accounts are not reused)
+     */
+    private int records;
+
+    /**
+     * Number of live accounts
+     */
+    private int size;
+
+    /**
+     * Number of used entries of the indexes, the removed ones included
+     */
+    private int occupied;
+
+    /**
+     * Index by id: pairs of (id, record + 1), 0 being an empty entry and a record of 0 a deleted account
+     */
+    private IntBuffer idIndex;
+
+    /**
+     * Index by identifier: pairs of (identifier hash, record + 1), 0 being an empty entry and -1 a removed one
+     */
+    private IntBuffer identifierIndex;
+
+    /**
+     * Number of entries of each index (power of two)
+     */
+    private int capacity;
+
+    /**
+     * First id of each range of ids of the storage
+     */
+    private int[] rangeStarts = {1};
+
+    /**
+     * Greatest id read from the repository in each range, the next refresh start after it (0 when nothing was read)
+     */
+    private int[] lastIds = {0};
+
+    /**
+     * Ids changed by the events of this process since the page being read was requested, which it must not overwrite. Null outside of a read
+     */
+    private IntHashSet touched;
+
+    /**
+     * Guard of the buffers, the lookups sharing the read lock
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructor
+     * @param identifierBytes the maximal length of an identifier in UTF-8 bytes (at most 255)
+     */
+    AccountDirectory(int identifierBytes) {
+        this.identifierBytes = identifierBytes;
+        this.recordSize = identifierOffset + identifierBytes;
+        this.allocateIndexes(1 << 10);
+    }
+
+    /**
+     * Access the directory of the application
+     * @return the directory, or null when it is disabled
+     */
+    public static AccountDirectory get() {
+        return enabled ? instance : null;
+    }
+
+    /**
+     * Start the background thread loading then refreshing the directory. Does nothing when it is disabled
+     */
+    public static void start() {
+        if (!enabled) return;
+        EventBus.subscribe(Account.class, instance::apply);
+        Thread loader = new Thread(() -> {
+            AccountRepository repository = Repositories.get(AccountRepository.class);
+            for (long refresh = 0; ; refresh++) {
+                try {
+                    long start = System.nanoTime();
+                    boolean full = refresh % resyncEvery == 0;
+                    int read = instance.refresh(repository, full);
+                    if (full) log.debug(() -> "Account directory read " + read + " accounts in " + (System.nanoTime() - start) / 1_000_000 + " ms, " + instance.size() + " accounts using " + instance.offHeapBytes() / 1024 + " KB off-heap");
+                    Thread.sleep(refreshMillis);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    log.error("Unable to refresh the account directory", e);
+                }
+            }
+        }, "otto-account-directory");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Read the accounts from the repository, page by page. The balance changes found (made by other terminals) are published on the event bus, as changes without entity. A full read also removes the accounts that are no longer in the repository (deleted by other terminals), published as deletions without entity
+     * @param repository the account repository
+     * @param full if every account is read, else only the accounts created since the last read, in each range of ids
+     * @return the number of accounts read
+     */
+    int refresh(AccountRepository repository, boolean full) {
+        int[] starts = Storage.getBackend().idRanges();
+        if (!Arrays.equals(starts, this.rangeStarts)) {
+            this.rangeStarts = starts;
+            this.lastIds = new int[starts.length];
+            full = true;
+        }
+        int read = 0;
+        IntHashSet seen = null;
+        int known = 0;
+        if (full) {
+            this.lock.readLock().lock();
+            try {
+                seen = new IntHashSet(this.size);
+                known = this.records;
+            } finally {
+                this.lock.readLock().unlock();
+            }
+            read = this.read(repository, 0, Integer.MAX_VALUE, seen);
+        } else {
+            for (int range = 0; range < starts.length; range++) {
+                int end = range + 1 < starts.length ? starts[range + 1] : Integer.MAX_VALUE;
+                read += this.read(repository, Math.max(this.lastIds[range], starts[range] - 1), end, null);
+            }
+        }
+        if (full) this.removeMissing(seen, known);
+        return read;
+    }
+
+    /**
+     * Read the accounts of a range of ids, page by page, and record the greatest id read in each range
+     * @param repository the account repository
+     * @param afterId the id after which the read start
+     * @param end the id at which the read stop (excluded)
+     * @param seen the set receiving the ids read, or null
+     * @return the number of accounts read
+     */
+    private int read(AccountRepository repository, int afterId, int end, IntHashSet seen) {
+        int read = 0;
+        while (true) {
+            this.lock.writeLock().lock();
+            try {
+                this.touched = new IntHashSet();
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+            List<Object[]> page = repository.findDirectoryPage(afterId, pageSize);
+            IntArrayList changed = new IntArrayList();
+            boolean ended = page.size() < pageSize;
+            for (Object[] row : page) {
+                int id = (Integer) row[0];
+                if (id >= end) {
+                    ended = true;
+                    break;
+                }
+                if (this.putRead(id, (String) row[1], (Money) row[2])) changed.add(id);
+                afterId = id;
+                if (seen != null) seen.add(id);
+                read++;
+            }
+            this.lock.writeLock().lock();
+            try {
+                this.touched = null;
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+            for (int i = 0; i < changed.size(); i++) {
+                EventBus.publish(new ChangeEvent<>(ChangeEvent.Kind.Updated, Account.class, changed.get(i), null));
+            }
+            if (ended) return read;
+        }
+    }
+
+    /**
+     * Apply an account read from the repository, unless an event of this process changed it since its page was requested. Record its id as read in its range
+     * @param id the account id
+     * @param identifier the account identifier
+     * @param balance the account balance
+     * @return if the account was already in the directory with another balance
+     */
+    private boolean putRead(int id, String identifier, Money balance) {
+        this.lock.writeLock().lock();
+        try {
+            int range = Arrays.binarySearch(this.rangeStarts, id);
+            if (range < 0) range = -range - 2;
+            if (range >= 0) this.lastIds[range] = Math.max(this.lastIds[range], id);
+            return !this.touched.contains(id) && this.put(id, identifier, balance);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the accounts not found by a full read. Only the records existing when the read started are checked, the accounts added by this process meanwhile may not have been read
+     * @param seen the ids read
+     * @param known the number of records when the read started
+     */
+    private void removeMissing(IntHashSet seen, int known) {
+        IntArrayList missing = new IntArrayList();
+        this.lock.readLock().lock();
+        try {
+            for (int record = 0; record < known; record++) {
+                int id = this.chunk(record).getInt(this.offset(record) + idOffset);
+                if (id != 0 && !seen.contains(id)) missing.add(id);
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        for (int i = 0; i < missing.size(); i++) {
+            this.remove(missing.get(i));
+            EventBus.publish(new ChangeEvent<>(ChangeEvent.Kind.Deleted, Account.class, missing.get(i), null));
+        }
+    }
+
+    /**
+     * Find the id of an account
+     * @param identifier the account identifier
+     * @return the id, or -1 if the account is not in the directory
+     */
+    public int findId(String identifier) {
+        if (identifier == null) return -1;
+        byte[] bytes = identifier.getBytes(StandardCharsets.UTF_8);
+        this.lock.readLock().lock();
+        try {
+            int record = this.findIdentifier(identifier.hashCode(), bytes);
+            return record < 0 ? -1 : this.chunk(record).getInt(this.offset(record) + idOffset);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the identifier of an account
+     * @param id the account id
+     * @return the identifier, or null if the account is not in the directory
+     */
+    public String getIdentifier(int id) {
+        this.lock.readLock().lock();
+        try {
+            int record = this.findRecord(id);
+            return record < 0 ? null : this.identifierAt(record);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the last known balance of an account
+     * @param id the account id
+     * @return the balance snapshot, or null if the account is not in the directory
+     */
+    public Money getBalance(int id) {
+        this.lock.readLock().lock();
+        try {
+            int record = this.findRecord(id);
+            return record < 0 ? null : Money.ofMinorUnits(this.chunk(record).getLong(this.offset(record) + balanceOffset));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of accounts in the directory
+     * @return the number of accounts
+     */
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Memory used outside of the heap by the records and the indexes
+     * @return the number of bytes
+     */
+    public long offHeapBytes() {
+        this.lock.readLock().lock();
+        try {
+            return ((long) this.chunks.length * this.recordSize << chunkShift) + (long) this.capacity * 16;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Apply a change of an account saved by this process. The changes detected in the storage (without entity) are already applied
+     * @param event the change
+     */
+    private void apply(ChangeEvent<Account> event) {
+        Account account = event.getEntity();
+        if (account == null) return;
+        this.lock.writeLock().lock();
+        try {
+            if (this.touched != null) this.touched.add(event.getId());
+            if (event.getKind() == ChangeEvent.Kind.Deleted) {
+                this.remove(event.getId());
+            } else if (event.getId() > 0) {
+                this.put(event.getId(), account.getIdentifier(), account.getBalance());
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add or update an account
+     * @param id the account id
+     * @param identifier the account identifier
+     * @param balance the account balance
+     * @return if the account was already in the directory with another balance
+     */
+    boolean put(int id, String identifier, Money balance) {
+        byte[] bytes = identifier != null ? identifier.getBytes(StandardCharsets.UTF_8) : null;
+        this.lock.writeLock().lock();
+        try {
+            int record = this.findRecord(id);
+            if (bytes == null || bytes.length > this.identifierBytes) {
+                if (record >= 0) this.remove(id);
+                return false;
+            }
+            if (record >= 0 && !this.identifierEquals(record, bytes)) {
+                this.remove(id);
+                record = -1;
+            }
+            boolean existing = record >= 0;
+            if (record < 0) {
+                if ((this.occupied + 1) * 2 > this.capacity) this.allocateIndexes((this.size + 1) * 4 > this.capacity ? this.capacity * 2 : this.capacity);
+                record = this.records++;
+                if (record >> chunkShift == this.chunks.length) {
+                    this.chunks = Arrays.copyOf(this.chunks, this.chunks.length + 1);
+                    this.chunks[this.chunks.length - 1] = ByteBuffer.allocateDirect(this.recordSize << chunkShift).order(ByteOrder.nativeOrder());
+                }
+                ByteBuffer chunk = this.chunk(record);
+                int offset = this.offset(record);
+                chunk.putInt(offset + idOffset, id);
+                chunk.put(offset + lengthOffset, (byte) bytes.length);
+                for (int i = 0; i < bytes.length; i++) {
+                    chunk.put(offset + identifierOffset + i, bytes[i]);
+                }
+                this.insertId(id, record);
+                this.insertIdentifier(identifier.hashCode(), record);
+                this.size++;
+                this.occupied++;
+            }
+            long minorUnits = balance != null ? balance.getMinorUnits() : 0;
+            boolean changed = existing && this.chunk(record).getLong(this.offset(record) + balanceOffset) != minorUnits;
+            this.chunk(record).putLong(this.offset(record) + balanceOffset, minorUnits);
+            return changed;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove an account
+     * @param id the account id
+     */
+    public void remove(int id) {
+        this.lock.writeLock().lock();
+        try {
+            int record = this.findRecord(id);
+            if (record < 0) return;
+            int mask = this.capacity - 1;
+            for (int pos = this.idSlot(id); ; pos = (pos + 1) & mask) {
+                if (this.idIndex.get(pos * 2) == id) {
+                    this.idIndex.put(pos * 2 + 1, 0);
+                    break;
+                }
+            }
+            for (int pos = mix(this.identifierAt(record).hashCode()) & mask; ; pos = (pos + 1) & mask) {
+                if (this.identifierIndex.get(pos * 2 + 1) == record + 1) {
+                    this.identifierIndex.put(pos * 2 + 1, -1);
+                    break;
+                }
+            }
+            this.chunk(record).putInt(this.offset(record) + idOffset, 0);
+            this.size--;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the record of an id
+     * @param id the account id
+     * @return the record, or -1
+     */
+    private int findRecord(int id) {
+        int mask = this.capacity - 1;
+        for (int pos = this.idSlot(id); ; pos = (pos + 1) & mask) {
+            int key = this.idIndex.get(pos * 2);
+            if (key == 0) return -1;
+            if (key == id) return this.idIndex.get(pos * 2 + 1) - 1;
+        }
+    }
+
+    /**
+     * Find the record of an identifier
+     * @param hash the hash code of the identifier
+     * @param bytes the UTF-8 bytes of the identifier
+     * @return the record, or -1
+     */
+    private int findIdentifier(int hash, byte[] bytes) {
+        int mask = this.capacity - 1;
+        for (int pos = mix(hash) & mask; ; pos = (pos + 1) & mask) {
+            int record = this.identifierIndex.get(pos * 2 + 1) - 1;
+            if (record == -1) return -1;
+            if (record >= 0 && this.identifierIndex.get(pos * 2) == hash && this.identifierEquals(record, bytes)) return record;
+        }
+    }
+
+    /**
+     * Read the identifier of a record
+     * @param record the record
+     * @return the identifier
+     */
+    private String identifierAt(int record) {
+        ByteBuffer chunk = this.chunk(record);
+        int offset = this.offset(record);
+        byte[] bytes = new byte[chunk.get(offset + lengthOffset) & 0xFF];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = chunk.get(offset + identifierOffset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Check the identifier of a record
+     * @param record the record
+     * @param bytes the UTF-8 bytes of the identifier
+     * @return if the record hold this identifier
+     */
+    private boolean identifierEquals(int record, byte[] bytes) {
+        ByteBuffer chunk = this.chunk(record);
+        int offset = this.offset(record);
+        if ((chunk.get(offset + lengthOffset) & 0xFF) != bytes.length) return false;
+        for (int i = 0; i < bytes.length; i++) {
+            if (chunk.get(offset + identifierOffset + i) != bytes[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Add an entry to the id index
+     * @param id the account id
+     * @param record the record
+     */
+    private void insertId(int id, int record) {
+        int mask = this.capacity - 1;
+        int pos = this.idSlot(id);
+        while (this.idIndex.get(pos * 2) != 0 && this.idIndex.get(pos * 2) != id) {
+            pos = (pos + 1) & mask;
+        }
+        this.idIndex.put(pos * 2, id);
+        this.idIndex.put(pos * 2 + 1, record + 1);
+    }
+
+    /**
+     * Add an entry to the identifier index, reusing the first removed entry of the probe sequence
+     * @param hash the hash code of the identifier
+     * @param record the record
+     */
+    private void insertIdentifier(int hash, int record) {
+        int mask = this.capacity - 1;
+        int pos = mix(hash) & mask;
+        while (this.identifierIndex.get(pos * 2 + 1) > 0) {
+            pos = (pos + 1) & mask;
+        }
+        this.identifierIndex.put(pos * 2, hash);
+        this.identifierIndex.put(pos * 2 + 1, record + 1);
+    }
+
+    /**
+     * Allocate the indexes with a new capacity and index the live records again, dropping the removed entries
+     * @param capacity the number of entries (power of two)
+     */
+    private void allocateIndexes(int capacity) {
+        IntBuffer identifiers = this.identifierIndex;
+        int previous = this.capacity;
+        this.capacity = capacity;
+        this.occupied = this.size;
+        this.idIndex = ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asIntBuffer();
+        this.identifierIndex = ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asIntBuffer();
+        for (int pos = 0; pos < previous; pos++) {
+            int record = identifiers.get(pos * 2 + 1) - 1;
+            if (record < 0) continue;
+            this.insertId(this.chunk(record).getInt(this.offset(record) + idOffset), record);
+            this.insertIdentifier(identifiers.get(pos * 2), record);
+        }
+    }
+
+    /**
+     * Find the first entry of the probe sequence of an id
+     * @param id the account id
+     * @return the entry position
+     */
+    private int idSlot(int id) {
+        return mix(id) & (this.capacity - 1);
+    }
+
+    /**
+     * Access the buffer of a record
+     * @param record the record
+     * @return the buffer holding it
+     */
+    private ByteBuffer chunk(int record) {
+        return this.chunks[record >>> chunkShift];
+    }
+
+    /**
+     * Find the position of a record in its buffer
+     * @param record the record
+     * @return the offset in bytes
+     */
+    private int offset(int record) {
+        return (record & ((1 << chunkShift) - 1)) * this.recordSize;
+    }
+
+    /**
+     * Spread the bits of a hash code (murmur3 finalizer), as the ids are sequential
+     * @param hash the hash code
+     * @return the mixed hash
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
+}
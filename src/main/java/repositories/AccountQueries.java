@@ -0,0 +1,21 @@
+package repositories;
+
+import annotations.Repository;
+import models.Account;
+
+/**
+ * Searches on the accounts, implemented at compilation by processor.QueryProcessor (class AccountQueriesImpl). Retrieve it with Repositories.queries
+ * @see models.Account
+ * @author Antoine FORET
+ * @version 1.0
+ */
+@Repository(model = Account.class)
+public interface AccountQueries {
+
+    /**
+     * Search an account by its identifier
+     * @param identifier the account identifier
+     * @return the account, or null if there is no such account
+     */
+    Account findByIdentifier(String identifier);
+}
@@ -2,6 +2,9 @@ package repositories;
 
 import annotations.Repository;
 import models.Account;
+import security.Credentials;
+
+import java.util.List;
 
 /**
  * Account repository. Used to retrieve accounts from database and create java instances
@@ -11,4 +14,26 @@ import models.Account;
  */
 @Repository(model = Account.class)
 public class AccountRepository extends RepositoryBase {
+
+    /**
+     * Retrieve the login data of an account (id and password hash) without loading the whole account
+     * @param identifier the account identifier
+     * @return the credentials of the account or null if there is no such account
+     */
+    public Credentials findCredentials(String identifier) {
+        List<Object[]> rows = this.select("identifier", identifier, "id", "password_hash");
+        if (rows.isEmpty()) return null;
+        return new Credentials((Integer) rows.get(0)[0], (String) rows.get(0)[1]);
+    }
+
+    /**
+     * Read a page of the account directory (id, identifier and balance), without loading the accounts
+     * @param afterId the id after which the page start (0 for the first page)
+     * @param limit the maximal number of accounts
+     * @return the rows {id, identifier, balance} by increasing id
+     * @see AccountDirectory
+     */
+    public List<Object[]> findDirectoryPage(int afterId, int limit) {
+        return this.scan(afterId, limit, "id", "identifier", "balance");
+    }
 }
@@ -0,0 +1,265 @@
+package repositories;
+
+import annotations.Repository;
+import logging.Logger;
+import models.Account;
+import models.DailyTotal;
+import models.DailyTotal.Direction;
+import models.Transaction;
+import storage.Storage;
+import storage.StorageBackend;
+import utils.Configuration;
+import utils.Money;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjuster;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Daily total repository. Maintain the per account, per day and per direction aggregates of the transactions and roll them up over periods, reading one row per active day and direction of the account instead of every transaction
+ * The totals are written after their transaction, so a crash in between miss them: run it directly (gradle rebuildDailyTotals) to rebuild them from the transactions table.
+ * @see models.DailyTotal
+ * @author Antoine FORET
+ * @version 1.0
+ */
+@Repository(model = DailyTotal.class)
+public class DailyTotalRepository extends RepositoryBase {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(DailyTotalRepository.class);
+
+    /**
+     * Columns identifying the total of an account, a day and a direction
+     */
+    private static final String[] keyColumns = {"account_id", "day", "direction"};
+
+    /**
+     * Columns summed for each new transaction
+     */
+    private static final String[] addedColumns = {"total", "count"};
+
+    /**
+     * Number of rows read at once when the totals are rebuilt
+     */
+    private static final int rebuildPageSize = Configuration.getInt("otto.dailyTotals.rebuildPageSize", 1000);
+
+    /**
+     * Rebuild the daily totals from the transactions table
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        int fixed = Repositories.get(DailyTotalRepository.class).rebuild();
+        if (fixed >= 0) log.info(fixed + " daily totals rebuilt");
+        System.exit(fixed < 0 ? 1 : 0);
+    }
+
+    /**
+     * Add a new transaction to the totals of its accounts for the day it was created (in the local time zone). Each total is incremented in place, or created with the first transaction of the day, in one write relying on the unique (account_id, day, direction) key, so concurrent sessions never duplicate a total
+     * @param transaction the transaction just saved
+     */
+    public void record(Transaction transaction) {
+        LocalDate day = dayOf(transaction.getCreatedAt());
+        if (transaction.getType() == Transaction.TransactionType.Withdraw) {
+            this.add(new DailyTotal(transaction.getInitiator(), day, Direction.Withdrawn, transaction.getAmount()));
+        } else {
+            this.add(new DailyTotal(transaction.getInitiator(), day, Direction.Sent, transaction.getAmount()));
+            this.add(new DailyTotal(transaction.getRecipient(), day, Direction.Received, transaction.getAmount()));
+        }
+    }
+
+    /**
+     * Sum the totals of an account over a range of days, grouped by period. Only the rows of the range are read, through the (account_id, day, direction) index
+     * @param account the account
+     * @param from the first day of the range
+     * @param to the last day of the range (included)
+     * @param period the adjuster giving the first day of the period of a day, like TemporalAdjusters.firstDayOfMonth() (a day is its own period with d -&gt; d)
+     * @return the totals of each period having transactions, by first day of the period
+     */
+    public SortedMap<LocalDate, Map<Direction, Money>> rollup(Account account, LocalDate from, LocalDate to, TemporalAdjuster period) {
+        SortedMap<LocalDate, Map<Direction, Money>> result = new TreeMap<>();
+        List<DailyTotal> totals = this.findBetween("account_id", account, "day", (int) from.toEpochDay(), (int) to.toEpochDay() + 1);
+        for (DailyTotal total : totals) {
+            LocalDate start = total.getDay().with(period);
+            result.computeIfAbsent(start, k -> new EnumMap<>(Direction.class)).merge(total.getDirection(), total.getTotal(), Money::plus);
+        }
+        return result;
+    }
+
+    /**
+     * Sum the totals of an account over a range of days
+     * @param account the account
+     * @param from the first day of the range
+     * @param to the last day of the range (included)
+     * @return the total of each direction, zero when there is no transaction
+     */
+    public Map<Direction, Money> totals(Account account, LocalDate from, LocalDate to) {
+        Map<Direction, Money> result = new EnumMap<>(Direction.class);
+        for (Direction direction : Direction.values()) {
+            result.put(direction, Money.ZERO);
+        }
+        for (Map<Direction, Money> totals : this.rollup(account, from, to, day -> from).values()) {
+            totals.forEach((direction, amount) -> result.merge(direction, amount, Money::plus));
+        }
+        return result;
+    }
+
+    /**
+     * Reconcile the stored totals with the transactions table: the wrong totals are corrected, the missing ones stored and the ones without transactions deleted. Both tables are read by pages. A transaction saved meanwhile may be missed or counted twice, so it is meant to be run while the terminals are idle
+     * @return the number of totals changed, -1 if the storage failed
+     */
+    public int rebuild() {
+        StorageBackend backend = Storage.getBackend();
+        try {
+            Map<String, Sums> expected = new HashMap<>();
+            String[] transactionColumns = {"id", "initiator_id", "recipient_id", "type", "amount", "created_at"};
+            List<Object[]> page;
+            for (int after = 0; !(page = backend.scan(Transaction.class, transactionColumns, after, rebuildPageSize)).isEmpty(); ) {
+                for (Object[] row : page) {
+                    after = (Integer) row[0];
+                    int day = (int) dayOf((Instant) row[5]).toEpochDay();
+                    Money amount = (Money) row[4];
+                    if (row[3] == Transaction.TransactionType.Withdraw) {
+                        Sums.add(expected, (Integer) row[1], day, Direction.Withdrawn, amount);
+                    } else {
+                        Sums.add(expected, (Integer) row[1], day, Direction.Sent, amount);
+                        Sums.add(expected, (Integer) row[2], day, Direction.Received, amount);
+                    }
+                }
+            }
+
+            int fixed = 0;
+            String[] totalColumns = {"id", "account_id", "day", "direction", "total", "count"};
+            for (int after = 0; !(page = backend.scan(DailyTotal.class, totalColumns, after, rebuildPageSize)).isEmpty(); ) {
+                for (Object[] row : page) {
+                    after = (Integer) row[0];
+                    Sums sums = expected.remove(Sums.key((Integer) row[1], (Integer) row[2], (Direction) row[3]));
+                    if (sums != null && sums.minorUnits == ((Money) row[4]).getMinorUnits() && sums.count == (Integer) row[5]) continue;
+                    DailyTotal total = this.find(after);
+                    if (total == null) continue;
+                    if (sums == null ? total.destroy() : sums.store(total)) fixed++;
+                }
+            }
+            AccountRepository accounts = Repositories.get(AccountRepository.class);
+            for (Sums sums : expected.values()) {
+                Account account = accounts.find(sums.account);
+                if (account != null && sums.store(new DailyTotal(account, LocalDate.ofEpochDay(sums.day), sums.direction, Money.ZERO))) fixed++;
+            }
+            return fixed;
+        } catch (SQLException e) {
+            log.error("Unable to rebuild the daily totals", e);
+        }
+        return -1;
+    }
+
+    /**
+     * Find the day of a transaction in the local time zone
+     * @param createdAt the creation time of the transaction, null if it wasn't stamped
+     * @return the day
+     */
+    private static LocalDate dayOf(Instant createdAt) {
+        return createdAt != null ? createdAt.atZone(ZoneId.systemDefault()).toLocalDate() : LocalDate.now();
+    }
+
+    /**
+     * Increment a stored total, or store it if it doesn't exist yet. A failure is only logged: the transaction itself is already saved, and rebuild fix the totals
+     * @param total the total of one transaction
+     */
+    private void add(DailyTotal total) {
+        try {
+            Storage.getBackend().increment(total, keyColumns, addedColumns);
+        } catch (SQLException e) {
+            log.error("Unable to update the daily " + total.getDirection() + " total of account " + total.getAccount().getId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Total of an account, a day and a direction computed from the transactions by rebuild
+     * @author Antoine FORET
+     * @version 1.0
+     */
+    private static final class Sums {
+
+        /**
+         * Id of the account
+         */
+        final int account;
+
+        /**
+         * The day, in days since 1970-01-01
+         */
+        final int day;
+
+        /**
+         * The direction of the money
+         */
+        final Direction direction;
+
+        /**
+         * Sum of the amounts, in minor units
+         */
+        long minorUnits;
+
+        /**
+         * Number of transactions
+         */
+        int count;
+
+        /**
+         * Constructor of an empty total
+         * @param account the id of the account
+         * @param day the day
+         * @param direction the direction of the money
+         */
+        Sums(int account, int day, Direction direction) {
+            this.account = account;
+            this.day = day;
+            this.direction = direction;
+        }
+
+        /**
+         * Identify a total
+         * @param account the id of the account
+         * @param day the day
+         * @param direction the direction of the money
+         * @return the key of the total
+         */
+        static String key(int account, int day, Direction direction) {
+            return account + " " + day + " " + direction;
+        }
+
+        /**
+         * Add a transaction to its total
+         * @param totals the totals by key, completed
+         * @param account the id of the account, null for a transaction without account
+         * @param day the day of the transaction
+         * @param direction the direction of the money for this account
+         * @param amount the amount of the transaction
+         */
+        static void add(Map<String, Sums> totals, Integer account, int day, Direction direction, Money amount) {
+            if (account == null) return;
+            Sums sums = totals.computeIfAbsent(key(account, day, direction), k -> new Sums(account, day, direction));
+            sums.minorUnits += amount.getMinorUnits();
+            sums.count++;
+        }
+
+        /**
+         * Write the sums in a total entity and save it
+         * @param total the total to correct or to create
+         * @return if the total was saved
+         */
+        boolean store(DailyTotal total) {
+            total.setTotals(Money.ofMinorUnits(this.minorUnits), this.count);
+            return total.save();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package repositories;
+
+import logging.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the repositories: one instance per repository class, created on first use and shared by every thread. The repositories only hold immutable state (their model class and metrics) set by their constructor, so the annotations are read once instead of on every controller and every relation loaded.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class Repositories {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(Repositories.class);
+
+    /**
+     * The repositories, by class (by interface for the generated query implementations)
+     */
+    private static final Map<Class<?>, RepositoryBase> instances = new ConcurrentHashMap<>();
+
+    /**
+     * Utility class, not instantiable
+     */
+    private Repositories() { }
+
+    /**
+     * Retrieve the shared instance of a repository
+     * @param repositoryClass the repository class
+     * @param <R> the repository type
+     * @return the repository
+     * @throws IllegalStateException if the repository cannot be created
+     */
+    public static <R extends RepositoryBase> R get(Class<R> repositoryClass) {
+        RepositoryBase repository = instances.get(repositoryClass);
+        if (repository == null) {
+            repository = instances.computeIfAbsent(repositoryClass, Repositories::create);
+        }
+        return repositoryClass.cast(repository);
+    }
+
+    /**
+     * Retrieve the shared implementation of a query interface, the class generated next to it by processor.QueryProcessor
+     * @param queriesClass the query interface, annotated with Repository
+     * @param <Q> the interface type
+     * @return the implementation
+     * @throws IllegalStateException if the implementation wasn't generated
+     */
+    public static <Q> Q queries(Class<Q> queriesClass) {
+        RepositoryBase repository = instances.get(queriesClass);
+        if (repository == null) {
+            repository = instances.computeIfAbsent(queriesClass, k -> {
+                try {
+                    return create(Class.forName(queriesClass.getName() + "Impl"));
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalStateException("Missing implementation of " + queriesClass.getSimpleName() + ", check that the annotation processor ran", e);
+                }
+            });
+        }
+        return queriesClass.cast(repository);
+    }
+
+    /**
+     * Create a repository
+     * @param repositoryClass the repository class
+     * @return the new repository
+     * @throws IllegalStateException if the repository has no accessible constructor without parameter
+     */
+    private static RepositoryBase create(Class<?> repositoryClass) {
+        try {
+            RepositoryBase repository = (RepositoryBase) repositoryClass.getDeclaredConstructor().newInstance();
+            log.debug(() -> "Created repository " + repositoryClass.getSimpleName());
+            return repository;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create repository " + repositoryClass.getSimpleName(), e);
+        }
+    }
+}
@@ -2,38 +2,53 @@ package repositories;
 
 import annotations.Model;
 import annotations.Repository;
+import logging.Logger;
+import metrics.OperationMetrics;
+import metrics.PersistenceMetrics;
 import models.ModelBase;
-import utils.DatabaseProvider;
-import utils.StringUtils;
+import models.ModelMetadata;
+import models.RelationBatch;
+import storage.Storage;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.sql.*;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Base for every repositories. It define the way to read datas from the database. From the outside, every class that inherit from this class and use the correct annotation might seem magic but it is only due to the reflection from Java
+ * Base for every repositories. It define the way to read datas from the storage backend. The lists of entities are read within a RelationBatch, so their relations are read with one request per related model and shared instead of read once per entity. From the outside, every class that inherit from this class and use the correct annotation might seem magic but it is only due to the reflection from Java
  * @author Antoine FORET
  * @version 1.0
  */
 public class RepositoryBase {
 
     /**
-     * The table to search in. This property is defined by the model annotation during the construction of the repository object
+     * Logger of the class
      */
-    private String table = "";
+    private static final Logger log = Logger.getLogger(RepositoryBase.class);
 
     /**
-     * The repository annotation. Contain the class of the model.
+     * The class of the repository's model. This property is defined by the repository annotation during the construction of the repository object
      */
-    private Repository repository = null;
+    private final Class<? extends ModelBase> modelClass;
 
     /**
-     * Constructor of the repository. It initiate all the variables of this object.
+     * Metrics of the find, findByIds, findBy, findBetween, findAll, select and scan requests of the repository's model
      */
-    RepositoryBase() {
-        this.initTable();
+    private final OperationMetrics findMetrics, findByIdsMetrics, findByMetrics, findBetweenMetrics, findAllMetrics, selectMetrics, scanMetrics;
+
+    /**
+     * Constructor of the repository. It initiate all the variables of this object, which never change afterwards so a repository can be shared by several threads (see Repositories).
+     */
+    protected RepositoryBase() {
+        this.modelClass = this.readModel();
+        String modelName = this.modelClass != null ? this.modelClass.getSimpleName() : this.getClass().getSimpleName();
+        this.findMetrics = PersistenceMetrics.get(modelName, "find");
+        this.findByIdsMetrics = PersistenceMetrics.get(modelName, "findByIds");
+        this.findByMetrics = PersistenceMetrics.get(modelName, "findBy");
+        this.findBetweenMetrics = PersistenceMetrics.get(modelName, "findBetween");
+        this.findAllMetrics = PersistenceMetrics.get(modelName, "findAll");
+        this.selectMetrics = PersistenceMetrics.get(modelName, "select");
+        this.scanMetrics = PersistenceMetrics.get(modelName, "scan");
     }
 
     /**
@@ -41,21 +56,26 @@ public class RepositoryBase {
      * @param <model> the class that we made the list of. This is a template parameter. It always need to be equal to the repository's model class
      * @return the list of all entities in database
      */
+    @SuppressWarnings("unchecked")
     public <model> List<model> findAll() {
-        String query = "SELECT * FROM " + table;
-        ArrayList<model> result = new ArrayList<>();
+        List<model> result = new ArrayList<>();
 
+        long start = System.nanoTime();
         try {
-            Connection conn = DatabaseProvider.getDatabase();
-            Statement statement = conn.createStatement();
-            ResultSet res = statement.executeQuery(query);
-            this.fillResult(res, result);
+            RelationBatch batch = RelationBatch.open();
+            try {
+                result = (List<model>) Storage.getBackend().findAll(this.modelClass);
+                batch.resolve();
+            } finally {
+                batch.close();
+            }
+            this.findAllMetrics.record(System.nanoTime() - start, result.size());
         } catch (SQLException e) {
-            System.err.println("[ERROR][SQL] Sql exception");
-            e.printStackTrace();
+            this.findAllMetrics.recordError(System.nanoTime() - start);
+            log.error("Sql exception", e);
         } catch (Exception e) {
-            System.err.println("[ERROR] Unexpected error");
-            e.printStackTrace();
+            this.findAllMetrics.recordError(System.nanoTime() - start);
+            log.error("Unexpected error", e);
         }
         return result;
     }
@@ -66,110 +86,186 @@ public class RepositoryBase {
      * @param <model> the class of the instance generated. This template variable must be equal to the repository's model class
      * @return an instance of the entity we search for or null
      */
+    @SuppressWarnings("unchecked")
     public <model> model find(int id) {
         ModelBase model = null;
-        String query = "SELECT * FROM " + table + " WHERE " + table + ".id = ?;";
 
+        long start = System.nanoTime();
         try {
-            Connection conn = DatabaseProvider.getDatabase();
-            PreparedStatement statement = conn.prepareStatement(query);
-            statement.closeOnCompletion();
-            statement.setInt(1, id);
-            ResultSet res = statement.executeQuery();
-            if (!res.next()) { return null; }
-            model =  (ModelBase) this.repository.model().newInstance();
-            model.importDatabaseData(res);
+            model = Storage.getBackend().find(this.modelClass, id);
+            this.findMetrics.record(System.nanoTime() - start, model != null ? 1 : 0);
         } catch (SQLException e) {
-            System.err.println("[ERROR][SQL] Sql exception");
-            e.printStackTrace();
+            this.findMetrics.recordError(System.nanoTime() - start);
+            log.error("Sql exception", e);
         } catch (Exception e) {
-            System.err.println("[ERROR] Unexpected error");
-            e.printStackTrace();
+            this.findMetrics.recordError(System.nanoTime() - start);
+            log.error("Unexpected error", e);
         }
         return (model) model;
     }
 
+    /**
+     * Search for the entities having some ids, with as few requests as possible. Used by RelationBatch to load the relations of a list of entities
+     * @param ids the ids of the entities, without duplicates
+     * @param <model> the class of the generated instances. Must be the class of the repository's model
+     * @return the existing entities, in no particular order, empty on error
+     */
+    @SuppressWarnings("unchecked")
+    public <model> List<model> findByIds(int[] ids) {
+        List<model> result = new ArrayList<>();
+
+        long start = System.nanoTime();
+        try {
+            RelationBatch batch = RelationBatch.open();
+            try {
+                result = (List<model>) Storage.getBackend().findByIds(this.modelClass, ids);
+                batch.resolve();
+            } finally {
+                batch.close();
+            }
+            this.findByIdsMetrics.record(System.nanoTime() - start, result.size());
+        } catch (SQLException e) {
+            this.findByIdsMetrics.recordError(System.nanoTime() - start);
+            log.error("Sql exception", e);
+        } catch (Exception e) {
+            this.findByIdsMetrics.recordError(System.nanoTime() - start);
+            log.error("Unexpected error", e);
+        }
+        return result;
+    }
+
     /**
      * Allow to search using a specific field and retrieve all the entities that match this search value.
      * @param field the field we want to search with
      * @param value the value that must match an entity to be retried
      * @param <model> the class of the generated instances. Must be the class of the repository's model
      * @param <valueType> the type of the search value. Can be any type so this function can take any parameter as it's second parameter.
-     * @return
+     * @return the matching entities
      */
+    @SuppressWarnings("unchecked")
     public <model, valueType> List<model> findBy(String field, valueType value) {
-        String query = "SELECT * FROM " + table + " WHERE " + field + " = ?";
-        ArrayList<model> result = new ArrayList<>();
+        List<model> result = new ArrayList<>();
+
+        long start = System.nanoTime();
+        try {
+            ModelMetadata.of(this.modelClass).checkSearchable(field);
+            RelationBatch batch = RelationBatch.open();
+            try {
+                result = (List<model>) Storage.getBackend().findBy(this.modelClass, field, value);
+                batch.resolve();
+            } finally {
+                batch.close();
+            }
+            this.findByMetrics.record(System.nanoTime() - start, result.size());
+        } catch (SQLException e) {
+            this.findByMetrics.recordError(System.nanoTime() - start);
+            log.error("Sql exception", e);
+        } catch (Exception e) {
+            this.findByMetrics.recordError(System.nanoTime() - start);
+            log.error("Unexpected error", e);
+        }
+        return result;
+    }
+
+    /**
+     * Search the entities matching a field value and having another field within a range, like the transactions of an account during a month. Meant for the subclasses, which know the fields the table is partitioned by
+     * @param field the field we want to search with
+     * @param value the value that must match an entity to be retried
+     * @param rangeField the field of the range
+     * @param from the start of the range (included)
+     * @param to the end of the range (excluded)
+     * @param <model> the class of the generated instances. Must be the class of the repository's model
+     * @return the matching entities ordered by the range field, empty on error
+     */
+    @SuppressWarnings("unchecked")
+    protected <model> List<model> findBetween(String field, Object value, String rangeField, Object from, Object to) {
+        List<model> result = new ArrayList<>();
 
+        long start = System.nanoTime();
         try {
-            Connection conn = DatabaseProvider.getDatabase();
-            PreparedStatement statement = conn.prepareStatement(query);
-            this.setFieldValue(statement, 1, value);
-            ResultSet res = statement.executeQuery();
-            this.fillResult(res, result);
+            ModelMetadata.of(this.modelClass).checkSearchable(field);
+            RelationBatch batch = RelationBatch.open();
+            try {
+                result = (List<model>) Storage.getBackend().findBetween(this.modelClass, field, value, rangeField, from, to);
+                batch.resolve();
+            } finally {
+                batch.close();
+            }
+            this.findBetweenMetrics.record(System.nanoTime() - start, result.size());
         } catch (SQLException e) {
-            System.err.println("[ERROR][SQL] Sql exception");
-            e.printStackTrace();
+            this.findBetweenMetrics.recordError(System.nanoTime() - start);
+            log.error("Sql exception", e);
         } catch (Exception e) {
-            System.err.println("[ERROR] Unexpected error");
-            e.printStackTrace();
+            this.findBetweenMetrics.recordError(System.nanoTime() - start);
+            log.error("Unexpected error", e);
         }
         return result;
     }
 
     /**
-     * Initialize the repository internal variables. (Table and Repository annotation)
+     * Read only some columns of the entities matching a search, without creating the entities. Meant for the subclasses hot paths
+     * @param field the field we want to search with
+     * @param value the value that must match an entity to be retried
+     * @param columns the columns to read
+     * @return one array per matching entity with the values of the columns, empty on error
      */
-    private void initTable() {
+    protected List<Object[]> select(String field, Object value, String... columns) {
+        List<Object[]> result = new ArrayList<>();
+
+        long start = System.nanoTime();
         try {
-            this.repository = this.getClass().getAnnotation(Repository.class);
-            Class modelClass = this.repository.model();
-            Model model = (Model) modelClass.getAnnotation(Model.class);
-            this.table = model.table();
+            ModelMetadata.of(this.modelClass).checkSearchable(field);
+            result = Storage.getBackend().select(this.modelClass, columns, field, value);
+            this.selectMetrics.record(System.nanoTime() - start, result.size());
+        } catch (SQLException e) {
+            this.selectMetrics.recordError(System.nanoTime() - start);
+            log.error("Sql exception", e);
         } catch (Exception e) {
-            System.err.println("[ERROR] Badly formatted repository check that Repository AND model annotations are present");
+            this.selectMetrics.recordError(System.nanoTime() - start);
+            log.error("Unexpected error", e);
         }
+        return result;
     }
 
     /**
-     * Generate a list of instance of entities based on the result from the database.
-     * @param res the response from the database
-     * @param data the list we want to fill
-     * @param <model> the class of the instances. Must be equal to the repository's model
-     * @throws NoSuchMethodException if the class cannot be filled by the result
-     * @throws SQLException if there is a database error
-     * @throws IllegalAccessException if the accessibility of any method is wrong (private or protected)
-     * @throws InvocationTargetException if we fail to instantiate the filling method
-     * @throws InstantiationException if we fail to instantiate an entity
+     * Read only some columns of a page of entities, by increasing id, without creating the entities. Meant for the subclasses walking the whole table
+     * @param afterId the id after which the page start (0 for the first page)
+     * @param limit the maximal number of entities
+     * @param columns the columns to read
+     * @return one array per entity with the values of the columns, empty on error
      */
-    private <model> void fillResult(ResultSet res, ArrayList<model> data) throws NoSuchMethodException, SQLException, IllegalAccessException, InvocationTargetException, InstantiationException {
-        while (res.next()) {
-            model entity = (model) this.repository.model().newInstance();
-            Method method = entity.getClass().getMethod("importDatabaseData", ResultSet.class);
-            method.invoke(entity, res);
-            data.add(entity);
+    protected List<Object[]> scan(int afterId, int limit, String... columns) {
+        List<Object[]> result = new ArrayList<>();
+
+        long start = System.nanoTime();
+        try {
+            result = Storage.getBackend().scan(this.modelClass, columns, afterId, limit);
+            this.scanMetrics.record(System.nanoTime() - start, result.size());
+        } catch (SQLException e) {
+            this.scanMetrics.recordError(System.nanoTime() - start);
+            log.error("Sql exception", e);
+        } catch (Exception e) {
+            this.scanMetrics.recordError(System.nanoTime() - start);
+            log.error("Unexpected error", e);
         }
+        return result;
     }
 
     /**
-     * Fill the prepared statement using reflection to manage all kind of parameters
-     * @param stmt the statement to fill
-     * @param idx the index where to fill the value
-     * @param value the value to insert
-     * @param <valueType> the type of the value. Can be any type
-     * @throws SQLException if an sql error occur
+     * Read the model class of the repository from its annotation
+     * @return the model class, null if the repository annotation is missing
      */
-    private <valueType> void setFieldValue(PreparedStatement stmt, int idx, valueType value) throws SQLException {
-        if (value instanceof ModelBase) {
-            stmt.setInt(idx, ((ModelBase) value).getId());
-        } else {
-            try {
-                Method set = stmt.getClass().getMethod("set" + StringUtils.capitalize(value.getClass().getSimpleName()), int.class, value.getClass());
-                set.invoke(stmt, idx, value);
-            } catch (Exception e) {
-                System.err.println("[ERROR] An unexpected error occurred while filling repository request");
-                e.printStackTrace();
+    private Class<? extends ModelBase> readModel() {
+        Class<? extends ModelBase> model = null;
+        try {
+            Repository repository = this.getClass().getAnnotation(Repository.class);
+            model = repository.model().asSubclass(ModelBase.class);
+            if (!model.isAnnotationPresent(Model.class)) {
+                throw new IllegalStateException("Missing model annotation on " + model.getSimpleName());
             }
+        } catch (Exception e) {
+            log.error("Badly formatted repository check that Repository AND model annotations are present");
         }
+        return model;
     }
 }
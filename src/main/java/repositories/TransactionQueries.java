@@ -0,0 +1,36 @@
+package repositories;
+
+import annotations.Repository;
+import models.Account;
+import models.Transaction;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Searches on the transactions, implemented at compilation by processor.QueryProcessor (class TransactionQueriesImpl). Retrieve it with Repositories.queries
+ * @see models.Transaction
+ * @author Antoine FORET
+ * @version 1.0
+ */
+@Repository(model = Transaction.class)
+public interface TransactionQueries {
+
+    /**
+     * Search the transactions initiated by an account during a period
+     * @param initiator the account
+     * @param from the start of the period (included)
+     * @param to the end of the period (excluded)
+     * @return the transactions, the oldest first
+     */
+    List<Transaction> findByInitiatorAndCreatedAtBetween(Account initiator, Instant from, Instant to);
+
+    /**
+     * Search the transactions received by an account during a period
+     * @param recipient the account
+     * @param from the start of the period (included)
+     * @param to the end of the period (excluded)
+     * @return the transactions, the oldest first
+     */
+    List<Transaction> findByRecipientAndCreatedAtBetween(Account recipient, Instant from, Instant to);
+}
@@ -1,7 +1,14 @@
 package repositories;
 
 import annotations.Repository;
+import models.Account;
+import models.RelationBatch;
 import models.Transaction;
+import utils.IntHashSet;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * Transaction repository. Used to retrieve transactions from database and create java instances
@@ -11,4 +18,33 @@ import models.Transaction;
  */
 @Repository(model = Transaction.class)
 public class TransactionRepository extends RepositoryBase {
+
+    /**
+     * Retrieve the transactions of an account (initiated or received) saved during a period. The requests are bounded on created_at, so only the monthly partitions of the period are read
+     * @param account the account
+     * @param from the start of the period (included)
+     * @param to the end of the period (excluded)
+     * @return the transactions, the most recent first. A withdraw or a transfer to itself (initiator and recipient being the account) is only listed once, the two requests sharing the same account instances
+     */
+    public List<Transaction> findBetween(Account account, Instant from, Instant to) {
+        List<Transaction> transactions, received;
+        RelationBatch batch = RelationBatch.open();
+        try {
+            TransactionQueries queries = Repositories.queries(TransactionQueries.class);
+            transactions = queries.findByInitiatorAndCreatedAtBetween(account, from, to);
+            received = queries.findByRecipientAndCreatedAtBetween(account, from, to);
+            batch.resolve();
+        } finally {
+            batch.close();
+        }
+        IntHashSet initiated = new IntHashSet(transactions.size());
+        for (Transaction transaction : transactions) {
+            initiated.add(transaction.getId());
+        }
+        for (Transaction transaction : received) {
+            if (!initiated.contains(transaction.getId())) transactions.add(transaction);
+        }
+        transactions.sort(Comparator.comparing(Transaction::getCreatedAt).reversed());
+        return transactions;
+    }
 }
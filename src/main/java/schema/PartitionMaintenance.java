@@ -0,0 +1,227 @@
+package schema;
+
+import logging.Logger;
+import models.ModelMetadata;
+import models.Transaction;
+import utils.Configuration;
+import utils.DatabaseProvider;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maintenance of a MySQL table partitioned by month (PARTITION BY RANGE COLUMNS on its creation time, see database.sql): one partition "pYYYYMM" per month and a last "pmax" partition catching the later rows.
+ * The partitions of the next "otto.partitions.monthsAhead" months (3) are created in advance by splitting pmax, which is done on startup. The months older than "otto.retention.months" (24) are archived: the partition is exchanged with a new table "table_YYYYMM" (an instant swap, the rows are not copied), moved to the "otto.archive.schema" database of the same server when set (cold storage, which can live on cheaper disks), then the emptied partition is dropped. The hot table and its indexes thus only hold the retention period.
+ * Run it directly (gradle archiveTransactions) to maintain the transactions table, of every shard when the storage is sharded. The tables which are not partitioned (H2, or a MySQL database without the 005 migration) are skipped with a warning.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class PartitionMaintenance {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(PartitionMaintenance.class);
+
+    /**
+     * Number of months whose partition is created in advance
+     */
+    private static final int monthsAhead = Configuration.getInt("otto.partitions.monthsAhead", 3);
+
+    /**
+     * Number of months kept in the partitioned table, the current one included
+     */
+    private static final int retentionMonths = Configuration.getInt("otto.retention.months", 24);
+
+    /**
+     * Database receiving the archived tables, empty to keep them in the current database
+     */
+    private static final String archiveSchema = Configuration.get("otto.archive.schema", "").trim();
+
+    /**
+     * Name of the partition of a month
+     */
+    private static final DateTimeFormatter partitionName = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    /**
+     * Name of the partition holding the rows after the last month
+     */
+    private static final String lastPartition = "pmax";
+
+    /**
+     * The partitioned table
+     */
+    private final String table;
+
+    /**
+     * Constructor
+     * @param table the table partitioned by month
+     */
+    public PartitionMaintenance(String table) {
+        this.table = table;
+    }
+
+    /**
+     * Create the upcoming partitions and archive the expired ones of the transactions table
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        new PartitionMaintenance(ModelMetadata.of(Transaction.class).getTable()).run(YearMonth.now(), true);
+        System.exit(0);
+    }
+
+    /**
+     * Maintain the table on the main database, or on every shard. The DDL runs on its own connection to each database, closed afterwards, so the statements of the application never wait behind it
+     * @param current the current month
+     * @param archive if the expired partitions are archived, else only the upcoming partitions are created
+     */
+    public void run(YearMonth current, boolean archive) {
+        int databases = Math.max(1, DatabaseProvider.getShardCount());
+        for (int shard = 0; shard < databases; shard++) {
+            try (Connection conn = DatabaseProvider.openMaintenanceConnection(shard)) {
+                if (conn == null) continue;
+                List<String> partitions = this.partitions(conn);
+                if (!partitions.contains(lastPartition)) {
+                    log.warning("Table " + this.table + " is not partitioned by month, see migrations/005_transactions_created_at.sql");
+                    continue;
+                }
+                this.addPartitions(conn, partitions, current, current.plusMonths(monthsAhead));
+                if (archive) this.archive(conn, this.partitions(conn), current.minusMonths(retentionMonths - 1));
+            } catch (SQLException e) {
+                log.error("Unable to maintain the partitions of " + this.table + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * List the partitions of the table
+     * @param conn the connection
+     * @return the partition names in order, empty if the table is not partitioned or the database doesn't support partitions
+     */
+    private List<String> partitions(Connection conn) {
+        List<String> partitions = new ArrayList<>();
+        String query = "SELECT PARTITION_NAME FROM information_schema.PARTITIONS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL ORDER BY PARTITION_ORDINAL_POSITION";
+        try (PreparedStatement statement = conn.prepareStatement(query)) {
+            statement.setString(1, this.table);
+            ResultSet res = statement.executeQuery();
+            while (res.next()) {
+                partitions.add(res.getString(1));
+            }
+        } catch (SQLException e) {
+            log.debug(() -> "No partition information: " + e.getMessage());
+        }
+        return partitions;
+    }
+
+    /**
+     * Split pmax to create the monthly partitions up to a month. The rows of pmax older than the first new month go in its partition
+     * @param conn the connection
+     * @param partitions the current partitions
+     * @param current the current month, the first one created when the table has no monthly partition yet
+     * @param last the last month to create
+     * @throws SQLException if the partitions cannot be created
+     */
+    private void addPartitions(Connection conn, List<String> partitions, YearMonth current, YearMonth last) throws SQLException {
+        YearMonth next = null;
+        for (String partition : partitions) {
+            YearMonth month = month(partition);
+            if (month != null && (next == null || !month.isBefore(next))) next = month.plusMonths(1);
+        }
+        if (next == null) next = current;
+        if (next.isAfter(last)) return;
+
+        StringBuilder definitions = new StringBuilder();
+        for (YearMonth month = next; !month.isAfter(last); month = month.plusMonths(1)) {
+            definitions.append("PARTITION ").append(month.format(partitionName))
+                    .append(" VALUES LESS THAN ('").append(month.plusMonths(1).atDay(1)).append("'), ");
+        }
+        definitions.append("PARTITION ").append(lastPartition).append(" VALUES LESS THAN (MAXVALUE)");
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("ALTER TABLE `" + this.table + "` REORGANIZE PARTITION " + lastPartition + " INTO (" + definitions + ")");
+        }
+        log.info("Created the partitions of " + this.table + " from " + next + " to " + last);
+    }
+
+    /**
+     * Move the partitions of the months before a month out of the table
+     * @param conn the connection
+     * @param partitions the current partitions
+     * @param firstKept the first month kept in the table
+     * @throws SQLException if a partition cannot be archived
+     */
+    private void archive(Connection conn, List<String> partitions, YearMonth firstKept) throws SQLException {
+        for (String partition : partitions) {
+            YearMonth month = month(partition);
+            if (month == null || !month.isBefore(firstKept)) continue;
+            String archive = this.table + "_" + partition.substring(1);
+            try (Statement statement = conn.createStatement()) {
+                if (count(statement, "`" + this.table + "` PARTITION (" + partition + ")") > 0) {
+                    if (exists(conn, archive)) {
+                        // Left by an interrupted run before the exchange, unless it already hold archived rows
+                        if (count(statement, "`" + archive + "`") > 0) {
+                            log.error("Cannot archive " + this.table + " partition " + partition + ": table " + archive + " already exists and is not empty");
+                            continue;
+                        }
+                        statement.execute("DROP TABLE `" + archive + "`");
+                    }
+                    statement.execute("CREATE TABLE `" + archive + "` LIKE `" + this.table + "`");
+                    statement.execute("ALTER TABLE `" + archive + "` REMOVE PARTITIONING");
+                    statement.execute("ALTER TABLE `" + this.table + "` EXCHANGE PARTITION " + partition + " WITH TABLE `" + archive + "`");
+                    if (!archiveSchema.isEmpty()) {
+                        statement.execute("RENAME TABLE `" + archive + "` TO `" + archiveSchema + "`.`" + archive + "`");
+                    }
+                    log.info("Archived " + this.table + " partition " + partition + " in " + (archiveSchema.isEmpty() ? "" : archiveSchema + ".") + archive);
+                }
+                statement.execute("ALTER TABLE `" + this.table + "` DROP PARTITION " + partition);
+            }
+        }
+    }
+
+    /**
+     * Count the rows of a table or partition
+     * @param statement the statement to use
+     * @param source the table, with its partition clause
+     * @return the number of rows
+     * @throws SQLException if the request fail
+     */
+    private static long count(Statement statement, String source) throws SQLException {
+        ResultSet res = statement.executeQuery("SELECT COUNT(*) FROM " + source);
+        res.next();
+        return res.getLong(1);
+    }
+
+    /**
+     * Check if a table exists in the current database
+     * @param conn the connection
+     * @param table the table name
+     * @return if the table exists
+     * @throws SQLException if the request fail
+     */
+    private static boolean exists(Connection conn, String table) throws SQLException {
+        try (PreparedStatement statement = conn.prepareStatement("SELECT 1 FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?")) {
+            statement.setString(1, table);
+            return statement.executeQuery().next();
+        }
+    }
+
+    /**
+     * Find the month of a partition
+     * @param partition the partition name
+     * @return the month, or null for a partition not named after a month (pmax)
+     */
+    private static YearMonth month(String partition) {
+        try {
+            return YearMonth.parse(partition, partitionName);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
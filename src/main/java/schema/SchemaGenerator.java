@@ -0,0 +1,114 @@
+package schema;
+
+import models.ColumnMapping;
+import models.ModelBase;
+import models.ModelMetadata;
+import models.Models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generate the MySQL DDL of the models from their metadata: one table per model with its id, attributes and relations, and an index per Indexed / Unique column. Run it directly to print the schema of all the models.
+ * @see schema.SchemaValidator
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class SchemaGenerator {
+
+    /**
+     * Utility class, not instantiable
+     */
+    private SchemaGenerator() { }
+
+    /**
+     * Print the schema of all the models
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        System.out.print(script(Models.all()));
+    }
+
+    /**
+     * Generate the schema of several models
+     * @param models the model classes
+     * @return the CREATE TABLE statements of the models
+     */
+    public static String script(List<Class<? extends ModelBase>> models) {
+        StringBuilder script = new StringBuilder();
+        for (Class<? extends ModelBase> model : models) {
+            script.append(createTable(ModelMetadata.of(model))).append(";\n\n");
+        }
+        return script.toString();
+    }
+
+    /**
+     * Generate the CREATE TABLE statement of a model
+     * @param metadata the metadata of the model
+     * @return the statement, without final semicolon
+     */
+    public static String createTable(ModelMetadata metadata) {
+        List<String> lines = new ArrayList<>();
+        lines.add("`id` int(11) NOT NULL AUTO_INCREMENT");
+        for (ColumnMapping mapping : columns(metadata)) {
+            lines.add(columnDefinition(mapping));
+        }
+        lines.add("PRIMARY KEY (`id`)");
+        for (ColumnMapping mapping : columns(metadata)) {
+            if (mapping.isIndexed()) {
+                lines.add((mapping.isUnique() ? "UNIQUE KEY `" : "KEY `") + indexName(metadata, mapping) + "` (`" + mapping.getName() + "`)");
+            }
+        }
+        return "CREATE TABLE `" + metadata.getTable() + "` (\n  " + String.join(",\n  ", lines) + "\n) ENGINE=InnoDB DEFAULT CHARSET=utf8";
+    }
+
+    /**
+     * Generate the statement adding a missing column to its table
+     * @param metadata the metadata of the model
+     * @param mapping the column
+     * @return the ALTER TABLE statement, without final semicolon
+     */
+    public static String addColumn(ModelMetadata metadata, ColumnMapping mapping) {
+        return "ALTER TABLE `" + metadata.getTable() + "` ADD COLUMN " + columnDefinition(mapping);
+    }
+
+    /**
+     * Generate the statement creating the index of an Indexed / Unique column
+     * @param metadata the metadata of the model
+     * @param mapping the column
+     * @return the CREATE INDEX statement, without final semicolon
+     */
+    public static String createIndex(ModelMetadata metadata, ColumnMapping mapping) {
+        return "CREATE " + (mapping.isUnique() ? "UNIQUE " : "") + "INDEX `" + indexName(metadata, mapping) + "` ON `" + metadata.getTable() + "` (`" + mapping.getName() + "`)";
+    }
+
+    /**
+     * Access all the columns of a model but the id: the attributes then the relations
+     * @param metadata the metadata of the model
+     * @return the columns
+     */
+    static List<ColumnMapping> columns(ModelMetadata metadata) {
+        List<ColumnMapping> columns = new ArrayList<>(metadata.getAttributes());
+        columns.addAll(metadata.getRelations());
+        return columns;
+    }
+
+    /**
+     * Generate the definition of a column (name, type and nullability)
+     * @param mapping the column
+     * @return the column definition
+     */
+    private static String columnDefinition(ColumnMapping mapping) {
+        return "`" + mapping.getName() + "` " + mapping.getSqlType() + (mapping.isNullable() ? " DEFAULT NULL" : " NOT NULL");
+    }
+
+    /**
+     * Name the index of a column: table_column_idx, or table_column_unique for a unique one
+     * @param metadata the metadata of the model
+     * @param mapping the column
+     * @return the index name
+     */
+    private static String indexName(ModelMetadata metadata, ColumnMapping mapping) {
+        return metadata.getTable() + "_" + mapping.getName() + (mapping.isUnique() ? "_unique" : "_idx");
+    }
+}
@@ -0,0 +1,129 @@
+package schema;
+
+import logging.Logger;
+import models.ColumnMapping;
+import models.ModelBase;
+import models.ModelMetadata;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compare the schema expected by the models with the live database schema (through the JDBC metadata). It report the missing tables, columns and indexes with the statement fixing each of them. An index only count for a column if this column is the first one of the index, as a composite index (a, b) cannot serve a search on b alone.
+ * @see schema.SchemaGenerator
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class SchemaValidator {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(SchemaValidator.class);
+
+    /**
+     * Utility class, not instantiable
+     */
+    private SchemaValidator() { }
+
+    /**
+     * Validate the schema of several models and log the problems as warnings
+     * @param conn the database connection
+     * @param models the model classes
+     * @return the problems found, each one followed by the statement fixing it. Empty if the schema is valid
+     * @throws SQLException if the database metadata cannot be read
+     */
+    public static List<String> validate(Connection conn, List<Class<? extends ModelBase>> models) throws SQLException {
+        List<String> problems = new ArrayList<>();
+        DatabaseMetaData databaseMetadata = conn.getMetaData();
+        for (Class<? extends ModelBase> model : models) {
+            validate(databaseMetadata, conn.getCatalog(), ModelMetadata.of(model), problems);
+        }
+        for (String problem : problems) {
+            log.warning(problem);
+        }
+        if (problems.isEmpty()) {
+            log.info("Database schema matches the " + models.size() + " models");
+        }
+        return problems;
+    }
+
+    /**
+     * Validate the schema of a model
+     * @param databaseMetadata the database metadata
+     * @param catalog the current catalog (database)
+     * @param metadata the metadata of the model
+     * @param problems the list to fill with the problems found
+     * @throws SQLException if the database metadata cannot be read
+     */
+    private static void validate(DatabaseMetaData databaseMetadata, String catalog, ModelMetadata metadata, List<String> problems) throws SQLException {
+        String table = metadata.getTable();
+        Set<String> columns = new HashSet<>();
+        try (ResultSet res = databaseMetadata.getColumns(catalog, null, table, null)) {
+            while (res.next()) {
+                columns.add(res.getString("COLUMN_NAME").toLowerCase());
+            }
+        }
+        if (columns.isEmpty()) {
+            problems.add("Missing table " + table + ": " + SchemaGenerator.createTable(metadata) + ";");
+            return;
+        }
+
+        Map<String, Boolean> leadingIndexes = leadingIndexes(databaseMetadata, catalog, table);
+        for (ColumnMapping mapping : SchemaGenerator.columns(metadata)) {
+            String column = mapping.getName().toLowerCase();
+            if (!columns.contains(column)) {
+                problems.add("Missing column " + table + "." + mapping.getName() + ": " + SchemaGenerator.addColumn(metadata, mapping) + ";");
+                continue;
+            }
+            if (!mapping.isIndexed()) continue;
+            Boolean unique = leadingIndexes.get(column);
+            if (unique == null) {
+                problems.add("Missing index on " + table + "." + mapping.getName() + ": " + SchemaGenerator.createIndex(metadata, mapping) + ";");
+            } else if (mapping.isUnique() && !unique) {
+                problems.add("Missing unique index on " + table + "." + mapping.getName() + ": " + SchemaGenerator.createIndex(metadata, mapping) + ";");
+            }
+        }
+    }
+
+    /**
+     * Find the columns that lead an index of a table
+     * @param databaseMetadata the database metadata
+     * @param catalog the current catalog (database)
+     * @param table the table name
+     * @return for each column leading an index, if one of these indexes is unique on this single column
+     * @throws SQLException if the database metadata cannot be read
+     */
+    private static Map<String, Boolean> leadingIndexes(DatabaseMetaData databaseMetadata, String catalog, String table) throws SQLException {
+        Map<String, String> leadingColumn = new HashMap<>();
+        Map<String, Integer> width = new HashMap<>();
+        Map<String, Boolean> unique = new HashMap<>();
+        try (ResultSet res = databaseMetadata.getIndexInfo(catalog, null, table, false, true)) {
+            while (res.next()) {
+                String index = res.getString("INDEX_NAME");
+                String column = res.getString("COLUMN_NAME");
+                if (index == null || column == null) continue;
+                if (res.getShort("ORDINAL_POSITION") == 1) {
+                    leadingColumn.put(index, column.toLowerCase());
+                }
+                width.merge(index, 1, Integer::sum);
+                unique.put(index, !res.getBoolean("NON_UNIQUE"));
+            }
+        }
+        Map<String, Boolean> result = new HashMap<>();
+        for (Map.Entry<String, String> entry : leadingColumn.entrySet()) {
+            String index = entry.getKey();
+            boolean uniqueColumn = unique.get(index) && width.get(index) == 1;
+            result.merge(entry.getValue(), uniqueColumn, Boolean::logicalOr);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,117 @@
+package security;
+
+import utils.Configuration;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the recently verified credentials, so a burst of logins doesn't pay the PBKDF2 cost on every attempt. An entry is a keyed digest (HMAC-SHA256 with a random key of the process) of the identifier, the password and the stored hash: the plain text password is never kept, and changing the password change the stored hash so the old entry stop matching.
+ * Only successful verifications are cached. The cache hold at most "otto.credentials.cacheSize" entries (10000 by default, least recently used evicted first) for "otto.credentials.cacheTtl.s" seconds (60 by default).
+ * @see security.PasswordHasher
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class CredentialCache {
+
+    /**
+     * Key of the digests, drawn once per process
+     */
+    private final SecretKeySpec key;
+
+    /**
+     * Expiration time (System.nanoTime) of the entries indexed by digest, in access order
+     */
+    private final LinkedHashMap<String, Long> entries;
+
+    /**
+     * Life time of an entry in nanoseconds
+     */
+    private final long ttlNanos;
+
+    /**
+     * Create a cache configured by the "otto.credentials.*" settings
+     */
+    public CredentialCache() {
+        this(Configuration.getInt("otto.credentials.cacheSize", 10_000), Configuration.getLong("otto.credentials.cacheTtl.s", 60) * 1_000_000_000L);
+    }
+
+    /**
+     * Create a cache
+     * @param maxSize the maximal number of entries
+     * @param ttlNanos the life time of an entry in nanoseconds
+     */
+    public CredentialCache(int maxSize, long ttlNanos) {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, "HmacSHA256");
+        this.ttlNanos = ttlNanos;
+        this.entries = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return this.size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Verify a password, using the cache when the same credentials were verified recently
+     * @param identifier the account identifier
+     * @param password the plain text password
+     * @param stored the stored hash of the account
+     * @return if the password match
+     */
+    public boolean verify(String identifier, String password, String stored) {
+        if (identifier == null || password == null || stored == null) return false;
+        String digest = this.digest(identifier, password, stored);
+        long now = System.nanoTime();
+        synchronized (this.entries) {
+            Long expiration = this.entries.get(digest);
+            if (expiration != null) {
+                if (expiration - now > 0) return true;
+                this.entries.remove(digest);
+            }
+        }
+        if (!PasswordHasher.verify(password, stored)) return false;
+        synchronized (this.entries) {
+            this.entries.put(digest, now + this.ttlNanos);
+        }
+        return true;
+    }
+
+    /**
+     * Forget all the verified credentials
+     */
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+
+    /**
+     * Compute the keyed digest of credentials
+     * @param identifier the account identifier
+     * @param password the plain text password
+     * @param stored the stored hash
+     * @return the digest in base64
+     */
+    private String digest(String identifier, String password, String stored) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(this.key);
+            mac.update(identifier.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(password.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return Base64.getEncoder().encodeToString(mac.doFinal(stored.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
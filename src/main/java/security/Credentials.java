@@ -0,0 +1,46 @@
+package security;
+
+/**
+ * Minimal projection of an account used by the login: its id and its password hash. Loading it doesn't hydrate the whole account.
+ * @see repositories.AccountRepository#findCredentials(String)
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class Credentials {
+
+    /**
+     * Id of the account
+     */
+    private final int id;
+
+    /**
+     * Stored password hash of the account
+     */
+    private final String passwordHash;
+
+    /**
+     * Constructor
+     * @param id the id of the account
+     * @param passwordHash the stored password hash
+     */
+    public Credentials(int id, String passwordHash) {
+        this.id = id;
+        this.passwordHash = passwordHash;
+    }
+
+    /**
+     * Id getter
+     * @return the id of the account
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Password hash getter
+     * @return the stored password hash
+     */
+    public String getPasswordHash() {
+        return this.passwordHash;
+    }
+}
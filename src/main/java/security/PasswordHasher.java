@@ -0,0 +1,134 @@
+package security;
+
+import utils.Configuration;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Salted adaptive password hashing with PBKDF2 (HMAC-SHA256) from the JDK. A hash is stored as "pbkdf2-sha256$iterations$salt$hash" (salt and hash in base64) so the cost can be raised later without breaking the existing hashes. The number of iterations of the new hashes is the "otto.password.iterations" setting (120000 by default).
+ * Values without this format are legacy plain text passwords, still accepted by verify so they can be rehashed on the next login.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class PasswordHasher {
+
+    /**
+     * Prefix of the hashes produced by this class
+     */
+    private static final String prefix = "pbkdf2-sha256$";
+
+    /**
+     * JDK algorithm name
+     */
+    private static final String algorithm = "PBKDF2WithHmacSHA256";
+
+    /**
+     * Size of the salt and of the derived key, in bytes
+     */
+    private static final int saltSize = 16, keySize = 32;
+
+    /**
+     * Number of iterations of the new hashes
+     */
+    private static final int iterations = Configuration.getInt("otto.password.iterations", 120_000);
+
+    /**
+     * Source of the salts
+     */
+    private static final SecureRandom random = new SecureRandom();
+
+    /**
+     * Hash of a random password, checked for the unknown identifiers so they cost as much as the known ones
+     */
+    private static final String dummyHash = hash(Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()));
+
+    /**
+     * Utility class, not instantiable
+     */
+    private PasswordHasher() { }
+
+    /**
+     * Hash a password with a new random salt
+     * @param password the plain text password
+     * @return the encoded hash
+     */
+    public static String hash(String password) {
+        byte[] salt = new byte[saltSize];
+        random.nextBytes(salt);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return prefix + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(derive(password, salt, iterations));
+    }
+
+    /**
+     * Check a password against a stored hash. The comparison is done in constant time
+     * @param password the plain text password to check
+     * @param stored the stored hash (or legacy plain text password)
+     * @return if the password match
+     */
+    public static boolean verify(String password, String stored) {
+        if (password == null || stored == null) return false;
+        if (!stored.startsWith(prefix)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.substring(prefix.length()).split("\\$");
+        if (parts.length != 3) return false;
+        try {
+            Base64.Decoder decoder = Base64.getDecoder();
+            byte[] expected = decoder.decode(parts[2]);
+            byte[] actual = derive(password, decoder.decode(parts[1]), Integer.parseInt(parts[0]));
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Check a password for an identifier without account, against a hash no password match. It takes the time of a real verification, so the response time doesn't tell whether an identifier exists
+     * @param password the plain text password
+     * @return always false
+     */
+    public static boolean verifyUnknown(String password) {
+        verify(password != null ? password : "", dummyHash);
+        return false;
+    }
+
+    /**
+     * Check if a stored hash should be replaced: legacy plain text password or fewer iterations than the current setting
+     * @param stored the stored hash
+     * @return if the password should be hashed again on the next successful login
+     */
+    public static boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(prefix)) return true;
+        int end = stored.indexOf('$', prefix.length());
+        if (end < 0) return true;
+        try {
+            return Integer.parseInt(stored.substring(prefix.length(), end)) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Derive the key of a password
+     * @param password the plain text password
+     * @param salt the salt
+     * @param iterations the number of iterations
+     * @return the derived key
+     */
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, keySize * 8);
+        try {
+            return SecretKeyFactory.getInstance(algorithm).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(algorithm + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package security;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket rate limiter keyed by a string (account identifier, terminal...). Each bucket is a single AtomicLong holding its "theoretical arrival time" (GCRA): the time at which the bucket will be full again. Taking a token push this time by one refill interval and is refused when it would go further than the burst size in the future, all with one compare-and-set.
+ * A bucket whose time is in the past is full, exactly like a missing bucket, so these buckets are dropped by a sweep run when the map grows (at most once per second). When the map still hold more than the maximal number of keys, the new keys share one overflow bucket: memory stays bounded and a flood of distinct keys is throttled as a whole.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class RateLimiter {
+
+    /**
+     * Key of the shared bucket used when the map is full
+     */
+    private static final String overflowKey = "\u0000overflow";
+
+    /**
+     * Time needed to get one token back, in nanoseconds
+     */
+    private final long refillNanos;
+
+    /**
+     * How far in the future the arrival time can go: (burst - 1) refill intervals
+     */
+    private final long toleranceNanos;
+
+    /**
+     * Maximal number of buckets
+     */
+    private final int maxKeys;
+
+    /**
+     * Buckets indexed by key
+     */
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Size of the map above which the next call sweep the full buckets
+     */
+    private volatile int sweepThreshold;
+
+    /**
+     * Earliest time of the next sweep (System.nanoTime), so a full map isn't scanned on every call
+     */
+    private volatile long nextSweep;
+
+    /**
+     * If a sweep is running
+     */
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    /**
+     * Create a limiter
+     * @param burst the number of tokens of a full bucket (attempts allowed in a row)
+     * @param refillNanos the time needed to get one token back, in nanoseconds
+     * @param maxKeys the maximal number of buckets kept in memory
+     */
+    public RateLimiter(int burst, long refillNanos, int maxKeys) {
+        if (burst < 1 || refillNanos < 1 || maxKeys < 1) throw new IllegalArgumentException("Invalid rate limiter parameters");
+        this.refillNanos = refillNanos;
+        this.toleranceNanos = (burst - 1) * refillNanos;
+        this.maxKeys = maxKeys;
+        this.sweepThreshold = Math.min(maxKeys, 1024);
+        this.nextSweep = System.nanoTime();
+    }
+
+    /**
+     * Try to take a token from the bucket of a key
+     * @param key the key
+     * @return if the action is allowed
+     */
+    public boolean tryAcquire(String key) {
+        return this.tryAcquire(key, System.nanoTime());
+    }
+
+    /**
+     * Try to take a token from the bucket of a key at a given time
+     * @param key the key
+     * @param now the current time (System.nanoTime)
+     * @return if the action is allowed
+     */
+    boolean tryAcquire(String key, long now) {
+        AtomicLong bucket = this.bucket(key, now);
+        while (true) {
+            long arrival = bucket.get();
+            long start = arrival - now > 0 ? arrival : now;
+            if (start - now > this.toleranceNanos) return false;
+            if (bucket.compareAndSet(arrival, start + this.refillNanos)) return true;
+        }
+    }
+
+    /**
+     * Access the number of buckets in memory
+     * @return the number of keys tracked
+     */
+    public int size() {
+        return this.buckets.size();
+    }
+
+    /**
+     * Retrieve the bucket of a key, creating it if there is room
+     * @param key the key
+     * @param now the current time
+     * @return the bucket of the key, or the overflow bucket
+     */
+    private AtomicLong bucket(String key, long now) {
+        AtomicLong bucket = this.buckets.get(key);
+        if (bucket != null) return bucket;
+        if (this.buckets.size() >= this.sweepThreshold && now - this.nextSweep >= 0) {
+            this.sweep(now);
+        }
+        if (this.buckets.size() >= this.maxKeys) {
+            return this.buckets.computeIfAbsent(overflowKey, k -> new AtomicLong(now));
+        }
+        return this.buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+
+    /**
+     * Remove the full buckets (arrival time in the past). Only one thread sweep at a time, the others don't wait. A token taken while its bucket is removed is lost, which only make the limiter slightly more lenient
+     * @param now the current time
+     */
+    private void sweep(long now) {
+        if (!this.sweeping.compareAndSet(false, true)) return;
+        try {
+            Iterator<Map.Entry<String, AtomicLong>> it = this.buckets.entrySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().getValue().get() - now <= 0) it.remove();
+            }
+            this.sweepThreshold = Math.min(this.maxKeys, Math.max(1024, this.buckets.size() * 2));
+            this.nextSweep = now + Math.min(this.refillNanos, 1_000_000_000L);
+        } finally {
+            this.sweeping.set(false);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package startup;
+
+import logging.Logger;
+import models.ModelBase;
+import models.ModelMetadata;
+import models.Models;
+import repositories.AccountRepository;
+import repositories.DailyTotalRepository;
+import repositories.Repositories;
+import repositories.TransactionRepository;
+import utils.Configuration;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Startup phase run in the background while the login window is built: the costs the first login used to pay (loading the JDBC driver and opening the connection, reflecting over the models, preparing the login request) are paid on "otto.startup.threads" (2) daemon threads instead.
+ * The models are read from the static list of Models, no class path scanning is involved. Disable the background run with "otto.startup.warmup=false", the tasks then run before the window as before.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class Warmup {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(Warmup.class);
+
+    /**
+     * If the tasks run in the background
+     */
+    private static final boolean enabled = Configuration.getBoolean("otto.startup.warmup", true);
+
+    /**
+     * Number of threads running the tasks
+     */
+    private static final int threads = Math.max(1, Configuration.getInt("otto.startup.threads", 2));
+
+    /**
+     * Threads running the tasks, null when the tasks run immediately
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The submitted tasks
+     */
+    private final List<Future<?>> tasks = new ArrayList<>();
+
+    /**
+     * Create the startup phase
+     */
+    public Warmup() {
+        this.executor = enabled ? Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "otto-warmup");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Run a startup task in the background, or immediately when the warm-up is disabled. A failing task is logged
+     * @param name the name of the task, for the logs
+     * @param task the task
+     */
+    public void submit(String name, Runnable task) {
+        Runnable timed = () -> {
+            long start = System.nanoTime();
+            try {
+                task.run();
+                log.debug(() -> "Startup task " + name + " done in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } catch (RuntimeException e) {
+                log.error("Startup task " + name + " failed", e);
+            }
+        };
+        if (this.executor == null) {
+            timed.run();
+        } else {
+            this.tasks.add(this.executor.submit(timed));
+        }
+    }
+
+    /**
+     * Wait for the end of the submitted tasks and stop the threads
+     */
+    public void await() {
+        for (Future<?> task : this.tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.error("Startup task failed", e.getCause());
+            }
+        }
+        if (this.executor != null) this.executor.shutdown();
+        log.info("Startup tasks done " + sinceStart() + " ms after the JVM start");
+    }
+
+    /**
+     * Read the metadata of every model and create the shared repositories, so the annotations are reflected once before the first request
+     */
+    public static void loadModels() {
+        for (Class<? extends ModelBase> model : Models.all()) {
+            ModelMetadata.of(model);
+        }
+        Repositories.get(AccountRepository.class);
+        Repositories.get(TransactionRepository.class);
+        Repositories.get(DailyTotalRepository.class);
+    }
+
+    /**
+     * Run the login request once with an unknown identifier: the connection is opened, the driver classes loaded and the request prepared before the first user logs in
+     */
+    public static void prepareLogin() {
+        Repositories.get(AccountRepository.class).findCredentials("");
+    }
+
+    /**
+     * Time elapsed since the JVM start, which include the class loading the class-data sharing archive saves
+     * @return the time in milliseconds
+     */
+    public static long sinceStart() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+}
@@ -0,0 +1,20 @@
+package storage;
+
+import java.sql.SQLException;
+
+/**
+ * Error of a commit whose outcome is unknown: the commit itself failed, so the writes may have been made durable or not. Unlike the other errors of a write, the entities must be read again rather than saved again.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class CommitUnknownException extends SQLException {
+
+    /**
+     * Constructor
+     * @param message the description of the commit
+     * @param cause the error of the commit
+     */
+    public CommitUnknownException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
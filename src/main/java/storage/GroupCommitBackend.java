@@ -0,0 +1,391 @@
+package storage;
+
+import logging.Logger;
+import metrics.QueryTracer;
+import models.ModelBase;
+import models.ModelMetadata;
+import utils.Configuration;
+import utils.DatabaseProvider;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JDBC storage backend committing the writes by groups. The inserts, updates and deletes submitted by the different threads are collected by a committer thread during a short window ("otto.groupCommit.windowUs", 2000 microseconds by default, starting with the first write) or until "otto.groupCommit.maxOps" writes (64) are waiting, then run in one database transaction: one JDBC batch per kind of write and table, and a single commit (and fsync) for the whole group.
+ * Each write get its own future, completed once the group is committed. The synchronous methods of the backend wait for it, so a save still return once its data is durable, trading at most one window of latency for far fewer commits under concurrent sessions. The writes are queued by units, a single write or the entities of a saveAll, and a unit always end in one transaction. If the group fail it is rolled back and its units are run again one by one, so a bad write only fail its own caller. If the commit itself fail the writes may be durable or not: they are not run again, their futures failing with a CommitUnknownException.
+ * The values of an entity are captured when the write is submitted. The reads are not delayed and see every write whose future completed.
+ * @see utils.DatabaseProvider#getBatchDatabase()
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class GroupCommitBackend extends JdbcBackend {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(GroupCommitBackend.class);
+
+    /**
+     * Maximal number of writes committed together
+     */
+    private static final int maxOps = Configuration.getInt("otto.groupCommit.maxOps", 64);
+
+    /**
+     * Time during which the writes are collected after the first one, in nanoseconds
+     */
+    private static final long windowNanos = Configuration.getLong("otto.groupCommit.windowUs", 2000) * 1000;
+
+    /**
+     * Units of writes waiting for the committer thread
+     */
+    private final LinkedBlockingQueue<List<Write>> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * Constructor. Start the committer thread
+     */
+    public GroupCommitBackend() {
+        Thread committer = new Thread(this::run, "otto-group-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    @Override
+    public int insert(ModelBase model) throws SQLException {
+        return await(this.submit(Kind.Insert, model));
+    }
+
+    @Override
+    public int update(ModelBase model) throws SQLException {
+        return await(this.submit(Kind.Update, model));
+    }
+
+    @Override
+    public int delete(ModelBase model) throws SQLException {
+        return await(this.submit(Kind.Delete, model));
+    }
+
+    /**
+     * Submit a write without waiting for its commit. The entity values are captured immediately
+     * @param kind the kind of write
+     * @param model the entity to write
+     * @return a future completed with the generated id (insert) or the number of rows changed (update and delete) once the write is committed, or with the SQLException which made it fail
+     */
+    public CompletableFuture<Integer> submit(Kind kind, ModelBase model) {
+        Write write = new Write(kind, model.getMetadata(), model.exportValues(), false);
+        ReadRouter.recordWrite();
+        this.queue.add(Collections.singletonList(write));
+        return write.future;
+    }
+
+    /**
+     * Save the entities as one unit of the group commit, so they are committed in the same transaction or not at all. The ids, hooks and events of the entities are only applied once it is committed
+     */
+    @Override
+    public boolean saveAll(List<? extends ModelBase> models) throws SQLException {
+        List<Write> unit = new ArrayList<>(models.size());
+        for (ModelBase model : models) {
+            unit.add(new Write(model.getId() == -1 ? Kind.Insert : Kind.Update, model.getMetadata(), model.exportValues(), true));
+        }
+        ReadRouter.recordWrite();
+        this.queue.add(unit);
+        int[] results = new int[unit.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = await(unit.get(i).future);
+        }
+        for (int i = 0; i < results.length; i++) {
+            ModelBase model = models.get(i);
+            if (model.getId() == -1) {
+                model.assignId(results[i]);
+            } else {
+                model.markUpdated();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wait for the commit of a write
+     * @param future the future of the write
+     * @return the result of the write
+     * @throws SQLException if the write failed or the thread was interrupted while waiting
+     */
+    private static int await(CompletableFuture<Integer> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) throw (SQLException) e.getCause();
+            throw new SQLException("Group commit failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the group commit", e);
+        }
+    }
+
+    /**
+     * Loop of the committer thread: collect a group of units of writes and commit it
+     */
+    private void run() {
+        List<List<Write>> group = new ArrayList<>(maxOps);
+        while (true) {
+            try {
+                List<Write> first = this.queue.take();
+                group.add(first);
+                int writes = first.size();
+                long deadline = System.nanoTime() + windowNanos;
+                while (writes < maxOps) {
+                    long remaining = deadline - System.nanoTime();
+                    List<Write> next = remaining > 0 ? this.queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        this.queue.drainTo(group, maxOps - writes);
+                        break;
+                    }
+                    group.add(next);
+                    writes += next.size();
+                }
+                this.commit(group);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("Unexpected error in the group commit", e);
+                for (List<Write> unit : group) {
+                    fail(unit, e);
+                }
+            }
+            group.clear();
+        }
+    }
+
+    /**
+     * Run a group of units in one transaction. If it fail the units are run again one by one
+     * @param group the units of writes
+     */
+    private void commit(List<List<Write>> group) {
+        Connection conn = DatabaseProvider.getBatchDatabase();
+        if (conn == null) {
+            SQLException error = new SQLException("No database connection available for the group commit");
+            for (List<Write> unit : group) {
+                fail(unit, error);
+            }
+            return;
+        }
+        List<Write> writes = new ArrayList<>();
+        for (List<Write> unit : group) {
+            writes.addAll(unit);
+        }
+        synchronized (conn) {
+            try {
+                boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try {
+                    SQLException error = this.tryCommit(conn, writes);
+                    if (error == null) return;
+                    if (group.size() == 1 || error instanceof CommitUnknownException) {
+                        fail(writes, error);
+                        return;
+                    }
+                    log.warning("Group commit of " + writes.size() + " writes failed, running its " + group.size() + " units one by one");
+                    for (List<Write> unit : group) {
+                        SQLException unitError = this.tryCommit(conn, unit);
+                        if (unitError != null) fail(unit, unitError);
+                    }
+                } finally {
+                    conn.setAutoCommit(autoCommit);
+                }
+            } catch (SQLException e) {
+                for (List<Write> unit : group) {
+                    fail(unit, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Run writes in one transaction and complete their futures if it succeed
+     * @param conn the batch connection, auto commit disabled
+     * @param writes the writes
+     * @return null if the transaction was committed, else the error which made it fail: the error of a write, the transaction being rolled back, or a CommitUnknownException if the commit failed
+     * @throws SQLException if the transaction cannot be rolled back
+     */
+    private SQLException tryCommit(Connection conn, List<Write> writes) throws SQLException {
+        try {
+            this.execute(conn, writes);
+        } catch (SQLException e) {
+            conn.rollback();
+            return e;
+        }
+        try {
+            conn.commit();
+        } catch (SQLException e) {
+            return new CommitUnknownException("The group commit of " + writes.size() + " writes failed, they may be saved or not", e);
+        }
+        for (Write write : writes) {
+            write.future.complete(write.result);
+        }
+        return null;
+    }
+
+    /**
+     * Fail the writes of a unit. The futures already completed are left as is
+     * @param writes the writes
+     * @param error the error
+     */
+    private static void fail(List<Write> writes, Throwable error) {
+        for (Write write : writes) {
+            write.future.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Run writes as one JDBC batch per kind and table, keeping the submission order inside each batch
+     * @param conn the batch connection
+     * @param writes the writes
+     * @throws SQLException if a statement fail
+     */
+    private void execute(Connection conn, List<Write> writes) throws SQLException {
+        Map<String, List<Write>> batches = new LinkedHashMap<>();
+        for (Write write : writes) {
+            batches.computeIfAbsent(write.kind + " " + write.metadata.getTable(), k -> new ArrayList<>()).add(write);
+        }
+        for (List<Write> batch : batches.values()) {
+            Write first = batch.get(0);
+            String query = this.query(first.kind, first.metadata);
+
+            long start = System.nanoTime();
+            try (PreparedStatement statement = first.kind == Kind.Insert ? conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS) : conn.prepareStatement(query)) {
+                for (Write write : batch) {
+                    bind(statement, write);
+                    statement.addBatch();
+                }
+                int[] counts = statement.executeBatch();
+                if (first.kind == Kind.Insert) {
+                    ResultSet generatedKeys = statement.getGeneratedKeys();
+                    for (Write write : batch) {
+                        if (!generatedKeys.next()) throw new SQLException("Batch insert in " + first.metadata.getTable() + " failed, missing generated ids");
+                        write.result = generatedKeys.getInt(1);
+                    }
+                } else {
+                    for (int i = 0; i < batch.size(); i++) {
+                        Write write = batch.get(i);
+                        write.result = counts[i] == Statement.SUCCESS_NO_INFO ? 1 : counts[i];
+                        if (write.result == 0 && write.required) throw new SQLException("Unable to update " + first.metadata.getTable() + " (" + write.row[0] + ")");
+                    }
+                }
+            }
+            QueryTracer.record(query, System.nanoTime() - start, batch.size(), batch.size() + " rows");
+        }
+    }
+
+    /**
+     * Retrieve the statement of a kind of write
+     * @param kind the kind of write
+     * @param metadata the metadata of the model
+     * @return the sql request WITHOUT the parameters filled
+     */
+    private String query(Kind kind, ModelMetadata metadata) {
+        ModelSql sql = ModelSql.of(metadata);
+        switch (kind) {
+            case Insert:
+                return sql.insert;
+            case Update:
+                return sql.update;
+            default:
+                return sql.delete;
+        }
+    }
+
+    /**
+     * Fill a statement with the captured values of a write: the columns then the id for an update, the columns for an insert, the id for a delete
+     * @param statement the statement to fill
+     * @param write the write
+     * @throws SQLException if a parameter cannot be defined
+     */
+    private static void bind(PreparedStatement statement, Write write) throws SQLException {
+        Object[] row = write.row;
+        if (write.kind == Kind.Delete) {
+            statement.setObject(1, row[0]);
+            return;
+        }
+        for (int idx = 1; idx < row.length; idx++) {
+            if (row[idx] == null) {
+                statement.setNull(idx, Types.NULL);
+            } else {
+                statement.setObject(idx, row[idx]);
+            }
+        }
+        if (write.kind == Kind.Update) {
+            statement.setObject(row.length, row[0]);
+        }
+    }
+
+    /**
+     * Kinds of write
+     */
+    public enum Kind {
+        Insert,
+        Update,
+        Delete
+    }
+
+    /**
+     * A write waiting for its commit
+     */
+    private static final class Write {
+
+        /**
+         * Kind of write
+         */
+        final Kind kind;
+
+        /**
+         * Metadata of the model written
+         */
+        final ModelMetadata metadata;
+
+        /**
+         * Values of the entity when the write was submitted (see ModelBase.exportValues)
+         */
+        final Object[] row;
+
+        /**
+         * If the write must change a row, the transaction failing otherwise (the updates of a saveAll)
+         */
+        final boolean required;
+
+        /**
+         * Future completed once the write is committed
+         */
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        /**
+         * Generated id or number of rows changed, set when the write run
+         */
+        int result;
+
+        /**
+         * Constructor
+         * @param kind the kind of write
+         * @param metadata the metadata of the model
+         * @param row the values of the entity
+         * @param required if the write must change a row
+         */
+        Write(Kind kind, ModelMetadata metadata, Object[] row, boolean required) {
+            this.kind = kind;
+            this.metadata = metadata;
+            this.row = row;
+            this.required = required;
+        }
+    }
+}
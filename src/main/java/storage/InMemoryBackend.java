@@ -0,0 +1,279 @@
+package storage;
+
+import converters.ConverterRegistry;
+import models.ColumnMapping;
+import models.ModelBase;
+import models.ModelMetadata;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory storage backend. Each model table is a MemoryTable (primitive int keyed rows and secondary indexes on the Indexed columns), nothing leave the JVM and nothing survive a restart. The entities are stored as rows of database values, so reading one always create a new instance like with a real database.
+ * @see storage.MemoryTable
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class InMemoryBackend implements StorageBackend {
+
+    /**
+     * Tables indexed by name
+     */
+    private final Map<String, MemoryTable> tables = new ConcurrentHashMap<>();
+
+    @Override
+    public <T extends ModelBase> T find(Class<T> modelClass, int id) {
+        Object[] row = this.table(ModelMetadata.of(modelClass)).get(id);
+        return row != null ? this.hydrate(modelClass, row) : null;
+    }
+
+    @Override
+    public <T extends ModelBase> List<T> findByIds(Class<T> modelClass, int[] ids) {
+        MemoryTable table = this.table(ModelMetadata.of(modelClass));
+        List<Object[]> rows = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Object[] row = table.get(id);
+            if (row != null) rows.add(row);
+        }
+        return this.hydrateAll(modelClass, rows);
+    }
+
+    @Override
+    public <T extends ModelBase> List<T> findBy(Class<T> modelClass, String column, Object value) throws SQLException {
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        int idx = metadata.getColumnIndex(column);
+        if (idx < 0) throw new SQLException("Unknown column " + column + " in table " + metadata.getTable());
+        return this.hydrateAll(modelClass, this.table(metadata).findBy(idx, this.toDatabase(value)));
+    }
+
+    @Override
+    public List<Object[]> select(Class<? extends ModelBase> modelClass, String[] columns, String column, Object value) throws SQLException {
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        int idx = metadata.getColumnIndex(column);
+        if (idx < 0) throw new SQLException("Unknown column " + column + " in table " + metadata.getTable());
+        return this.project(metadata, columns, this.table(metadata).findBy(idx, this.toDatabase(value)));
+    }
+
+    @Override
+    public List<Object[]> scan(Class<? extends ModelBase> modelClass, String[] columns, int afterId, int limit) throws SQLException {
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        return this.project(metadata, columns, this.table(metadata).scan(afterId, limit));
+    }
+
+    /**
+     * Project rows on some columns, converting each value with its column converter (the id of a relation)
+     * @param metadata the metadata of the model
+     * @param columns the columns to keep
+     * @param rows the stored rows
+     * @return the projected rows, values in the columns order
+     * @throws SQLException if a column is unknown
+     */
+    private List<Object[]> project(ModelMetadata metadata, String[] columns, List<Object[]> rows) throws SQLException {
+        int[] positions = new int[columns.length];
+        ColumnMapping[] mappings = new ColumnMapping[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            positions[i] = metadata.getColumnIndex(columns[i]);
+            if (positions[i] < 0) throw new SQLException("Unknown column " + columns[i] + " in table " + metadata.getTable());
+            mappings[i] = metadata.getColumn(columns[i]);
+        }
+        List<Object[]> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Object[] projection = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                ColumnMapping mapping = mappings[i];
+                Object stored = row[positions[i]];
+                projection[i] = mapping == null || mapping.isRelation() ? stored : mapping.getConverter().fromDatabase(stored);
+            }
+            result.add(projection);
+        }
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends ModelBase> List<T> findBetween(Class<T> modelClass, String column, Object value, String rangeColumn, Object from, Object to) throws SQLException {
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        int idx = metadata.getColumnIndex(column);
+        int rangeIdx = metadata.getColumnIndex(rangeColumn);
+        if (idx < 0) throw new SQLException("Unknown column " + column + " in table " + metadata.getTable());
+        if (rangeIdx < 0) throw new SQLException("Unknown column " + rangeColumn + " in table " + metadata.getTable());
+        Comparable<Object> start = (Comparable<Object>) this.toDatabase(from);
+        Comparable<Object> end = (Comparable<Object>) this.toDatabase(to);
+        List<Object[]> rows = new ArrayList<>();
+        for (Object[] row : this.table(metadata).findBy(idx, this.toDatabase(value))) {
+            Object stored = row[rangeIdx];
+            if (stored != null && start.compareTo(stored) <= 0 && end.compareTo(stored) > 0) rows.add(row);
+        }
+        rows.sort((a, b) -> ((Comparable<Object>) a[rangeIdx]).compareTo(b[rangeIdx]));
+        return this.hydrateAll(modelClass, rows);
+    }
+
+    @Override
+    public <T extends ModelBase> List<T> findAll(Class<T> modelClass) {
+        return this.hydrateAll(modelClass, this.table(ModelMetadata.of(modelClass)).all());
+    }
+
+    @Override
+    public int insert(ModelBase model) throws SQLException {
+        return this.table(model.getMetadata()).insert(model.exportValues());
+    }
+
+    @Override
+    public int[] insertRows(Class<? extends ModelBase> modelClass, List<Object[]> rows) throws SQLException {
+        List<Object[]> copies = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            copies.add(row.clone());
+        }
+        return this.table(ModelMetadata.of(modelClass)).insertAll(copies);
+    }
+
+    @Override
+    public int update(ModelBase model) throws SQLException {
+        return this.table(model.getMetadata()).update(model.getId(), model.exportValues()) ? 1 : 0;
+    }
+
+    @Override
+    public int delete(ModelBase model) {
+        return this.table(model.getMetadata()).delete(model.getId()) ? 1 : 0;
+    }
+
+    /**
+     * Save the entities while holding the locks of all their tables (taken in table name order), so no other thread see them partially saved. The writes already applied are reverted when one fail
+     */
+    @Override
+    public boolean saveAll(List<? extends ModelBase> models) throws SQLException {
+        Map<String, MemoryTable> tables = new TreeMap<>();
+        for (ModelBase model : models) {
+            tables.put(model.getMetadata().getTable(), this.table(model.getMetadata()));
+        }
+        int[] ids = new int[models.size()];
+        this.saveLocked(new ArrayList<>(tables.values()), 0, models, ids);
+        for (int i = 0; i < ids.length; i++) {
+            ModelBase model = models.get(i);
+            if (model.getId() == -1) {
+                model.assignId(ids[i]);
+            } else {
+                model.markUpdated();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lock the tables one after the other, then write the entities
+     * @param tables the tables of the entities, in lock order
+     * @param locked the number of tables already locked
+     * @param models the entities to save
+     * @param ids the generated ids, filled for the new entities
+     * @throws SQLException if an entity cannot be saved, nothing being saved then
+     */
+    private void saveLocked(List<MemoryTable> tables, int locked, List<? extends ModelBase> models, int[] ids) throws SQLException {
+        if (locked < tables.size()) {
+            synchronized (tables.get(locked)) {
+                this.saveLocked(tables, locked + 1, models, ids);
+            }
+            return;
+        }
+        Object[][] previous = new Object[models.size()][];
+        int saved = 0;
+        try {
+            for (; saved < ids.length; saved++) {
+                ModelBase model = models.get(saved);
+                MemoryTable table = this.table(model.getMetadata());
+                if (model.getId() == -1) {
+                    ids[saved] = table.insert(model.exportValues());
+                } else {
+                    previous[saved] = table.get(model.getId());
+                    if (previous[saved] == null || !table.update(model.getId(), model.exportValues())) {
+                        throw new SQLException("Unable to update " + model.getClass().getSimpleName() + " (" + model.getId() + ")");
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            for (int i = saved - 1; i >= 0; i--) {
+                ModelBase model = models.get(i);
+                MemoryTable table = this.table(model.getMetadata());
+                if (model.getId() == -1) {
+                    table.delete(ids[i]);
+                } else {
+                    table.update(model.getId(), previous[i]);
+                }
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public int increment(ModelBase model, String[] keyColumns, String[] addedColumns) throws SQLException {
+        ModelMetadata metadata = model.getMetadata();
+        int[] keys = new int[keyColumns.length];
+        int[] added = new int[addedColumns.length];
+        for (int i = 0; i < keys.length + added.length; i++) {
+            String column = i < keys.length ? keyColumns[i] : addedColumns[i - keys.length];
+            int idx = metadata.getColumnIndex(column);
+            if (idx < 0) throw new SQLException("Unknown column " + column + " in table " + metadata.getTable());
+            if (i < keys.length) {
+                keys[i] = idx;
+            } else {
+                added[i - keys.length] = idx;
+            }
+        }
+        return this.table(metadata).increment(keys, added, model.exportValues());
+    }
+
+    /**
+     * Retrieve the table of a model, creating it the first time
+     * @param metadata the metadata of the model
+     * @return the table
+     */
+    private MemoryTable table(ModelMetadata metadata) {
+        MemoryTable table = this.tables.get(metadata.getTable());
+        if (table == null) {
+            table = this.tables.computeIfAbsent(metadata.getTable(), name -> new MemoryTable(metadata));
+        }
+        return table;
+    }
+
+    /**
+     * Convert a search value into the value stored in the rows
+     * @param value the search value
+     * @return the database value
+     */
+    private Object toDatabase(Object value) {
+        if (value == null) return null;
+        if (value instanceof ModelBase) return ((ModelBase) value).getId();
+        return ConverterRegistry.forValue(value).toDatabase(value);
+    }
+
+    /**
+     * Create an entity from a row
+     * @param modelClass the model class
+     * @param row the stored row
+     * @param <T> the model type
+     * @return the new entity
+     */
+    private <T extends ModelBase> T hydrate(Class<T> modelClass, Object[] row) {
+        T model = JdbcBackend.instantiate(modelClass);
+        model.importValues(row);
+        return model;
+    }
+
+    /**
+     * Create the entities of a list of rows
+     * @param modelClass the model class
+     * @param rows the stored rows
+     * @param <T> the model type
+     * @return the new entities
+     */
+    private <T extends ModelBase> List<T> hydrateAll(Class<T> modelClass, List<Object[]> rows) {
+        List<T> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            result.add(this.hydrate(modelClass, row));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,569 @@
+package storage;
+
+import converters.ConverterRegistry;
+import metrics.QueryTracer;
+import models.ColumnMapping;
+import models.ModelBase;
+import models.ModelMetadata;
+import utils.DatabaseProvider;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC storage backend. It generate the SQL requests from the model metadata and run them on the connection of the DatabaseProvider, the reads being routed to the read replicas by the ReadRouter. Every statement is reported to the query tracer (slow query log).
+ * The writes lock the main connection, so the statements of another thread never join the transaction of a saveAll.
+ * @see utils.DatabaseProvider
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class JdbcBackend implements StorageBackend {
+
+    /**
+     * Maximal number of ids of a findByIds request, the longer lists being read by pages
+     */
+    static final int idsPerRequest = 500;
+
+    @Override
+    public <T extends ModelBase> T find(Class<T> modelClass, int id) throws SQLException {
+        return this.find(ReadRouter.forRead(), modelClass, id);
+    }
+
+    @Override
+    public <T extends ModelBase> List<T> findByIds(Class<T> modelClass, int[] ids) throws SQLException {
+        return this.findByIds(ReadRouter.forRead(), modelClass, ids);
+    }
+
+    @Override
+    public <T extends ModelBase> List<T> findBy(Class<T> modelClass, String column, Object value) throws SQLException {
+        return this.findBy(ReadRouter.forRead(), modelClass, column, value);
+    }
+
+    @Override
+    public List<Object[]> select(Class<? extends ModelBase> modelClass, String[] columns, String column, Object value) throws SQLException {
+        return this.select(ReadRouter.forRead(), modelClass, columns, column, value);
+    }
+
+    @Override
+    public <T extends ModelBase> List<T> findBetween(Class<T> modelClass, String column, Object value, String rangeColumn, Object from, Object to) throws SQLException {
+        return this.findBetween(ReadRouter.forRead(), modelClass, column, value, rangeColumn, from, to);
+    }
+
+    @Override
+    public List<Object[]> scan(Class<? extends ModelBase> modelClass, String[] columns, int afterId, int limit) throws SQLException {
+        return this.scan(ReadRouter.forRead(), modelClass, columns, afterId, limit);
+    }
+
+    @Override
+    public <T extends ModelBase> List<T> findAll(Class<T> modelClass) throws SQLException {
+        return this.findAll(ReadRouter.forRead(), modelClass);
+    }
+
+    @Override
+    public int insert(ModelBase model) throws SQLException {
+        Connection conn = primary();
+        int id;
+        synchronized (conn) {
+            id = this.insert(conn, model);
+        }
+        ReadRouter.recordWrite();
+        return id;
+    }
+
+    @Override
+    public int[] insertRows(Class<? extends ModelBase> modelClass, List<Object[]> rows) throws SQLException {
+        Connection conn = DatabaseProvider.getBatchDatabase();
+        if (conn == null) throw new SQLException("No database connection available for the batch insert");
+        synchronized (conn) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                int[] ids = this.insertRows(conn, modelClass, rows);
+                conn.commit();
+                return ids;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    @Override
+    public int update(ModelBase model) throws SQLException {
+        Connection conn = primary();
+        int rows;
+        synchronized (conn) {
+            rows = this.update(conn, model);
+        }
+        ReadRouter.recordWrite();
+        return rows;
+    }
+
+    @Override
+    public int delete(ModelBase model) throws SQLException {
+        Connection conn = primary();
+        int rows;
+        synchronized (conn) {
+            rows = this.delete(conn, model);
+        }
+        ReadRouter.recordWrite();
+        return rows;
+    }
+
+    @Override
+    public int increment(ModelBase model, String[] keyColumns, String[] addedColumns) throws SQLException {
+        Connection conn = primary();
+        int rows;
+        synchronized (conn) {
+            rows = this.increment(conn, model, keyColumns, addedColumns);
+        }
+        ReadRouter.recordWrite();
+        return rows;
+    }
+
+    /**
+     * Save the entities in one transaction on the main connection. The ids, hooks and events of the entities are only applied once it is committed
+     * @throws CommitUnknownException if the commit itself failed
+     */
+    @Override
+    public boolean saveAll(List<? extends ModelBase> models) throws SQLException {
+        Connection conn = primary();
+        int[] ids = new int[models.size()];
+        synchronized (conn) {
+            boolean autoCommit = conn.getAutoCommit();
+            boolean committing = false;
+            conn.setAutoCommit(false);
+            try {
+                for (int i = 0; i < ids.length; i++) {
+                    ModelBase model = models.get(i);
+                    if (model.getId() == -1) {
+                        ids[i] = this.insert(conn, model);
+                    } else if (this.update(conn, model) == 0) {
+                        throw new SQLException("Unable to update " + model.getClass().getSimpleName() + " (" + model.getId() + ")");
+                    }
+                }
+                committing = true;
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                if (committing) throw new CommitUnknownException("The commit of " + models.size() + " entities failed, they may be saved or not", e);
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+        ReadRouter.recordWrite();
+        for (int i = 0; i < ids.length; i++) {
+            ModelBase model = models.get(i);
+            if (model.getId() == -1) {
+                model.assignId(ids[i]);
+            } else {
+                model.markUpdated();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retrieve the main connection, which receive the writes
+     * @return the connection
+     * @throws SQLException if there is no connection
+     */
+    private static Connection primary() throws SQLException {
+        Connection conn = DatabaseProvider.getDatabase();
+        if (conn == null) throw new SQLException("No database connection available");
+        return conn;
+    }
+
+    /**
+     * Retrieve an entity by id on a given connection
+     * @param conn the connection
+     * @param modelClass the model class
+     * @param id the id of the entity
+     * @param <T> the model type
+     * @return the entity or null if it doesn't exist
+     * @throws SQLException if the request fail
+     */
+    <T extends ModelBase> T find(Connection conn, Class<T> modelClass, int id) throws SQLException {
+        String query = ModelSql.of(ModelMetadata.of(modelClass)).find;
+
+        long start = System.nanoTime();
+        try (PreparedStatement statement = conn.prepareStatement(query)) {
+            statement.setInt(1, id);
+            ResultSet res = statement.executeQuery();
+            T model = null;
+            if (res.next()) {
+                model = instantiate(modelClass);
+                model.importDatabaseData(res);
+            }
+            QueryTracer.record(query, System.nanoTime() - start, model != null ? 1 : 0, id);
+            return model;
+        }
+    }
+
+    /**
+     * Retrieve the entities having some ids on a given connection, with one IN request per page of idsPerRequest ids
+     * @param conn the connection
+     * @param modelClass the model class
+     * @param ids the ids of the entities
+     * @param <T> the model type
+     * @return the existing entities
+     * @throws SQLException if a request fail
+     */
+    <T extends ModelBase> List<T> findByIds(Connection conn, Class<T> modelClass, int[] ids) throws SQLException {
+        ModelSql sql = ModelSql.of(ModelMetadata.of(modelClass));
+        List<T> result = new ArrayList<>(ids.length);
+        for (int from = 0; from < ids.length; from += idsPerRequest) {
+            int count = Math.min(idsPerRequest, ids.length - from);
+            String query = sql.findByIds(count);
+
+            long start = System.nanoTime();
+            try (PreparedStatement statement = conn.prepareStatement(query)) {
+                for (int i = 0; i < count; i++) {
+                    statement.setInt(i + 1, ids[from + i]);
+                }
+                List<T> page = this.fillResult(modelClass, statement.executeQuery());
+                QueryTracer.record(query, System.nanoTime() - start, page.size(), count + " ids");
+                result.addAll(page);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retrieve the entities having a column value on a given connection
+     * @param conn the connection
+     * @param modelClass the model class
+     * @param column the column name
+     * @param value the searched value
+     * @param <T> the model type
+     * @return the matching entities
+     * @throws SQLException if the request fail
+     */
+    <T extends ModelBase> List<T> findBy(Connection conn, Class<T> modelClass, String column, Object value) throws SQLException {
+        String query = ModelSql.of(ModelMetadata.of(modelClass)).findBy(column);
+
+        long start = System.nanoTime();
+        try (PreparedStatement statement = conn.prepareStatement(query)) {
+            this.setFieldValue(statement, 1, value);
+            List<T> result = this.fillResult(modelClass, statement.executeQuery());
+            QueryTracer.record(query, System.nanoTime() - start, result.size(), value);
+            return result;
+        }
+    }
+
+    /**
+     * Retrieve the entities having a column value and another column value within a range on a given connection. The range condition let the database prune the partitions of a table partitioned by this column
+     * @param conn the connection
+     * @param modelClass the model class
+     * @param column the column name
+     * @param value the searched value
+     * @param rangeColumn the column of the range
+     * @param from the start of the range (included)
+     * @param to the end of the range (excluded)
+     * @param <T> the model type
+     * @return the matching entities, ordered by the range column
+     * @throws SQLException if the request fail
+     */
+    <T extends ModelBase> List<T> findBetween(Connection conn, Class<T> modelClass, String column, Object value, String rangeColumn, Object from, Object to) throws SQLException {
+        String query = ModelSql.of(ModelMetadata.of(modelClass)).findBetween(column, rangeColumn);
+
+        long start = System.nanoTime();
+        try (PreparedStatement statement = conn.prepareStatement(query)) {
+            this.setFieldValue(statement, 1, value);
+            this.setFieldValue(statement, 2, from);
+            this.setFieldValue(statement, 3, to);
+            List<T> result = this.fillResult(modelClass, statement.executeQuery());
+            QueryTracer.record(query, System.nanoTime() - start, result.size(), value);
+            return result;
+        }
+    }
+
+    /**
+     * Retrieve some columns of the entities having a column value on a given connection
+     * @param conn the connection
+     * @param modelClass the model class
+     * @param columns the columns to read
+     * @param column the searched column
+     * @param value the searched value
+     * @return the rows, values in the columns order
+     * @throws SQLException if the request fail
+     */
+    List<Object[]> select(Connection conn, Class<? extends ModelBase> modelClass, String[] columns, String column, Object value) throws SQLException {
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        ColumnMapping[] mappings = this.columnMappings(metadata, columns);
+        String query = "SELECT " + String.join(", ", columns) + " FROM " + metadata.getTable() + " WHERE " + column + " = ?";
+
+        long start = System.nanoTime();
+        try (PreparedStatement statement = conn.prepareStatement(query)) {
+            this.setFieldValue(statement, 1, value);
+            List<Object[]> result = this.readColumns(statement.executeQuery(), mappings);
+            QueryTracer.record(query, System.nanoTime() - start, result.size(), value);
+            return result;
+        }
+    }
+
+    /**
+     * Retrieve some columns of the entities following an id on a given connection, by increasing id
+     * @param conn the connection
+     * @param modelClass the model class
+     * @param columns the columns to read
+     * @param afterId the id after which the page start
+     * @param limit the maximal number of rows
+     * @return the rows, values in the columns order
+     * @throws SQLException if the request fail
+     */
+    List<Object[]> scan(Connection conn, Class<? extends ModelBase> modelClass, String[] columns, int afterId, int limit) throws SQLException {
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        ColumnMapping[] mappings = this.columnMappings(metadata, columns);
+        String query = "SELECT " + String.join(", ", columns) + " FROM " + metadata.getTable() + " WHERE id > ? ORDER BY id LIMIT ?";
+
+        long start = System.nanoTime();
+        try (PreparedStatement statement = conn.prepareStatement(query)) {
+            statement.setInt(1, afterId);
+            statement.setInt(2, limit);
+            List<Object[]> result = this.readColumns(statement.executeQuery(), mappings);
+            QueryTracer.record(query, System.nanoTime() - start, result.size(), afterId);
+            return result;
+        }
+    }
+
+    /**
+     * Retrieve all the entities of a model on a given connection
+     * @param conn the connection
+     * @param modelClass the model class
+     * @param <T> the model type
+     * @return the entities
+     * @throws SQLException if the request fail
+     */
+    <T extends ModelBase> List<T> findAll(Connection conn, Class<T> modelClass) throws SQLException {
+        String query = ModelSql.of(ModelMetadata.of(modelClass)).findAll;
+
+        long start = System.nanoTime();
+        try (Statement statement = conn.createStatement()) {
+            List<T> result = this.fillResult(modelClass, statement.executeQuery(query));
+            QueryTracer.record(query, System.nanoTime() - start, result.size(), null);
+            return result;
+        }
+    }
+
+    /**
+     * Insert an entity on a given connection
+     * @param conn the connection
+     * @param model the entity to insert
+     * @return the generated id
+     * @throws SQLException if the insert fail
+     */
+    int insert(Connection conn, ModelBase model) throws SQLException {
+        final String query = ModelSql.of(model.getMetadata()).insert;
+
+        long start = System.nanoTime();
+        try (PreparedStatement statement = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            model.fillStatement(statement);
+            if (statement.executeUpdate() == 0) {
+                throw new SQLException("Failed to persist new instance of " + model.getClass().getSimpleName());
+            }
+            ResultSet generatedKeys = statement.getGeneratedKeys();
+            if (!generatedKeys.next()) {
+                throw new SQLException("Creating " + model.getClass().getSimpleName() + " failed, no ID obtained.");
+            }
+            int id = generatedKeys.getInt(1);
+            QueryTracer.record(query, System.nanoTime() - start, 1, model);
+            return id;
+        }
+    }
+
+    /**
+     * Insert rows of database values as one JDBC batch on a given connection. The caller handle the transaction
+     * @param conn the connection
+     * @param modelClass the model class
+     * @param rows the entities as rows of database values (see ModelBase.exportValues), the id being ignored
+     * @return the generated ids, in the rows order
+     * @throws SQLException if the insert fail
+     */
+    int[] insertRows(Connection conn, Class<? extends ModelBase> modelClass, List<Object[]> rows) throws SQLException {
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        final String query = ModelSql.of(metadata).insert;
+        int[] ids = new int[rows.size()];
+        if (rows.isEmpty()) return ids;
+
+        long start = System.nanoTime();
+        try (PreparedStatement statement = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            for (Object[] row : rows) {
+                for (int idx = 1; idx < row.length; idx++) {
+                    if (row[idx] == null) {
+                        statement.setNull(idx, Types.NULL);
+                    } else {
+                        statement.setObject(idx, row[idx]);
+                    }
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            ResultSet generatedKeys = statement.getGeneratedKeys();
+            for (int i = 0; i < ids.length; i++) {
+                if (!generatedKeys.next()) throw new SQLException("Batch insert in " + metadata.getTable() + " failed, missing generated ids");
+                ids[i] = generatedKeys.getInt(1);
+            }
+        }
+        QueryTracer.record(query, System.nanoTime() - start, rows.size(), rows.size() + " rows");
+        return ids;
+    }
+
+    /**
+     * Update an entity on a given connection
+     * @param conn the connection
+     * @param model the entity to update (must have an id)
+     * @return the number of rows updated
+     * @throws SQLException if the update fail
+     */
+    int update(Connection conn, ModelBase model) throws SQLException {
+        final String query = ModelSql.of(model.getMetadata()).update;
+
+        long start = System.nanoTime();
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(model.fillStatement(stmt), model.getId());
+            int rows = stmt.executeUpdate();
+            QueryTracer.record(query, System.nanoTime() - start, rows, model);
+            return rows;
+        }
+    }
+
+    /**
+     * Delete an entity on a given connection
+     * @param conn the connection
+     * @param model the entity to delete (must have an id)
+     * @return the number of rows deleted
+     * @throws SQLException if the delete fail
+     */
+    int delete(Connection conn, ModelBase model) throws SQLException {
+        String query = ModelSql.of(model.getMetadata()).delete;
+
+        long start = System.nanoTime();
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, model.getId());
+            int rows = stmt.executeUpdate();
+            QueryTracer.record(query, System.nanoTime() - start, rows, model);
+            return rows;
+        }
+    }
+
+    /**
+     * Increment columns of the row matching key columns on a given connection, or insert the entity, with a single INSERT ... ON DUPLICATE KEY UPDATE (column = column + VALUES(column)) relying on the unique index of the key columns
+     * @param conn the connection
+     * @param model the entity holding the key values and the amounts to add
+     * @param keyColumns the columns identifying the row, unique together
+     * @param addedColumns the numeric columns to increment
+     * @return 1 if the entity was inserted, 2 if the row was incremented
+     * @throws SQLException if the write fail or a column is unknown
+     */
+    int increment(Connection conn, ModelBase model, String[] keyColumns, String[] addedColumns) throws SQLException {
+        ModelMetadata metadata = model.getMetadata();
+        for (String column : keyColumns) {
+            if (metadata.getColumnIndex(column) < 0) throw new SQLException("Unknown column " + column + " in table " + metadata.getTable());
+        }
+        StringBuilder set = new StringBuilder();
+        for (String column : addedColumns) {
+            if (metadata.getColumnIndex(column) < 0) throw new SQLException("Unknown column " + column + " in table " + metadata.getTable());
+            set.append(", ").append(column).append(" = ").append(column).append(" + VALUES(").append(column).append(')');
+        }
+        String insert = ModelSql.of(metadata).insert;
+        final String query = insert.substring(0, insert.length() - 1) + " ON DUPLICATE KEY UPDATE " + set.substring(2) + ";";
+
+        long start = System.nanoTime();
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            model.fillStatement(stmt);
+            int rows = stmt.executeUpdate();
+            QueryTracer.record(query, System.nanoTime() - start, rows, model);
+            return rows;
+        }
+    }
+
+    /**
+     * Create an empty instance of a model
+     * @param modelClass the model class
+     * @param <T> the model type
+     * @return the new instance
+     * @throws IllegalStateException if the model doesn't have an accessible default constructor
+     */
+    static <T extends ModelBase> T instantiate(Class<T> modelClass) {
+        try {
+            return modelClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Unable to instantiate model " + modelClass.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Generate a list of instance of entities based on the result from the database.
+     * @param modelClass the model class
+     * @param res the response from the database
+     * @param <T> the model type
+     * @return the entities
+     * @throws SQLException if there is a database error
+     */
+    private <T extends ModelBase> List<T> fillResult(Class<T> modelClass, ResultSet res) throws SQLException {
+        List<T> data = new ArrayList<>();
+        while (res.next()) {
+            T entity = instantiate(modelClass);
+            entity.importDatabaseData(res);
+            data.add(entity);
+        }
+        return data;
+    }
+
+    /**
+     * Resolve the mappings of the columns of a projection
+     * @param metadata the metadata of the model
+     * @param columns the column names
+     * @return the mapping of each column, null for the id
+     * @throws SQLException if a column is unknown
+     */
+    private ColumnMapping[] columnMappings(ModelMetadata metadata, String[] columns) throws SQLException {
+        ColumnMapping[] mappings = new ColumnMapping[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (!columns[i].equals("id") && (mappings[i] = metadata.getColumn(columns[i])) == null) {
+                throw new SQLException("Unknown column " + columns[i] + " in table " + metadata.getTable());
+            }
+        }
+        return mappings;
+    }
+
+    /**
+     * Read the rows of a projection, converting each value with its column converter (the id of a relation)
+     * @param res the result of the request
+     * @param mappings the mapping of each column, null for the id
+     * @return the rows, values in the columns order
+     * @throws SQLException if a value cannot be read
+     */
+    private List<Object[]> readColumns(ResultSet res, ColumnMapping[] mappings) throws SQLException {
+        List<Object[]> result = new ArrayList<>();
+        while (res.next()) {
+            Object[] row = new Object[mappings.length];
+            for (int i = 0; i < mappings.length; i++) {
+                ColumnMapping mapping = mappings[i];
+                row[i] = mapping == null || mapping.isRelation() ? (Object) res.getInt(i + 1) : mapping.getConverter().read(res, i + 1);
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    /**
+     * Fill the prepared statement using the converter registered for the value type
+     * @param stmt the statement to fill
+     * @param idx the index where to fill the value
+     * @param value the value to insert
+     * @throws SQLException if an sql error occur
+     */
+    private void setFieldValue(PreparedStatement stmt, int idx, Object value) throws SQLException {
+        if (value instanceof ModelBase) {
+            stmt.setInt(idx, ((ModelBase) value).getId());
+        } else {
+            ConverterRegistry.forValue(value).write(stmt, idx, value);
+        }
+    }
+}
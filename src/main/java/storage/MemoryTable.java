@@ -0,0 +1,307 @@
+package storage;
+
+import models.ColumnMapping;
+import models.ModelMetadata;
+import utils.IntObjectHashMap;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Table of the in-memory backend. The rows are arrays of database values (see ModelBase.exportValues) stored in a primitive int keyed hash map. The columns marked with the Indexed or Unique annotation have a secondary index mapping each value to the rows holding it, and the unique ones reject duplicates. Stored rows are never modified (an update replace the array) so they can be read outside the table lock.
+ * @see storage.InMemoryBackend
+ * @author Antoine FORET
+ * @version 1.0
+ */
+class MemoryTable {
+
+    /**
+     * Order of the rows returned by the searches (by id, like a database primary key)
+     */
+    private static final Comparator<Object[]> byId = Comparator.comparingInt(row -> (Integer) row[0]);
+
+    /**
+     * Rows indexed by id
+     */
+    private final IntObjectHashMap<Object[]> rows = new IntObjectHashMap<>();
+
+    /**
+     * Secondary indexes indexed by column position (null for a column without index). Each one map a value to the rows holding it
+     */
+    private final List<HashMap<Object, IntObjectHashMap<Object[]>>> indexes;
+
+    /**
+     * Names of the unique columns indexed by column position (null for a column that accept duplicates)
+     */
+    private final String[] uniqueColumns;
+
+    /**
+     * Name of the table, for the error messages
+     */
+    private final String table;
+
+    /**
+     * Next id to generate
+     */
+    private int nextId = 1;
+
+    /**
+     * Constructor of the table
+     * @param metadata the metadata of the model stored in the table
+     */
+    MemoryTable(ModelMetadata metadata) {
+        int width = 1 + metadata.getAttributes().size() + metadata.getRelations().size();
+        this.table = metadata.getTable();
+        this.indexes = new ArrayList<>(width);
+        this.indexes.add(null);
+        this.uniqueColumns = new String[width];
+        List<ColumnMapping> columns = new ArrayList<>(metadata.getAttributes());
+        columns.addAll(metadata.getRelations());
+        for (int idx = 1; idx < width; idx++) {
+            ColumnMapping mapping = columns.get(idx - 1);
+            this.indexes.add(mapping.isIndexed() ? new HashMap<>() : null);
+            if (mapping.isUnique()) this.uniqueColumns[idx] = mapping.getName();
+        }
+    }
+
+    /**
+     * Retrieve a row by id
+     * @param id the id of the row
+     * @return the row or null
+     */
+    synchronized Object[] get(int id) {
+        return this.rows.get(id);
+    }
+
+    /**
+     * Retrieve all the rows with the given value in a column. Use the secondary index of the column if there is one, else scan the table
+     * @param column the position of the column
+     * @param value the database value to match
+     * @return the matching rows ordered by id
+     */
+    synchronized List<Object[]> findBy(int column, Object value) {
+        Object key = normalize(value);
+        List<Object[]> result = new ArrayList<>();
+        if (column == 0) {
+            Object[] row = key instanceof Long ? this.rows.get(((Long) key).intValue()) : null;
+            if (row != null) result.add(row);
+            return result;
+        }
+        HashMap<Object, IntObjectHashMap<Object[]>> index = this.indexes.get(column);
+        if (index != null) {
+            IntObjectHashMap<Object[]> matching = index.get(key);
+            if (matching != null) matching.forEachValue(result::add);
+        } else {
+            this.rows.forEachValue(row -> {
+                if (key == null ? row[column] == null : key.equals(normalize(row[column]))) result.add(row);
+            });
+        }
+        result.sort(byId);
+        return result;
+    }
+
+    /**
+     * Retrieve all the rows
+     * @return the rows ordered by id
+     */
+    synchronized List<Object[]> all() {
+        List<Object[]> result = new ArrayList<>(this.rows.size());
+        this.rows.forEachValue(result::add);
+        result.sort(byId);
+        return result;
+    }
+
+    /**
+     * Retrieve a page of rows following an id
+     * @param afterId the id after which the page start
+     * @param limit the maximal number of rows
+     * @return the rows ordered by id
+     */
+    synchronized List<Object[]> scan(int afterId, int limit) {
+        List<Object[]> result = new ArrayList<>();
+        this.rows.forEachValue(row -> {
+            if ((Integer) row[0] > afterId) result.add(row);
+        });
+        result.sort(byId);
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * Insert a new row, generating its id
+     * @param row the row to insert (its first value is replaced by the id)
+     * @return the generated id
+     * @throws SQLException if the row duplicate the value of a unique column
+     */
+    synchronized int insert(Object[] row) throws SQLException {
+        this.checkUnique(row, -1);
+        int id = this.nextId++;
+        row[0] = id;
+        this.rows.put(id, row);
+        this.index(row);
+        return id;
+    }
+
+    /**
+     * Insert several rows at once. Either all the rows are inserted or none
+     * @param rows the rows to insert (their first value is replaced by the id)
+     * @return the generated ids
+     * @throws SQLException if a row duplicate the value of a unique column
+     */
+    synchronized int[] insertAll(List<Object[]> rows) throws SQLException {
+        int[] ids = new int[rows.size()];
+        int inserted = 0;
+        try {
+            for (; inserted < ids.length; inserted++) {
+                ids[inserted] = this.insert(rows.get(inserted));
+            }
+        } catch (SQLException e) {
+            for (int i = 0; i < inserted; i++) {
+                this.delete(ids[i]);
+            }
+            throw e;
+        }
+        return ids;
+    }
+
+    /**
+     * Replace a row
+     * @param id the id of the row
+     * @param row the new row
+     * @return if the row existed
+     * @throws SQLException if the row duplicate the value of a unique column
+     */
+    synchronized boolean update(int id, Object[] row) throws SQLException {
+        Object[] previous = this.rows.get(id);
+        if (previous == null) return false;
+        this.checkUnique(row, id);
+        this.unindex(previous);
+        row[0] = id;
+        this.rows.put(id, row);
+        this.index(row);
+        return true;
+    }
+
+    /**
+     * Add values to some numeric columns of the row matching the values of key columns, replaced by an updated copy, or insert the values as a new row when no row match
+     * @param keyColumns the positions of the key columns
+     * @param addedColumns the positions of the columns to increment
+     * @param values a row holding the key values and the amounts to add
+     * @return 1 if the values were inserted, 2 if a row was incremented
+     * @throws SQLException if an incremented column is not numeric
+     */
+    synchronized int increment(int[] keyColumns, int[] addedColumns, Object[] values) throws SQLException {
+        int updated = 0;
+        for (Object[] row : this.findBy(keyColumns[0], values[keyColumns[0]])) {
+            boolean matching = true;
+            for (int i = 1; i < keyColumns.length && matching; i++) {
+                Object key = normalize(values[keyColumns[i]]);
+                matching = key == null ? row[keyColumns[i]] == null : key.equals(normalize(row[keyColumns[i]]));
+            }
+            if (!matching) continue;
+            Object[] copy = row.clone();
+            for (int column : addedColumns) {
+                copy[column] = add(copy[column], values[column]);
+            }
+            this.update((Integer) row[0], copy);
+            updated++;
+        }
+        if (updated > 0) return 2;
+        this.insert(values);
+        return 1;
+    }
+
+    /**
+     * Delete a row
+     * @param id the id of the row
+     * @return if the row existed
+     */
+    synchronized boolean delete(int id) {
+        Object[] previous = this.rows.remove(id);
+        if (previous == null) return false;
+        this.unindex(previous);
+        return true;
+    }
+
+    /**
+     * Check that a row doesn't duplicate the value of a unique column of another row. NULL values are never duplicates, like in SQL
+     * @param row the row to check
+     * @param id the id of the row, or -1 for a new row
+     * @throws SQLException if a unique value is already used
+     */
+    private void checkUnique(Object[] row, int id) throws SQLException {
+        for (int column = 1; column < this.uniqueColumns.length; column++) {
+            if (this.uniqueColumns[column] == null || row[column] == null) continue;
+            IntObjectHashMap<Object[]> matching = this.indexes.get(column).get(normalize(row[column]));
+            if (matching != null && (matching.size() > 1 || !matching.containsKey(id))) {
+                throw new SQLException("Duplicate entry '" + row[column] + "' for key '" + this.table + "." + this.uniqueColumns[column] + "'");
+            }
+        }
+    }
+
+    /**
+     * Add a row to the secondary indexes
+     * @param row the row
+     */
+    private void index(Object[] row) {
+        int id = (Integer) row[0];
+        for (int column = 1; column < this.indexes.size(); column++) {
+            HashMap<Object, IntObjectHashMap<Object[]>> index = this.indexes.get(column);
+            if (index != null) {
+                index.computeIfAbsent(normalize(row[column]), key -> new IntObjectHashMap<>(4)).put(id, row);
+            }
+        }
+    }
+
+    /**
+     * Remove a row from the secondary indexes
+     * @param row the row
+     */
+    private void unindex(Object[] row) {
+        int id = (Integer) row[0];
+        for (int column = 1; column < this.indexes.size(); column++) {
+            HashMap<Object, IntObjectHashMap<Object[]>> index = this.indexes.get(column);
+            if (index != null) {
+                Object key = normalize(row[column]);
+                IntObjectHashMap<Object[]> matching = index.get(key);
+                if (matching != null) {
+                    matching.remove(id);
+                    if (matching.isEmpty()) index.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Normalize a value for the comparisons: all the integral numbers become Long, so an int search value match a BIGINT column and the other way around
+     * @param value the value
+     * @return the normalized value
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+
+    /**
+     * Add two database values, keeping the type of the stored one (NULL counting as zero)
+     * @param stored the stored value
+     * @param delta the value to add
+     * @return the sum
+     * @throws SQLException if one of the values is not a number
+     */
+    private static Object add(Object stored, Object delta) throws SQLException {
+        if (delta == null) return stored;
+        if (!(delta instanceof Number) || (stored != null && !(stored instanceof Number))) {
+            throw new SQLException("Cannot increment a non numeric value (" + stored + " + " + delta + ")");
+        }
+        Number amount = (Number) delta;
+        if (stored instanceof Double) return (Double) stored + amount.doubleValue();
+        if (stored instanceof Float) return (Float) stored + amount.floatValue();
+        if (stored instanceof Integer) return (Integer) stored + amount.intValue();
+        return (stored != null ? ((Number) stored).longValue() : 0L) + amount.longValue();
+    }
+}
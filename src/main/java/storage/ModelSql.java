@@ -0,0 +1,148 @@
+package storage;
+
+import models.ColumnMapping;
+import models.ModelMetadata;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SQL requests of a model, generated once from its metadata and shared by every thread. The fixed requests (by id, insert, update, delete) are built on creation, the searches on first use of each column. The instances are immutable once their searches are built.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+final class ModelSql {
+
+    /**
+     * Requests of each model, by model metadata (one instance per model)
+     */
+    private static final Map<ModelMetadata, ModelSql> cache = new ConcurrentHashMap<>();
+
+    /**
+     * The table of the model
+     */
+    private final String table;
+
+    /**
+     * Select one entity by id
+     */
+    final String find;
+
+    /**
+     * Select every entity
+     */
+    final String findAll;
+
+    /**
+     * Insert an entity (attributes then relations)
+     */
+    final String insert;
+
+    /**
+     * Update an entity by id (attributes then relations, then the id)
+     */
+    final String update;
+
+    /**
+     * Delete an entity by id
+     */
+    final String delete;
+
+    /**
+     * Searches built so far, by searched column (and range column)
+     */
+    private final Map<String, String> searches = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor. Use the of method to benefit from the cache
+     * @param metadata the metadata of the model
+     */
+    private ModelSql(ModelMetadata metadata) {
+        this.table = metadata.getTable();
+        this.find = "SELECT * FROM " + this.table + " WHERE " + this.table + ".id = ?;";
+        this.findAll = "SELECT * FROM " + this.table;
+        this.delete = "DELETE FROM " + this.table + " WHERE " + this.table + ".id = ?;";
+
+        StringBuilder columns = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        StringBuilder assignments = new StringBuilder();
+        for (ColumnMapping mapping : metadata.getAttributes()) {
+            this.appendColumn(mapping, columns, values, assignments);
+        }
+        for (ColumnMapping mapping : metadata.getRelations()) {
+            this.appendColumn(mapping, columns, values, assignments);
+        }
+        this.insert = "INSERT INTO " + this.table + " (" + columns.substring(2) + ") VALUES (" + values.substring(2) + ");";
+        this.update = "UPDATE " + this.table + " SET " + assignments.substring(2) + " WHERE " + this.table + ".id = ?;";
+    }
+
+    /**
+     * Retrieve the requests of a model
+     * @param metadata the metadata of the model
+     * @return the requests
+     */
+    static ModelSql of(ModelMetadata metadata) {
+        ModelSql sql = cache.get(metadata);
+        if (sql == null) {
+            sql = cache.computeIfAbsent(metadata, ModelSql::new);
+        }
+        return sql;
+    }
+
+    /**
+     * Select the entities having one of some ids. Only the requests of a whole page of ids are kept, the last page of a list being of any size
+     * @param count the number of ids
+     * @return the request
+     */
+    String findByIds(int count) {
+        if (count == JdbcBackend.idsPerRequest) {
+            return this.searches.computeIfAbsent("id IN", k -> this.buildFindByIds(count));
+        }
+        return this.buildFindByIds(count);
+    }
+
+    /**
+     * Build the request selecting the entities having one of some ids
+     * @param count the number of ids
+     * @return the request
+     */
+    private String buildFindByIds(int count) {
+        StringBuilder query = new StringBuilder("SELECT * FROM ").append(this.table).append(" WHERE ").append(this.table).append(".id IN (?");
+        for (int i = 1; i < count; i++) {
+            query.append(", ?");
+        }
+        return query.append(')').toString();
+    }
+
+    /**
+     * Select the entities having a column value
+     * @param column the searched column
+     * @return the request
+     */
+    String findBy(String column) {
+        return this.searches.computeIfAbsent(column, k -> "SELECT * FROM " + this.table + " WHERE " + column + " = ?");
+    }
+
+    /**
+     * Select the entities having a column value and another column within a range, ordered by this column
+     * @param column the searched column
+     * @param rangeColumn the column of the range
+     * @return the request
+     */
+    String findBetween(String column, String rangeColumn) {
+        return this.searches.computeIfAbsent(column + " " + rangeColumn, k -> "SELECT * FROM " + this.table + " WHERE " + column + " = ? AND " + rangeColumn + " >= ? AND " + rangeColumn + " < ? ORDER BY " + rangeColumn);
+    }
+
+    /**
+     * Add a column to the insert and update requests
+     * @param mapping the column
+     * @param columns the column list of the insert
+     * @param values the placeholders of the insert
+     * @param assignments the assignments of the update
+     */
+    private void appendColumn(ColumnMapping mapping, StringBuilder columns, StringBuilder values, StringBuilder assignments) {
+        columns.append(", ").append(mapping.getName());
+        values.append(", ?");
+        assignments.append(", ").append(this.table).append(".").append(mapping.getName()).append(" = ?");
+    }
+}
@@ -0,0 +1,88 @@
+package storage;
+
+import utils.Configuration;
+import utils.DatabaseProvider;
+
+import java.sql.Connection;
+
+/**
+ * Route the reads of the JDBC backend between the main database and the read replicas. A session is a thread: after a write the session reads from the main database during "otto.db.replica.readYourWritesMs" (2000 by default) so it see its own writes despite the replication lag, and the code run through onPrimary (read-modify-write of a balance for example) never read from a replica.
+ * Without replica (see DatabaseProvider.hasReplicas) every read goes to the main database.
+ * @see utils.DatabaseProvider#getReplicaDatabase()
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class ReadRouter {
+
+    /**
+     * Duration of the read-your-writes window, in nanoseconds
+     */
+    private static final long windowNanos = Configuration.getLong("otto.db.replica.readYourWritesMs", 2000) * 1_000_000;
+
+    /**
+     * Routing state of the current session
+     */
+    private static final ThreadLocal<Session> session = ThreadLocal.withInitial(Session::new);
+
+    /**
+     * Utility class, not instantiable
+     */
+    private ReadRouter() { }
+
+    /**
+     * Select the connection of a read of the current session
+     * @return a replica connection, or the main connection when the session must read its own writes
+     */
+    public static Connection forRead() {
+        if (!DatabaseProvider.hasReplicas()) return DatabaseProvider.getDatabase();
+        Session current = session.get();
+        if (current.primaryDepth > 0 || (current.hasWritten && System.nanoTime() - current.lastWrite < windowNanos)) {
+            return DatabaseProvider.getDatabase();
+        }
+        return DatabaseProvider.getReplicaDatabase();
+    }
+
+    /**
+     * Record a write of the current session, opening its read-your-writes window
+     */
+    public static void recordWrite() {
+        Session current = session.get();
+        current.lastWrite = System.nanoTime();
+        current.hasWritten = true;
+    }
+
+    /**
+     * Run an action whose reads must all go to the main database, typically a read followed by a write depending on it
+     * @param action the action to run
+     */
+    public static void onPrimary(Runnable action) {
+        Session current = session.get();
+        current.primaryDepth++;
+        try {
+            action.run();
+        } finally {
+            current.primaryDepth--;
+        }
+    }
+
+    /**
+     * Routing state of a session
+     */
+    private static final class Session {
+
+        /**
+         * Time of the last write (System.nanoTime)
+         */
+        long lastWrite;
+
+        /**
+         * If the session already wrote something
+         */
+        boolean hasWritten;
+
+        /**
+         * Number of nested onPrimary calls running
+         */
+        int primaryDepth;
+    }
+}
@@ -0,0 +1,438 @@
+package storage;
+
+import logging.Logger;
+import models.ColumnMapping;
+import models.ModelBase;
+import models.ModelMetadata;
+import models.Models;
+import utils.Configuration;
+import utils.DatabaseProvider;
+import utils.IntArrayList;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+/**
+ * JDBC storage backend spreading the entities over several databases (shards, see DatabaseProvider.getShardDatabase). Each model column marked with @ShardKey decide the shard of its entities:
+ * an account live on the shard of its identifier (consistent hashing ring, so adding a shard only move a fraction of the identifiers) and a transaction on the shard of its initiator. The ids are allocated by ranges of "otto.db.shard.rangeSize" per shard (the whole int range split evenly by default), shard 0 starting at 1 so an existing database can become the first shard: the id of an entity is enough to find its shard.
+ * The requests on the id or on the shard key go to one shard, the others (findAll, the history of the transactions received) are sent to every shard and their results concatenated. An identifier not found on its shard is searched on the others, in case it was created before a shard was added.
+ * saveAll write the entities of several shards atomically with a two-phase commit (see TwoPhaseCommit), which the transfers between accounts of different shards rely on.
+ * @see annotations.ShardKey
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class ShardedBackend extends JdbcBackend {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(ShardedBackend.class);
+
+    /**
+     * Number of points of each shard on the hashing ring
+     */
+    private static final int virtualNodes = 64;
+
+    /**
+     * Number of shards
+     */
+    private final int shardCount;
+
+    /**
+     * Number of ids allocated to each shard
+     */
+    private final int rangeSize;
+
+    /**
+     * The hashing ring: position to shard
+     */
+    private final TreeMap<Integer, Integer> ring = new TreeMap<>();
+
+    /**
+     * If the id sequences of each shard were moved to its range
+     */
+    private final boolean[] prepared;
+
+    /**
+     * Coordinator of the writes spanning several shards
+     */
+    private final TwoPhaseCommit coordinator;
+
+    /**
+     * Constructor, using the shards of the configuration
+     */
+    public ShardedBackend() {
+        this(DatabaseProvider.getShardCount());
+    }
+
+    /**
+     * Constructor
+     * @param shardCount the number of shards
+     * @throws IllegalArgumentException if there is no shard
+     */
+    public ShardedBackend(int shardCount) {
+        if (shardCount < 1) throw new IllegalArgumentException("A sharded storage need at least one shard");
+        this.shardCount = shardCount;
+        this.rangeSize = Configuration.getInt("otto.db.shard.rangeSize", Integer.MAX_VALUE / shardCount);
+        this.prepared = new boolean[shardCount];
+        this.coordinator = new TwoPhaseCommit(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                this.ring.put(mix(("shard-" + shard + "#" + node).hashCode()), shard);
+            }
+        }
+    }
+
+    /**
+     * Find the shard holding an id
+     * @param id the id of an entity
+     * @return the shard index
+     */
+    public int shardOfId(int id) {
+        return Math.min(Math.max(id - 1, 0) / this.rangeSize, this.shardCount - 1);
+    }
+
+    /**
+     * One range of ids per shard
+     */
+    @Override
+    public int[] idRanges() {
+        int[] starts = new int[this.shardCount];
+        for (int shard = 0; shard < this.shardCount; shard++) {
+            starts[shard] = shard * this.rangeSize + 1;
+        }
+        return starts;
+    }
+
+    /**
+     * Find the shard of a shard key value
+     * @param key the shard key mapping
+     * @param value the value: a model or its id for a relation, the Java value for an attribute
+     * @return the shard index
+     */
+    public int shardOfKey(ColumnMapping key, Object value) {
+        if (key.isRelation()) {
+            return this.shardOfId(value instanceof ModelBase ? ((ModelBase) value).getId() : (Integer) value);
+        }
+        return this.shardOfHash(key.getConverter().toDatabase(value));
+    }
+
+    /**
+     * Finish the transactions interrupted by a previous run, see TwoPhaseCommit.recover. Called on startup
+     */
+    public void recover() {
+        this.coordinator.recover(this.shardCount);
+    }
+
+    @Override
+    public <T extends ModelBase> T find(Class<T> modelClass, int id) throws SQLException {
+        if (id < 1) return null;
+        return this.find(this.connection(this.shardOfId(id)), modelClass, id);
+    }
+
+    /**
+     * Group the ids by shard, each shard being read with its own requests
+     */
+    @Override
+    public <T extends ModelBase> List<T> findByIds(Class<T> modelClass, int[] ids) throws SQLException {
+        IntArrayList[] byShard = new IntArrayList[this.shardCount];
+        for (int id : ids) {
+            if (id < 1) continue;
+            int shard = this.shardOfId(id);
+            if (byShard[shard] == null) byShard[shard] = new IntArrayList();
+            byShard[shard].add(id);
+        }
+        List<T> result = new ArrayList<>(ids.length);
+        for (int shard = 0; shard < this.shardCount; shard++) {
+            if (byShard[shard] != null) result.addAll(this.findByIds(this.connection(shard), modelClass, byShard[shard].toArray()));
+        }
+        return result;
+    }
+
+    @Override
+    public <T extends ModelBase> List<T> findBy(Class<T> modelClass, String column, Object value) throws SQLException {
+        ColumnMapping key = ModelMetadata.of(modelClass).getShardKey();
+        if (key == null || !key.getName().equals(column)) {
+            List<T> result = new ArrayList<>();
+            for (int shard = 0; shard < this.shardCount; shard++) {
+                result.addAll(this.findBy(this.connection(shard), modelClass, column, value));
+            }
+            return result;
+        }
+        int target = this.shardOfKey(key, value);
+        List<T> result = this.findBy(this.connection(target), modelClass, column, value);
+        for (int shard = 0; result.isEmpty() && !key.isRelation() && shard < this.shardCount; shard++) {
+            if (shard != target) result = this.findBy(this.connection(shard), modelClass, column, value);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Object[]> select(Class<? extends ModelBase> modelClass, String[] columns, String column, Object value) throws SQLException {
+        ColumnMapping key = ModelMetadata.of(modelClass).getShardKey();
+        if (key == null || !key.getName().equals(column)) {
+            List<Object[]> result = new ArrayList<>();
+            for (int shard = 0; shard < this.shardCount; shard++) {
+                result.addAll(this.select(this.connection(shard), modelClass, columns, column, value));
+            }
+            return result;
+        }
+        int target = this.shardOfKey(key, value);
+        List<Object[]> result = this.select(this.connection(target), modelClass, columns, column, value);
+        for (int shard = 0; result.isEmpty() && !key.isRelation() && shard < this.shardCount; shard++) {
+            if (shard != target) result = this.select(this.connection(shard), modelClass, columns, column, value);
+        }
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends ModelBase> List<T> findBetween(Class<T> modelClass, String column, Object value, String rangeColumn, Object from, Object to) throws SQLException {
+        ColumnMapping key = ModelMetadata.of(modelClass).getShardKey();
+        if (key == null || !key.getName().equals(column)) {
+            List<T> result = new ArrayList<>();
+            for (int shard = 0; shard < this.shardCount; shard++) {
+                result.addAll(this.findBetween(this.connection(shard), modelClass, column, value, rangeColumn, from, to));
+            }
+            ColumnMapping range = ModelMetadata.of(modelClass).getColumn(rangeColumn);
+            result.sort(Comparator.comparing(model -> (Comparable) range.get(model)));
+            return result;
+        }
+        int target = this.shardOfKey(key, value);
+        List<T> result = this.findBetween(this.connection(target), modelClass, column, value, rangeColumn, from, to);
+        for (int shard = 0; result.isEmpty() && !key.isRelation() && shard < this.shardCount; shard++) {
+            if (shard != target) result = this.findBetween(this.connection(shard), modelClass, column, value, rangeColumn, from, to);
+        }
+        return result;
+    }
+
+    /**
+     * Scan the shards in the order of their id ranges, from the shard of the next id, until the page is full: the ranges don't overlap so the rows stay ordered by id
+     */
+    @Override
+    public List<Object[]> scan(Class<? extends ModelBase> modelClass, String[] columns, int afterId, int limit) throws SQLException {
+        List<Object[]> result = new ArrayList<>();
+        for (int shard = this.shardOfId(afterId + 1); shard < this.shardCount && result.size() < limit; shard++) {
+            result.addAll(this.scan(this.connection(shard), modelClass, columns, afterId, limit - result.size()));
+        }
+        return result;
+    }
+
+    @Override
+    public <T extends ModelBase> List<T> findAll(Class<T> modelClass) throws SQLException {
+        List<T> result = new ArrayList<>();
+        for (int shard = 0; shard < this.shardCount; shard++) {
+            result.addAll(this.findAll(this.connection(shard), modelClass));
+        }
+        return result;
+    }
+
+    @Override
+    public int insert(ModelBase model) throws SQLException {
+        int shard = this.shardOf(model);
+        return this.checkRange(shard, this.insert(this.connection(shard), model), model.getMetadata());
+    }
+
+    /**
+     * Insert rows, grouped by shard. When they belong to several shards they are committed together with a two-phase commit
+     */
+    @Override
+    public int[] insertRows(Class<? extends ModelBase> modelClass, List<Object[]> rows) throws SQLException {
+        ModelMetadata metadata = ModelMetadata.of(modelClass);
+        ColumnMapping key = metadata.getShardKey();
+        int column = key != null ? metadata.getColumnIndex(key.getName()) : -1;
+        IntArrayList[] indexes = new IntArrayList[this.shardCount];
+        for (int i = 0; i < rows.size(); i++) {
+            Object value = column >= 0 ? rows.get(i)[column] : null;
+            int shard = value == null ? 0 : key.isRelation() ? this.shardOfId((Integer) value) : this.shardOfHash(value);
+            if (indexes[shard] == null) indexes[shard] = new IntArrayList();
+            indexes[shard].add(i);
+        }
+
+        int[] ids = new int[rows.size()];
+        SortedMap<Integer, TwoPhaseCommit.Branch> branches = new TreeMap<>();
+        for (int shard = 0; shard < indexes.length; shard++) {
+            IntArrayList shardIndexes = indexes[shard];
+            if (shardIndexes == null) continue;
+            int branchShard = shard;
+            this.connection(shard);
+            branches.put(shard, conn -> {
+                List<Object[]> shardRows = new ArrayList<>(shardIndexes.size());
+                for (int i = 0; i < shardIndexes.size(); i++) {
+                    shardRows.add(rows.get(shardIndexes.get(i)));
+                }
+                int[] shardIds = this.insertRows(conn, modelClass, shardRows);
+                for (int i = 0; i < shardIds.length; i++) {
+                    ids[shardIndexes.get(i)] = this.checkRange(branchShard, shardIds[i], metadata);
+                }
+            });
+        }
+        if (!branches.isEmpty()) this.coordinator.execute(branches);
+        return ids;
+    }
+
+    @Override
+    public int update(ModelBase model) throws SQLException {
+        return this.update(this.connection(this.shardOfId(model.getId())), model);
+    }
+
+    @Override
+    public int delete(ModelBase model) throws SQLException {
+        return this.delete(this.connection(this.shardOfId(model.getId())), model);
+    }
+
+    /**
+     * Increment or store the row on the shard of the entity, so the key columns should include the shard key
+     */
+    @Override
+    public int increment(ModelBase model, String[] keyColumns, String[] addedColumns) throws SQLException {
+        return this.increment(this.connection(this.shardOf(model)), model, keyColumns, addedColumns);
+    }
+
+    /**
+     * Save the entities in one transaction, committed with a two-phase commit when they live on several shards. The relations of the new entities must already be persisted
+     */
+    @Override
+    public boolean saveAll(List<? extends ModelBase> models) throws SQLException {
+        SortedMap<Integer, List<ModelBase>> byShard = new TreeMap<>();
+        List<ModelBase> updated = new ArrayList<>();
+        for (ModelBase model : models) {
+            int shard = this.shardOf(model);
+            this.connection(shard);
+            byShard.computeIfAbsent(shard, k -> new ArrayList<>()).add(model);
+            if (model.getId() != -1) updated.add(model);
+        }
+
+        Map<ModelBase, Integer> generatedIds = new IdentityHashMap<>();
+        SortedMap<Integer, TwoPhaseCommit.Branch> branches = new TreeMap<>();
+        for (Map.Entry<Integer, List<ModelBase>> entry : byShard.entrySet()) {
+            int shard = entry.getKey();
+            branches.put(shard, conn -> {
+                for (ModelBase model : entry.getValue()) {
+                    if (model.getId() == -1) {
+                        generatedIds.put(model, this.checkRange(shard, this.insert(conn, model), model.getMetadata()));
+                    } else if (this.update(conn, model) == 0) {
+                        throw new SQLException("Unable to update " + model.getClass().getSimpleName() + " (" + model.getId() + ") on shard " + shard);
+                    }
+                }
+            });
+        }
+        this.coordinator.execute(branches);
+        for (Map.Entry<ModelBase, Integer> generated : generatedIds.entrySet()) {
+            generated.getKey().assignId(generated.getValue());
+        }
+        for (ModelBase model : updated) {
+            model.markUpdated();
+        }
+        return true;
+    }
+
+    /**
+     * Find the shard of an entity: the shard of its id once persisted, else the shard of its shard key (shard 0 for the models without shard key)
+     * @param model the entity
+     * @return the shard index
+     * @throws SQLException if the entity is new and its shard key is a relation not persisted yet
+     */
+    private int shardOf(ModelBase model) throws SQLException {
+        if (model.getId() != -1) return this.shardOfId(model.getId());
+        ColumnMapping key = model.getMetadata().getShardKey();
+        if (key == null) return 0;
+        Object value = key.get(model);
+        if (value == null) return 0;
+        if (key.isRelation() && ((ModelBase) value).getId() == -1) {
+            throw new SQLException("The " + key.getName() + " of a new " + model.getClass().getSimpleName() + " must be persisted first");
+        }
+        return this.shardOfKey(key, value);
+    }
+
+    /**
+     * Find the shard of a hashed shard key on the ring
+     * @param databaseValue the database value of the key
+     * @return the shard index
+     */
+    private int shardOfHash(Object databaseValue) {
+        Map.Entry<Integer, Integer> node = this.ring.ceilingEntry(mix(databaseValue.hashCode()));
+        return node != null ? node.getValue() : this.ring.firstEntry().getValue();
+    }
+
+    /**
+     * Retrieve the connection of a shard, moving the id sequences of its tables to its range on first use
+     * @param shard the shard index
+     * @return the connection
+     * @throws SQLException if the shard is unreachable
+     */
+    private Connection connection(int shard) throws SQLException {
+        Connection conn = DatabaseProvider.getShardDatabase(shard);
+        if (conn == null) throw new SQLException("Shard " + shard + " is unreachable");
+        if (!this.prepared[shard]) {
+            synchronized (this.prepared) {
+                if (!this.prepared[shard]) {
+                    this.prepareIds(conn, shard);
+                    this.prepared[shard] = true;
+                }
+            }
+        }
+        return conn;
+    }
+
+    /**
+     * Make the id sequences of every table of a shard start in the shard range, unless they are already in it
+     * @param conn the connection of the shard
+     * @param shard the shard index
+     */
+    private void prepareIds(Connection conn, int shard) {
+        long base = (long) shard * this.rangeSize + 1;
+        long end = shard == this.shardCount - 1 ? Integer.MAX_VALUE : base + this.rangeSize - 1;
+        for (Class<? extends ModelBase> model : Models.all()) {
+            String table = ModelMetadata.of(model).getTable();
+            try (Statement statement = conn.createStatement()) {
+                ResultSet res = statement.executeQuery("SELECT MIN(id), MAX(id) FROM " + table);
+                res.next();
+                long min = res.getLong(1);
+                long max = res.getLong(2);
+                if (max > end || (max != 0 && min < base)) {
+                    log.error("Table " + table + " of shard " + shard + " has ids outside of the shard range [" + base + ", " + end + "], they cannot be found by id");
+                }
+                if (max < base) {
+                    statement.executeUpdate(DatabaseProvider.isEmbeddedProfile()
+                            ? "ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + base
+                            : "ALTER TABLE " + table + " AUTO_INCREMENT = " + base);
+                }
+            } catch (SQLException e) {
+                log.warning("Unable to move the id sequence of table " + table + " on shard " + shard + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Check that a generated id belong to the range of its shard
+     * @param shard the shard which generated it
+     * @param id the generated id
+     * @param metadata the metadata of the model inserted
+     * @return the id
+     * @throws SQLException if the id is outside of the range, the entity could not be found by id
+     */
+    private int checkRange(int shard, int id, ModelMetadata metadata) throws SQLException {
+        if (this.shardOfId(id) != shard) {
+            throw new SQLException("Id " + id + " generated by shard " + shard + " for table " + metadata.getTable() + " is outside of its range");
+        }
+        return id;
+    }
+
+    /**
+     * Spread the bits of a hash code over the ring (murmur3 finalizer)
+     * @param hash the hash code
+     * @return the mixed hash
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,51 @@
+package storage;
+
+import utils.Configuration;
+
+/**
+ * Provide the storage backend used by the models and repositories. The backend is selected with the "otto.storage" setting: "jdbc" (default) or "memory". With "otto.groupCommit.enabled" the JDBC writes are committed by groups, with "otto.db.shard.urls" they are spread over several databases.
+ * @see storage.StorageBackend
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class Storage {
+
+    /**
+     * The current backend
+     */
+    private static volatile StorageBackend backend = create(Configuration.get("otto.storage", "jdbc"));
+
+    /**
+     * Access the current storage backend
+     * @return the backend
+     */
+    public static StorageBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Replace the storage backend
+     * @param backend the backend to use from now on
+     */
+    public static void setBackend(StorageBackend backend) {
+        Storage.backend = backend;
+    }
+
+    /**
+     * Create a backend from its name
+     * @param name the backend name ("jdbc" or "memory")
+     * @return the new backend
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static StorageBackend create(String name) {
+        switch (name) {
+            case "jdbc":
+                if (!Configuration.get("otto.db.shard.urls", "").trim().isEmpty()) return new ShardedBackend();
+                return Configuration.getBoolean("otto.groupCommit.enabled", false) ? new GroupCommitBackend() : new JdbcBackend();
+            case "memory":
+                return new InMemoryBackend();
+            default:
+                throw new IllegalArgumentException("Unknown storage backend " + name);
+        }
+    }
+}
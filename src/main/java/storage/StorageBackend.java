@@ -0,0 +1,151 @@
+package storage;
+
+import models.ModelBase;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Storage SPI used by the models and repositories. The default implementation is the JDBC one (MySQL), the in-memory one keep everything inside the JVM for tests, demos, load generators and to benchmark the ORM without the database.
+ * @see storage.Storage
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public interface StorageBackend {
+
+    /**
+     * Search for one entity by its id
+     * @param modelClass the model class
+     * @param id the id of the entity
+     * @param <T> the model type
+     * @return the entity or null if it doesn't exist
+     * @throws SQLException if the storage fail
+     */
+    <T extends ModelBase> T find(Class<T> modelClass, int id) throws SQLException;
+
+    /**
+     * Search for the entities having some ids, with one request per page of ids instead of one per entity. Used to load the relations of a list of entities
+     * @param modelClass the model class
+     * @param ids the ids of the entities, without duplicates
+     * @param <T> the model type
+     * @return the existing entities, in no particular order
+     * @throws SQLException if the storage fail
+     */
+    <T extends ModelBase> List<T> findByIds(Class<T> modelClass, int[] ids) throws SQLException;
+
+    /**
+     * Search for all the entities with the given value in a column
+     * @param modelClass the model class
+     * @param column the column name
+     * @param value the value to match. A model is matched by its id
+     * @param <T> the model type
+     * @return the matching entities
+     * @throws SQLException if the storage fail
+     */
+    <T extends ModelBase> List<T> findBy(Class<T> modelClass, String column, Object value) throws SQLException;
+
+    /**
+     * Read some columns of the entities with the given value in a column, without creating the entities. Used by the hot paths that don't need the whole entity (like the login)
+     * @param modelClass the model class
+     * @param columns the columns to read ("id", attributes or relations)
+     * @param column the column to search with
+     * @param value the value to match. A model is matched by its id
+     * @return one array per matching entity, holding the Java values of the requested columns (the id of a relation)
+     * @throws SQLException if the storage fail
+     */
+    List<Object[]> select(Class<? extends ModelBase> modelClass, String[] columns, String column, Object value) throws SQLException;
+
+    /**
+     * Search for the entities with the given value in a column and a value of another column within a range. On a table partitioned by the range column, only the partitions of the range are read
+     * @param modelClass the model class
+     * @param column the column name
+     * @param value the value to match. A model is matched by its id
+     * @param rangeColumn the column of the range (an attribute)
+     * @param from the start of the range (included)
+     * @param to the end of the range (excluded)
+     * @param <T> the model type
+     * @return the matching entities, ordered by the range column
+     * @throws SQLException if the storage fail
+     */
+    <T extends ModelBase> List<T> findBetween(Class<T> modelClass, String column, Object value, String rangeColumn, Object from, Object to) throws SQLException;
+
+    /**
+     * Read some columns of the entities following an id, by increasing id, without creating the entities. Used to walk a whole table by pages (keyset pagination) without holding it in memory
+     * @param modelClass the model class
+     * @param columns the columns to read ("id", attributes or relations)
+     * @param afterId the id after which the page start (0 for the first page)
+     * @param limit the maximal number of rows
+     * @return one array per entity, holding the Java values of the requested columns (the id of a relation)
+     * @throws SQLException if the storage fail
+     */
+    List<Object[]> scan(Class<? extends ModelBase> modelClass, String[] columns, int afterId, int limit) throws SQLException;
+
+    /**
+     * Retrieve all the entities of a model
+     * @param modelClass the model class
+     * @param <T> the model type
+     * @return all the entities
+     * @throws SQLException if the storage fail
+     */
+    <T extends ModelBase> List<T> findAll(Class<T> modelClass) throws SQLException;
+
+    /**
+     * Store a new entity
+     * @param model the entity to store
+     * @return the generated id of the entity
+     * @throws SQLException if the storage fail
+     */
+    int insert(ModelBase model) throws SQLException;
+
+    /**
+     * Store several new entities at once, in a single transaction when the storage support it
+     * @param modelClass the model class
+     * @param rows the entities as rows of database values (see ModelBase.exportValues), the id being ignored
+     * @return the generated ids, in the rows order
+     * @throws SQLException if the storage fail, in which case none of the rows is stored
+     */
+    int[] insertRows(Class<? extends ModelBase> modelClass, List<Object[]> rows) throws SQLException;
+
+    /**
+     * Update a stored entity
+     * @param model the entity to update (must have an id)
+     * @return the number of rows updated
+     * @throws SQLException if the storage fail
+     */
+    int update(ModelBase model) throws SQLException;
+
+    /**
+     * Delete a stored entity
+     * @param model the entity to delete (must have an id)
+     * @return the number of rows deleted
+     * @throws SQLException if the storage fail
+     */
+    int delete(ModelBase model) throws SQLException;
+
+    /**
+     * Add the values of some numeric columns of an entity to the stored row having the same values in the key columns, or store the entity when there is none, in one atomic write (counters, aggregates). Nothing is read before, so concurrent increments are never lost nor stored twice: the key columns must be unique together in the storage
+     * @param model the entity holding the key values and the amounts to add
+     * @param keyColumns the columns identifying the row, covered by a unique index
+     * @param addedColumns the numeric columns to increment
+     * @return 1 if the entity was stored as a new row, 2 if the existing row was incremented (like MySQL)
+     * @throws SQLException if the storage fail or a column is unknown
+     */
+    int increment(ModelBase model, String[] keyColumns, String[] addedColumns) throws SQLException;
+
+    /**
+     * Save several entities atomically (new ones inserted, persisted ones updated): either all of them are saved or none, the sharded storage committing them with a two-phase commit across shards. The new ids are assigned, and the hooks run, only once every entity is saved
+     * @param models the entities to save, their relations already persisted
+     * @return if every entity was saved
+     * @throws SQLException if the storage fail, in which case none of the entities is saved
+     * @throws CommitUnknownException if the commit itself failed, the entities being then maybe saved or not
+     */
+    boolean saveAll(List<? extends ModelBase> models) throws SQLException;
+
+    /**
+     * List the ranges in which the ids are allocated independently (one per shard). The new entities of a range get growing ids, but a range can get ids below the ones of the next range, so finding the new entities after the greatest id read must be done range by range
+     * @return the first id of each range, increasing. A single range starting at 1 by default
+     */
+    default int[] idRanges() {
+        return new int[]{1};
+    }
+}
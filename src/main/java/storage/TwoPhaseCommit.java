@@ -0,0 +1,418 @@
+package storage;
+
+import logging.Logger;
+import metrics.OperationMetrics;
+import metrics.PersistenceMetrics;
+import utils.Configuration;
+import utils.DatabaseProvider;
+
+import javax.sql.XAConnection;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coordinator of the transactions spanning several shards. Each shard run its part (branch) in an XA transaction on its XA connection, then the classic two-phase commit is applied: every branch is prepared, the commit decision is written and forced to a local decision log ("otto.db.shard.decisionLog", otto-2pc.log by default), and only then the branches are committed. A transaction touching a single shard is committed in one phase.
+ * If the process stop between the decision and the end of the commits, the branches stay prepared in the databases: recover, called on startup, commit the ones whose decision was logged and roll back the others. Several terminals can share the shards: each global transaction id start with a prefix derived from the terminal id ("otto.terminal.id"), and a terminal only recover its own transactions, so every terminal sharing the shards needs its own id.
+ * The decision log only has to keep the transactions committed and not completed: it is emptied by a complete recovery, and rewritten with the pending transactions every "otto.db.shard.decisionLogCompactEvery" lines (1000).
+ * The XA connection of a shard run one transaction at a time, the shards being locked in index order so two transactions never wait for each other.
+ * @see utils.DatabaseProvider#getShardXAConnection(int)
+ * @author Antoine FORET
+ * @version 1.0
+ */
+class TwoPhaseCommit {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(TwoPhaseCommit.class);
+
+    /**
+     * XA format id of the transactions of the application ("OT"), to recognize them during the recovery
+     */
+    private static final int formatId = 0x4F54;
+
+    /**
+     * Length of the prefix of the global transaction ids identifying the terminal
+     */
+    private static final int prefixLength = 8;
+
+    /**
+     * Number of lines appended to the decision log between two compactions
+     */
+    private static final int compactEvery = Configuration.getInt("otto.db.shard.decisionLogCompactEvery", 1000);
+
+    /**
+     * Source of the global transaction ids
+     */
+    private static final SecureRandom random = new SecureRandom();
+
+    /**
+     * Metrics of the transactions (rows being the number of shards)
+     */
+    private static final OperationMetrics metrics = PersistenceMetrics.get("Shards", "twoPhaseCommit");
+
+    /**
+     * The decision log
+     */
+    private final Path decisionLog = Paths.get(Configuration.get("otto.db.shard.decisionLog", "otto-2pc.log"));
+
+    /**
+     * Identifier of the terminal, whose transactions this coordinator recover
+     */
+    private final String terminal = Configuration.get("otto.terminal.id", "local");
+
+    /**
+     * Prefix of the global transaction ids of the terminal
+     */
+    private final byte[] prefix = prefix(this.terminal);
+
+    /**
+     * Global ids (hexadecimal) of the transactions logged as committed and not yet as done. Guarded by the instance lock, like the decision log
+     */
+    private final Set<String> pending = new HashSet<>();
+
+    /**
+     * Number of lines appended to the decision log since it was last compacted
+     */
+    private int appended;
+
+    /**
+     * One lock per shard, guarding its XA connection
+     */
+    private final ReentrantLock[] locks;
+
+    /**
+     * Part of a transaction run on one shard
+     */
+    interface Branch {
+
+        /**
+         * Run the statements of the branch
+         * @param conn the connection of the shard, enlisted in the XA transaction
+         * @throws SQLException if a statement fail, which roll back the whole transaction
+         */
+        void run(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Constructor
+     * @param shardCount the number of shards
+     */
+    TwoPhaseCommit(int shardCount) {
+        this.locks = new ReentrantLock[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Run a transaction on several shards. Either every branch is committed or none
+     * @param branches the branch of each shard involved
+     * @throws SQLException if a branch fail or cannot be prepared, in which case every branch is rolled back
+     * @throws CommitUnknownException if the commit of a transaction on a single shard failed without rolling it back
+     */
+    void execute(SortedMap<Integer, Branch> branches) throws SQLException {
+        byte[] unique = new byte[16 - prefixLength];
+        random.nextBytes(unique);
+        byte[] gtrid = new byte[16];
+        System.arraycopy(this.prefix, 0, gtrid, 0, prefixLength);
+        System.arraycopy(unique, 0, gtrid, prefixLength, unique.length);
+        long start = System.nanoTime();
+        List<Integer> locked = new ArrayList<>(branches.size());
+        Map<Integer, XAResource> ended = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<Integer, Branch> entry : branches.entrySet()) {
+                int shard = entry.getKey();
+                this.locks[shard].lock();
+                locked.add(shard);
+                XAConnection xaConnection = DatabaseProvider.getShardXAConnection(shard);
+                if (xaConnection == null) throw new SQLException("Shard " + shard + " is unreachable");
+                XAResource resource = xaConnection.getXAResource();
+                Xid xid = new ShardXid(gtrid, shard);
+                resource.start(xid, XAResource.TMNOFLAGS);
+                try (Connection conn = xaConnection.getConnection()) {
+                    entry.getValue().run(conn);
+                } finally {
+                    resource.end(xid, XAResource.TMSUCCESS);
+                    ended.put(shard, resource);
+                }
+            }
+            if (ended.size() == 1) {
+                Map.Entry<Integer, XAResource> only = ended.entrySet().iterator().next();
+                try {
+                    only.getValue().commit(new ShardXid(gtrid, only.getKey()), true);
+                } catch (XAException e) {
+                    if (e.errorCode >= XAException.XA_RBBASE && e.errorCode <= XAException.XA_RBEND) throw e;
+                    throw new CommitUnknownException("The commit of the transaction " + hex(gtrid) + " on shard " + only.getKey() + " failed, it may be committed or not", e);
+                }
+            } else {
+                this.prepareAndCommit(gtrid, ended);
+            }
+            metrics.record(System.nanoTime() - start, branches.size());
+        } catch (SQLException | XAException | RuntimeException e) {
+            metrics.recordError(System.nanoTime() - start);
+            for (Map.Entry<Integer, XAResource> entry : ended.entrySet()) {
+                rollback(entry.getValue(), new ShardXid(gtrid, entry.getKey()));
+            }
+            if (e instanceof SQLException) throw (SQLException) e;
+            throw new SQLException("Transaction on shards " + branches.keySet() + " failed", e);
+        } finally {
+            for (int shard : locked) {
+                this.locks[shard].unlock();
+            }
+        }
+    }
+
+    /**
+     * Recover the transactions of this terminal left prepared by a previous run: the branches whose commit decision was logged are committed, the others rolled back. The branches of the other terminals are left to them. The decision log is emptied once every shard is recovered
+     * @param shardCount the number of shards
+     */
+    void recover(int shardCount) {
+        if (this.terminal.equals("local")) {
+            log.warning("No otto.terminal.id defined: the prepared transactions of every other terminal without one are recovered as this terminal's");
+        }
+        Set<String> committed = this.readDecisions();
+        boolean complete = true;
+        for (int shard = 0; shard < shardCount; shard++) {
+            XAConnection xaConnection = DatabaseProvider.getShardXAConnection(shard);
+            if (xaConnection == null) {
+                complete = false;
+                continue;
+            }
+            try {
+                XAResource resource = xaConnection.getXAResource();
+                for (Xid xid : resource.recover(XAResource.TMSTARTRSCAN | XAResource.TMENDRSCAN)) {
+                    if (xid.getFormatId() != formatId || !this.isOwn(xid.getGlobalTransactionId())) continue;
+                    if (committed.contains(hex(xid.getGlobalTransactionId()))) {
+                        log.info("Committing the prepared transaction " + hex(xid.getGlobalTransactionId()) + " on shard " + shard);
+                        resource.commit(xid, false);
+                    } else {
+                        log.info("Rolling back the prepared transaction " + hex(xid.getGlobalTransactionId()) + " on shard " + shard);
+                        resource.rollback(xid);
+                    }
+                }
+            } catch (XAException | SQLException e) {
+                complete = false;
+                log.error("Unable to recover the prepared transactions of shard " + shard, e);
+            }
+        }
+        synchronized (this) {
+            if (complete) {
+                try {
+                    Files.write(this.decisionLog, new byte[0]);
+                    this.appended = 0;
+                } catch (IOException e) {
+                    log.error("Unable to empty the decision log " + this.decisionLog, e);
+                    this.pending.addAll(committed);
+                }
+            } else {
+                // Keep the decisions of the shards not recovered through the compactions, until the next start
+                this.pending.addAll(committed);
+            }
+        }
+    }
+
+    /**
+     * Second part of the two-phase commit: prepare every branch, log the decision then commit them
+     * @param gtrid the global transaction id
+     * @param ended the resources of the branches, by shard
+     * @throws XAException if a branch cannot be prepared (nothing is committed)
+     * @throws SQLException if the decision cannot be logged (nothing is committed)
+     */
+    private void prepareAndCommit(byte[] gtrid, Map<Integer, XAResource> ended) throws XAException, SQLException {
+        Map<Integer, XAResource> prepared = new LinkedHashMap<>();
+        for (Map.Entry<Integer, XAResource> entry : ended.entrySet()) {
+            if (entry.getValue().prepare(new ShardXid(gtrid, entry.getKey())) == XAResource.XA_OK) {
+                prepared.put(entry.getKey(), entry.getValue());
+            }
+        }
+        this.logDecision(hex(gtrid), true);
+        // From here the transaction is committed: a failing branch is completed by the recovery
+        ended.clear();
+        boolean done = true;
+        for (Map.Entry<Integer, XAResource> entry : prepared.entrySet()) {
+            try {
+                entry.getValue().commit(new ShardXid(gtrid, entry.getKey()), false);
+            } catch (XAException e) {
+                done = false;
+                log.error("Unable to commit the transaction " + hex(gtrid) + " on shard " + entry.getKey() + ", it will be committed on the next start", e);
+            }
+        }
+        if (done) {
+            this.logDecision(hex(gtrid), false);
+        }
+    }
+
+    /**
+     * Append a decision to the decision log, compacting it every compactEvery lines
+     * @param gtrid the global transaction id (hexadecimal)
+     * @param commit true for the commit decision, forced to the disk before returning, false once every branch is committed
+     * @throws SQLException if the commit decision cannot be written
+     */
+    private synchronized void logDecision(String gtrid, boolean commit) throws SQLException {
+        try {
+            if (commit) {
+                Files.write(this.decisionLog, ("commit " + gtrid + "\n").getBytes(StandardCharsets.US_ASCII), StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+                this.pending.add(gtrid);
+            } else {
+                this.pending.remove(gtrid);
+                Files.write(this.decisionLog, ("done " + gtrid + "\n").getBytes(StandardCharsets.US_ASCII), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        } catch (IOException e) {
+            if (commit) throw new SQLException("Unable to write the decision log " + this.decisionLog, e);
+            log.error("Unable to write the decision log " + this.decisionLog, e);
+            return;
+        }
+        if (++this.appended >= compactEvery) {
+            this.compact();
+        }
+    }
+
+    /**
+     * Rewrite the decision log with the pending transactions only. The new log is forced to the disk then moved over the old one, so a crash leave either of them
+     */
+    private void compact() {
+        StringBuilder lines = new StringBuilder();
+        for (String gtrid : this.pending) {
+            lines.append("commit ").append(gtrid).append('\n');
+        }
+        Path compacted = this.decisionLog.resolveSibling(this.decisionLog.getFileName() + ".tmp");
+        try {
+            Files.write(compacted, lines.toString().getBytes(StandardCharsets.US_ASCII), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.DSYNC);
+            Files.move(compacted, this.decisionLog, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.appended = this.pending.size();
+        } catch (IOException e) {
+            log.error("Unable to compact the decision log " + this.decisionLog, e);
+        }
+    }
+
+    /**
+     * Read the transactions committed but maybe not completed from the decision log
+     * @return the global ids (hexadecimal) logged as committed and not as done
+     */
+    private Set<String> readDecisions() {
+        Set<String> committed = new HashSet<>();
+        if (!Files.exists(this.decisionLog)) return committed;
+        try {
+            for (String line : Files.readAllLines(this.decisionLog, StandardCharsets.US_ASCII)) {
+                if (line.startsWith("commit ")) {
+                    committed.add(line.substring(7));
+                } else if (line.startsWith("done ")) {
+                    committed.remove(line.substring(5));
+                }
+            }
+        } catch (IOException e) {
+            log.error("Unable to read the decision log " + this.decisionLog, e);
+        }
+        return committed;
+    }
+
+    /**
+     * Check if a global transaction id was created by this terminal
+     * @param gtrid the global transaction id
+     * @return if it start with the prefix of the terminal
+     */
+    private boolean isOwn(byte[] gtrid) {
+        if (gtrid.length < prefixLength) return false;
+        for (int i = 0; i < prefixLength; i++) {
+            if (gtrid[i] != this.prefix[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compute the prefix of the global transaction ids of a terminal: the start of the SHA-256 hash of its id
+     * @param terminal the terminal id
+     * @return the prefix
+     */
+    private static byte[] prefix(String terminal) {
+        try {
+            return Arrays.copyOf(MessageDigest.getInstance("SHA-256").digest(terminal.getBytes(StandardCharsets.UTF_8)), prefixLength);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Roll back a branch, logging the failures
+     * @param resource the resource of the branch
+     * @param xid the branch id
+     */
+    private static void rollback(XAResource resource, Xid xid) {
+        try {
+            resource.rollback(xid);
+        } catch (XAException e) {
+            log.error("Unable to roll back the transaction " + hex(xid.getGlobalTransactionId()) + ", it will be rolled back on the next start", e);
+        }
+    }
+
+    /**
+     * Format bytes in hexadecimal
+     * @param bytes the bytes
+     * @return the hexadecimal string
+     */
+    private static String hex(byte[] bytes) {
+        StringBuilder res = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            res.append(String.format("%02x", b));
+        }
+        return res.toString();
+    }
+
+    /**
+     * XA id of a branch: the global transaction id (prefix of the terminal, then random bytes) and the shard index as branch qualifier
+     */
+    private static final class ShardXid implements Xid {
+
+        /**
+         * Global transaction id
+         */
+        private final byte[] gtrid;
+
+        /**
+         * Branch qualifier (shard index)
+         */
+        private final byte[] bqual;
+
+        /**
+         * Constructor
+         * @param gtrid the global transaction id
+         * @param shard the shard of the branch
+         */
+        ShardXid(byte[] gtrid, int shard) {
+            this.gtrid = gtrid;
+            this.bqual = ByteBuffer.allocate(4).putInt(shard).array();
+        }
+
+        @Override
+        public int getFormatId() {
+            return formatId;
+        }
+
+        @Override
+        public byte[] getGlobalTransactionId() {
+            return this.gtrid.clone();
+        }
+
+        @Override
+        public byte[] getBranchQualifier() {
+            return this.bqual.clone();
+        }
+    }
+}
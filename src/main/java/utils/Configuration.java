@@ -0,0 +1,123 @@
+package utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Externalized configuration of the application. A setting (for example "otto.db.url") is searched, in this order, in:
+ * the system properties (-Dotto.db.url=...), the environment (OTTO_DB_URL) and the configuration file.
+ * The configuration file is the one given by "otto.config" (property or OTTO_CONFIG variable), else "otto.properties" in the working directory, else "otto.properties" on the classpath.
+ * This class doesn't log anything as the logger itself is configured through it.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class Configuration {
+
+    /**
+     * Default name of the configuration file
+     */
+    private static final String defaultFile = "otto.properties";
+
+    /**
+     * Settings of the configuration file (empty if there is none)
+     */
+    private static final Properties file = loadFile();
+
+    /**
+     * Utility class, not instantiable
+     */
+    private Configuration() { }
+
+    /**
+     * Retrieve a setting
+     * @param key the setting name
+     * @param defaultValue the value returned if the setting is not defined
+     * @return the setting value
+     */
+    public static String get(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) value = System.getenv(environmentName(key));
+        if (value == null) value = file.getProperty(key);
+        return value != null ? value.trim() : defaultValue;
+    }
+
+    /**
+     * Retrieve an integer setting
+     * @param key the setting name
+     * @param defaultValue the value returned if the setting is not defined
+     * @return the setting value
+     * @throws NumberFormatException if the setting is not an integer
+     */
+    public static int getInt(String key, int defaultValue) {
+        String value = get(key, null);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    /**
+     * Retrieve a long setting
+     * @param key the setting name
+     * @param defaultValue the value returned if the setting is not defined
+     * @return the setting value
+     * @throws NumberFormatException if the setting is not a number
+     */
+    public static long getLong(String key, long defaultValue) {
+        String value = get(key, null);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    /**
+     * Retrieve a boolean setting
+     * @param key the setting name
+     * @param defaultValue the value returned if the setting is not defined
+     * @return the setting value ("true", whatever the case, is the only true value)
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key, null);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+
+    /**
+     * Convert a setting name into its environment variable name ("otto.db.url" become "OTTO_DB_URL")
+     * @param key the setting name
+     * @return the environment variable name
+     */
+    private static String environmentName(String key) {
+        return key.toUpperCase().replace('.', '_');
+    }
+
+    /**
+     * Load the configuration file
+     * @return the settings of the file
+     * @throws UncheckedIOException if the file cannot be read, or if the explicitly configured file doesn't exist
+     */
+    private static Properties loadFile() {
+        Properties properties = new Properties();
+        String explicit = System.getProperty("otto.config", System.getenv("OTTO_CONFIG"));
+        try {
+            if (explicit != null) {
+                try (InputStream in = Files.newInputStream(Paths.get(explicit))) {
+                    properties.load(in);
+                }
+                return properties;
+            }
+            Path local = Paths.get(defaultFile);
+            if (Files.isRegularFile(local)) {
+                try (InputStream in = Files.newInputStream(local)) {
+                    properties.load(in);
+                }
+                return properties;
+            }
+            try (InputStream in = Configuration.class.getResourceAsStream("/" + defaultFile)) {
+                if (in != null) properties.load(in);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the configuration file " + (explicit != null ? explicit : defaultFile), e);
+        }
+        return properties;
+    }
+}
@@ -1,45 +1,341 @@
 package utils;
 
+import logging.Logger;
+import metrics.OperationMetrics;
+import metrics.PersistenceMetrics;
+
+import javax.sql.XAConnection;
+import javax.sql.XADataSource;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Provide the database access. It follow the singleton pattern
+ * Provide the database access. It follow the singleton pattern. The connection settings come from the Configuration, starting from a profile:
+ * "mysql" (default, the MySQL server) or "embedded" (an in-process H2 database in MySQL mode, created from database.sql on startup).
+ * Read replicas can be listed in "otto.db.replica.urls" (comma separated, same driver and credentials unless "otto.db.replica.username" / "otto.db.replica.password" are set). They are only used for the reads routed by storage.ReadRouter.
+ * Shards can be listed in "otto.db.shard.urls" (comma separated, same profile and credentials). Each shard has a connection for the single statements and an XA connection (from the "otto.db.xaDataSource" class) for the two-phase commits, both used by storage.ShardedBackend.
+ * @see utils.Configuration
  * @author Antoine FORET
  * @version 1.0
  */
 public class DatabaseProvider {
-    /* Parameters for the database connection. The database must be a MySQL database */
-    private static final String host = "localhost:32769";
-    private static final String database = "otto-teller";
-    private static final String username = "root";
-    private static final String password = "root";
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(DatabaseProvider.class);
+
+    /* Default parameters of the mysql profile */
+    private static final String mysqlUrl = "jdbc:mysql://localhost:32769/otto-teller";
+    private static final String mysqlDriver = "com.mysql.cj.jdbc.Driver";
+    private static final String mysqlXaDataSource = "com.mysql.cj.jdbc.MysqlXADataSource";
+
+    /* Default parameters of the embedded profile. The database live as long as the JVM and keep the identifiers case like MySQL */
+    private static final String embeddedUrl = "jdbc:h2:mem:otto-teller;MODE=MySQL;DATABASE_TO_UPPER=FALSE;DB_CLOSE_DELAY=-1";
+    private static final String embeddedDriver = "org.h2.Driver";
+    private static final String embeddedSchema = "database.sql";
+    private static final String embeddedXaDataSource = "org.h2.jdbcx.JdbcDataSource";
 
     /**
      * Database connection instance
      */
-    static private Connection conn = null;
+    static private volatile Connection conn = null;
+
+    /**
+     * Dedicated connection of the batched writes, which run in their own transactions (see getBatchDatabase)
+     */
+    static private Connection batchConn = null;
+
+    /**
+     * If the connection was provided with setDatabase instead of being opened from the configuration
+     */
+    static private boolean provided = false;
+
+    /**
+     * Connections to the read replicas, opened on first use. An unreachable replica is null
+     */
+    static private volatile Connection[] replicas = null;
+
+    /**
+     * Counter used to spread the reads over the replicas
+     */
+    private static final AtomicInteger nextReplica = new AtomicInteger();
+
+    /**
+     * Connections to the shards, opened on first use. Null when the storage isn't sharded
+     */
+    static private Connection[] shards = null;
+
+    /**
+     * XA connections to the shards, opened on first use
+     */
+    static private XAConnection[] xaShards = null;
+
+    /**
+     * Metrics of the time spent waiting for the connection (including its creation on first use)
+     */
+    private static final OperationMetrics acquireMetrics = PersistenceMetrics.get("Database", "acquireConnection");
 
     /**
-     * Retrieve the database connection either by creating it or using the previously created.
+     * Retrieve the database connection either by creating it or using the previously created. The startup warm-up and the first request may ask for it together, only one of them open it.
      * @return a database connection
      */
     public static Connection getDatabase() {
+        long start = System.nanoTime();
         if (conn == null) {
-            initConnection();
+            synchronized (DatabaseProvider.class) {
+                if (conn == null) {
+                    conn = openConnection(true);
+                }
+            }
         }
+        acquireMetrics.record(System.nanoTime() - start, 0);
         return conn;
     }
 
     /**
-     * Initialize a new connection to the database and store it within the class static variable
+     * Retrieve the connection of the batched writes (write-behind journal, group commit). These writes disable the auto commit while they run, so they need their own connection to not capture the statements of the other threads. A connection provided with setDatabase is shared.
+     * @return the batch connection
+     */
+    public static synchronized Connection getBatchDatabase() {
+        Connection main = getDatabase();
+        if (provided) return main;
+        if (batchConn == null) {
+            batchConn = openConnection(false);
+        }
+        return batchConn;
+    }
+
+    /**
+     * Check if read replicas are configured. The replicas are connected on the first call
+     * @return if "otto.db.replica.urls" is set
+     */
+    public static boolean hasReplicas() {
+        Connection[] pool = replicas;
+        return (pool != null ? pool : openReplicas()).length > 0;
+    }
+
+    /**
+     * Retrieve a read replica connection, the replicas being used in turn. Fall back on the main connection when no replica is configured or the chosen one is unreachable
+     * @return a connection for read-only requests
+     */
+    public static Connection getReplicaDatabase() {
+        Connection[] pool = replicas;
+        if (pool == null) {
+            pool = openReplicas();
+        }
+        if (pool.length == 0) return getDatabase();
+        Connection replica = pool[Math.floorMod(nextReplica.getAndIncrement(), pool.length)];
+        return replica != null ? replica : getDatabase();
+    }
+
+    /**
+     * Open a new connection to the main database for long writes run alongside others (like the bulk import), closed by the caller
+     * @return the new connection, or null if the database is unreachable or the connection was provided with setDatabase
+     */
+    public static Connection openWriteConnection() {
+        return provided ? null : openConnection(false);
+    }
+
+    /**
+     * Open a new connection for the maintenance statements run alongside the application (schema checks, partitions DDL), closed by the caller, so they never hold the shared connections. It goes to the given shard when the storage is sharded, else to the main database. The shared connection is opened first, as it create the schema of the embedded profile
+     * @param shard the shard index, ignored when the storage isn't sharded
+     * @return the new connection, or null if the database is unreachable or the connection was provided with setDatabase
+     */
+    public static Connection openMaintenanceConnection(int shard) {
+        String[] shardList = shardUrls();
+        if (shardList.length > 0) {
+            getShardDatabase(shard);
+            return openConnection(shardList[shard], null, null, false);
+        }
+        if (provided) return null;
+        getDatabase();
+        return openWriteConnection();
+    }
+
+    /**
+     * Open a new connection for a long read run alongside others (like the export), closed by the caller. It goes to the given shard when the storage is sharded, else to a read replica (in turn) when some are configured, else to the main database
+     * @param shard the shard index, ignored when the storage isn't sharded
+     * @return the new connection, or null if the database is unreachable or the connection was provided with setDatabase
+     */
+    public static Connection openReadConnection(int shard) {
+        String[] shardList = shardUrls();
+        if (shardList.length > 0) return openConnection(shardList[shard], null, null, false);
+        if (provided) return null;
+        String urls = Configuration.get("otto.db.replica.urls", "").trim();
+        if (urls.isEmpty()) return openConnection(false);
+        String[] list = urls.split("\\s*,\\s*");
+        return openConnection(list[Math.floorMod(nextReplica.getAndIncrement(), list.length)], Configuration.get("otto.db.replica.username", null), Configuration.get("otto.db.replica.password", null), false);
+    }
+
+    /**
+     * Count the configured shards
+     * @return the number of urls in "otto.db.shard.urls", 0 when the storage isn't sharded
      */
-    private static void initConnection() {
+    public static synchronized int getShardCount() {
+        if (shards == null) {
+            shards = new Connection[shardUrls().length];
+            xaShards = new XAConnection[shards.length];
+        }
+        return shards.length;
+    }
+
+    /**
+     * Retrieve the connection of a shard, opening it on first use
+     * @param shard the shard index
+     * @return the connection or null if the shard is unreachable
+     */
+    public static synchronized Connection getShardDatabase(int shard) {
+        getShardCount();
+        if (shards[shard] == null) {
+            shards[shard] = openConnection(shardUrls()[shard], null, null, true);
+        }
+        return shards[shard];
+    }
+
+    /**
+     * Retrieve the XA connection of a shard, used for the two-phase commits. Its transactions are driven through its XAResource
+     * @param shard the shard index
+     * @return the XA connection or null if the shard is unreachable
+     */
+    public static synchronized XAConnection getShardXAConnection(int shard) {
+        getShardCount();
+        if (xaShards[shard] == null) {
+            getShardDatabase(shard);
+            xaShards[shard] = openXAConnection(shardUrls()[shard]);
+        }
+        return xaShards[shard];
+    }
+
+    /**
+     * Replace the shard connections. Used by the tests to plug several local databases as shards
+     * @param connections the connection of each shard, or null to connect again to the configured shards on next use
+     * @param xaConnections the XA connection of each shard (same length), or null
+     */
+    public static synchronized void setShardDatabases(Connection[] connections, XAConnection[] xaConnections) {
+        shards = connections != null ? connections.clone() : null;
+        xaShards = xaConnections != null ? xaConnections.clone() : (connections != null ? new XAConnection[connections.length] : null);
+    }
+
+    /**
+     * Check if the current profile is the embedded one
+     * @return if "otto.db.profile" is "embedded"
+     * @throws IllegalArgumentException if the profile is unknown
+     */
+    public static boolean isEmbeddedProfile() {
+        String profile = Configuration.get("otto.db.profile", "mysql");
+        switch (profile) {
+            case "mysql":
+                return false;
+            case "embedded":
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown database profile " + profile);
+        }
+    }
+
+    /**
+     * Replace the database connection. Used by the benchmarks and tests to plug an in-process database instead of the MySQL server
+     * @param connection the connection to use from now on, or null to connect again with the current configuration on next use
+     */
+    public static synchronized void setDatabase(Connection connection) {
+        conn = connection;
+        batchConn = null;
+        replicas = null;
+        provided = connection != null;
+    }
+
+    /**
+     * Replace the read replica connections. Used by the tests to plug a second local database as replica
+     * @param connections the replica connections, or none to connect again to the configured replicas on next use
+     */
+    public static synchronized void setReplicaDatabases(Connection... connections) {
+        replicas = connections.length > 0 ? connections.clone() : null;
+    }
+
+    /**
+     * Open the connections to the configured read replicas
+     * @return the replica connections, empty if none is configured
+     */
+    private static synchronized Connection[] openReplicas() {
+        if (replicas != null) return replicas;
+        String urls = Configuration.get("otto.db.replica.urls", "").trim();
+        String[] list = urls.isEmpty() ? new String[0] : urls.split("\\s*,\\s*");
+        Connection[] pool = new Connection[list.length];
+        for (int i = 0; i < list.length; i++) {
+            pool[i] = openConnection(list[i], Configuration.get("otto.db.replica.username", null), Configuration.get("otto.db.replica.password", null), true);
+        }
+        replicas = pool;
+        return pool;
+    }
+
+    /**
+     * Parse the shard urls
+     * @return the urls of "otto.db.shard.urls"
+     */
+    private static String[] shardUrls() {
+        String urls = Configuration.get("otto.db.shard.urls", "").trim();
+        return urls.isEmpty() ? new String[0] : urls.split("\\s*,\\s*");
+    }
+
+    /**
+     * Open an XA connection through the XADataSource of the profile ("otto.db.xaDataSource" to override it), configured by reflection like a bean
+     * @param url the url to connect to
+     * @return the XA connection or null if the database is unreachable
+     */
+    private static XAConnection openXAConnection(String url) {
+        boolean embedded = isEmbeddedProfile();
+        String className = Configuration.get("otto.db.xaDataSource", embedded ? embeddedXaDataSource : mysqlXaDataSource);
+        try {
+            XADataSource source = (XADataSource) Class.forName(className).newInstance();
+            source.getClass().getMethod("setURL", String.class).invoke(source, url);
+            source.getClass().getMethod("setUser", String.class).invoke(source, Configuration.get("otto.db.username", embedded ? "sa" : "root"));
+            source.getClass().getMethod("setPassword", String.class).invoke(source, Configuration.get("otto.db.password", embedded ? "" : "root"));
+            return source.getXAConnection();
+        } catch (Exception e) {
+            log.error("Unable to open an XA connection (url: " + url + ", data source: " + className + ")", e);
+        }
+        return null;
+    }
+
+    /**
+     * Open a new connection to the database from the configuration
+     * @param runSchema if the schema script of the profile must be run on the connection
+     * @return the connection or null if the database is unreachable
+     */
+    private static Connection openConnection(boolean runSchema) {
+        return openConnection(null, null, null, runSchema);
+    }
+
+    /**
+     * Open a new connection from the configuration, some settings being overridden (for the replicas)
+     * @param urlOverride the url to connect to, or null for "otto.db.url"
+     * @param usernameOverride the username, or null for "otto.db.username"
+     * @param passwordOverride the password, or null for "otto.db.password"
+     * @param runSchema if the schema script of the profile must be run on the connection
+     * @return the connection or null if the database is unreachable
+     */
+    private static Connection openConnection(String urlOverride, String usernameOverride, String passwordOverride, boolean runSchema) {
+        String profile = Configuration.get("otto.db.profile", "mysql");
+        boolean embedded = isEmbeddedProfile();
+        String url = urlOverride != null ? urlOverride : Configuration.get("otto.db.url", embedded ? embeddedUrl : mysqlUrl);
+        String driver = Configuration.get("otto.db.driver", embedded ? embeddedDriver : mysqlDriver);
+        String username = usernameOverride != null ? usernameOverride : Configuration.get("otto.db.username", embedded ? "sa" : "root");
+        String password = passwordOverride != null ? passwordOverride : Configuration.get("otto.db.password", embedded ? "" : "root");
+        String schema = Configuration.get("otto.db.schema", embedded ? embeddedSchema : "");
+
         try {
-            conn = DriverManager.getConnection("jdbc:mysql://" + host + "/" + database, username, password);
+            Class.forName(driver);
+            Connection connection = DriverManager.getConnection(url, username, password);
+            log.info("Connected to " + url + " (profile " + profile + ")");
+            if (runSchema && !schema.isEmpty()) {
+                SchemaLoader.run(connection, schema);
+            }
+            return connection;
         } catch (Exception e) {
-            System.err.println("[ERROR] Unable to connect to the database (host: " + host + ", database: " + database + ")" );
-            e.printStackTrace();
+            log.error("Unable to connect to the database (url: " + url + ", profile: " + profile + ")", e);
         }
+        return null;
     }
 }
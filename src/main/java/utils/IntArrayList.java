@@ -0,0 +1,87 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints. Unlike an ArrayList&lt;Integer&gt; it doesn't box the values, they are stored in a single array. Used to collect ids and row indexes. The list is not thread safe.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class IntArrayList {
+
+    /**
+     * The values, only the first size ones are used
+     */
+    private int[] values;
+
+    /**
+     * Number of values
+     */
+    private int size;
+
+    /**
+     * Create an empty list
+     */
+    public IntArrayList() {
+        this(10);
+    }
+
+    /**
+     * Create an empty list able to hold the given number of values without growing
+     * @param capacity the expected number of values
+     */
+    public IntArrayList(int capacity) {
+        this.values = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Add a value at the end of the list
+     * @param value the value
+     */
+    public void add(int value) {
+        if (this.size == this.values.length) this.values = Arrays.copyOf(this.values, this.size * 2);
+        this.values[this.size++] = value;
+    }
+
+    /**
+     * Retrieve a value
+     * @param index the position of the value
+     * @return the value
+     * @throws IndexOutOfBoundsException if the index is not in the list
+     */
+    public int get(int index) {
+        if (index < 0 || index >= this.size) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + this.size);
+        return this.values[index];
+    }
+
+    /**
+     * Access the number of values
+     * @return the size of the list
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Check if the list is empty
+     * @return if the list doesn't contain any value
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Remove all the values
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Copy the values in an array
+     * @return the values, in the list order
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(this.values, this.size);
+    }
+}
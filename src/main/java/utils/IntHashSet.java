@@ -0,0 +1,163 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive ints with open addressing (linear probing), the companion of IntObjectHashMap. Unlike a HashSet&lt;Integer&gt; it doesn't box the values nor allocate a node per value. Used for the sets of ids. The set is not thread safe.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class IntHashSet {
+
+    /**
+     * Marker of a free slot. The value 0 is stored aside so it can be a regular value
+     */
+    private static final int free = 0;
+
+    /**
+     * Maximal ratio of used slots before the array grows
+     */
+    private static final float loadFactor = 0.6f;
+
+    /**
+     * The values, free slots contain 0
+     */
+    private int[] values;
+
+    /**
+     * If the value 0 is present
+     */
+    private boolean hasZero;
+
+    /**
+     * Number of values (including 0)
+     */
+    private int size;
+
+    /**
+     * Number of used slots above which the array grows
+     */
+    private int threshold;
+
+    /**
+     * Create an empty set
+     */
+    public IntHashSet() {
+        this(16);
+    }
+
+    /**
+     * Create an empty set able to hold the given number of values without growing
+     * @param expected the expected number of values
+     */
+    public IntHashSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expected / loadFactor)) - 1) << 1;
+        this.values = new int[capacity];
+        this.threshold = (int) (capacity * loadFactor);
+    }
+
+    /**
+     * Check if a value is present
+     * @param value the value
+     * @return if the set contains the value
+     */
+    public boolean contains(int value) {
+        if (value == free) return this.hasZero;
+        int mask = this.values.length - 1;
+        for (int idx = mix(value) & mask; ; idx = (idx + 1) & mask) {
+            int current = this.values[idx];
+            if (current == value) return true;
+            if (current == free) return false;
+        }
+    }
+
+    /**
+     * Add a value
+     * @param value the value
+     * @return if the value was added, false if it was already present
+     */
+    public boolean add(int value) {
+        if (value == free) {
+            if (this.hasZero) return false;
+            this.hasZero = true;
+            this.size++;
+            return true;
+        }
+        int mask = this.values.length - 1;
+        for (int idx = mix(value) & mask; ; idx = (idx + 1) & mask) {
+            int current = this.values[idx];
+            if (current == value) return false;
+            if (current == free) {
+                this.values[idx] = value;
+                if (++this.size >= this.threshold) this.grow();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Access the number of values
+     * @return the size of the set
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Check if the set is empty
+     * @return if the set doesn't contain any value
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Remove all the values
+     */
+    public void clear() {
+        Arrays.fill(this.values, free);
+        this.hasZero = false;
+        this.size = 0;
+    }
+
+    /**
+     * Copy the values in an array
+     * @return the values, in no particular order
+     */
+    public int[] toArray() {
+        int[] result = new int[this.size];
+        int idx = 0;
+        if (this.hasZero) result[idx++] = 0;
+        for (int value : this.values) {
+            if (value != free) result[idx++] = value;
+        }
+        return result;
+    }
+
+    /**
+     * Spread the bits of a value so consecutive ids don't end up in consecutive slots clusters
+     * @param value the value
+     * @return the mixed hash of the value
+     */
+    private static int mix(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Double the capacity of the array and rehash the values
+     */
+    private void grow() {
+        int[] oldValues = this.values;
+        int capacity = oldValues.length * 2;
+        this.values = new int[capacity];
+        this.threshold = (int) (capacity * loadFactor);
+        int mask = capacity - 1;
+        for (int value : oldValues) {
+            if (value == free) continue;
+            int idx = mix(value) & mask;
+            while (this.values[idx] != free) idx = (idx + 1) & mask;
+            this.values[idx] = value;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Hash map with primitive int keys and open addressing (linear probing). Unlike a HashMap&lt;Integer, V&gt; it doesn't box the keys nor allocate an entry per mapping, the keys and values are stored in two parallel arrays. The map is not thread safe.
+ * @param <V> the type of the values
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public class IntObjectHashMap<V> {
+
+    /**
+     * Marker of a free slot. The key 0 is stored aside so it can be a regular key
+     */
+    private static final int free = 0;
+
+    /**
+     * Maximal ratio of used slots before the arrays grow
+     */
+    private static final float loadFactor = 0.6f;
+
+    /**
+     * The keys, free slots contain 0
+     */
+    private int[] keys;
+
+    /**
+     * The values, at the same index as their key
+     */
+    private Object[] values;
+
+    /**
+     * Value of the key 0 (which cannot be stored in the arrays)
+     */
+    private Object zeroValue;
+
+    /**
+     * If the key 0 is present
+     */
+    private boolean hasZero;
+
+    /**
+     * Number of mappings (including the key 0)
+     */
+    private int size;
+
+    /**
+     * Number of used slots above which the arrays grow
+     */
+    private int threshold;
+
+    /**
+     * Create an empty map
+     */
+    public IntObjectHashMap() {
+        this(16);
+    }
+
+    /**
+     * Create an empty map able to hold the given number of mappings without growing
+     * @param expected the expected number of mappings
+     */
+    public IntObjectHashMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expected / loadFactor)) - 1) << 1;
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+        this.threshold = (int) (capacity * loadFactor);
+    }
+
+    /**
+     * Retrieve the value of a key
+     * @param key the key
+     * @return the value or null if the key is absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        if (key == free) return this.hasZero ? (V) this.zeroValue : null;
+        int mask = this.keys.length - 1;
+        for (int idx = mix(key) & mask; ; idx = (idx + 1) & mask) {
+            int current = this.keys[idx];
+            if (current == key) return (V) this.values[idx];
+            if (current == free) return null;
+        }
+    }
+
+    /**
+     * Check if a key is present
+     * @param key the key
+     * @return if the map contains the key
+     */
+    public boolean containsKey(int key) {
+        if (key == free) return this.hasZero;
+        int mask = this.keys.length - 1;
+        for (int idx = mix(key) & mask; ; idx = (idx + 1) & mask) {
+            int current = this.keys[idx];
+            if (current == key) return true;
+            if (current == free) return false;
+        }
+    }
+
+    /**
+     * Associate a value to a key
+     * @param key the key
+     * @param value the value
+     * @return the previous value of the key or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (key == free) {
+            V previous = (V) this.zeroValue;
+            if (!this.hasZero) this.size++;
+            this.hasZero = true;
+            this.zeroValue = value;
+            return previous;
+        }
+        int mask = this.keys.length - 1;
+        for (int idx = mix(key) & mask; ; idx = (idx + 1) & mask) {
+            int current = this.keys[idx];
+            if (current == key) {
+                V previous = (V) this.values[idx];
+                this.values[idx] = value;
+                return previous;
+            }
+            if (current == free) {
+                this.keys[idx] = key;
+                this.values[idx] = value;
+                if (++this.size >= this.threshold) this.grow();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Remove the mapping of a key
+     * @param key the key
+     * @return the removed value or null if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        if (key == free) {
+            if (!this.hasZero) return null;
+            V previous = (V) this.zeroValue;
+            this.hasZero = false;
+            this.zeroValue = null;
+            this.size--;
+            return previous;
+        }
+        int mask = this.keys.length - 1;
+        for (int idx = mix(key) & mask; ; idx = (idx + 1) & mask) {
+            int current = this.keys[idx];
+            if (current == free) return null;
+            if (current == key) {
+                V previous = (V) this.values[idx];
+                this.size--;
+                this.shiftKeys(idx);
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * Access the number of mappings
+     * @return the size of the map
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Check if the map is empty
+     * @return if the map doesn't contain any mapping
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Remove all the mappings
+     */
+    public void clear() {
+        Arrays.fill(this.keys, free);
+        Arrays.fill(this.values, null);
+        this.hasZero = false;
+        this.zeroValue = null;
+        this.size = 0;
+    }
+
+    /**
+     * Call an action on every value of the map (in no particular order)
+     * @param action the action to call
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        if (this.hasZero) action.accept((V) this.zeroValue);
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != free) action.accept((V) this.values[i]);
+        }
+    }
+
+    /**
+     * Spread the bits of a key so consecutive ids don't end up in consecutive slots clusters
+     * @param key the key
+     * @return the mixed hash of the key
+     */
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Fill the hole left by a removal by moving back the following entries of the probe sequence
+     * @param pos the index of the removed entry
+     */
+    private void shiftKeys(int pos) {
+        int mask = this.keys.length - 1;
+        int last = pos;
+        int slot = (pos + 1) & mask;
+        while (true) {
+            int current = this.keys[slot];
+            if (current == free) break;
+            int ideal = mix(current) & mask;
+            boolean move = last <= slot ? (ideal <= last || ideal > slot) : (ideal <= last && ideal > slot);
+            if (move) {
+                this.keys[last] = current;
+                this.values[last] = this.values[slot];
+                last = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        this.keys[last] = free;
+        this.values[last] = null;
+    }
+
+    /**
+     * Double the capacity of the arrays and rehash the entries
+     */
+    private void grow() {
+        int[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        int capacity = oldKeys.length * 2;
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+        this.threshold = (int) (capacity * loadFactor);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == free) continue;
+            int idx = mix(oldKeys[i]) & mask;
+            while (this.keys[idx] != free) idx = (idx + 1) & mask;
+            this.keys[idx] = oldKeys[i];
+            this.values[idx] = oldValues[i];
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package utils;
+
+/**
+ * Exact fixed-point amount of money. The value is stored as a number of minor units (cents) inside a single long so there is no rounding drift like with float and no BigDecimal needed for the arithmetic. Instances are immutable.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class Money implements Comparable<Money> {
+
+    /**
+     * Number of minor units in one major unit (100 cents in one euro)
+     */
+    public static final int MINOR_PER_MAJOR = 100;
+
+    /**
+     * Number of decimal digits used by the minor units
+     */
+    private static final int SCALE = 2;
+
+    /**
+     * The zero amount. Shared as it is the most common value
+     */
+    public static final Money ZERO = new Money(0);
+
+    /**
+     * The amount in minor units
+     */
+    private final long minorUnits;
+
+    /**
+     * Constructor. Use the factory methods instead.
+     * @param minorUnits the amount in minor units
+     */
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    /**
+     * Create an amount from a number of minor units (cents)
+     * @param minorUnits the amount in minor units
+     * @return the corresponding amount
+     */
+    public static Money ofMinorUnits(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    /**
+     * Parse a decimal amount as entered by the user ("12", "12.5", "-3.05"). Both dot and comma are accepted as decimal separator. The parsing is done directly on the characters, without any intermediate BigDecimal or floating point.
+     * @param str the string to parse
+     * @return the parsed amount
+     * @throws NumberFormatException if the string isn't a valid amount or have more than two decimals
+     */
+    public static Money parse(String str) {
+        if (str == null) throw new NumberFormatException("null amount");
+        String value = str.trim();
+        int idx = 0;
+        boolean negative = false;
+        if (value.length() > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            idx++;
+        }
+        if (idx >= value.length()) throw new NumberFormatException("Invalid amount \"" + str + "\"");
+
+        long result = 0;
+        int decimals = -1;
+        boolean digits = false;
+        for (; idx < value.length(); idx++) {
+            char c = value.charAt(idx);
+            if (c == '.' || c == ',') {
+                if (decimals >= 0) throw new NumberFormatException("Invalid amount \"" + str + "\"");
+                decimals = 0;
+            } else if (c >= '0' && c <= '9') {
+                if (decimals >= SCALE) throw new NumberFormatException("Too many decimals in amount \"" + str + "\"");
+                result = Math.addExact(Math.multiplyExact(result, 10), c - '0');
+                if (decimals >= 0) decimals++;
+                digits = true;
+            } else {
+                throw new NumberFormatException("Invalid amount \"" + str + "\"");
+            }
+        }
+        if (!digits) throw new NumberFormatException("Invalid amount \"" + str + "\"");
+        for (int i = Math.max(decimals, 0); i < SCALE; i++) {
+            result = Math.multiplyExact(result, 10);
+        }
+        return ofMinorUnits(negative ? -result : result);
+    }
+
+    /**
+     * Access the amount in minor units. This is the value stored in database
+     * @return the amount in minor units
+     */
+    public long getMinorUnits() {
+        return this.minorUnits;
+    }
+
+    /**
+     * Add an amount to the current one
+     * @param other the amount to add
+     * @return the sum of both amounts
+     * @throws ArithmeticException if the result overflow
+     */
+    public Money plus(Money other) {
+        return ofMinorUnits(Math.addExact(this.minorUnits, other.minorUnits));
+    }
+
+    /**
+     * Subtract an amount to the current one
+     * @param other the amount to subtract
+     * @return the difference between both amounts
+     * @throws ArithmeticException if the result overflow
+     */
+    public Money minus(Money other) {
+        return ofMinorUnits(Math.subtractExact(this.minorUnits, other.minorUnits));
+    }
+
+    /**
+     * Check if the amount is strictly positive
+     * @return if the amount is greater than zero
+     */
+    public boolean isPositive() {
+        return this.minorUnits > 0;
+    }
+
+    /**
+     * Check if the amount is strictly greater than the given one
+     * @param other the amount to compare with
+     * @return if the current amount is greater
+     */
+    public boolean isGreaterThan(Money other) {
+        return this.minorUnits > other.minorUnits;
+    }
+
+    /**
+     * Compare two amounts
+     * @param other the amount to compare with
+     * @return a negative number, zero or a positive number if the current amount is lower, equal or greater
+     */
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(this.minorUnits, other.minorUnits);
+    }
+
+    /**
+     * Two amounts are equals if they have the same number of minor units
+     * @param obj the object to compare with
+     * @return if both amounts are equals
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Money && ((Money) obj).minorUnits == this.minorUnits;
+    }
+
+    /**
+     * Hash code based on the minor units
+     * @return the hash code of the amount
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.minorUnits);
+    }
+
+    /**
+     * Format the amount with two decimals ("12.50")
+     * @return the formatted amount
+     */
+    @Override
+    public String toString() {
+        long abs = Math.abs(this.minorUnits);
+        long cents = abs % MINOR_PER_MAJOR;
+        StringBuilder res = new StringBuilder(24);
+        if (this.minorUnits < 0) res.append('-');
+        res.append(abs / MINOR_PER_MAJOR).append('.');
+        if (cents < 10) res.append('0');
+        return res.append(cents).toString();
+    }
+}
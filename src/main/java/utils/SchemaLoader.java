@@ -0,0 +1,105 @@
+package utils;
+
+import logging.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Run a SQL script, such as the database.sql dump, on a connection. The MySQL specific parts of a dump that other databases don't understand (version conditional comments and table locks) are skipped, so the same script can create the schema of the embedded database.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+public final class SchemaLoader {
+
+    /**
+     * Logger of the class
+     */
+    private static final Logger log = Logger.getLogger(SchemaLoader.class);
+
+    /**
+     * Utility class, not instantiable
+     */
+    private SchemaLoader() { }
+
+    /**
+     * Run a script. It is searched on the classpath first, then on the file system
+     * @param conn the connection to run the script on
+     * @param script the script location
+     * @return the number of statements executed
+     * @throws SQLException if the script cannot be read or a statement fail
+     */
+    public static int run(Connection conn, String script) throws SQLException {
+        List<String> statements;
+        try (InputStream in = open(script)) {
+            statements = parse(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new SQLException("Unable to read the SQL script " + script, e);
+        }
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+        log.info("Executed " + statements.size() + " statements of " + script);
+        return statements.size();
+    }
+
+    /**
+     * Split a script into statements. A statement end with a semicolon at the end of a line
+     * @param reader the script
+     * @return the statements to execute, without their final semicolon
+     * @throws IOException if the script cannot be read
+     */
+    static List<String> parse(BufferedReader reader) throws IOException {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String trimmed = line.trim();
+            if (current.length() == 0 && (trimmed.isEmpty() || trimmed.startsWith("--"))) continue;
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                String statement = current.toString().trim();
+                statement = statement.substring(0, statement.length() - 1).trim();
+                if (!isMySqlOnly(statement)) statements.add(statement);
+                current.setLength(0);
+            }
+        }
+        if (current.toString().trim().length() > 0 && !isMySqlOnly(current.toString().trim())) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+
+    /**
+     * Check if a statement of a MySQL dump should be skipped
+     * @param statement the statement
+     * @return if the statement is a conditional comment or a table lock
+     */
+    private static boolean isMySqlOnly(String statement) {
+        String upper = statement.toUpperCase();
+        return upper.startsWith("/*!") || upper.startsWith("LOCK TABLES") || upper.startsWith("UNLOCK TABLES");
+    }
+
+    /**
+     * Open a script from the classpath or the file system
+     * @param script the script location
+     * @return the script content
+     * @throws IOException if the script doesn't exist
+     */
+    private static InputStream open(String script) throws IOException {
+        InputStream in = SchemaLoader.class.getResourceAsStream(script.startsWith("/") ? script : "/" + script);
+        return in != null ? in : Files.newInputStream(Paths.get(script));
+    }
+}
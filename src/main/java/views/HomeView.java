@@ -2,11 +2,14 @@ package views;
 
 import controllers.HomeController;
 import models.Account;
+import models.DailyTotal;
+import utils.Money;
 import utils.Pair;
 
 import javax.swing.*;
 import java.awt.event.ActionListener;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Home view. Main view of the application, allow the user to act on it's account
@@ -139,9 +142,15 @@ public class HomeView extends JFrame {
     /**
      * Show a popup with the account summary
      * @param account the account to show the summary
-     */
-    public void showSummary(Account account) {
-        JOptionPane.showMessageDialog(this, "Your account " + account.getIdentifier() + " have a balance of " + account.getBalance(), "Account summary", JOptionPane.INFORMATION_MESSAGE);
+     * @param monthTotals the amounts withdrawn, sent and received during the current month
+     */
+    public void showSummary(Account account, Map<DailyTotal.Direction, Money> monthTotals) {
+        String message = "Your account " + account.getIdentifier() + " have a balance of " + account.getBalance() + "\n\n" +
+                "This month:\n" +
+                "Withdrawn: " + monthTotals.get(DailyTotal.Direction.Withdrawn) + "\n" +
+                "Sent: " + monthTotals.get(DailyTotal.Direction.Sent) + "\n" +
+                "Received: " + monthTotals.get(DailyTotal.Direction.Received);
+        JOptionPane.showMessageDialog(this, message, "Account summary", JOptionPane.INFORMATION_MESSAGE);
     }
 
     /**
@@ -167,7 +176,7 @@ public class HomeView extends JFrame {
      * @return The amount of the transfer and the recipient identifier (no value verification by the view but done by the controller)
      * @see HomeController#transfer()
      */
-    public Pair<String, Float> askTransfer() {
+    public Pair<String, Money> askTransfer() {
         JLabel recipientLabel = new JLabel("Recipient");
         JLabel amountLabel = new JLabel("Amount");
         JTextField recipient = new JTextField();
@@ -180,11 +189,11 @@ public class HomeView extends JFrame {
         };
         int result = JOptionPane.showConfirmDialog(this, components, "Transfer order", JOptionPane.DEFAULT_OPTION);
         if (result == -1 || amount.getText().equals(""))
-            return new Pair<>("", Float.NaN);
+            return new Pair<>("", Money.ZERO);
         try {
-            return new Pair<>(recipient.getText(), Float.parseFloat(amount.getText()));
+            return new Pair<>(recipient.getText(), Money.parse(amount.getText()));
         } catch (Exception e) {
-            return new Pair<>("", Float.NaN);
+            return new Pair<>("", Money.ZERO);
         }
     }
 }
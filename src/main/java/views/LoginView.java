@@ -97,6 +97,13 @@ public class LoginView extends JFrame {
         JOptionPane.showMessageDialog(this, "Invalid username or password.", "Login error", JOptionPane.ERROR_MESSAGE);
     }
 
+    /**
+     * Display a popup warning the user that too many login attempts were made and that they must wait before trying again. This function is triggered by the controller in charge of this view
+     */
+    public void showTooManyAttempts() {
+        JOptionPane.showMessageDialog(this, "Too many login attempts, please try again later.", "Login error", JOptionPane.ERROR_MESSAGE);
+    }
+
     /**
      * Reset all data entered by the user
      */
@@ -21,6 +21,15 @@ public class TransactionsView extends JFrame {
     static final int width = 500;
     static final int height = 500;
 
+    /**
+     * The withdraw summary tab
+     */
+    private WithdrawTab withdrawTab;
+
+    /**
+     * The transfer summary tab
+     */
+    private TransferTab transferTab;
 
     /**
      * Constructor of the view. add all the elements to the window
@@ -48,10 +57,25 @@ public class TransactionsView extends JFrame {
     private void addTabs(Account account, List<Transaction> transactions) {
         JTabbedPane tabbedPane = new JTabbedPane();
         tabbedPane.setBounds(0, 0, width, height);
-        tabbedPane.addTab("Withdraws", new WithdrawTab(transactions));
-        tabbedPane.addTab("Transfers", new TransferTab(account, transactions));
+        this.withdrawTab = new WithdrawTab(transactions);
+        this.transferTab = new TransferTab(account, transactions);
+        tabbedPane.addTab("Withdraws", this.withdrawTab);
+        tabbedPane.addTab("Transfers", this.transferTab);
         getContentPane().add(tabbedPane);
     }
+
+    /**
+     * Add a new transaction at the top of its tab. Must be called on the Swing thread
+     * @param account the account the summary is for
+     * @param transaction the new transaction
+     */
+    public void addTransaction(Account account, Transaction transaction) {
+        if (transaction.getType() == Transaction.TransactionType.Withdraw) {
+            this.withdrawTab.add(transaction);
+        } else {
+            this.transferTab.add(account, transaction);
+        }
+    }
 }
 
 /**
@@ -61,15 +85,30 @@ public class TransactionsView extends JFrame {
  */
 class WithdrawTab extends JPanel {
 
+    /**
+     * The lines of the list
+     */
+    private final DefaultListModel<String> lines = new DefaultListModel<>();
+
     /**
      * Add all the transactions element on the tab
      * @param transactions the list of all the transactions from the user
      */
     public WithdrawTab(List<Transaction> transactions) {
-        JList list = new JList(WithdrawFormater.format(transactions));
-        add(list);
+        for (String line : WithdrawFormater.format(transactions)) {
+            this.lines.addElement(line);
+        }
+        add(new JList<>(this.lines));
         setVisible(true);
     }
+
+    /**
+     * Add a new withdraw at the top of the list
+     * @param transaction the withdraw
+     */
+    void add(Transaction transaction) {
+        this.lines.add(0, WithdrawFormater.format(transaction));
+    }
 }
 
 /**
@@ -79,13 +118,29 @@ class WithdrawTab extends JPanel {
  */
 class TransferTab extends JPanel {
 
+    /**
+     * The lines of the list
+     */
+    private final DefaultListModel<String> lines = new DefaultListModel<>();
+
     /**
      * Add all the transactions element on the tab
      * @param transactions the list of all the transactions from the user
      */
     public TransferTab(Account account, List<Transaction> transactions) {
-        JList list = new JList(TransferFormater.format(account, transactions));
-        add(list);
+        for (String line : TransferFormater.format(account, transactions)) {
+            this.lines.addElement(line);
+        }
+        add(new JList<>(this.lines));
+    }
+
+    /**
+     * Add a new transfer at the top of the list
+     * @param account the account the summary is for
+     * @param transaction the transfer
+     */
+    void add(Account account, Transaction transaction) {
+        this.lines.add(0, TransferFormater.format(account, transaction));
     }
 }
 
@@ -105,11 +160,20 @@ class WithdrawFormater {
         List<String> res = new ArrayList<>();
         transactions.forEach(elem -> {
             if (elem.getType() == Transaction.TransactionType.Withdraw) {
-                res.add(String.format("%f", elem.getAmount()));
+                res.add(format(elem));
             }
         });
         return res.toArray(new String[]{});
     }
+
+    /**
+     * Convert a withdraw into a string
+     * @param transaction the withdraw
+     * @return the amount of the withdraw
+     */
+    static String format(Transaction transaction) {
+        return transaction.getAmount().toString();
+    }
 }
 
 
@@ -129,13 +193,22 @@ class TransferFormater {
         List<String> res = new ArrayList<>();
         transactions.forEach(elem -> {
             if (elem.getType() == Transaction.TransactionType.Transfer) {
-                if (elem.getInitiator().getId() == account.getId()) {
-                    res.add(String.format("You sent %f to %s", elem.getAmount(), elem.getRecipient().getIdentifier()));
-                } else {
-                    res.add(String.format("You received %f from %s", elem.getAmount(), elem.getInitiator().getIdentifier()));
-                }
+                res.add(format(account, elem));
             }
         });
         return res.toArray(new String[]{});
     }
+
+    /**
+     * Convert a transfer into a string
+     * @param account the account the summary is for
+     * @param transaction the transfer
+     * @return the amount and the other account of the transfer
+     */
+    static String format(Account account, Transaction transaction) {
+        if (transaction.getInitiator().getId() == account.getId()) {
+            return String.format("You sent %s to %s", transaction.getAmount(), transaction.getRecipient().getIdentifier());
+        }
+        return String.format("You received %s from %s", transaction.getAmount(), transaction.getInitiator().getIdentifier());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,307 @@
+package processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Annotation processor implementing the query interfaces: an interface annotated with @Repository get a generated class "InterfaceImpl", extending RepositoryBase, whose methods are derived from their name and checked against the model at compile time:
+ * "findByField(value)" search the entities by the column of a field (an attribute or a relation), "findByFieldAndRangeFieldBetween(value, from, to)" also bound an attribute within a range (see RepositoryBase.findBetween). A method returns the list of the model, or the model itself (the first match, or null).
+ * The column names are written in the generated class as constants, so a call neither parse the method name nor reflect on the model. An unknown field, or a parameter that cannot be assigned to its field (a String for an enum, an id for a relation), is a compilation error, a field without @Indexed or @Unique a warning.
+ * This processor only depends on the JDK: it reads the annotations of the application by name.
+ * @author Antoine FORET
+ * @version 1.0
+ */
+@SupportedAnnotationTypes("annotations.Repository")
+public class QueryProcessor extends AbstractProcessor {
+
+    /**
+     * Search by a field, with a range on another field
+     */
+    private static final Pattern findBetween = Pattern.compile("findBy([A-Z]\\w*?)And([A-Z]\\w*)Between");
+
+    /**
+     * Search by a field
+     */
+    private static final Pattern findBy = Pattern.compile("findBy([A-Z]\\w*)");
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.INTERFACE) {
+                    this.generate((TypeElement) element);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generate the implementation of a query interface
+     * @param queries the interface
+     */
+    private void generate(TypeElement queries) {
+        Messager messager = this.processingEnv.getMessager();
+        TypeElement model = this.model(queries);
+        if (model == null) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "The model of the repository cannot be read", queries);
+            return;
+        }
+        Map<String, Column> columns = this.columns(model);
+        String pkg = this.processingEnv.getElementUtils().getPackageOf(queries).getQualifiedName().toString();
+        String name = queries.getSimpleName() + "Impl";
+
+        StringBuilder constants = new StringBuilder();
+        StringBuilder methods = new StringBuilder();
+        boolean valid = true;
+        for (ExecutableElement method : ElementFilter.methodsIn(queries.getEnclosedElements())) {
+            if (!method.getModifiers().contains(Modifier.ABSTRACT)) continue;
+            valid &= this.generateMethod(method, model, columns, constants, methods);
+        }
+        if (!valid) return;
+
+        String modelName = model.getQualifiedName().toString();
+        try (Writer writer = this.processingEnv.getFiler().createSourceFile((pkg.isEmpty() ? "" : pkg + ".") + name, queries).openWriter()) {
+            if (!pkg.isEmpty()) writer.write("package " + pkg + ";\n\n");
+            writer.write("/**\n"
+                    + " * Implementation of " + queries.getSimpleName() + ", generated by processor.QueryProcessor. Do not edit\n"
+                    + " * @see " + queries.getQualifiedName() + "\n"
+                    + " */\n"
+                    + "@annotations.Repository(model = " + modelName + ".class)\n"
+                    + "public final class " + name + " extends repositories.RepositoryBase implements " + queries.getQualifiedName() + " {\n"
+                    + constants
+                    + methods
+                    + "}\n");
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Unable to write " + name + ": " + e.getMessage(), queries);
+        }
+    }
+
+    /**
+     * Generate one query method
+     * @param method the method of the interface
+     * @param model the model of the repository
+     * @param columns the columns of the model by field name
+     * @param constants the column constants of the class, to complete
+     * @param methods the methods of the class, to complete
+     * @return if the method is valid
+     */
+    private boolean generateMethod(ExecutableElement method, TypeElement model, Map<String, Column> columns, StringBuilder constants, StringBuilder methods) {
+        Messager messager = this.processingEnv.getMessager();
+        Types types = this.processingEnv.getTypeUtils();
+        String name = method.getSimpleName().toString();
+        List<? extends VariableElement> parameters = method.getParameters();
+
+        Matcher between = findBetween.matcher(name);
+        Matcher by = findBy.matcher(name);
+        boolean range = between.matches() && parameters.size() == 3;
+        if (!range && !(by.matches() && parameters.size() == 1)) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "A query method is named findByField(value) or findByFieldAndOtherFieldBetween(value, from, to)", method);
+            return false;
+        }
+        Column column = this.column(columns, range ? between.group(1) : by.group(1), model, method);
+        Column rangeColumn = range ? this.column(columns, between.group(2), model, method) : null;
+        if (column == null || (range && rangeColumn == null)) return false;
+        if (range && rangeColumn.relation) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "The range of " + name + " must be an attribute", method);
+            return false;
+        }
+        if (!column.indexed) {
+            messager.printMessage(Diagnostic.Kind.WARNING, "Column " + column.name + " searched by " + name + " isn't @Indexed nor @Unique", method);
+        }
+        boolean typed = this.checkParameter(parameters.get(0), column, method);
+        if (range) {
+            typed &= this.checkParameter(parameters.get(1), rangeColumn, method);
+            typed &= this.checkParameter(parameters.get(2), rangeColumn, method);
+        }
+        if (!typed) return false;
+
+        TypeMirror returned = method.getReturnType();
+        boolean single = types.isSameType(returned, model.asType());
+        boolean list = returned.getKind() == TypeKind.DECLARED
+                && ((TypeElement) types.asElement(returned)).getQualifiedName().contentEquals("java.util.List")
+                && ((DeclaredType) returned).getTypeArguments().size() == 1
+                && types.isSameType(((DeclaredType) returned).getTypeArguments().get(0), model.asType());
+        if (!single && !list) {
+            messager.printMessage(Diagnostic.Kind.ERROR, name + " must return " + model.getSimpleName() + " or List<" + model.getSimpleName() + ">", method);
+            return false;
+        }
+
+        String modelName = model.getQualifiedName().toString();
+        StringBuilder signature = new StringBuilder();
+        StringBuilder arguments = new StringBuilder();
+        for (VariableElement parameter : parameters) {
+            if (signature.length() > 0) signature.append(", ");
+            signature.append(parameter.asType()).append(' ').append(parameter.getSimpleName());
+            arguments.append(", ").append(parameter.getSimpleName());
+        }
+        String call = range
+                ? "this.findBetween(" + name + "Column, " + parameters.get(0).getSimpleName() + ", " + name + "RangeColumn, " + parameters.get(1).getSimpleName() + ", " + parameters.get(2).getSimpleName() + ")"
+                : "this.findBy(" + name + "Column" + arguments + ")";
+
+        constants.append("\n    /**\n     * Column searched by ").append(name).append("\n     */\n")
+                .append("    private static final String ").append(name).append("Column = \"").append(column.name).append("\";\n");
+        if (range) {
+            constants.append("\n    /**\n     * Column of the range of ").append(name).append("\n     */\n")
+                    .append("    private static final String ").append(name).append("RangeColumn = \"").append(rangeColumn.name).append("\";\n");
+        }
+        methods.append("\n    @Override\n    public ").append(returned).append(' ').append(name).append('(').append(signature).append(") {\n");
+        if (single) {
+            methods.append("        java.util.List<").append(modelName).append("> result = ").append(call).append(";\n")
+                    .append("        return result.isEmpty() ? null : result.get(0);\n");
+        } else {
+            methods.append("        return ").append(call).append(";\n");
+        }
+        methods.append("    }\n");
+        return true;
+    }
+
+    /**
+     * Find the column of a field named in a method name
+     * @param columns the columns of the model by field name
+     * @param property the capitalized field name
+     * @param model the model of the repository
+     * @param method the method, to report an error
+     * @return the column, or null if the model has no such attribute or relation
+     */
+    private Column column(Map<String, Column> columns, String property, TypeElement model, ExecutableElement method) {
+        String field = Character.toLowerCase(property.charAt(0)) + property.substring(1);
+        Column column = columns.get(field);
+        if (column == null) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, model.getSimpleName() + " has no attribute or relation " + field, method);
+        }
+        return column;
+    }
+
+    /**
+     * Check that a parameter can be assigned to the field of its column (with boxing), the backends matching the value with the converter of its own type
+     * @param parameter the parameter of the query method
+     * @param column the column searched with the parameter
+     * @param method the method, to report an error
+     * @return if the parameter type is valid
+     */
+    private boolean checkParameter(VariableElement parameter, Column column, ExecutableElement method) {
+        Types types = this.processingEnv.getTypeUtils();
+        if (types.isAssignable(parameter.asType(), column.type)) return true;
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Parameter " + parameter.getSimpleName() + " of " + method.getSimpleName() + " must be a " + column.type + " like the field of column " + column.name + ", not a " + parameter.asType(), parameter);
+        return false;
+    }
+
+    /**
+     * Read the model class of a repository annotation
+     * @param queries the annotated interface
+     * @return the model, or null if it cannot be read
+     */
+    private TypeElement model(TypeElement queries) {
+        for (AnnotationMirror annotation : queries.getAnnotationMirrors()) {
+            if (!((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals("annotations.Repository")) continue;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : annotation.getElementValues().entrySet()) {
+                if (value.getKey().getSimpleName().contentEquals("model") && value.getValue().getValue() instanceof DeclaredType) {
+                    return (TypeElement) ((DeclaredType) value.getValue().getValue()).asElement();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read the columns of a model and its parent classes from the Attribute and OneToOne annotations of their fields
+     * @param model the model
+     * @return the columns by field name
+     */
+    private Map<String, Column> columns(TypeElement model) {
+        Map<String, Column> columns = new HashMap<>();
+        for (TypeElement type = model; type != null; type = type.getSuperclass().getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) type.getSuperclass()).asElement() : null) {
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                String name = null;
+                boolean relation = false;
+                boolean indexed = false;
+                for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+                    String annotationName = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+                    if (annotationName.equals("annotations.Attribute") || annotationName.equals("annotations.OneToOne")) {
+                        relation = annotationName.equals("annotations.OneToOne");
+                        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : annotation.getElementValues().entrySet()) {
+                            if (value.getKey().getSimpleName().contentEquals("name")) name = (String) value.getValue().getValue();
+                        }
+                    } else if (annotationName.equals("annotations.Indexed") || annotationName.equals("annotations.Unique")) {
+                        indexed = true;
+                    }
+                }
+                if (name != null) columns.putIfAbsent(field.getSimpleName().toString(), new Column(name, relation, indexed, field.asType()));
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Column of a model field
+     * @author Antoine FORET
+     * @version 1.0
+     */
+    private static final class Column {
+
+        /**
+         * The column name
+         */
+        final String name;
+
+        /**
+         * If the field is a relation (the column holding the id of the related entity)
+         */
+        final boolean relation;
+
+        /**
+         * If the column is indexed
+         */
+        final boolean indexed;
+
+        /**
+         * The type of the field (the related model for a relation)
+         */
+        final TypeMirror type;
+
+        /**
+         * Constructor
+         * @param name the column name
+         * @param relation if the field is a relation
+         * @param indexed if the column is indexed
+         * @param type the type of the field
+         */
+        Column(String name, boolean relation, boolean indexed, TypeMirror type) {
+            this.name = name;
+            this.relation = relation;
+            this.indexed = indexed;
+            this.type = type;
+        }
+    }
+}